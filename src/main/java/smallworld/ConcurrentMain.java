@@ -1,25 +1,16 @@
 package smallworld;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Random;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import libsvm.svm;
 import libsvm.svm_model;
@@ -32,24 +23,46 @@ import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
 import org.neo4j.graphdb.PathExpanders;
 import org.neo4j.graphdb.RelationshipType;
 
 import smallworld.data.RelationshipTypes;
+import smallworld.data.graph.CircleIndex;
+import smallworld.data.graph.DistanceMatrix;
+import smallworld.data.graph.GraphSnapshot;
+import smallworld.data.graph.LandmarkIndex;
+import smallworld.data.graph.NodeColumns;
+import smallworld.data.graph.SnapshotExpander;
 import smallworld.data.query.Query;
+import smallworld.data.query.QueryCircles;
+import smallworld.navigation.AStarNavigation;
 import smallworld.navigation.AbstractNavigation;
+import smallworld.navigation.BeamNavigation;
+import smallworld.navigation.BidirectionalNavigation;
+import smallworld.navigation.CompletedPairs;
+import smallworld.navigation.NavigationBudget;
+import smallworld.navigation.NavigationMetrics;
+import smallworld.navigation.NavigationResult;
 import smallworld.navigation.ConcurrentNavigationThread;
 import smallworld.navigation.ConcurrentNavigationThread.NavigationCompleteListener;
+import smallworld.navigation.NavigationScheduler;
 import smallworld.navigation.PrioritizedDFSNavigation;
 import smallworld.navigation.PrioritizedNavigation;
+import smallworld.navigation.ResultFormat;
+import smallworld.navigation.ResultSink;
+import smallworld.navigation.Shard;
 import smallworld.navigation.ShortestNavigation;
 import smallworld.navigation.TrainingNavigation;
 import smallworld.navigation.TraversalNavigation;
+import smallworld.navigation.evaluator.CachedEvaluator;
 import smallworld.navigation.evaluator.ClassificationEvaluator;
+import smallworld.navigation.evaluator.CountingEvaluator;
 import smallworld.navigation.evaluator.DBLPInterestEvaluator;
 import smallworld.navigation.evaluator.DegreeEvaluator;
 import smallworld.navigation.evaluator.Evaluator;
 import smallworld.navigation.evaluator.KleinbergEvaluator;
+import smallworld.navigation.evaluator.LandmarkEvaluator;
 import smallworld.navigation.evaluator.LibSVMEvaluator;
 import smallworld.navigation.evaluator.MinCommonCircleEvaluator;
 import smallworld.navigation.evaluator.MostCommonCircleEvaluator;
@@ -57,7 +70,7 @@ import smallworld.navigation.evaluator.MostCommonFeatureEvaluator;
 import smallworld.navigation.feature.DistanceMeasure;
 import smallworld.navigation.feature.FeatureBuilder;
 import smallworld.util.LibSVMUtils;
-import smallworld.util.Pair;
+import smallworld.util.PairPermutation;
 import weka.classifiers.Classifier;
 import weka.classifiers.bayes.NaiveBayes;
 import weka.classifiers.functions.Logistic;
@@ -68,21 +81,25 @@ public class ConcurrentMain implements NavigationCompleteListener {
 	
 	private static final Logger logger = LogManager.getLogger();
 
-	// For statistics
-	final AtomicInteger numberOfPairsNavigated = new AtomicInteger();
-	final AtomicInteger numberOfPairsPathFound = new AtomicInteger();
-	final AtomicLong totalPathLength = new AtomicLong();
-	final AtomicLong totalNumberOfNodesExplored = new AtomicLong();
+	// For statistics, including the pairs resumed from the log
+	final LongAdder numberOfPairsNavigated = new LongAdder();
+	final LongAdder numberOfPairsPathFound = new LongAdder();
+	final LongAdder totalPathLength = new LongAdder();
+	final LongAdder totalNumberOfNodesExplored = new LongAdder();
+	final LongAdder numberOfPairsTimedOut = new LongAdder();
 	final int numberOfPairsToBeNavigated;
 	
-	// The serial numbers of pairs that already exist in the log file
-	private Set<Integer> pairsVisited;
-
-	// time
-	final AtomicReference<Calendar> calendar = new AtomicReference<Calendar>();
+	// Times and costs of the pairs navigated by this run
+	final NavigationMetrics metrics;
 	
 	// Set the number of threads to the number of processors
 	private static final int NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+	// Pairs waiting for a thread
+	private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+	// Time given to the running pairs on interrupt
+	private static final int STOP_TIMEOUT_IN_SECONDS = 60;
+	// Time between progress reports
+	private static final int PROGRESS_INTERVAL_IN_MINUTES = 10;
 	
 	/**
 	 * Carry out an experiment, given the type of navigation, the path to the neo4j graph.
@@ -97,66 +114,148 @@ public class ConcurrentMain implements NavigationCompleteListener {
 	 * @throws IOException 
 	 */
 	public ConcurrentMain(PathFinder<Path> nav, String neo4jPath, int numberOfPairs, int randomSeed, String log) throws IOException {
-		Query q = new Query(neo4jPath);
-		//Query q = Query.getInstance();
+		this(nav, neo4jPath, numberOfPairs, randomSeed, log, Shard.ALL, NavigationMetrics.getInstance(nav.getClass().getSimpleName(), "None"));
+	}
+	
+	/**
+	 * Carry out a shard of an experiment, i.e., the pairs of the shard
+	 * among the pairs of the experiment.
+	 * 
+	 * @param nav navigation strategy
+	 * @param neo4jPath path to neo4j graph
+	 * @param numberOfPairs how many number of pairs in the experiment
+	 * @param randomSeed random seed for ordering the pairs
+	 * @param log the log of the shard
+	 * @param shard
+	 * @param metrics where the pairs are counted, also written next to the log
+	 * @throws IOException
+	 */
+	public ConcurrentMain(PathFinder<Path> nav, String neo4jPath, int numberOfPairs, int randomSeed, String log, Shard shard, final NavigationMetrics metrics) throws IOException {
+		this.metrics = metrics;
+		
+		// share the database with evaluators and graph snapshots opened through Query.getInstance()
+		Query q = neo4jPath.equals(Constants.NEO4J_PATH) ? Query.getInstance() : new Query(neo4jPath);
 		
 		long time = System.currentTimeMillis();
-		calendar.set(Calendar.getInstance());
 		
 		// sorted node id
-		List<Long> nodeIds = Arrays.asList(q.cypherGetAllNodes());
-		System.out.println("number of nodes: "+ nodeIds.size());
+		long[] nodeIds = q.getAllNodeIds();
+		System.out.println("number of nodes: "+ nodeIds.length);
+		
+		// pairs are in the order given by the seed, looked up by serial number
+		PairPermutation pairs = new PairPermutation(nodeIds.length, randomSeed);
 		
-		ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
-		//List<Future<Path>> list = new ArrayList<Future<Path>>();
+		final NavigationScheduler scheduler = new NavigationScheduler(q.getGraphDatabaseService(), NUMBER_OF_THREADS, NUMBER_OF_THREADS * QUEUE_CAPACITY_PER_THREAD);
 
 		// if no numberOfPairs specified, do all the pairs
-		if (numberOfPairs == -1) {
-			numberOfPairsToBeNavigated = nodeIds.size() * (nodeIds.size() - 1);
-			numberOfPairs = numberOfPairsToBeNavigated;
-		} else numberOfPairsToBeNavigated = numberOfPairs;// + numberOfPairsSkipped; // not checking if total more than total pairs
+		// serial numbers are integers, so at most Integer.MAX_VALUE pairs in a log
+		if (numberOfPairs == -1 || numberOfPairs > pairs.size()) {
+			numberOfPairs = (int) Math.min(pairs.size(), Integer.MAX_VALUE);
+		}
+		int first = shard.getFirst(numberOfPairs);
+		int last = shard.getLast(numberOfPairs);
+		numberOfPairsToBeNavigated = last - first;
+		System.out.println("number of pairs: " + numberOfPairs);
+		if (!shard.isAll()) System.out.println("[ConcurrentMain] shard " + shard + ": pairs " + (first + 1) + " to " + last);
+		
+		checkPairsInLog(new File(log), pairs, nodeIds);
 		
 		// get pairs that already exist in the log file
-		checkVisitedPairsInLog(log);
+		final ResultSink results = new ResultSink(new File(log), ResultFormat.CSV, numberOfPairs);
+		CompletedPairs completed = results.getCompletedPairs();
+		resume(completed);
 		
-		// compose
-		FileWriter writer = new FileWriter(log, true);
+		// On interrupt, finish the running pairs so the log can be resumed
+		Thread stopOnInterrupt = new Thread() {
+			@Override
+			public void run() {
+				try {
+					if (!scheduler.stop(STOP_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+						System.out.println("[ConcurrentMain] running pairs are not done in " + STOP_TIMEOUT_IN_SECONDS + " secs");
+					}
+					results.close();
+				} catch (InterruptedException ignored) {
+				} catch (IOException e) {
+					logger.error("Error closing log: " + log, e);
+				}
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(stopOnInterrupt);
 		
-		List<Pair<Long, Long>> pairs = generateListOfPairs(nodeIds, numberOfPairsToBeNavigated, new Random(randomSeed));
-		System.out.println("number of pairs: " + pairs.size());
-						
-		for (int i = 0; i < numberOfPairsToBeNavigated; i++) {
+		// Report progress, and snapshot the metrics, while navigating
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "metrics-reporter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		reporter.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				printProgress();
+			}
+		}, PROGRESS_INTERVAL_IN_MINUTES, PROGRESS_INTERVAL_IN_MINUTES, TimeUnit.MINUTES);
+		final File csv = new File(log + ".metrics.csv");
+		if (Constants.METRICS_INTERVAL > 0) {
+			reporter.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						metrics.appendSnapshot(csv);
+					} catch (IOException e) {
+						logger.error("Error writing metrics: " + csv, e);
+					}
+				}
+			}, Constants.METRICS_INTERVAL, Constants.METRICS_INTERVAL, TimeUnit.SECONDS);
+		}
+		
+		for (int i = first; i < last; i++) {
 			
 			// skip pairs that are already in log
-			if (pairsVisited.contains(i+1)) {
+			if (completed.contains(i+1)) {
 				continue;
 			}
 			
-			Pair<Long, Long> pair = pairs.get(i);
-			
-			Node n1 = q.cypherGetNode(pair.getFirst());
-			Node n2 = q.cypherGetNode(pair.getSecond());
+			long pair = pairs.get(i);
 			
-			ConcurrentNavigationThread worker = new ConcurrentNavigationThread(q.getGraphDatabaseService(), i+1, nav, n1, n2, writer);
+			// nodes are looked up by the worker
+			ConcurrentNavigationThread worker = new ConcurrentNavigationThread(q.getGraphDatabaseService(), i+1, nav, nodeIds[pairs.getSource(pair)], nodeIds[pairs.getSink(pair)], results);
 			worker.addListener(this);
 			
-			Future<Path> submit = executor.submit(worker);
-			//list.add(submit);
+			try {
+				// wait for room in the queue
+				if (!scheduler.submit(worker)) break;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
 		}
 		
-		// This will make the executor accept no new threads
-		// and finish all existing threads in the queue
-		executor.shutdown();
-		// Wait until all threads are finish
-		while (!executor.isTerminated()) {}
+		// Wait until all the pairs are navigated
+		try {
+			scheduler.awaitCompletion();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		// the hook can't be removed once it is running
+		if (!scheduler.isStopped()) Runtime.getRuntime().removeShutdownHook(stopOnInterrupt);
+		results.close();
+		
+		reporter.shutdownNow();
+		if (Constants.METRICS_INTERVAL > 0) metrics.appendSnapshot(csv);
 
 		System.out.println("[ConcurrentMain] TIME TAKEN: " + DurationFormatUtils.formatDurationHMS(System.currentTimeMillis() - time));
-		System.out.println(String.format("[ConcurrentMain] TOTAL PAIRS: %d (%.4f)",  numberOfPairsPathFound.get(), ((double)numberOfPairsPathFound.get()/numberOfPairs)));
-		System.out.println(String.format("[ConcurrentMain] AVERAGE PATH LENGTH: %.4f", (totalPathLength.get() / (double) numberOfPairsPathFound.get())));
+		System.out.println(String.format("[ConcurrentMain] TOTAL PAIRS: %d (%.4f)",  numberOfPairsPathFound.sum(), ((double)numberOfPairsPathFound.sum()/numberOfPairsToBeNavigated)));
+		System.out.println(String.format("[ConcurrentMain] AVERAGE PATH LENGTH: %.4f", (totalPathLength.sum() / (double) numberOfPairsPathFound.sum())));
 		//logger.log(Level.INFO, "TIME TAKEN: " + DurationFormatUtils.formatDurationHMS(System.currentTimeMillis() - time));
 		//logger.log(Level.INFO, String.format("TOTAL PAIRS: %d (%.4f)",  numberOfPairsPathFound.get(), ((double)numberOfPairsPathFound.get()/numberOfPairs)));
 		//logger.log(Level.INFO, String.format("AVERAGE PATH LENGTH: %.4f", (totalPathLength.get() / (double) numberOfPairsPathFound.get())));
-		System.out.printf("[ConcurrentMain] == AVERAGE VISITED NODES: %.4f ==\n", ((double) totalNumberOfNodesExplored.get() / (double) numberOfPairsPathFound.get()));
+		System.out.printf("[ConcurrentMain] == AVERAGE VISITED NODES: %.4f ==\n", ((double) totalNumberOfNodesExplored.sum() / (double) numberOfPairsPathFound.sum()));
+		System.out.println(String.format("[ConcurrentMain] TIMED OUT PAIRS: %d (%.4f)", numberOfPairsTimedOut.sum(), ((double) numberOfPairsTimedOut.sum()/numberOfPairsToBeNavigated)));
+		metrics.print();
 		//System.out.printf("[ConcurrentMain] == TRUE POSITIVE: %.4f ==\n", AbstractNavigation.getEvaluationResult());
 		
 		q.shutdown();
@@ -172,25 +271,16 @@ public class ConcurrentMain implements NavigationCompleteListener {
 			updateBetweennessCentrality(p);
 		}
 	
-		int count = numberOfPairsNavigated.incrementAndGet();
-		if (p != null) {
-			int numberOfPathsFound = numberOfPairsPathFound.incrementAndGet();
-			long length = totalPathLength.addAndGet(p.length());
-			//@SuppressWarnings("deprecation")
-			long nodes = totalNumberOfNodesExplored.addAndGet(thread.getNumberOfNodesExplored());
-			
-			// Display progress every 10 minutes
-			Calendar lastUpdated = Calendar.getInstance();
-			lastUpdated.setTime(calendar.get().getTime());
-			Calendar now = Calendar.getInstance();
-			lastUpdated.add(Calendar.MINUTE, 10);
-			
-			if (now.after(lastUpdated)) {
-				calendar.set(now);
-				//logger.log(Level.INFO, String.format("[ConcurrentMain] PROGRESS %d/%d\tLength: %.4f\tNodes: %.4f\t[%s]", count, numberOfPairsToBeNavigated, ((double)length)/count, ((double)nodes)/count, new Date().toString()));
-				System.out.printf("[ConcurrentMain] PROGRESS %d/%d\tLength: %.4f\tNodes: %.4f\t[%s]\n", count, numberOfPairsToBeNavigated, ((double)length)/numberOfPathsFound, ((double)nodes)/numberOfPathsFound, new Date().toString());
-			}
+		numberOfPairsNavigated.increment();
+		if (thread.isTimedOut()) {
+			numberOfPairsTimedOut.increment();
+		} else if (p != null) {
+			numberOfPairsPathFound.increment();
+			totalPathLength.add(p.length());
+			totalNumberOfNodesExplored.add(thread.getNumberOfNodesExplored());
 		}
+		metrics.record(thread.getElapsedNanos(), p == null ? NavigationResult.NONE : p.length(),
+				thread.getNumberOfNodesExplored(), thread.getNumberOfRelationshipsTraversed(), thread.getNumberOfEvaluatorCalls(), thread.isTimedOut());
 		
 		thread.removeListener(this);
 	}
@@ -204,75 +294,60 @@ public class ConcurrentMain implements NavigationCompleteListener {
 		}
 	}
 
-	private void checkVisitedPairsInLog(String file) {
-		
-		final int PAIR_NUMBER = 0;
-		//final int SOURCE = 1;
-		//final int SINK = 2;
-		final int PATH_LENGH = 3;
-		final int NUMBER_OF_NODES_VISITED = 4;
-		
-		pairsVisited = new HashSet<Integer>();
-		//BufferedReader reader = null;
-		
-		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-				if (line.trim().length() > 0) {
-					String[] tokens = line.split(",");
-					pairsVisited.add(Integer.parseInt(tokens[PAIR_NUMBER]));
-					numberOfPairsNavigated.incrementAndGet();
-					if (tokens.length >= 4) {
-						// a path is found
-						numberOfPairsPathFound.incrementAndGet();
-						totalPathLength.addAndGet(Long.parseLong(tokens[PATH_LENGH]));
-						totalNumberOfNodesExplored.addAndGet(Long.parseLong(tokens[NUMBER_OF_NODES_VISITED]));
-					}
-				}
-			}
-		} catch (FileNotFoundException ignored) {
-		} catch (IOException e) {
-			logger.error("Error reading log file: " + file);
-			e.printStackTrace();
-		} 
+	private void printProgress() {
+		long count = numberOfPairsNavigated.sum();
+		long numberOfPathsFound = numberOfPairsPathFound.sum();
+		System.out.printf("[ConcurrentMain] PROGRESS %d/%d\tLength: %.4f\tNodes: %.4f\t[%s]\n", count, numberOfPairsToBeNavigated, ((double) totalPathLength.sum())/numberOfPathsFound, ((double) totalNumberOfNodesExplored.sum())/numberOfPathsFound, new Date().toString());
+		System.out.println("[ConcurrentMain] TIME (us): " + metrics.getTimeHistogram());
+	}
+	
+	private void resume(CompletedPairs completed) {
+		numberOfPairsNavigated.add(completed.size());
+		numberOfPairsPathFound.add(completed.getNumberOfPathsFound());
+		totalPathLength.add(completed.getTotalPathLength());
+		totalNumberOfNodesExplored.add(completed.getTotalNumberOfNodesExplored());
+		numberOfPairsTimedOut.add(completed.getNumberOfPairsTimedOut());
 		
-		System.out.println("[ConcurrentMain] number of pairs exists in log: " + pairsVisited.size());
+		System.out.println("[ConcurrentMain] number of pairs exists in log: " + completed.size());
 	}
 	
 	private static void usage() {
 		System.err.println(
 				new StringBuilder("smallworld.ConcurrentMain ")
-					.append("NavigationApproach[Local|Global|Shortest|BiShortest|Training|Traversal] ")
+					.append("NavigationApproach[Local|Global|BiGlobal|Beam|AStar|Shortest|BiShortest|Training|Traversal] ")
 					.append("Datapath [facebook|gplus|twitter|youtube|amazon|dblp|dblp-inproceedings|msacademy-circlesize|simple]")
-					.append("Evaluator[Feature|Circle|MinCircle|Kleinberg|Degree|Logistic|RandomForest] ")
+					.append("Evaluator[Feature|Circle|MinCircle|Kleinberg|Degree|Landmark|Logistic|RandomForest] ")
 					.append("NumberOfPairs ")
+					.append("[--shard i/N]")
 					.toString());
 	}
 	
-	private List<Pair<Long, Long>> generateListOfPairs(List<Long> nodeIds, int numberOfPairs, Random rand) {
-		
-		System.out.print("[ConcurrentMain] Generating source-sink pairs...");
-		long startTime = System.currentTimeMillis();
-		
-		List<Pair<Long, Long>> pairs = new ArrayList<Pair<Long, Long>>(numberOfPairs);
-		Set<Integer> set = new HashSet<Integer>();
-		
-		// if too many pairs of nodes (cannot put in an integer), then use max value of integer
-		int max = nodeIds.size() * nodeIds.size();
-		if (max <= 0) max = Integer.MAX_VALUE;
+	/**
+	 * Make sure a log to be resumed was written with the same pairs, i.e.,
+	 * the first pair in the log is the pair of its serial number.
+	 * 
+	 * @param log
+	 * @param pairs
+	 * @param nodeIds
+	 * @throws IOException
+	 */
+	private static void checkPairsInLog(File log, PairPermutation pairs, long[] nodeIds) throws IOException {
+		if (!log.exists()) return;
 		
-		while (set.size() < numberOfPairs) {
-			int r = rand.nextInt(max);
-			int source = r % nodeIds.size();
-			int sink = r / nodeIds.size();
-			if (source != sink && !set.contains(r)) {
-				set.add(r);
-				pairs.add(new Pair<Long, Long>(nodeIds.get(source), nodeIds.get(sink)));
-			} 
+		try (BufferedReader reader = new BufferedReader(new FileReader(log))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				if (line.trim().length() == 0) continue;
+				
+				NavigationResult result = ResultFormat.CSV.parse(line);
+				long position = result.getSerialNumber() - 1;
+				if (position < 0 || position >= pairs.size()) break;
+				long pair = pairs.get(position);
+				if (result.getSource() != nodeIds[pairs.getSource(pair)] || result.getSink() != nodeIds[pairs.getSink(pair)]) {
+					throw new IllegalStateException("Pairs in " + log + " are not the pairs of this experiment; remove the log to start over");
+				}
+				return;
+			}
 		}
-		
-		System.out.println("done (" + DurationFormatUtils.formatDurationHMS(System.currentTimeMillis() - startTime) + ")");
-		
-		return pairs;
 	}
 	
 	// For parsing command line arguments
@@ -280,6 +355,7 @@ public class ConcurrentMain implements NavigationCompleteListener {
 	private static final int NEO4J_PATH = 1;
 	private static final int EVALUATOR = 2;
 	private static final int NUMBER_OF_PAIRS = 3;
+	private static final int OPTIONS = 4;
 	
 	/**
 	 * @param args
@@ -289,7 +365,13 @@ public class ConcurrentMain implements NavigationCompleteListener {
 		
 		System.out.println("[ConcurrentMain] number of processors: " + Runtime.getRuntime().availableProcessors());
 		
-		if (args.length != 4) {
+		// Run the whole experiment unless a shard is given
+		Shard shard = Shard.ALL;
+		if (args.length == OPTIONS + 2 && args[OPTIONS].equals("--shard")) {
+			shard = Shard.parse(args[OPTIONS + 1]);
+		}
+		
+		if (args.length != 4 && shard.isAll()) {
 			System.out.println("[ConcurrentMain] number of arguments: " + args.length + " (expected: 4)");
 			usage();
 			System.exit(0);
@@ -299,6 +381,17 @@ public class ConcurrentMain implements NavigationCompleteListener {
 			String path = "neo4j" + File.separator + args[NEO4J_PATH];
 			Constants.NEO4J_PATH = path;
 			
+			// Shards open their own copies of the store, and prepare one at a time
+			Closeable preparing = null;
+			if (!shard.isAll()) {
+				if (args[NAVIGATION].equals("Training")) throw new IllegalArgumentException("Training can't be sharded");
+				System.out.println("[ConcurrentMain] shard " + shard + " is waiting for other shards to prepare...");
+				preparing = shard.lockStore(path);
+				Constants.NEO4J_PATH = shard.copyStore(path);
+				Constants.NEO4J_READ_ONLY = true;
+				System.out.println("[ConcurrentMain] shard " + shard + " opens " + Constants.NEO4J_PATH);
+			}
+			
 			// Relation type
 			RelationshipType type = null;
 			// Direction
@@ -326,13 +419,58 @@ public class ConcurrentMain implements NavigationCompleteListener {
 				break;
 			}
 			
+			// Landmarks are computed on a graph snapshot
+			boolean landmarks = args[NAVIGATION].equals("AStar") || args[EVALUATOR].equals("Landmark");
+			
+			// Expander used by navigations
+			PathExpander<?> expander = PathExpanders.forTypeAndDirection(type, dir);
+			GraphSnapshot snapshot = null;
+			if (Constants.GRAPH_SNAPSHOT || Constants.DISTANCE_MATRIX || landmarks) {
+				System.out.println("[ConcurrentMain] loading graph snapshot...");
+				long snapshotTime = System.currentTimeMillis();
+				snapshot = GraphSnapshot.build(Query.getInstance().getGraphDatabaseService(), type, dir);
+				if (Constants.GRAPH_SNAPSHOT) expander = new SnapshotExpander(snapshot);
+				System.out.println("[ConcurrentMain] " + snapshot + " is loaded in " + ((System.currentTimeMillis() - snapshotTime) / 1000d) + " secs");
+			}
+			
+			LandmarkIndex landmarkIndex = null;
+			if (landmarks) {
+				System.out.println("[ConcurrentMain] loading landmarks...");
+				long landmarkTime = System.currentTimeMillis();
+				landmarkIndex = LandmarkIndex.getInstance(args[NEO4J_PATH], snapshot, Constants.NUMBER_OF_LANDMARKS);
+				System.out.println("[ConcurrentMain] " + landmarkIndex + " is loaded in " + ((System.currentTimeMillis() - landmarkTime) / 1000d) + " secs");
+			}
+			
 			// Distance measure
 			System.out.println("[ConcurrentMain] initialize shortest distance cache...");
 			long startTime = System.currentTimeMillis();
-			DistanceMeasure distanceFeature = new DistanceMeasure(args[NEO4J_PATH], type, dir);
+			DistanceMeasure distanceFeature;
+			if (Constants.DISTANCE_MATRIX) {
+				distanceFeature = new DistanceMeasure(DistanceMatrix.getInstance(args[NEO4J_PATH], snapshot));
+			} else if (snapshot != null) {
+				distanceFeature = new DistanceMeasure(snapshot);
+			} else {
+				distanceFeature = new DistanceMeasure(args[NEO4J_PATH], type, dir);
+			}
 			AbstractNavigation.setDistanceMeasure(distanceFeature);
 			System.out.println("[ConcurrentMain] cache is initialized in " + ((System.currentTimeMillis() - startTime) / 1000d) + " secs");
 			
+			// Circles
+			System.out.println("[ConcurrentMain] loading circles...");
+			long circleTime = System.currentTimeMillis();
+			CircleIndex circleIndex = CircleIndex.getInstance(args[NEO4J_PATH], Query.getInstance().getGraphDatabaseService());
+			QueryCircles.getInstance().setCircleIndex(circleIndex);
+			System.out.println("[ConcurrentMain] " + circleIndex + " is loaded in " + ((System.currentTimeMillis() - circleTime) / 1000d) + " secs");
+			
+			// Node columns
+			NodeColumns nodeColumns = null;
+			if (Constants.NODE_COLUMNS) {
+				System.out.println("[ConcurrentMain] loading node columns...");
+				long columnTime = System.currentTimeMillis();
+				nodeColumns = NodeColumns.getInstance(path, Query.getInstance().getGraphDatabaseService(), type);
+				System.out.println("[ConcurrentMain] " + nodeColumns + " is loaded in " + ((System.currentTimeMillis() - columnTime) / 1000d) + " secs");
+			}
+			
 			// Compose features
 			FeatureBuilder features = new FeatureBuilder()
 				.addFeature(FeatureBuilder.getCommonCirclesWithParent(args[NEO4J_PATH]))
@@ -345,19 +483,20 @@ public class ConcurrentMain implements NavigationCompleteListener {
 				*/
 				.addFeature(FeatureBuilder.getMinCommonCircleWithTarget(args[NEO4J_PATH]))
 				.addFeature(FeatureBuilder.getMaxCommonCircleWithTarget(args[NEO4J_PATH]))
-				.addFeature(FeatureBuilder.getEndNodeDegreeFeature(args[NEO4J_PATH], type, dir))
-				.addFeature(FeatureBuilder.getParentNodeDegreeFeature(args[NEO4J_PATH], type, dir))
+				.addFeature(FeatureBuilder.getEndNodeDegreeFeature(args[NEO4J_PATH], type, dir, nodeColumns))
+				.addFeature(FeatureBuilder.getParentNodeDegreeFeature(args[NEO4J_PATH], type, dir, nodeColumns))
 				.addFeature(FeatureBuilder.getPathLengthFeature(args[NEO4J_PATH]))
 				.addClassFeature(distanceFeature);
 	
 			// Initialize evaluators
 			Evaluator<Integer> evaluator = null;
-			if (args[EVALUATOR].equals("Kleinberg")) evaluator = new KleinbergEvaluator(type, dir);
+			if (args[EVALUATOR].equals("Kleinberg")) evaluator = new KleinbergEvaluator(type, dir, nodeColumns);
 			else if (args[EVALUATOR].equals("Feature")) evaluator = new MostCommonFeatureEvaluator();
 			else if (args[EVALUATOR].equals("Interests")) evaluator = new DBLPInterestEvaluator();
-			else if (args[EVALUATOR].equals("Degree")) evaluator = new DegreeEvaluator(type, dir);
+			else if (args[EVALUATOR].equals("Degree")) evaluator = new DegreeEvaluator(type, dir, nodeColumns);
 			else if (args[EVALUATOR].equals("Circle")) evaluator = new MostCommonCircleEvaluator();
 			else if (args[EVALUATOR].equals("MinCircle")) evaluator = new MinCommonCircleEvaluator();
+			else if (args[EVALUATOR].equals("Landmark")) evaluator = new LandmarkEvaluator(landmarkIndex);
 			else if (args[EVALUATOR].equals("Logistic")) {
 				//Classifier classifier = new LibLINEAR(); classifier.setOptions(Utils.splitOptions("-S 0 -Z -D")); String log = "liblinear";
 				//Classifier classifier = new WLSVM(); classifier.setOptions(Utils.splitOptions("-S 0 -K 2 -Z 1 -c 128 -g 2")); String log = "svm";
@@ -407,6 +546,16 @@ public class ConcurrentMain implements NavigationCompleteListener {
 				}
 			} else throw new AssertionError("No such evaluator: " + args[EVALUATOR]);
 			
+			// Count the costs computed by the evaluator
+			if (evaluator != null) evaluator = new CountingEvaluator<Integer>(evaluator);
+			
+			// Share the costs of end nodes among the pairs
+			CachedEvaluator cachedEvaluator = null;
+			if (Constants.EVALUATOR_CACHE_SIZE > 0 && evaluator != null && evaluator.isPathIndependent()) {
+				cachedEvaluator = new CachedEvaluator(evaluator, Constants.EVALUATOR_CACHE_SIZE);
+				evaluator = cachedEvaluator;
+			}
+			
 			// Number of pairs need to be explored (exclude skipped ones)
 			int numberOfPairs = Integer.parseInt(args[NUMBER_OF_PAIRS]);
 			
@@ -417,6 +566,7 @@ public class ConcurrentMain implements NavigationCompleteListener {
 				.append(args[NUMBER_OF_PAIRS]).append(".")
 				.append(Constants.PRORITY_QUEUE_MAX_SIZE).append(".")
 				.append("log").toString();
+			output = shard.getLog(output);
 			
 			// Random seeds for generating pairs
 			int randomSeed = 0;
@@ -425,24 +575,37 @@ public class ConcurrentMain implements NavigationCompleteListener {
 			PathFinder<Path> finder = null;
 			if (args[NAVIGATION].equals("Local")) {
 				finder = new PrioritizedDFSNavigation(
-						PathExpanders.forTypeAndDirection(type, dir),
+						expander,
 							evaluator);
 			} else if (args[NAVIGATION].equals("Global")) {
 				finder = new PrioritizedNavigation(
-						PathExpanders.forTypeAndDirection(type, dir),
+						expander,
+						evaluator);
+			} else if (args[NAVIGATION].equals("BiGlobal")) {
+				finder = new BidirectionalNavigation(
+						expander,
 						evaluator);
+			} else if (args[NAVIGATION].equals("Beam")) {
+				finder = new BeamNavigation(
+						expander,
+						evaluator);
+			} else if (args[NAVIGATION].equals("AStar")) {
+				// exact shortest paths, always guided by landmarks
+				finder = new AStarNavigation(
+						expander,
+						new CountingEvaluator<Integer>(new LandmarkEvaluator(landmarkIndex)));
 			} else if (args[NAVIGATION].equals("BiShortest")) {
 				finder = GraphAlgoFactory.shortestPath(
-						PathExpanders.forTypeAndDirection(type, dir),
+						expander,
 						Constants.LIMIT_OF_DEPTH); 
 			} else if (args[NAVIGATION].equals("Shortest")) {
-				finder = new ShortestNavigation(PathExpanders.forTypeAndDirection(type, dir));
+				finder = new ShortestNavigation(expander);
 			} else if (args[NAVIGATION].equals("Traversal")) {
-				finder = new TraversalNavigation(PathExpanders.forTypeAndDirection(type, dir), evaluator);
+				finder = new TraversalNavigation(expander, evaluator);
 			} else if (args[NAVIGATION].equals("Training")) {
 				
 				finder = new TrainingNavigation(
-						PathExpanders.forTypeAndDirection(type, dir),
+						expander,
 						features);
 				
 				// Use different seeds for training
@@ -451,10 +614,23 @@ public class ConcurrentMain implements NavigationCompleteListener {
 			} else {
 				throw new IllegalArgumentException("No such navigation approach: " + args[NAVIGATION]);
 			}
+			
+			// Give up pairs that take too long
+			if (finder instanceof AbstractNavigation) {
+				NavigationBudget budget = new NavigationBudget(Constants.PAIR_TIMEOUT, TimeUnit.MILLISECONDS, Constants.PAIR_MAX_NODES, Constants.PAIR_MAX_RELATIONSHIPS);
+				((AbstractNavigation) finder).setBudget(budget);
+				System.out.println("[ConcurrentMain] " + budget);
+			}
 	
 			System.out.println("[ConcurrentMain] log file: " + output);
 			
-			new ConcurrentMain(finder, path, numberOfPairs, randomSeed, output);
+			if (preparing != null) preparing.close();
+			
+			new ConcurrentMain(finder, Constants.NEO4J_PATH, numberOfPairs, randomSeed, output, shard, NavigationMetrics.getInstance(args[NAVIGATION], args[EVALUATOR]));
+			
+			if (cachedEvaluator != null) {
+				System.out.println("[ConcurrentMain] " + cachedEvaluator.getCache());
+			}
 			
 			// For saving ARFF files
 			if (args[NAVIGATION].equals("Training")) {
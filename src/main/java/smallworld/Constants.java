@@ -10,15 +10,35 @@ public class Constants {
 
 	// Set the depth limit of one navigation
 	public static int LIMIT_OF_DEPTH = 50;
+	// Set the number of paths kept per depth in BeamNavigation
+	public static int BEAM_WIDTH = 100;
 	// Set the maximum size of the priority queue used in PrioritizedNavigation
 	// -1 indicates no limit on size
 	public static int PRORITY_QUEUE_MAX_SIZE = 10000;		
 	// Because this is a random navigation, it may go infinite deep.
 	// Return null when number of nodes explored exceeds a limit.
 	public static int LIMIT_OF_NODES_EXPLORED = 1000;
+	// Navigate over an in-heap snapshot of the graph rather than the Neo4J store
+	public static boolean GRAPH_SNAPSHOT = false;
+	// Set the number of landmarks used by LandmarkIndex
+	public static int NUMBER_OF_LANDMARKS = 16;
+	// Precompute the distances between all the pairs, for small graphs only
+	public static boolean DISTANCE_MATRIX = false;
+	// Cache the costs of evaluators depending only on the end node, 0 for no cache
+	public static int EVALUATOR_CACHE_SIZE = 0;
+	// Read degrees from precomputed node columns rather than the Neo4J store
+	public static boolean NODE_COLUMNS = false;
+	// Seconds between snapshots of the metrics of an experiment; 0 for none
+	public static int METRICS_INTERVAL = 60;
+	// Budget of a pair: milliseconds, nodes explored and relationships traversed; 0 for no limit
+	public static int PAIR_TIMEOUT = 0;
+	public static int PAIR_MAX_NODES = 0;
+	public static int PAIR_MAX_RELATIONSHIPS = 0;
 	// The path to the Neo4J database
 	// Should be set in ConcurrentMain
 	public static String NEO4J_PATH = "";
+	// Open the Neo4J database read-only, e.g., by a shard of an experiment
+	public static boolean NEO4J_READ_ONLY = false;
 			
 	static {
 		try {
@@ -29,8 +49,18 @@ public class Constants {
 	        	System.out.println("Loading properties from file...");
 	        	prop.load(inputStream);
 				LIMIT_OF_DEPTH = Integer.parseInt(prop.getProperty("LIMIT_OF_DEPTH", "50"));
+				BEAM_WIDTH = Integer.parseInt(prop.getProperty("BEAM_WIDTH", "100"));
 		        PRORITY_QUEUE_MAX_SIZE = Integer.parseInt(prop.getProperty("PRIORITY_QUEUE_MAX_SIZE", "10000"));
 		        LIMIT_OF_NODES_EXPLORED = Integer.parseInt(prop.getProperty("LIMIT_OF_NODES_EXPLORED", "1000"));
+		        GRAPH_SNAPSHOT = Boolean.parseBoolean(prop.getProperty("GRAPH_SNAPSHOT", "false"));
+		        NUMBER_OF_LANDMARKS = Integer.parseInt(prop.getProperty("NUMBER_OF_LANDMARKS", "16"));
+		        DISTANCE_MATRIX = Boolean.parseBoolean(prop.getProperty("DISTANCE_MATRIX", "false"));
+		        EVALUATOR_CACHE_SIZE = Integer.parseInt(prop.getProperty("EVALUATOR_CACHE_SIZE", "0"));
+		        NODE_COLUMNS = Boolean.parseBoolean(prop.getProperty("NODE_COLUMNS", "false"));
+		        METRICS_INTERVAL = Integer.parseInt(prop.getProperty("METRICS_INTERVAL", "60"));
+		        PAIR_TIMEOUT = Integer.parseInt(prop.getProperty("PAIR_TIMEOUT", "0"));
+		        PAIR_MAX_NODES = Integer.parseInt(prop.getProperty("PAIR_MAX_NODES", "0"));
+		        PAIR_MAX_RELATIONSHIPS = Integer.parseInt(prop.getProperty("PAIR_MAX_RELATIONSHIPS", "0"));
 		    }
 	        
 	        /*
@@ -39,8 +69,18 @@ public class Constants {
 	        logger.info("LIMIT_OF_NODES_EXPLORED=" + LIMIT_OF_NODES_EXPLORED);
 	        */
 	        System.out.println("LIMIT_OF_DEPTH=" + LIMIT_OF_DEPTH);
+	        System.out.println("BEAM_WIDTH=" + BEAM_WIDTH);
 	        System.out.println("PRORITY_QUEUE_MAX_SIZE=" + PRORITY_QUEUE_MAX_SIZE);
 	        System.out.println("LIMIT_OF_NODES_EXPLORED=" + LIMIT_OF_NODES_EXPLORED);
+	        System.out.println("GRAPH_SNAPSHOT=" + GRAPH_SNAPSHOT);
+	        System.out.println("NUMBER_OF_LANDMARKS=" + NUMBER_OF_LANDMARKS);
+	        System.out.println("DISTANCE_MATRIX=" + DISTANCE_MATRIX);
+	        System.out.println("EVALUATOR_CACHE_SIZE=" + EVALUATOR_CACHE_SIZE);
+	        System.out.println("NODE_COLUMNS=" + NODE_COLUMNS);
+	        System.out.println("METRICS_INTERVAL=" + METRICS_INTERVAL);
+	        System.out.println("PAIR_TIMEOUT=" + PAIR_TIMEOUT);
+	        System.out.println("PAIR_MAX_NODES=" + PAIR_MAX_NODES);
+	        System.out.println("PAIR_MAX_RELATIONSHIPS=" + PAIR_MAX_RELATIONSHIPS);
 		} catch (NumberFormatException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -2,7 +2,6 @@ package smallworld;
 
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
@@ -22,6 +21,8 @@ import smallworld.navigation.AbstractNavigation;
 import smallworld.navigation.PrioritizedNavigation;
 import smallworld.navigation.evaluator.MostCommonCircleEvaluator;
 
+import com.google.common.primitives.Longs;
+
 @Deprecated
 public class Main {
 
@@ -38,16 +39,19 @@ public class Main {
 		int count = 0;
 		long sum = 0;
 		
-		List<Long> nodeIds = Arrays.asList(q.cypherGetAllNodes());
+		List<Long> nodeIds = Longs.asList(q.getAllNodeIds());
 		Collections.shuffle(nodeIds, new Random(0));
 		
 		if (nodeLimit == -1 || nodeLimit > nodeIds.size()) nodeLimit = nodeIds.size();
 		
+		// look up the nodes once
+		Node[] nodes = q.getNodes(Longs.toArray(nodeIds.subList(0, nodeLimit)));
+		
 		for (int i = 0; i < nodeLimit; i++) {
-			Node n1 = q.cypherGetNode(nodeIds.get(i));
+			Node n1 = nodes[i];
 			for (int j = 0; j < nodeLimit; j++) {
 				if (i == j) continue;
-				Node n2 = q.cypherGetNode(nodeIds.get(j));
+				Node n2 = nodes[j];
 				
 				Transaction tx = q.getGraphDatabaseService().beginTx();
 				Path p = nav.findSinglePath(n1, n2);
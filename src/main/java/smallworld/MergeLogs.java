@@ -0,0 +1,113 @@
+package smallworld;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.BitSet;
+
+import smallworld.navigation.NavigationResult;
+import smallworld.navigation.ResultFormat;
+
+/**
+ * Summarize the logs of the shards of an experiment, as
+ * {@code ConcurrentMain} summarizes an experiment run in one process.
+ * A pair logged by more than one shard, e.g., when shards of different
+ * counts were run, is counted once.
+ *
+ * @author chang
+ *
+ */
+public class MergeLogs {
+
+	private final BitSet logged = new BitSet();
+	private int numberOfDuplicates = 0;
+	private int numberOfPathsFound = 0;
+	private int numberOfPairsTimedOut = 0;
+	private long totalPathLength = 0;
+	private long totalNumberOfNodesExplored = 0;
+
+	public void add(File log, ResultFormat format) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new FileReader(log))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				if (line.trim().length() > 0) add(format.parse(line));
+			}
+		}
+	}
+
+	public void add(NavigationResult result) {
+		if (logged.get(result.getSerialNumber())) {
+			numberOfDuplicates++;
+			return;
+		}
+		logged.set(result.getSerialNumber());
+
+		if (result.isTimedOut()) {
+			numberOfPairsTimedOut++;
+		} else if (result.isPathFound()) {
+			numberOfPathsFound++;
+			totalPathLength += result.getPathLength();
+			totalNumberOfNodesExplored += result.getNumberOfNodesExplored();
+		}
+	}
+
+	/**
+	 * @return the number of distinct pairs logged
+	 */
+	public int getNumberOfPairs() {
+		return logged.cardinality();
+	}
+
+	/**
+	 * @return the number of pairs up to the last logged that are not logged
+	 */
+	public int getNumberOfMissingPairs() {
+		// serial numbers start from 1
+		return Math.max(0, logged.length() - 1 - logged.cardinality());
+	}
+
+	public int getNumberOfDuplicates() {
+		return numberOfDuplicates;
+	}
+
+	public int getNumberOfPathsFound() {
+		return numberOfPathsFound;
+	}
+
+	public int getNumberOfPairsTimedOut() {
+		return numberOfPairsTimedOut;
+	}
+
+	public long getTotalPathLength() {
+		return totalPathLength;
+	}
+
+	public long getTotalNumberOfNodesExplored() {
+		return totalNumberOfNodesExplored;
+	}
+
+	public void print() {
+		System.out.println(String.format("[MergeLogs] PAIRS LOGGED: %d (missing: %d, duplicates: %d)", getNumberOfPairs(), getNumberOfMissingPairs(), numberOfDuplicates));
+		System.out.println(String.format("[MergeLogs] TOTAL PAIRS: %d (%.4f)", numberOfPathsFound, ((double) numberOfPathsFound / getNumberOfPairs())));
+		System.out.println(String.format("[MergeLogs] AVERAGE PATH LENGTH: %.4f", (totalPathLength / (double) numberOfPathsFound)));
+		System.out.printf("[MergeLogs] == AVERAGE VISITED NODES: %.4f ==\n", ((double) totalNumberOfNodesExplored / (double) numberOfPathsFound));
+		System.out.println(String.format("[MergeLogs] TIMED OUT PAIRS: %d (%.4f)", numberOfPairsTimedOut, ((double) numberOfPairsTimedOut / getNumberOfPairs())));
+	}
+
+	/**
+	 * @param args the logs of the shards
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("smallworld.MergeLogs Log...");
+			System.exit(0);
+		}
+
+		MergeLogs merged = new MergeLogs();
+		for (String log : args) {
+			merged.add(new File(log), ResultFormat.CSV);
+		}
+		merged.print();
+	}
+}
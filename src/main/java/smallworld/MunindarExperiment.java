@@ -1,6 +1,5 @@
 package smallworld;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -19,12 +18,14 @@ import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
 
+import smallworld.data.graph.NodeColumns;
 import smallworld.data.query.Query;
 import smallworld.util.Utils;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.primitives.Longs;
 
 public class MunindarExperiment {
 
@@ -44,14 +45,14 @@ public class MunindarExperiment {
 		return sum / values.size();
 	}
 	
-	private static void collectStatistics(GraphDatabaseService service, Path path) {
+	private static void collectStatistics(GraphDatabaseService service, NodeColumns columns, Path path) {
 		int depth = 0;
 		try (Transaction tx = service.beginTx()) {
 			for (Node node : path.nodes()) {
 				depth++;
-				degrees.put(depth, Double.valueOf(node.getDegree()));
-				betweennessCentralities.put(depth, Double.valueOf((Integer) node.getProperty("betweenness_centrality", 0)));
-				clusteringCoefficients.put(depth, (Double) node.getProperty("clustering_coefficient", Double.valueOf(0)));
+				degrees.put(depth, Double.valueOf(columns.getDegree(node.getId())));
+				betweennessCentralities.put(depth, columns.getBetweennessCentrality(node.getId()));
+				clusteringCoefficients.put(depth, columns.getClusteringCoefficient(node.getId()));
 			}
 		}
 	}
@@ -117,13 +118,13 @@ public class MunindarExperiment {
 		
 		// picking random starting vertices
 		Query query = new Query("neo4j/" + graphName);
-		Long[] nodeIds = query.cypherGetAllNodes();
+		long[] nodeIds = query.getAllNodeIds();
 		
 		int n = Math.min(nodeIds.length, numberOfPaths);
 		
 		Set<Long> randomNodeIds = new HashSet<Long>(n);
 		if (n == nodeIds.length) {
-			randomNodeIds.addAll(Arrays.asList(nodeIds));
+			randomNodeIds.addAll(Longs.asList(nodeIds));
 		} else {
 			while (randomNodeIds.size() < n) {
 				Long id = nodeIds[rand.nextInt(nodeIds.length)];
@@ -133,11 +134,14 @@ public class MunindarExperiment {
 			}
 		}
 		
+		// degrees, centralities and coefficients of all the nodes
+		NodeColumns columns = NodeColumns.getInstance("neo4j/" + graphName, query.getGraphDatabaseService());
+		
 		// random walk path and collect numbers
 		for (Long id : randomNodeIds) {
-			Node source = query.cypherGetNode(id);
+			Node source = query.getNode(id);
 			Path path = randomWalk(query.getGraphDatabaseService(), source, maxDepth);
-			collectStatistics(query.getGraphDatabaseService(), path);
+			collectStatistics(query.getGraphDatabaseService(), columns, path);
 		}
 		
 		// output numbers for each depth
@@ -21,12 +21,13 @@ public class NetworkInspector {
 		Multiset<Node> circleSizes = HashMultiset.create();
 		Multiset<Integer> peopleSizes = HashMultiset.create();
 		
-		Long[] nodes = q.cypherGetAllNodes();
+		// look up the nodes once
+		Node[] nodes = q.getNodes(q.getAllNodeIds());
 		System.err.println("number of nodes: " + nodes.length);
 		
-		for (Long nid : nodes) {
+		for (Node node : nodes) {
 			int circleCount = 0;
-			Iterator<Node> circles = qc.getCircles(q.cypherGetNode(nid)).iterator();
+			Iterator<Node> circles = qc.getCircles(node).iterator();
 			while (circles.hasNext()) {
 				circleCount++;
 				Node circle = circles.next();
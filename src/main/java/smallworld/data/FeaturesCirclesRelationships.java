@@ -2,7 +2,6 @@ package smallworld.data;
 
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -19,6 +18,8 @@ import smallworld.data.query.Query;
 import smallworld.data.query.QueryCircles;
 import smallworld.data.query.QueryFeatures;
 
+import com.google.common.primitives.Longs;
+
 public class FeaturesCirclesRelationships {
 	
 	/**
@@ -39,14 +40,17 @@ public class FeaturesCirclesRelationships {
 		long time = System.currentTimeMillis();
 		
 		// shuffle the nodes
-		List<Long> nodeIds = Arrays.asList(q.cypherGetAllNodes());
+		List<Long> nodeIds = Longs.asList(q.getAllNodeIds());
 		Collections.shuffle(nodeIds, new Random(0));
 		
 		// -1 to examine all nodes
 		if (nodeLimit == -1) nodeLimit = nodeIds.size();
 		
+		// look up the nodes once
+		Node[] nodes = q.getNodes(Longs.toArray(nodeIds.subList(0, nodeLimit)));
+		
 		for (int i = 0; i < nodeLimit; i++) {
-			Node n1 = q.cypherGetNode(nodeIds.get(i));
+			Node n1 = nodes[i];
 
 			// get all cirlces n1 belongs to
 			Set<Node> circles = new HashSet<>();
@@ -56,7 +60,7 @@ public class FeaturesCirclesRelationships {
 			
 			for (int j = 0; j < nodeLimit; j++) {
 				if (i == j) continue;
-				Node n2 = q.cypherGetNode(nodeIds.get(j));
+				Node n2 = nodes[j];
 				
 				int count = 0;
 				Map<String, Object> properties1 = QueryFeatures.getFeatures(n1); //properties1.list(System.out);
@@ -103,16 +107,19 @@ public class FeaturesCirclesRelationships {
 
 		long time = System.currentTimeMillis();
 		
-		List<Long> nodeIds = Arrays.asList(q.cypherGetAllNodes());
+		List<Long> nodeIds = Longs.asList(q.getAllNodeIds());
 		Collections.shuffle(nodeIds, new Random(0));
 		
 		if (nodeLimit == -1) nodeLimit = nodeIds.size();
 		
+		// look up the nodes once
+		Node[] nodes = q.getNodes(Longs.toArray(nodeIds.subList(0, nodeLimit)));
+		
 		for (int i = 0; i < nodeLimit; i++) {
-			Node n1 = q.cypherGetNode(nodeIds.get(i));
+			Node n1 = nodes[i];
 			for (int j = 0; j < nodeLimit; j++) {
 				if (i == j) continue;
-				Node n2 = q.cypherGetNode(nodeIds.get(j));
+				Node n2 = nodes[j];
 				
 				int count = 0;
 				Map<String, Object> properties1 = QueryFeatures.getFeatures(n1); //properties1.list(System.out);
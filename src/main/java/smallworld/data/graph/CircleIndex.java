@@ -0,0 +1,518 @@
+package smallworld.data.graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import smallworld.data.RelationshipTypes;
+
+/**
+ * The circles of every person, i.e., the end nodes of their outgoing
+ * CIRCLE relationships, kept in heap.
+ *
+ * Circles are renumbered into dense ids in the order of their Neo4J ids,
+ * and the circles of each node are a sorted run of ids, stored in
+ * compressed sparse row form like {@code GraphSnapshot}.  The common
+ * circles of two persons are found by merging their runs, so counting
+ * them, or finding the smallest or the largest one, allocates nothing.
+ * The size of a circle is the number of its members.
+ *
+ * Build an index with {@code build}, or use {@code getInstance} to load
+ * it from the cache folder and build it only the first time.
+ *
+ * @see smallworld.data.query.QueryCircles
+ * @author chang
+ *
+ */
+public class CircleIndex {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private final static String FOLDER = "cache";
+	private static final int MAGIC = 0x43495231;
+	// nodes read by a task of the parallel scan
+	private static final int CHUNK_SIZE = 4096;
+
+	// dense index -> Neo4J node id, sorted
+	private final long[] nodeIds;
+	// circles of node i are circles[offsets[i]] .. circles[offsets[i+1] - 1], sorted
+	private final int[] offsets;
+	private final int[] circles;
+	// circle id -> Neo4J node id, sorted
+	private final long[] circleIds;
+	private final int[] sizes;
+	// number of CIRCLE relationships, to tell whether the graph has changed
+	private final long numberOfRelationships;
+
+	private CircleIndex(long[] nodeIds, int[] offsets, int[] circles, long[] circleIds, long numberOfRelationships) {
+		this.nodeIds = nodeIds;
+		this.offsets = offsets;
+		this.circles = circles;
+		this.circleIds = circleIds;
+		this.sizes = new int[circleIds.length];
+		for (int circle : circles) {
+			sizes[circle]++;
+		}
+		this.numberOfRelationships = numberOfRelationships;
+	}
+
+	/**
+	 * Read the circles of all the nodes, a chunk of nodes at a time, in
+	 * parallel.
+	 *
+	 * @param db
+	 * @param numberOfThreads
+	 * @return
+	 */
+	public static CircleIndex build(final GraphDatabaseService db, int numberOfThreads) {
+
+		long[] ids = new long[1024];
+		int count = 0;
+		try (Transaction tx = db.beginTx()) {
+			for (Node node : GlobalGraphOperations.at(db).getAllNodes()) {
+				if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+				ids[count++] = node.getId();
+			}
+			tx.success();
+		}
+		final long[] nodeIds = Arrays.copyOf(ids, count);
+		Arrays.sort(nodeIds);
+		final int n = nodeIds.length;
+
+		// Neo4J ids of the circles of each node, sorted and distinct
+		final long[][] memberships = new long[n][];
+		final AtomicInteger nextChunk = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (int t = 0; t < numberOfThreads; t++) {
+				futures.add(executor.submit(new Callable<Long>() {
+					@Override
+					public Long call() {
+						long relationships = 0;
+						long[] buffer = new long[16];
+						try (Transaction tx = db.beginTx()) {
+							for (int start = nextChunk.getAndIncrement() * CHUNK_SIZE; start < n; start = nextChunk.getAndIncrement() * CHUNK_SIZE) {
+								for (int i = start; i < Math.min(start + CHUNK_SIZE, n); i++) {
+									int size = 0;
+									for (Relationship rel : db.getNodeById(nodeIds[i]).getRelationships(RelationshipTypes.CIRCLE.type(), Direction.OUTGOING)) {
+										if (size == buffer.length) buffer = Arrays.copyOf(buffer, size * 2);
+										buffer[size++] = rel.getEndNode().getId();
+									}
+									relationships += size;
+									memberships[i] = distinct(buffer, size);
+								}
+							}
+							tx.success();
+						}
+						return relationships;
+					}
+				}));
+			}
+
+			long relationships = 0;
+			for (Future<Long> future : futures) {
+				relationships += future.get();
+			}
+			return fromMemberships(nodeIds, memberships, relationships);
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Error reading circles", e);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static long[] distinct(long[] values, int size) {
+		Arrays.sort(values, 0, size);
+		int m = 0;
+		for (int i = 0; i < size; i++) {
+			if (m == 0 || values[i] != values[m - 1]) values[m++] = values[i];
+		}
+		return Arrays.copyOf(values, m);
+	}
+
+	private static CircleIndex fromMemberships(long[] nodeIds, long[][] memberships, long numberOfRelationships) {
+		int n = nodeIds.length;
+
+		int[] offsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] = offsets[i] + memberships[i].length;
+		}
+
+		// circles are the nodes with members
+		long[] circleIds = new long[offsets[n]];
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(memberships[i], 0, circleIds, offsets[i], memberships[i].length);
+		}
+		circleIds = distinct(circleIds, circleIds.length);
+
+		// circle ids follow Neo4J ids, so each run stays sorted
+		int[] circles = new int[offsets[n]];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < memberships[i].length; j++) {
+				circles[offsets[i] + j] = Arrays.binarySearch(circleIds, memberships[i][j]);
+			}
+		}
+
+		return new CircleIndex(nodeIds, offsets, circles, circleIds, numberOfRelationships);
+	}
+
+	/**
+	 * Load the index of a dataset from the cache folder, or build and save
+	 * it if it is not there or was built for a different graph.
+	 *
+	 * @param dataset
+	 * @param db
+	 * @return
+	 */
+	public static CircleIndex getInstance(String dataset, GraphDatabaseService db) {
+		File file = new File(FOLDER + File.separator + dataset + ".circles");
+
+		if (file.exists()) {
+			try {
+				CircleIndex index = load(db, file);
+				if (index != null) return index;
+				logger.warn("Circles in " + file + " do not match the graph, rebuilding");
+			} catch (IOException e) {
+				logger.error("Error reading circles: " + file, e);
+			}
+		}
+
+		long time = System.currentTimeMillis();
+		CircleIndex index = build(db, Runtime.getRuntime().availableProcessors());
+		logger.info(index + " is built in " + ((System.currentTimeMillis() - time) / 1000d) + " secs");
+
+		try {
+			file.getParentFile().mkdirs();
+			index.save(file);
+		} catch (IOException e) {
+			logger.error("Error saving circles: " + file, e);
+		}
+
+		return index;
+	}
+
+	public void save(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(nodeIds.length);
+			out.writeLong(numberOfRelationships);
+			out.writeInt(circleIds.length);
+			for (long id : circleIds) out.writeLong(id);
+			for (int i = 0; i < nodeIds.length; i++) {
+				out.writeLong(nodeIds[i]);
+				out.writeInt(offsets[i + 1] - offsets[i]);
+				for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+					out.writeInt(circles[j]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param db
+	 * @param file
+	 * @return the index, or null if it was saved for a different graph
+	 * @throws IOException
+	 */
+	public static CircleIndex load(GraphDatabaseService db, File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) throw new IOException("not a circle file: " + file);
+
+			int n = in.readInt();
+			long relationships = in.readLong();
+			long[] counts = counts(db);
+			if (n != counts[0] || relationships != counts[1]) return null;
+
+			long[] circleIds = new long[in.readInt()];
+			for (int c = 0; c < circleIds.length; c++) {
+				circleIds[c] = in.readLong();
+			}
+
+			long[] nodeIds = new long[n];
+			int[] offsets = new int[n + 1];
+			int[] circles = new int[16];
+			for (int i = 0; i < n; i++) {
+				nodeIds[i] = in.readLong();
+				int size = in.readInt();
+				offsets[i + 1] = offsets[i] + size;
+				if (offsets[i + 1] > circles.length) circles = Arrays.copyOf(circles, Math.max(offsets[i + 1], circles.length * 2));
+				for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+					circles[j] = in.readInt();
+				}
+			}
+
+			return new CircleIndex(nodeIds, offsets, Arrays.copyOf(circles, offsets[n]), circleIds, relationships);
+		}
+	}
+
+	// the number of nodes and of CIRCLE relationships, from the counts store
+	private static long[] counts(GraphDatabaseService db) {
+		GraphDatabaseAPI api = (GraphDatabaseAPI) db;
+		ThreadToStatementContextBridge bridge = api.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+
+		try (Transaction tx = db.beginTx(); Statement statement = bridge.instance()) {
+			ReadOperations read = statement.readOperations();
+			int typeId = read.relationshipTypeGetForName(RelationshipTypes.CIRCLE.type().name());
+			// -1 is any label
+			long nodes = read.countsForNode(-1);
+			long relationships = typeId < 0 ? 0 : read.countsForRelationship(-1, typeId, -1);
+			tx.success();
+			return new long[] { nodes, relationships };
+		}
+	}
+
+	/**
+	 * @param nodeId Neo4J node id
+	 * @return the dense index, or -1 if the node is not in the index
+	 */
+	public int indexOf(long nodeId) {
+		int index = Arrays.binarySearch(nodeIds, nodeId);
+		return index >= 0 ? index : -1;
+	}
+
+	public int numberOfNodes() {
+		return nodeIds.length;
+	}
+
+	public int numberOfCircles() {
+		return circleIds.length;
+	}
+
+	/**
+	 * @param index dense index
+	 * @return the number of circles of a node
+	 */
+	public int numberOfCircles(int index) {
+		return offsets[index + 1] - offsets[index];
+	}
+
+	/**
+	 * @param circle circle id
+	 * @return the Neo4J node id of a circle
+	 */
+	public long circleId(int circle) {
+		return circleIds[circle];
+	}
+
+	public int getCircleSize(int circle) {
+		return sizes[circle];
+	}
+
+	// slots of the statistics of common circles
+	public static final int COUNT = 0;
+	public static final int MIN = 1;
+	public static final int MAX = 2;
+
+	// merge the circles of two nodes and aggregate the common ones
+	private int merge(int a, int b, int aggregate) {
+		int result = aggregate == MIN ? Integer.MAX_VALUE : 0;
+
+		int i = offsets[a], endA = offsets[a + 1];
+		int j = offsets[b], endB = offsets[b + 1];
+		while (i < endA && j < endB) {
+			int circleA = circles[i];
+			int circleB = circles[j];
+			if (circleA < circleB) {
+				i++;
+			} else if (circleA > circleB) {
+				j++;
+			} else {
+				switch (aggregate) {
+				case COUNT:
+					result++;
+					break;
+				case MIN:
+					result = Math.min(result, sizes[circleA]);
+					break;
+				default:
+					result = Math.max(result, sizes[circleA]);
+				}
+				i++;
+				j++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @param index dense index
+	 * @return the circle ids of a node
+	 */
+	public BitSet getCircles(int index) {
+		BitSet set = new BitSet();
+		for (int j = offsets[index]; j < offsets[index + 1]; j++) {
+			set.set(circles[j]);
+		}
+		return set;
+	}
+
+	// aggregate the circles of a node that are in a set
+	private int aggregate(int a, BitSet set, int aggregate) {
+		int result = aggregate == MIN ? Integer.MAX_VALUE : 0;
+
+		for (int j = offsets[a]; j < offsets[a + 1]; j++) {
+			int circle = circles[j];
+			if (!set.get(circle)) continue;
+
+			switch (aggregate) {
+			case COUNT:
+				result++;
+				break;
+			case MIN:
+				result = Math.min(result, sizes[circle]);
+				break;
+			default:
+				result = Math.max(result, sizes[circle]);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @param a dense index
+	 * @param b dense index
+	 * @return the number of common circles of two nodes
+	 */
+	public int getCommonCircleCount(int a, int b) {
+		return merge(a, b, COUNT);
+	}
+
+	/**
+	 * @param a dense index
+	 * @param b dense index
+	 * @return the size of the smallest common circle, or {@code Integer.MAX_VALUE} if none
+	 */
+	public int getMinCommonCircle(int a, int b) {
+		return merge(a, b, MIN);
+	}
+
+	/**
+	 * @param a dense index
+	 * @param b dense index
+	 * @return the size of the largest common circle, or 0 if none
+	 */
+	public int getMaxCommonCircle(int a, int b) {
+		return merge(a, b, MAX);
+	}
+
+	/**
+	 * The number, the smallest size and the largest size of the common
+	 * circles of two nodes, from a single merge.
+	 *
+	 * @param a dense index
+	 * @param b dense index
+	 * @param statistics filled at {@code COUNT}, {@code MIN} and {@code MAX}
+	 */
+	public void getCommonCircles(int a, int b, int[] statistics) {
+		int count = 0, min = Integer.MAX_VALUE, max = 0;
+
+		int i = offsets[a], endA = offsets[a + 1];
+		int j = offsets[b], endB = offsets[b + 1];
+		while (i < endA && j < endB) {
+			int circleA = circles[i];
+			int circleB = circles[j];
+			if (circleA < circleB) {
+				i++;
+			} else if (circleA > circleB) {
+				j++;
+			} else {
+				count++;
+				min = Math.min(min, sizes[circleA]);
+				max = Math.max(max, sizes[circleA]);
+				i++;
+				j++;
+			}
+		}
+
+		statistics[COUNT] = count;
+		statistics[MIN] = min;
+		statistics[MAX] = max;
+	}
+
+	/**
+	 * @see #getCommonCircles(int, int, int[])
+	 * @param a dense index
+	 * @param circles circle ids
+	 * @param statistics filled at {@code COUNT}, {@code MIN} and {@code MAX}
+	 */
+	public void getCommonCircles(int a, BitSet circles, int[] statistics) {
+		int count = 0, min = Integer.MAX_VALUE, max = 0;
+
+		for (int j = offsets[a]; j < offsets[a + 1]; j++) {
+			int circle = this.circles[j];
+			if (!circles.get(circle)) continue;
+
+			count++;
+			min = Math.min(min, sizes[circle]);
+			max = Math.max(max, sizes[circle]);
+		}
+
+		statistics[COUNT] = count;
+		statistics[MIN] = min;
+		statistics[MAX] = max;
+	}
+
+	/**
+	 * Same as {@code getCommonCircleCount(a, b)}, with the circles of
+	 * {@code b} from {@code getCircles(b)}, which is faster when {@code b}
+	 * is compared with many nodes.
+	 *
+	 * @param a dense index
+	 * @param circles circle ids
+	 * @return
+	 */
+	public int getCommonCircleCount(int a, BitSet circles) {
+		return aggregate(a, circles, COUNT);
+	}
+
+	/**
+	 * @see #getCommonCircleCount(int, BitSet)
+	 */
+	public int getMinCommonCircle(int a, BitSet circles) {
+		return aggregate(a, circles, MIN);
+	}
+
+	/**
+	 * @see #getCommonCircleCount(int, BitSet)
+	 */
+	public int getMaxCommonCircle(int a, BitSet circles) {
+		return aggregate(a, circles, MAX);
+	}
+
+	@Override
+	public String toString() {
+		return "CircleIndex[nodes=" + nodeIds.length + ", circles=" + circleIds.length + ", memberships=" + circles.length + "]";
+	}
+}
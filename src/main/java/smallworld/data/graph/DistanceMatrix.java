@@ -0,0 +1,212 @@
+package smallworld.data.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The distances between all the pairs of nodes of a small graph, e.g.,
+ * facebook, in a memory-mapped file.
+ *
+ * The file holds an {@code n x n} matrix of bytes after a short header;
+ * row {@code i} holds the distances from node {@code i} to every node,
+ * indexed by the dense indexes of a {@code GraphSnapshot} and encoded
+ * like {@code GraphSnapshot.distancesFrom}.  The rows are computed by
+ * breadth-first searches running in parallel.  Reading a distance is an
+ * array lookup served by the page cache, so the file is shared by all
+ * the threads and reused across runs.
+ *
+ * Use {@code getInstance} to load the matrix of a dataset from the cache
+ * folder, and build it only the first time.
+ *
+ * @see GraphSnapshot
+ * @author chang
+ *
+ */
+public class DistanceMatrix {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private final static String FOLDER = "cache";
+	private static final int MAGIC = 0x44495354;
+	// magic, number of nodes, number of edges, complete
+	private static final int HEADER = 16;
+
+	private final GraphSnapshot snapshot;
+	private final int n;
+	// each segment maps rowsPerSegment rows, as a buffer can't exceed 2GB
+	private final int rowsPerSegment;
+	private final MappedByteBuffer[] segments;
+
+	private DistanceMatrix(GraphSnapshot snapshot, FileChannel channel, MapMode mode) throws IOException {
+		this.snapshot = snapshot;
+		this.n = snapshot.size();
+		this.rowsPerSegment = Math.max(1, Integer.MAX_VALUE / Math.max(n, 1));
+
+		int numberOfSegments = (n + rowsPerSegment - 1) / rowsPerSegment;
+		this.segments = new MappedByteBuffer[numberOfSegments];
+		for (int s = 0; s < numberOfSegments; s++) {
+			long rows = Math.min(rowsPerSegment, n - (long) s * rowsPerSegment);
+			segments[s] = channel.map(mode, HEADER + (long) s * rowsPerSegment * n, rows * n);
+		}
+	}
+
+	/**
+	 * Load the matrix of a dataset from the cache folder, or build it if
+	 * it is not there or was built for a different graph.
+	 *
+	 * @param dataset
+	 * @param snapshot
+	 * @return
+	 * @throws IOException
+	 */
+	public static DistanceMatrix getInstance(String dataset, GraphSnapshot snapshot) throws IOException {
+		File file = new File(FOLDER + File.separator + dataset + "." + snapshot.getDirection() + ".distances");
+
+		if (file.exists()) {
+			DistanceMatrix matrix = load(snapshot, file);
+			if (matrix != null) return matrix;
+			logger.warn("Distances in " + file + " do not match " + snapshot + ", rebuilding");
+		}
+
+		file.getParentFile().mkdirs();
+		long time = System.currentTimeMillis();
+		DistanceMatrix matrix = build(snapshot, file, Runtime.getRuntime().availableProcessors());
+		logger.info("Distances of " + snapshot + " are computed in " + ((System.currentTimeMillis() - time) / 1000d) + " secs");
+		return matrix;
+	}
+
+	/**
+	 * Compute the distances between all the pairs and write them to a file.
+	 *
+	 * @param snapshot
+	 * @param file
+	 * @param numberOfThreads
+	 * @return
+	 * @throws IOException
+	 */
+	public static DistanceMatrix build(final GraphSnapshot snapshot, File file, int numberOfThreads) throws IOException {
+		final int n = snapshot.size();
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+			raf.setLength(HEADER + (long) n * n);
+			FileChannel channel = raf.getChannel();
+
+			// incomplete until all the rows are written
+			writeHeader(channel, snapshot, false);
+
+			final DistanceMatrix matrix = new DistanceMatrix(snapshot, channel, MapMode.READ_WRITE);
+			final AtomicInteger nextRow = new AtomicInteger();
+
+			ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+			try {
+				List<Future<?>> futures = new ArrayList<Future<?>>();
+				for (int t = 0; t < numberOfThreads; t++) {
+					futures.add(executor.submit(new Runnable() {
+						@Override
+						public void run() {
+							byte[] distances = new byte[n];
+							for (int row = nextRow.getAndIncrement(); row < n; row = nextRow.getAndIncrement()) {
+								snapshot.distancesFrom(row, distances);
+								matrix.writeRow(row, distances);
+							}
+						}
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IOException("Error computing distances", e);
+			} finally {
+				executor.shutdown();
+			}
+
+			for (MappedByteBuffer segment : matrix.segments) {
+				segment.force();
+			}
+			writeHeader(channel, snapshot, true);
+			channel.force(false);
+		}
+
+		return load(snapshot, file);
+	}
+
+	private static void writeHeader(FileChannel channel, GraphSnapshot snapshot, boolean complete) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		header.putInt(MAGIC).putInt(snapshot.size()).putInt(snapshot.numberOfEdges()).putInt(complete ? 1 : 0);
+		header.flip();
+		channel.write(header, 0);
+	}
+
+	/**
+	 * @param snapshot
+	 * @param file
+	 * @return the matrix, or null if it was built for a different graph or not completely
+	 * @throws IOException
+	 */
+	public static DistanceMatrix load(GraphSnapshot snapshot, File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			if (channel.read(header, 0) < HEADER) return null;
+			header.flip();
+
+			if (header.getInt() != MAGIC || header.getInt() != snapshot.size() || header.getInt() != snapshot.numberOfEdges()
+					|| header.getInt() != 1 || raf.length() != HEADER + (long) snapshot.size() * snapshot.size()) {
+				return null;
+			}
+
+			// the mapping stays valid after the file is closed
+			return new DistanceMatrix(snapshot, channel, MapMode.READ_ONLY);
+		}
+	}
+
+	private void writeRow(int row, byte[] distances) {
+		ByteBuffer segment = segments[row / rowsPerSegment].duplicate();
+		segment.position((row % rowsPerSegment) * n);
+		segment.put(distances);
+	}
+
+	public GraphSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @param from dense index
+	 * @param to dense index
+	 * @return the distance, encoded like {@code GraphSnapshot.distancesFrom}
+	 */
+	public byte get(int from, int to) {
+		return segments[from / rowsPerSegment].get((from % rowsPerSegment) * n + to);
+	}
+
+	/**
+	 * @param from dense index
+	 * @param to dense index
+	 * @return the number of hops, or {@code Integer.MAX_VALUE} if unreachable
+	 */
+	public int distance(int from, int to) {
+		return GraphSnapshot.toDistance(get(from, to));
+	}
+
+	@Override
+	public String toString() {
+		return "DistanceMatrix[" + snapshot + "]";
+	}
+}
@@ -0,0 +1,394 @@
+package smallworld.data.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.impl.core.NodeManager;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * A read-only, in-heap snapshot of the relationships of one type, stored
+ * in compressed sparse row (CSR) form.
+ *
+ * Nodes are renumbered into dense indexes {@code 0..size()-1} in the order
+ * of their Neo4J ids.  The neighbors of node {@code i} are
+ * {@code targets[offsets[i]] .. targets[offsets[i+1] - 1]}.  Each edge also
+ * remembers the id of its Neo4J relationship, so relationships handed out
+ * by the snapshot are genuine Neo4J relationships, created without touching
+ * the store.
+ *
+ * The direction is handled the same way as {@code PathExpanders.forTypeAndDirection}:
+ * with {@code Direction.OUTGOING} a node sees the end nodes of its outgoing
+ * relationships, with {@code Direction.INCOMING} the start nodes of its incoming
+ * relationships, and with {@code Direction.BOTH} both of them.
+ *
+ * Build a snapshot once with {@code build} and share it between threads.
+ *
+ * @see SnapshotExpander
+ * @author chang
+ *
+ */
+public class GraphSnapshot {
+
+	// Distances recorded by distancesFrom, as unsigned bytes
+	public static final byte UNREACHABLE = (byte) 0xFF;
+	public static final int MAX_DISTANCE = 0xFE;
+
+	private final RelationshipType type;
+	private final Direction direction;
+	private final int typeId;
+	private final NodeManager nodeManager;
+
+	// dense index -> Neo4J node id, sorted
+	private final long[] nodeIds;
+	// true if nodeIds[i] == i for all i, so no lookup is needed
+	private final boolean identity;
+
+	private final int[] offsets;
+	private final int[] targets;
+	// Neo4J relationship id of each edge
+	private final long[] relationships;
+	// set if the relationship of an edge points from the neighbor to the node
+	private final BitSet incoming;
+
+	private volatile GraphSnapshot reverse = null;
+
+	private GraphSnapshot(RelationshipType type, Direction direction, int typeId, NodeManager nodeManager,
+			long[] nodeIds, int[] offsets, int[] targets, long[] relationships, BitSet incoming) {
+		this.type = type;
+		this.direction = direction;
+		this.typeId = typeId;
+		this.nodeManager = nodeManager;
+		this.nodeIds = nodeIds;
+		this.identity = nodeIds.length == 0 || nodeIds[nodeIds.length - 1] == nodeIds.length - 1;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.relationships = relationships;
+		this.incoming = incoming;
+	}
+
+	/**
+	 * Read all the nodes and all the relationships of a given type from the
+	 * graph and build a snapshot.
+	 *
+	 * @param db the graph
+	 * @param type the type of relationships in the snapshot
+	 * @param direction the direction a navigation follows relationships
+	 * @return the snapshot
+	 */
+	public static GraphSnapshot build(GraphDatabaseService db, RelationshipType type, Direction direction) {
+
+		GraphDatabaseAPI api = (GraphDatabaseAPI) db;
+		NodeManager nodeManager = api.getDependencyResolver().resolveDependency(NodeManager.class);
+		ThreadToStatementContextBridge bridge = api.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+
+		try (Transaction tx = db.beginTx()) {
+			int typeId;
+			try (Statement statement = bridge.instance()) {
+				typeId = statement.readOperations().relationshipTypeGetForName(type.name());
+			}
+
+			long[] nodeIds = new long[1024];
+			int n = 0;
+			for (Node node : GlobalGraphOperations.at(db).getAllNodes()) {
+				if (n == nodeIds.length) nodeIds = Arrays.copyOf(nodeIds, n * 2);
+				nodeIds[n++] = node.getId();
+			}
+			nodeIds = Arrays.copyOf(nodeIds, n);
+			Arrays.sort(nodeIds);
+
+			// Collect edges as (start index, end index, relationship id)
+			int[] starts = new int[1024];
+			int[] ends = new int[1024];
+			long[] rels = new long[1024];
+			int m = 0;
+			if (typeId >= 0) {
+				for (Relationship rel : GlobalGraphOperations.at(db).getAllRelationships()) {
+					if (!rel.isType(type)) continue;
+					if (m == rels.length) {
+						starts = Arrays.copyOf(starts, m * 2);
+						ends = Arrays.copyOf(ends, m * 2);
+						rels = Arrays.copyOf(rels, m * 2);
+					}
+					starts[m] = Arrays.binarySearch(nodeIds, rel.getStartNode().getId());
+					ends[m] = Arrays.binarySearch(nodeIds, rel.getEndNode().getId());
+					rels[m] = rel.getId();
+					m++;
+				}
+			}
+
+			tx.success();
+			return fromEdges(type, direction, typeId, nodeManager, nodeIds, starts, ends, rels, m);
+		}
+	}
+
+	// Lay out edges in CSR form; an edge is stored in the row of every node that can follow it
+	private static GraphSnapshot fromEdges(RelationshipType type, Direction direction, int typeId, NodeManager nodeManager,
+			long[] nodeIds, int[] starts, int[] ends, long[] rels, int m) {
+
+		boolean out = direction != Direction.INCOMING;
+		boolean in = direction != Direction.OUTGOING;
+
+		int[] offsets = new int[nodeIds.length + 1];
+		for (int e = 0; e < m; e++) {
+			if (out) offsets[starts[e] + 1]++;
+			// a loop is followed only once
+			if (in && (!out || starts[e] != ends[e])) offsets[ends[e] + 1]++;
+		}
+		for (int i = 0; i < nodeIds.length; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		int[] targets = new int[offsets[nodeIds.length]];
+		long[] relationships = new long[targets.length];
+		BitSet incoming = new BitSet(targets.length);
+		int[] next = Arrays.copyOf(offsets, nodeIds.length);
+		for (int e = 0; e < m; e++) {
+			if (out) {
+				int slot = next[starts[e]]++;
+				targets[slot] = ends[e];
+				relationships[slot] = rels[e];
+			}
+			if (in && (!out || starts[e] != ends[e])) {
+				int slot = next[ends[e]]++;
+				targets[slot] = starts[e];
+				relationships[slot] = rels[e];
+				incoming.set(slot);
+			}
+		}
+
+		return new GraphSnapshot(type, direction, typeId, nodeManager, nodeIds, offsets, targets, relationships, incoming);
+	}
+
+	public RelationshipType getType() {
+		return type;
+	}
+
+	public Direction getDirection() {
+		return direction;
+	}
+
+	/**
+	 * @return the number of nodes in the snapshot
+	 */
+	public int size() {
+		return nodeIds.length;
+	}
+
+	/**
+	 * @return the number of edges, where an undirected relationship counts twice
+	 */
+	public int numberOfEdges() {
+		return targets.length;
+	}
+
+	/**
+	 * Get the dense index of a Neo4J node.
+	 *
+	 * @param nodeId Neo4J node id
+	 * @return the index, or -1 if the node is not in the snapshot
+	 */
+	public int indexOf(long nodeId) {
+		if (identity) return nodeId >= 0 && nodeId < nodeIds.length ? (int) nodeId : -1;
+		int index = Arrays.binarySearch(nodeIds, nodeId);
+		return index >= 0 ? index : -1;
+	}
+
+	/**
+	 * @param index dense index
+	 * @return the Neo4J node id
+	 */
+	public long nodeId(int index) {
+		return nodeIds[index];
+	}
+
+	public int degree(int index) {
+		return offsets[index + 1] - offsets[index];
+	}
+
+	/**
+	 * @return the first edge of a node
+	 */
+	public int firstEdge(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * @return one past the last edge of a node
+	 */
+	public int endEdge(int index) {
+		return offsets[index + 1];
+	}
+
+	/**
+	 * @return the dense index of the neighbor an edge leads to
+	 */
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * @return the Neo4J id of the relationship of an edge
+	 */
+	public long relationshipId(int edge) {
+		return relationships[edge];
+	}
+
+	/**
+	 * Get a Neo4J node without reading the store.
+	 *
+	 * @param index dense index
+	 * @return
+	 */
+	public Node node(int index) {
+		return nodeManager.newNodeProxyById(nodeIds[index]);
+	}
+
+	/**
+	 * Get the Neo4J relationship of an edge in the row of a node,
+	 * without reading the store.
+	 *
+	 * @param index the node the edge is followed from
+	 * @param edge
+	 * @return
+	 */
+	public Relationship relationship(int index, int edge) {
+		long self = nodeIds[index];
+		long other = nodeIds[targets[edge]];
+		return incoming.get(edge) ?
+				nodeManager.newRelationshipProxy(relationships[edge], other, typeId, self) :
+				nodeManager.newRelationshipProxy(relationships[edge], self, typeId, other);
+	}
+
+	/**
+	 * Get the relationships a navigation may follow from a node.
+	 *
+	 * @param index dense index
+	 * @return
+	 */
+	public Iterable<Relationship> relationships(final int index) {
+		return new Iterable<Relationship>() {
+			@Override
+			public Iterator<Relationship> iterator() {
+				return new Iterator<Relationship>() {
+					private int edge = offsets[index];
+
+					@Override
+					public boolean hasNext() {
+						return edge < offsets[index + 1];
+					}
+
+					@Override
+					public Relationship next() {
+						if (!hasNext()) throw new NoSuchElementException();
+						return relationship(index, edge++);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Breadth-first search from a node, recording the number of hops to
+	 * every node.  Use {@code reverse().distancesFrom} for the distances
+	 * to a node.
+	 *
+	 * Distances are stored as unsigned bytes: {@code UNREACHABLE} for
+	 * nodes that can't be reached, and {@code MAX_DISTANCE} for nodes that
+	 * are {@code MAX_DISTANCE} or more hops away.  Decode them with
+	 * {@code toDistance}.
+	 *
+	 * @param source dense index
+	 * @param distances an array of {@code size()} distances to fill
+	 * @return the distance of the farthest node reached
+	 */
+	public int distancesFrom(int source, byte[] distances) {
+		Arrays.fill(distances, UNREACHABLE);
+
+		int[] queue = new int[nodeIds.length];
+		int head = 0, tail = 0;
+		queue[tail++] = source;
+		distances[source] = 0;
+
+		int depth = 0;
+		while (head < tail) {
+			int node = queue[head++];
+			depth = distances[node] & 0xFF;
+			byte next = (byte) Math.min(depth + 1, MAX_DISTANCE);
+			for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+				int neighbor = targets[e];
+				if (distances[neighbor] == UNREACHABLE) {
+					distances[neighbor] = next;
+					queue[tail++] = neighbor;
+				}
+			}
+		}
+		return depth;
+	}
+
+	/**
+	 * Decode a distance recorded by {@code distancesFrom}.
+	 *
+	 * @param distance
+	 * @return the number of hops, or {@code Integer.MAX_VALUE} if unreachable
+	 */
+	public static int toDistance(byte distance) {
+		return distance == UNREACHABLE ? Integer.MAX_VALUE : distance & 0xFF;
+	}
+
+	/**
+	 * Get the snapshot that follows relationships against their direction,
+	 * e.g., for searching backward from a target.  The snapshot of
+	 * {@code Direction.BOTH} is its own reverse.
+	 *
+	 * @return
+	 */
+	public GraphSnapshot reverse() {
+		if (direction == Direction.BOTH) return this;
+
+		GraphSnapshot r = reverse;
+		if (r == null) {
+			synchronized (this) {
+				if (reverse == null) {
+					// recover the relationships from the rows they are stored in
+					int m = targets.length;
+					int[] starts = new int[m];
+					int[] ends = new int[m];
+					for (int i = 0; i < nodeIds.length; i++) {
+						for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+							starts[e] = incoming.get(e) ? targets[e] : i;
+							ends[e] = incoming.get(e) ? i : targets[e];
+						}
+					}
+					GraphSnapshot transposed = fromEdges(type, direction.reverse(), typeId, nodeManager,
+							nodeIds, starts, ends, relationships, m);
+					transposed.reverse = this;
+					reverse = transposed;
+				}
+				r = reverse;
+			}
+		}
+		return r;
+	}
+
+	@Override
+	public String toString() {
+		return "GraphSnapshot[" + type.name() + ", " + direction + ", " + size() + " nodes, " + numberOfEdges() + " edges]";
+	}
+}
@@ -0,0 +1,292 @@
+package smallworld.data.graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Distances between every node and a few landmark nodes, for bounding the
+ * distance between any two nodes with the triangle inequality (ALT).
+ *
+ * For a landmark {@code L}, {@code d(v, t) >= d(L, t) - d(L, v)} and
+ * {@code d(v, t) >= d(v, L) - d(t, L)}, so the largest of these over all
+ * the landmarks is a lower bound on {@code d(v, t)}, which A* can use as
+ * an admissible heuristic.  {@code d(v, L) + d(L, t)} is an upper bound.
+ *
+ * Landmarks are chosen either by degree, or by farthest-point sampling:
+ * starting from the highest degree node, each landmark is the node
+ * farthest from the landmarks chosen so far.  Distances are kept in
+ * {@code byte} arrays, one from and one to each landmark, indexed by the
+ * dense indexes of a {@code GraphSnapshot}.  For {@code Direction.BOTH}
+ * the two are the same arrays.
+ *
+ * Build an index with {@code build}, or use {@code getInstance} to load
+ * it from the cache folder and build it only the first time.
+ *
+ * @see GraphSnapshot
+ * @author chang
+ *
+ */
+public class LandmarkIndex {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private final static String FOLDER = "cache";
+	private static final int MAGIC = 0x4c4d4b31;
+
+	public enum Selection { DEGREE, FARTHEST }
+
+	private final GraphSnapshot snapshot;
+	// dense indexes of the landmarks
+	private final int[] landmarks;
+	// from[l][v] = d(landmark l, v)
+	private final byte[][] from;
+	// to[l][v] = d(v, landmark l)
+	private final byte[][] to;
+
+	private LandmarkIndex(GraphSnapshot snapshot, int[] landmarks, byte[][] from, byte[][] to) {
+		this.snapshot = snapshot;
+		this.landmarks = landmarks;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Choose landmarks and compute their distances.
+	 *
+	 * @param snapshot
+	 * @param numberOfLandmarks
+	 * @param selection
+	 * @return
+	 */
+	public static LandmarkIndex build(GraphSnapshot snapshot, int numberOfLandmarks, Selection selection) {
+		int n = snapshot.size();
+		int k = Math.min(numberOfLandmarks, n);
+		boolean directed = snapshot.getDirection() != Direction.BOTH;
+
+		int[] landmarks = new int[k];
+		byte[][] from = new byte[k][n];
+		byte[][] to = directed ? new byte[k][n] : from;
+
+		int[] byDegree = selection == Selection.DEGREE ? highestDegrees(snapshot, k) : highestDegrees(snapshot, 1);
+
+		// the smallest distance of each node from the landmarks so far
+		int[] nearest = new int[n];
+		Arrays.fill(nearest, Integer.MAX_VALUE);
+
+		int l = 0;
+		for (; l < k; l++) {
+			int landmark;
+			if (selection == Selection.DEGREE || l == 0) {
+				landmark = byDegree[l];
+			} else {
+				// nodes no landmark reaches come first, so every component gets one
+				landmark = 0;
+				for (int v = 1; v < n; v++) {
+					if (nearest[v] > nearest[landmark]) landmark = v;
+				}
+				// every node is a landmark already
+				if (nearest[landmark] == 0) break;
+			}
+
+			landmarks[l] = landmark;
+			snapshot.distancesFrom(landmark, from[l]);
+			if (directed) snapshot.reverse().distancesFrom(landmark, to[l]);
+
+			for (int v = 0; v < n; v++) {
+				nearest[v] = Math.min(nearest[v], GraphSnapshot.toDistance(from[l][v]));
+			}
+		}
+
+		if (l < k) {
+			landmarks = Arrays.copyOf(landmarks, l);
+			from = Arrays.copyOf(from, l);
+			to = directed ? Arrays.copyOf(to, l) : from;
+		}
+
+		return new LandmarkIndex(snapshot, landmarks, from, to);
+	}
+
+	// the k highest degree nodes, highest first
+	private static int[] highestDegrees(GraphSnapshot snapshot, int k) {
+		int n = snapshot.size();
+		long[] keys = new long[n];
+		for (int v = 0; v < n; v++) {
+			// sort by degree descending, then by index
+			keys[v] = ((long) (Integer.MAX_VALUE - snapshot.degree(v)) << 32) | v;
+		}
+		Arrays.sort(keys);
+
+		int[] nodes = new int[Math.min(k, n)];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = (int) keys[i];
+		}
+		return nodes;
+	}
+
+	/**
+	 * Load the index of a dataset from the cache folder, or build and save
+	 * it if it is not there or was built for a different graph.
+	 *
+	 * @param dataset
+	 * @param snapshot
+	 * @param numberOfLandmarks
+	 * @return
+	 */
+	public static LandmarkIndex getInstance(String dataset, GraphSnapshot snapshot, int numberOfLandmarks) {
+		File file = new File(FOLDER + File.separator + dataset + "." + snapshot.getDirection() + "." + numberOfLandmarks + ".landmarks");
+
+		if (file.exists()) {
+			try {
+				LandmarkIndex index = load(snapshot, file);
+				if (index != null) return index;
+				logger.warn("Landmarks in " + file + " do not match " + snapshot + ", rebuilding");
+			} catch (IOException e) {
+				logger.error("Error reading landmarks: " + file, e);
+			}
+		}
+
+		long time = System.currentTimeMillis();
+		LandmarkIndex index = build(snapshot, numberOfLandmarks, Selection.FARTHEST);
+		logger.info(numberOfLandmarks + " landmarks are built in " + ((System.currentTimeMillis() - time) / 1000d) + " secs");
+
+		try {
+			file.getParentFile().mkdirs();
+			index.save(file);
+		} catch (IOException e) {
+			logger.error("Error saving landmarks: " + file, e);
+		}
+
+		return index;
+	}
+
+	public void save(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(snapshot.size());
+			out.writeInt(snapshot.numberOfEdges());
+			out.writeBoolean(from != to);
+			out.writeInt(landmarks.length);
+			for (int l = 0; l < landmarks.length; l++) {
+				out.writeInt(landmarks[l]);
+				out.write(from[l]);
+				if (from != to) out.write(to[l]);
+			}
+		}
+	}
+
+	/**
+	 * @param snapshot
+	 * @param file
+	 * @return the index, or null if it was saved for a different graph
+	 * @throws IOException
+	 */
+	public static LandmarkIndex load(GraphSnapshot snapshot, File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) throw new IOException("not a landmark file: " + file);
+
+			int n = in.readInt();
+			int edges = in.readInt();
+			boolean directed = in.readBoolean();
+			if (n != snapshot.size() || edges != snapshot.numberOfEdges() || directed != (snapshot.getDirection() != Direction.BOTH)) {
+				return null;
+			}
+
+			int k = in.readInt();
+			int[] landmarks = new int[k];
+			byte[][] from = new byte[k][n];
+			byte[][] to = directed ? new byte[k][n] : from;
+			for (int l = 0; l < k; l++) {
+				landmarks[l] = in.readInt();
+				in.readFully(from[l]);
+				if (directed) in.readFully(to[l]);
+			}
+			return new LandmarkIndex(snapshot, landmarks, from, to);
+		}
+	}
+
+	public GraphSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public int numberOfLandmarks() {
+		return landmarks.length;
+	}
+
+	/**
+	 * @param l
+	 * @return the dense index of a landmark
+	 */
+	public int landmark(int l) {
+		return landmarks[l];
+	}
+
+	/**
+	 * A lower bound on the distance from one node to another.
+	 *
+	 * @param v dense index
+	 * @param t dense index
+	 * @return the bound, or {@code Integer.MAX_VALUE} if t can't be reached from v
+	 */
+	public int lowerBound(int v, int t) {
+		if (v == t) return 0;
+
+		int bound = 0;
+		for (int l = 0; l < landmarks.length; l++) {
+			// d(v, t) >= d(L, t) - d(L, v)
+			byte lv = from[l][v], lt = from[l][t];
+			if (lv != GraphSnapshot.UNREACHABLE) {
+				if (lt == GraphSnapshot.UNREACHABLE) return Integer.MAX_VALUE;
+				if ((lv & 0xFF) < GraphSnapshot.MAX_DISTANCE && (lt & 0xFF) < GraphSnapshot.MAX_DISTANCE) {
+					bound = Math.max(bound, (lt & 0xFF) - (lv & 0xFF));
+				}
+			}
+
+			// d(v, t) >= d(v, L) - d(t, L)
+			byte vl = to[l][v], tl = to[l][t];
+			if (tl != GraphSnapshot.UNREACHABLE) {
+				if (vl == GraphSnapshot.UNREACHABLE) return Integer.MAX_VALUE;
+				if ((vl & 0xFF) < GraphSnapshot.MAX_DISTANCE && (tl & 0xFF) < GraphSnapshot.MAX_DISTANCE) {
+					bound = Math.max(bound, (vl & 0xFF) - (tl & 0xFF));
+				}
+			}
+		}
+		return bound;
+	}
+
+	/**
+	 * An upper bound on the distance from one node to another, through
+	 * the best landmark.
+	 *
+	 * @param v dense index
+	 * @param t dense index
+	 * @return the bound, or {@code Integer.MAX_VALUE} if no landmark connects them
+	 */
+	public int upperBound(int v, int t) {
+		if (v == t) return 0;
+
+		int bound = Integer.MAX_VALUE;
+		for (int l = 0; l < landmarks.length; l++) {
+			int vl = to[l][v] & 0xFF, lt = from[l][t] & 0xFF;
+			if (vl < GraphSnapshot.MAX_DISTANCE && lt < GraphSnapshot.MAX_DISTANCE) {
+				bound = Math.min(bound, vl + lt);
+			}
+		}
+		return bound;
+	}
+
+	@Override
+	public String toString() {
+		return "LandmarkIndex[" + landmarks.length + " landmarks, " + snapshot + "]";
+	}
+}
@@ -0,0 +1,439 @@
+package smallworld.data.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.impl.transaction.log.TransactionIdStore;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import smallworld.data.RelationshipTypes;
+
+/**
+ * Structural properties of every node in primitive columns, in a
+ * memory-mapped file next to the Neo4J store: the degree by relationship
+ * type and direction, the degree over all types, the number of circles,
+ * the betweenness centrality and the clustering coefficient.
+ *
+ * Columns are indexed by Neo4J node id, which is dense in the stores of
+ * the datasets, so reading a property is one array access without a
+ * transaction.  Nodes missing from the store read as 0.  The centrality
+ * and the coefficient are the {@code betweenness_centrality} and
+ * {@code clustering_coefficient} properties, as set by
+ * {@code BetweennessCentrality} and {@code ClusteringCoefficient}; the
+ * columns do not compute them.  The columns remember the last transaction
+ * committed to the store when they were built, so setting these
+ * properties again, or any other change to the store, has the columns
+ * rebuilt.
+ *
+ * The columns are built in one pass over the nodes, a chunk of nodes at
+ * a time, in parallel.  Use {@code getInstance} to load the columns of a
+ * store and build them only the first time.
+ *
+ * @author chang
+ *
+ */
+public class NodeColumns {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final String EXTENSION = ".columns";
+	private static final int MAGIC = 0x4e434f32;
+	// magic, capacity, number of nodes, number of relationships, last transaction id, number of types, header size
+	private static final int FIXED_HEADER = 40;
+	// nodes read by a task of the parallel scan
+	private static final int CHUNK_SIZE = 4096;
+
+	public static final String BETWEENNESS_CENTRALITY = "betweenness_centrality";
+	public static final String CLUSTERING_COEFFICIENT = "clustering_coefficient";
+
+	private static final Direction[] DIRECTIONS = { Direction.OUTGOING, Direction.INCOMING, Direction.BOTH };
+
+	// the highest node id + 1
+	private final int capacity;
+	private final long numberOfNodes;
+	private final long numberOfRelationships;
+	private final long lastTransactionId;
+	// relationship type name -> degree columns, by the order of DIRECTIONS
+	private final Map<String, IntBuffer[]> degrees;
+	private final IntBuffer totalDegrees;
+	private final IntBuffer circles;
+	private final DoubleBuffer betweenness;
+	private final DoubleBuffer clustering;
+
+	private NodeColumns(MappedByteBuffer buffer) throws IOException {
+		buffer.position(0);
+		if (buffer.getInt() != MAGIC) throw new IOException("not a column file");
+		this.capacity = buffer.getInt();
+		this.numberOfNodes = buffer.getLong();
+		this.numberOfRelationships = buffer.getLong();
+		this.lastTransactionId = buffer.getLong();
+		int numberOfTypes = buffer.getInt();
+		int headerSize = buffer.getInt();
+
+		String[] types = new String[numberOfTypes];
+		for (int t = 0; t < numberOfTypes; t++) {
+			byte[] name = new byte[buffer.getShort()];
+			buffer.get(name);
+			types[t] = new String(name, StandardCharsets.UTF_8);
+		}
+
+		int offset = headerSize;
+		this.degrees = new HashMap<String, IntBuffer[]>();
+		for (String type : types) {
+			IntBuffer[] columns = new IntBuffer[DIRECTIONS.length];
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				columns[d] = intColumn(buffer, offset);
+				offset += capacity * 4;
+			}
+			degrees.put(type, columns);
+		}
+		this.totalDegrees = intColumn(buffer, offset);
+		offset += capacity * 4;
+		this.circles = intColumn(buffer, offset);
+		offset += capacity * 4;
+		offset = align(offset);
+		this.betweenness = doubleColumn(buffer, offset);
+		offset += capacity * 8;
+		this.clustering = doubleColumn(buffer, offset);
+	}
+
+	private IntBuffer intColumn(ByteBuffer buffer, int offset) {
+		ByteBuffer column = buffer.duplicate();
+		column.position(offset).limit(offset + capacity * 4);
+		return column.slice().asIntBuffer();
+	}
+
+	private DoubleBuffer doubleColumn(ByteBuffer buffer, int offset) {
+		ByteBuffer column = buffer.duplicate();
+		column.position(offset).limit(offset + capacity * 8);
+		return column.slice().asDoubleBuffer();
+	}
+
+	private static int align(int offset) {
+		return (offset + 7) & ~7;
+	}
+
+	private static File fileOf(String neo4jPath) {
+		return new File(neo4jPath + EXTENSION);
+	}
+
+	/**
+	 * Load the columns of a store, or build and save them if they are not
+	 * there, were built for a different graph or an older version of it,
+	 * or lack a relationship type.
+	 *
+	 * @param neo4jPath the folder of the store; the columns are saved next to it
+	 * @param db
+	 * @param types the relationship types to keep degrees of
+	 * @return
+	 */
+	public static NodeColumns getInstance(String neo4jPath, GraphDatabaseService db, RelationshipType... types) {
+		File file = fileOf(neo4jPath);
+
+		if (file.exists()) {
+			try {
+				NodeColumns columns = load(db, file);
+				if (columns != null && columns.hasTypes(types)) return columns;
+				logger.warn("Columns in " + file + " do not match the graph, rebuilding");
+			} catch (IOException e) {
+				logger.error("Error reading columns: " + file, e);
+			}
+		}
+
+		try {
+			long time = System.currentTimeMillis();
+			NodeColumns columns = build(db, file, Runtime.getRuntime().availableProcessors(), types);
+			logger.info(columns + " is built in " + ((System.currentTimeMillis() - time) / 1000d) + " secs");
+			return columns;
+		} catch (IOException e) {
+			throw new RuntimeException("Error building columns: " + file, e);
+		}
+	}
+
+	private boolean hasTypes(RelationshipType... types) {
+		for (RelationshipType type : types) {
+			if (!degrees.containsKey(type.name())) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Read the properties of all the nodes and write them to a file.
+	 *
+	 * @param db
+	 * @param file
+	 * @param numberOfThreads
+	 * @param types the relationship types to keep degrees of
+	 * @return
+	 * @throws IOException
+	 */
+	public static NodeColumns build(final GraphDatabaseService db, File file, int numberOfThreads, final RelationshipType... types) throws IOException {
+
+		long maxId = -1;
+		long[] counts = counts(db);
+		// before reading, so changes made while building are not missed
+		long lastTransactionId = lastTransactionId(db);
+		try (Transaction tx = db.beginTx()) {
+			for (Node node : GlobalGraphOperations.at(db).getAllNodes()) {
+				maxId = Math.max(maxId, node.getId());
+			}
+			tx.success();
+		}
+		if (maxId >= Integer.MAX_VALUE) throw new IOException("node ids are too large for columns: " + maxId);
+		final int capacity = (int) (maxId + 1);
+
+		final int[][] degrees = new int[types.length * DIRECTIONS.length][capacity];
+		final int[] totalDegrees = new int[capacity];
+		final int[] circles = new int[capacity];
+		final double[] betweenness = new double[capacity];
+		final double[] clustering = new double[capacity];
+		final AtomicInteger nextChunk = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < numberOfThreads; t++) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						long[] buffer = new long[16];
+						try (Transaction tx = db.beginTx()) {
+							for (int start = nextChunk.getAndIncrement() * CHUNK_SIZE; start < capacity; start = nextChunk.getAndIncrement() * CHUNK_SIZE) {
+								for (int id = start; id < Math.min(start + CHUNK_SIZE, capacity); id++) {
+									Node node;
+									try {
+										node = db.getNodeById(id);
+									} catch (NotFoundException e) {
+										continue;
+									}
+
+									for (int k = 0; k < types.length; k++) {
+										for (int d = 0; d < DIRECTIONS.length; d++) {
+											degrees[k * DIRECTIONS.length + d][id] = node.getDegree(types[k], DIRECTIONS[d]);
+										}
+									}
+									totalDegrees[id] = node.getDegree();
+
+									// distinct circles, as CircleIndex
+									int size = 0;
+									for (Relationship rel : node.getRelationships(RelationshipTypes.CIRCLE.type(), Direction.OUTGOING)) {
+										if (size == buffer.length) buffer = Arrays.copyOf(buffer, size * 2);
+										buffer[size++] = rel.getEndNode().getId();
+									}
+									Arrays.sort(buffer, 0, size);
+									int distinct = 0;
+									for (int i = 0; i < size; i++) {
+										if (i == 0 || buffer[i] != buffer[i - 1]) distinct++;
+									}
+									circles[id] = distinct;
+
+									betweenness[id] = ((Number) node.getProperty(BETWEENNESS_CENTRALITY, 0)).doubleValue();
+									clustering[id] = ((Number) node.getProperty(CLUSTERING_COEFFICIENT, 0)).doubleValue();
+								}
+							}
+							tx.success();
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IOException("Error reading nodes", e);
+		} finally {
+			executor.shutdown();
+		}
+
+		// header
+		byte[][] names = new byte[types.length][];
+		int headerSize = FIXED_HEADER;
+		for (int k = 0; k < types.length; k++) {
+			names[k] = types[k].name().getBytes(StandardCharsets.UTF_8);
+			headerSize += 2 + names[k].length;
+		}
+		headerSize = align(headerSize);
+
+		// a single buffer can't exceed 2GB
+		long end = headerSize + ((long) degrees.length + 2) * capacity * 4;
+		end = ((end + 7) & ~7L) + 2L * capacity * 8;
+		if (end > Integer.MAX_VALUE) throw new IOException("too many nodes for columns: " + capacity);
+		int size = (int) end;
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+			raf.setLength(size);
+			MappedByteBuffer out = raf.getChannel().map(MapMode.READ_WRITE, 0, size);
+
+			// incomplete until all the columns are written
+			out.putInt(0).putInt(capacity).putLong(counts[0]).putLong(counts[1]).putLong(lastTransactionId).putInt(types.length).putInt(headerSize);
+			for (byte[] name : names) {
+				out.putShort((short) name.length).put(name);
+			}
+
+			int offset = headerSize;
+			for (int[] column : degrees) {
+				offset = put(out, offset, column);
+			}
+			offset = put(out, offset, totalDegrees);
+			offset = put(out, offset, circles);
+			offset = put(out, align(offset), betweenness);
+			put(out, offset, clustering);
+
+			out.force();
+			out.putInt(0, MAGIC);
+			out.force();
+		}
+
+		return load(db, file);
+	}
+
+	private static int put(ByteBuffer buffer, int offset, int[] column) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(offset);
+		slice.slice().asIntBuffer().put(column);
+		return offset + column.length * 4;
+	}
+
+	private static int put(ByteBuffer buffer, int offset, double[] column) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(offset);
+		slice.slice().asDoubleBuffer().put(column);
+		return offset + column.length * 8;
+	}
+
+	// the number of nodes and of relationships, from the counts store
+	private static long[] counts(GraphDatabaseService db) {
+		GraphDatabaseAPI api = (GraphDatabaseAPI) db;
+		ThreadToStatementContextBridge bridge = api.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+
+		try (Transaction tx = db.beginTx(); Statement statement = bridge.instance()) {
+			ReadOperations read = statement.readOperations();
+			// -1 is any label or type
+			long nodes = read.countsForNode(-1);
+			long relationships = read.countsForRelationship(-1, -1, -1);
+			tx.success();
+			return new long[] { nodes, relationships };
+		}
+	}
+
+	// bumped by every change committed to the store, e.g., setting a property
+	private static long lastTransactionId(GraphDatabaseService db) {
+		return ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(TransactionIdStore.class).getLastCommittedTransactionId();
+	}
+
+	/**
+	 * @param db
+	 * @param file
+	 * @return the columns, or null if they were built for a different graph, before the last change to it, or not completely
+	 * @throws IOException
+	 */
+	public static NodeColumns load(GraphDatabaseService db, File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if (raf.length() < FIXED_HEADER || raf.readInt() != MAGIC) return null;
+
+			// the mapping stays valid after the file is closed
+			NodeColumns columns = new NodeColumns(raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length()));
+			long[] counts = counts(db);
+			if (columns.numberOfNodes != counts[0] || columns.numberOfRelationships != counts[1]) return null;
+			if (columns.lastTransactionId != lastTransactionId(db)) return null;
+			return columns;
+		}
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	private static int direction(Direction direction) {
+		switch (direction) {
+		case OUTGOING: return 0;
+		case INCOMING: return 1;
+		default: return 2;
+		}
+	}
+
+	/**
+	 * @param type
+	 * @return whether the degrees of a type are kept
+	 */
+	public boolean hasDegree(RelationshipType type) {
+		return degrees.containsKey(type.name());
+	}
+
+	/**
+	 * Same as {@code Node.getDegree(type, direction)}.
+	 *
+	 * @param nodeId
+	 * @param type a type the columns were built with
+	 * @param direction
+	 * @return
+	 */
+	public int getDegree(long nodeId, RelationshipType type, Direction direction) {
+		IntBuffer[] columns = degrees.get(type.name());
+		if (columns == null) throw new IllegalArgumentException("No degrees of " + type.name());
+		return nodeId < capacity ? columns[direction(direction)].get((int) nodeId) : 0;
+	}
+
+	/**
+	 * Same as {@code Node.getDegree()}.
+	 *
+	 * @param nodeId
+	 * @return the number of relationships of any type
+	 */
+	public int getDegree(long nodeId) {
+		return nodeId < capacity ? totalDegrees.get((int) nodeId) : 0;
+	}
+
+	/**
+	 * @param nodeId
+	 * @return the number of distinct circles of a node
+	 */
+	public int getNumberOfCircles(long nodeId) {
+		return nodeId < capacity ? circles.get((int) nodeId) : 0;
+	}
+
+	public double getBetweennessCentrality(long nodeId) {
+		return nodeId < capacity ? betweenness.get((int) nodeId) : 0;
+	}
+
+	public double getClusteringCoefficient(long nodeId) {
+		return nodeId < capacity ? clustering.get((int) nodeId) : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "NodeColumns[" + numberOfNodes + " nodes, " + numberOfRelationships + " relationships, " + degrees.keySet() + "]";
+	}
+}
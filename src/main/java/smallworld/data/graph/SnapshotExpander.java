@@ -0,0 +1,50 @@
+package smallworld.data.graph;
+
+import java.util.Collections;
+
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
+
+/**
+ * A {@code PathExpander} backed by a {@code GraphSnapshot}.
+ *
+ * It can be used wherever {@code PathExpanders.forTypeAndDirection} is used,
+ * e.g., by all the navigations and by {@code GraphAlgoFactory.shortestPath}.
+ * Expanding a path reads only the arrays of the snapshot; the relationships
+ * returned are Neo4J relationships whose nodes are known without reading the
+ * store, so paths built from them are ordinary Neo4J paths.
+ *
+ * @author chang
+ *
+ */
+public class SnapshotExpander implements PathExpander<Object> {
+
+	private final GraphSnapshot snapshot;
+
+	public SnapshotExpander(GraphSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	public GraphSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	@Override
+	public Iterable<Relationship> expand(Path path, BranchState<Object> state) {
+		int index = snapshot.indexOf(path.endNode().getId());
+		if (index < 0) return Collections.emptyList();
+		return snapshot.relationships(index);
+	}
+
+	@Override
+	public PathExpander<Object> reverse() {
+		return new SnapshotExpander(snapshot.reverse());
+	}
+
+	@Override
+	public String toString() {
+		return "SnapshotExpander[" + snapshot + "]";
+	}
+}
@@ -1,6 +1,7 @@
 package smallworld.data.inserter.exp;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -52,19 +53,63 @@ public class Interests {
 		return interests;
 	}
 	
-	public static double proximity(Node personA, Node personB) {
-		synchronized (INTEREST_NODE) {
-			if (INTEREST_NODE == null) {
-				INTEREST_NODE = QueryCircles.getInstance().cypherGetCirlce(INTEREST_NODE_NAME);
-			}
+	private static synchronized Node getInterestNode() {
+		if (INTEREST_NODE == null) {
+			INTEREST_NODE = QueryCircles.getInstance().getCircle(INTEREST_NODE_NAME);
 		}
+		return INTEREST_NODE;
+	}
+	
+	public static double proximity(Node personA, Node personB) {
+		Node interestNode = getInterestNode();
 		
 		Set<String> commonInterests = Sets.intersection(
 				new HashSet<String>(Lists.newArrayList(personA.getPropertyKeys())), 
 				new HashSet<String>(Lists.newArrayList(personB.getPropertyKeys())));
 		double proximity = 0d;
 		for (String interest : commonInterests) {
-			proximity += (double) ((Integer) personA.getProperty(interest) * (Integer) personB.getProperty(interest)) / (Integer) INTEREST_NODE.getProperty(interest);
+			proximity += (double) ((Integer) personA.getProperty(interest) * (Integer) personB.getProperty(interest)) / (Integer) interestNode.getProperty(interest);
+		}
+		
+		return proximity;
+	}
+	
+	/**
+	 * The interests of a person, each weighted by its count over the count
+	 * of all the persons, so that {@code proximity(personA, getInterestVector(personB))}
+	 * is {@code proximity(personA, personB)}.
+	 * 
+	 * @param person
+	 * @return
+	 */
+	public static Map<String, Double> getInterestVector(Node person) {
+		Node interestNode = getInterestNode();
+		
+		Map<String, Double> vector = new HashMap<>();
+		for (String interest : person.getPropertyKeys()) {
+			Object count = person.getProperty(interest);
+			Object total = interestNode.getProperty(interest, null);
+			if (count instanceof Integer && total instanceof Integer) {
+				vector.put(interest, (double) (Integer) count / (Integer) total);
+			}
+		}
+		
+		return vector;
+	}
+	
+	/**
+	 * @see getInterestVector
+	 * @param person
+	 * @param vector
+	 * @return
+	 */
+	public static double proximity(Node person, Map<String, Double> vector) {
+		double proximity = 0d;
+		for (String interest : person.getPropertyKeys()) {
+			Double weight = vector.get(interest);
+			if (weight == null) continue;
+			Object count = person.getProperty(interest);
+			if (count instanceof Integer) proximity += (Integer) count * weight;
 		}
 		
 		return proximity;
@@ -1,5 +1,6 @@
 package smallworld.data.query;
 
+import java.util.Collections;
 import java.util.Iterator;
 
 import org.neo4j.graphdb.Result;
@@ -23,7 +24,7 @@ public class ClusteringCoefficient {
 		String dataset = args[0];
 		Query q = new Query("neo4j/" + dataset);
 		int count = 0;
-		for (Long ego : q.cypherGetAllNodes()) {
+		for (long ego : q.getAllNodeIds()) {
 			if (++ count % 100 == 0) System.out.println(count);
 			clusteringCoefficient(q, ego);
 		}
@@ -45,13 +46,14 @@ public class ClusteringCoefficient {
 		// clustering coefficient 
         // r / (n! / (2!(n-2)!))
 		Result result = query.cypherQuery( 
-        		"START a = node(" + ego + ") " +
+        		"START a = node({ego}) " +
         		"MATCH (a)-[:FRIEND]-(b) " +
         		"WITH a, count(distinct b) as n " +
         		"MATCH (a)-[:FRIEND]-()-[r:FRIEND]-()-[:FRIEND]-(a) " +
         		"WITH toFloat(count(distinct r)) * 2 / (n * (n-1)) AS cc, a " +
 				"SET a.clustering_coefficient = cc " +
-        		"RETURN cc;");
+        		"RETURN cc;",
+        		Collections.<String, Object>singletonMap("ego", ego));
 		
 		for (Iterator<Double> it = result.columnAs("cc"); it.hasNext(); ) {
 			Double cc = it.next();
@@ -1,24 +1,42 @@
 package smallworld.data.query;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.tooling.GlobalGraphOperations;
 
 import smallworld.Constants;
+import smallworld.data.inserter.exp.GraphInserter;
 import smallworld.data.inserter.exp.Neo4JInserter;
 
 import com.google.common.collect.Lists;
 
+/**
+ * Access to a Neo4J store.
+ * 
+ * Nodes and relationships are looked up directly, by id or through the
+ * index of a label, rather than by Cypher; many nodes can be looked up
+ * in one transaction with {@code getNodes}.  Cypher queries should pass
+ * values as parameters, so Neo4J plans each query text only once.
+ * 
+ * @author chang
+ *
+ */
 public class Query {
 	
 	private GraphDatabaseService db;
@@ -26,12 +44,26 @@ public class Query {
 	private static Query INSTANCE = null;
 	
 	public static synchronized Query getInstance() {
-		if (INSTANCE == null) INSTANCE = new Query(Constants.NEO4J_PATH);
+		if (INSTANCE == null) INSTANCE = new Query(Constants.NEO4J_PATH, Constants.NEO4J_READ_ONLY);
 		return INSTANCE;
 	}
 	
 	public Query(String path) {
-		db = new GraphDatabaseFactory().newEmbeddedDatabase(path);
+		this(path, false);
+	}
+	
+	/**
+	 * @param path
+	 * @param readOnly whether to reject any change to the store
+	 */
+	public Query(String path, boolean readOnly) {
+		if (readOnly) {
+			db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder(path)
+					.setConfig(GraphDatabaseSettings.read_only, Boolean.TRUE.toString())
+					.newGraphDatabase();
+		} else {
+			db = new GraphDatabaseFactory().newEmbeddedDatabase(path);
+		}
 	}
 
 	public GraphDatabaseService getGraphDatabaseService() {
@@ -42,116 +74,186 @@ public class Query {
 		return db.execute(query);
 	}
 	
-	private static List<Object> getCypherQueryResult(Result result, String key) {
-		List<Object> values = new ArrayList<Object>();
-		
-		for (; result.hasNext(); )
-        {
-        	Map<String, Object> row = result.next();
-			if (row.containsKey(key)) values.add(row.get(key));
-        }
-		
-		return values;
+	/**
+	 * Run a query with parameters, e.g., {@code {id}}, so the same text,
+	 * and its plan cached by Neo4J, serves all the values.
+	 * 
+	 * @param query
+	 * @param parameters
+	 * @return
+	 */
+	public Result cypherQuery(String query, Map<String, Object> parameters) {
+		return db.execute(query, parameters);
 	}
 	
 	public void shutdown() {
 		db.shutdown();
 	}
 	
+	/**
+	 * @param id
+	 * @return the node, or null if there is no such node
+	 */
+	public Node getNode(long id) {
+		try (Transaction tx = db.beginTx()) {
+			Node node = getNodeOrNull(id);
+			tx.success();
+			return node;
+		}
+	}
+	
+	/**
+	 * Look up many nodes in one transaction.
+	 * 
+	 * @param ids
+	 * @return the nodes, by the order of ids; null if there is no such node
+	 */
+	public Node[] getNodes(long... ids) {
+		Node[] nodes = new Node[ids.length];
+		try (Transaction tx = db.beginTx()) {
+			for (int i = 0; i < ids.length; i++) {
+				nodes[i] = getNodeOrNull(ids[i]);
+			}
+			tx.success();
+		}
+		return nodes;
+	}
+	
+	private Node getNodeOrNull(long id) {
+		try {
+			return db.getNodeById(id);
+		} catch (NotFoundException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @param ego
+	 * @return
+	 * @deprecated use {@code getNode}, which doesn't go through Cypher
+	 */
+	@Deprecated
 	public Node cypherGetNode(long ego) {
-		Result result = cypherQuery(
-				"START n = node(" + ego + ") " +
-				"RETURN n");
-		
-		Iterator<Node> nodes = result.columnAs("n");
-		if (nodes.hasNext()) return nodes.next();
-		return null;
+		return getNode(ego);
+	}
+	
+	/**
+	 * Find a person by its identifier in the dataset, through the index of
+	 * the label if there is one.
+	 * 
+	 * @param person the identifier, or its string
+	 * @return the person, or null if not found
+	 */
+	public Node getPerson(Object person) {
+		Node node = findNode(GraphInserter.PERSON_LABEL, Neo4JInserter.IDENTIFIER, person);
+		// identifiers used to be compared as strings
+		if (node == null && !(person instanceof String)) {
+			node = findNode(GraphInserter.PERSON_LABEL, Neo4JInserter.IDENTIFIER, String.valueOf(person));
+		}
+		return node;
 	}
 	
+	/**
+	 * @param person
+	 * @return
+	 * @deprecated use {@code getPerson}, which doesn't go through Cypher
+	 */
+	@Deprecated
 	public Node cypherGetPerson(Object person) {
-		Result result = cypherQuery(
-				"MATCH (n:Person) " +
-				"WHERE n." + Neo4JInserter.IDENTIFIER + " = '" + person + "' " +
-				"RETURN n");
-		
-		Iterator<Node> nodes = result.columnAs("n");
-		if (nodes.hasNext()) return nodes.next();
-		return null;
+		return getPerson(person);
 	}
 	
-	public List<Relationship> cypherRelationshipsFrom(long from, String relationship, Direction dir) {
-		
-		String direction = "-";
-		if (dir == Direction.OUTGOING) direction = "->";
-		
-		Result result = cypherQuery(
-				"START n = node(" + from + ") " +
-				"MATCH n-[r?:" + relationship + "]" + direction + "m " + 
-				"RETURN r;");
-		
-		List<Relationship> rels = new ArrayList<Relationship>();
-		
-		for (Iterator<Relationship> it = result.columnAs("r"); it.hasNext();) {
-			Relationship r = it.next();
-			if (r != null) rels.add(r);
+	/**
+	 * @param label
+	 * @param key
+	 * @param value
+	 * @return the first node found, or null
+	 */
+	public Node findNode(Label label, String key, Object value) {
+		try (Transaction tx = db.beginTx();
+				ResourceIterator<Node> nodes = db.findNodes(label, key, value)) {
+			Node node = nodes.hasNext() ? nodes.next() : null;
+			tx.success();
+			return node;
 		}
-		
-		return rels;
 	}
 	
-	public List<Relationship> cypherRelationshipsTo(long to, String relationship, Direction dir) {
-		
-		String direction = "-";
-		if (dir == Direction.OUTGOING) direction = "->";
-		
-		Result result = cypherQuery(
-				"START m = node(" + to + ") " +
-				"MATCH n-[r?:" + relationship + "]" + direction + "m " + 
-				"RETURN r;");
-		
+	/**
+	 * @param from
+	 * @param relationship the name of a relationship type
+	 * @param dir the direction from {@code from}
+	 * @return the relationships of {@code from}
+	 */
+	public List<Relationship> getRelationshipsFrom(long from, String relationship, Direction dir) {
 		List<Relationship> rels = new ArrayList<Relationship>();
-		
-		for (Iterator<Relationship> it = result.columnAs("r"); it.hasNext();) {
-			Relationship r = it.next();
-			if (r != null) rels.add(r);
+		try (Transaction tx = db.beginTx()) {
+			Node node = getNodeOrNull(from);
+			if (node != null) {
+				for (Relationship r : node.getRelationships(DynamicRelationshipType.withName(relationship), dir)) {
+					rels.add(r);
+				}
+			}
+			tx.success();
 		}
-		
 		return rels;
 	}
 	
-	/*
-	public List<Relationship> cypherGetRelationships(long from, long to, String relationship, Direction dir) {
-		
-		String direction = "-";
-		if (dir == Direction.OUTGOING) direction = "->";
-		
-		Result result = cypherQuery(
-				"START n = node(" + from + "), m = node(" + to + ") " +
-				"MATCH n-[r?:" + relationship + "]" + direction + "m " + 
-				"RETURN r;");
-		
-		List<Relationship> rels = new ArrayList<Relationship>();
-		
-		for (Iterator<Relationship> it = result.columnAs("r"); it.hasNext();) {
-			Relationship r = it.next();
-			if (r != null) rels.add(r);
+	/**
+	 * @param to
+	 * @param relationship the name of a relationship type
+	 * @param dir the direction towards {@code to}
+	 * @return the relationships of {@code to}
+	 */
+	public List<Relationship> getRelationshipsTo(long to, String relationship, Direction dir) {
+		return getRelationshipsFrom(to, relationship, dir.reverse());
+	}
+	
+	/**
+	 * @deprecated use {@code getRelationshipsFrom}, which doesn't go through Cypher
+	 */
+	@Deprecated
+	public List<Relationship> cypherRelationshipsFrom(long from, String relationship, Direction dir) {
+		return getRelationshipsFrom(from, relationship, dir);
+	}
+	
+	/**
+	 * @deprecated use {@code getRelationshipsTo}, which doesn't go through Cypher
+	 */
+	@Deprecated
+	public List<Relationship> cypherRelationshipsTo(long to, String relationship, Direction dir) {
+		return getRelationshipsTo(to, relationship, dir);
+	}
+	
+	/**
+	 * @return the ids of all the nodes, sorted
+	 */
+	public long[] getAllNodeIds() {
+		long[] ids = new long[1024];
+		int size = 0;
+		try (Transaction tx = db.beginTx()) {
+			for (Node node : GlobalGraphOperations.at(db).getAllNodes()) {
+				if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+				ids[size++] = node.getId();
+			}
+			tx.success();
 		}
-		
-		return rels;
+		ids = Arrays.copyOf(ids, size);
+		Arrays.sort(ids);
+		return ids;
 	}
-	*/
+	
+	/**
+	 * @return
+	 * @deprecated use {@code getAllNodeIds}, which doesn't box the ids
+	 */
+	@Deprecated
 	public Long[] cypherGetAllNodes() {
-		Result result = cypherQuery("START n = node(*) RETURN ID(n) as id ORDER BY id;");
-		
-		List<Object> list = getCypherQueryResult(result, "id");
-
-		Long[] ids = new Long[list.size()];
-		for (int i = 0; i < list.size(); i++) {
-			ids[i] = (Long) list.get(i);
-			// System.out.println(ids[i]);
+		long[] ids = getAllNodeIds();
+		Long[] boxed = new Long[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			boxed[i] = ids[i];
 		}
-		
-		return ids;
+		return boxed;
 	}
 	
 	public static boolean hasRelationship(Node start, Node end, RelationshipType type) {
@@ -1,8 +1,9 @@
 package smallworld.data.query;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -10,12 +11,13 @@ import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
-import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.traversal.Evaluators;
 import org.neo4j.graphdb.traversal.TraversalDescription;
 
 import smallworld.data.RelationshipTypes;
+import smallworld.data.graph.CircleIndex;
+import smallworld.data.inserter.exp.GraphInserter;
 import smallworld.data.inserter.exp.Neo4JInserter;
 
 import com.google.common.collect.ImmutableSet;
@@ -25,6 +27,9 @@ public class QueryCircles {
 	
 	private Query query;
 	
+	// counts and sizes of common circles, built on first use unless set
+	private volatile CircleIndex circleIndex = null;
+	
 	private static QueryCircles INSTANCE = null;
 	
 	public static synchronized QueryCircles getInstance() {
@@ -50,15 +55,40 @@ public class QueryCircles {
 		this(new Query(path));
 	}
 	
+	public CircleIndex getCircleIndex() {
+		if (circleIndex == null) {
+			synchronized (this) {
+				if (circleIndex == null) {
+					circleIndex = CircleIndex.build(query.getGraphDatabaseService(), Runtime.getRuntime().availableProcessors());
+				}
+			}
+		}
+		return circleIndex;
+	}
+	
+	/**
+	 * Use an index loaded elsewhere, e.g., by {@code CircleIndex.getInstance}.
+	 * 
+	 * @param circleIndex
+	 */
+	public void setCircleIndex(CircleIndex circleIndex) {
+		this.circleIndex = circleIndex;
+	}
+	
+	/**
+	 * @param circle the name of a circle
+	 * @return the circle, or null if not found
+	 */
+	public Node getCircle(String circle) {
+		return query.findNode(GraphInserter.CIRCLE_LABEL, Neo4JInserter.IDENTIFIER, circle);
+	}
+	
+	/**
+	 * @deprecated use {@code getCircle}, which doesn't go through Cypher
+	 */
+	@Deprecated
 	public Node cypherGetCirlce(String circle) {
-		Result result = query.cypherQuery(
-				"MATCH (n:Circle) " +
-				"WHERE n." + Neo4JInserter.IDENTIFIER + " = \"" + circle + "\" " +
-				"RETURN n");
-		
-		Iterator<Node> nodes = result.columnAs("n");
-		if (nodes.hasNext()) return nodes.next();
-		return null;
+		return getCircle(circle);
 	}
 	
 	public Set<Node> getCircles(Node person) {
@@ -76,71 +106,149 @@ public class QueryCircles {
 		return Sets.intersection(getCircles(personA), getCircles(personB)).immutableCopy();
 	}
 	
+	/**
+	 * Same as {@code getCommonCircles(personA, personB).size()}, but
+	 * answered by the circle index.
+	 * 
+	 * @param personA
+	 * @param personB
+	 * @return
+	 */
+	public int getCommonCircleCount(Node personA, Node personB) {
+		CircleIndex index = getCircleIndex();
+		int a = index.indexOf(personA.getId());
+		int b = index.indexOf(personB.getId());
+		if (a < 0 || b < 0) return 0;
+		return index.getCommonCircleCount(a, b);
+	}
+	
+	/**
+	 * @param person
+	 * @return the ids of the circles of a person in the circle index
+	 */
+	public BitSet getCircleIds(Node person) {
+		CircleIndex index = getCircleIndex();
+		int a = index.indexOf(person.getId());
+		return a < 0 ? new BitSet() : index.getCircles(a);
+	}
+	
+	/**
+	 * Same as {@code getCommonCircleCount(person, other)}, given the circle
+	 * ids of the other person, e.g., a target compared with many nodes.
+	 * 
+	 * @see getCircleIds
+	 * @param circles
+	 * @param person
+	 * @return
+	 */
+	public int getCommonCircleCount(BitSet circles, Node person) {
+		CircleIndex index = getCircleIndex();
+		int a = index.indexOf(person.getId());
+		return a < 0 ? 0 : index.getCommonCircleCount(a, circles);
+	}
+	
+	/**
+	 * @see getCommonCircleCount
+	 * @return the size of the smallest common circle, or {@code Integer.MAX_VALUE} if none
+	 */
+	public int getMinCommonCircle(BitSet circles, Node person) {
+		CircleIndex index = getCircleIndex();
+		int a = index.indexOf(person.getId());
+		return a < 0 ? Integer.MAX_VALUE : index.getMinCommonCircle(a, circles);
+	}
+	
+	/**
+	 * @see getCommonCircleCount
+	 * @return the size of the largest common circle, or 0 if none
+	 */
+	public int getMaxCommonCircle(BitSet circles, Node person) {
+		CircleIndex index = getCircleIndex();
+		int a = index.indexOf(person.getId());
+		return a < 0 ? 0 : index.getMaxCommonCircle(a, circles);
+	}
+	
 	public int getCircleSize(Node circle) {
 		return circle.getDegree(RelationshipTypes.CIRCLE.type(), Direction.INCOMING);
 	}
 	
+	/**
+	 * @param personA
+	 * @param personB
+	 * @return the size of the smallest common circle, or {@code Integer.MAX_VALUE} if none
+	 */
 	public int getMinCommonCircle(Node personA, Node personB) {
-		ImmutableSet<Node> commonCircles = getCommonCircles(personA, personB);
-		
-		int min = Integer.MAX_VALUE;
-		
-		for (Node circle : commonCircles) {
-			int size = getCircleSize(circle);
-			if (min > size) {
-				min = size;
-			}
-		}
-		
-		return min;
+		CircleIndex index = getCircleIndex();
+		int a = index.indexOf(personA.getId());
+		int b = index.indexOf(personB.getId());
+		if (a < 0 || b < 0) return Integer.MAX_VALUE;
+		return index.getMinCommonCircle(a, b);
 	}
 	
+	/**
+	 * @param personA
+	 * @param personB
+	 * @return the size of the largest common circle, or 0 if none
+	 */
 	public int getMaxCommonCircle(Node personA, Node personB) {
-		ImmutableSet<Node> commonCircles = getCommonCircles(personA, personB);
-		
-		int max = 0;
-		
-		for (Node circle : commonCircles) {
-			int size = getCircleSize(circle);
-			if (max < size) {
-				max = size;
+		CircleIndex index = getCircleIndex();
+		int a = index.indexOf(personA.getId());
+		int b = index.indexOf(personB.getId());
+		if (a < 0 || b < 0) return 0;
+		return index.getMaxCommonCircle(a, b);
+	}
+	
+	/**
+	 * @param from
+	 * @param circle
+	 * @return the circle relationships of {@code from} named {@code circle}
+	 */
+	public List<Relationship> getCircleRelationships(long from, String circle) {
+		List<Relationship> rels = new ArrayList<Relationship>();
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			Node node = query.getNode(from);
+			if (node != null) {
+				for (Relationship r : node.getRelationships(RelationshipTypes.CIRCLE.type(), Direction.OUTGOING)) {
+					if (circle.equals(r.getProperty("name", null))) rels.add(r);
+				}
 			}
+			tx.success();
 		}
-		
-		return max;
+		return rels;
 	}
 	
+	/**
+	 * @deprecated use {@code getCircleRelationships}, which doesn't go through Cypher
+	 */
+	@Deprecated
 	public List<Relationship> cypherGetCircles(long from, String circle) {
-		Result result = query.cypherQuery(
-				"START n = node(" + from + ") " +
-				"MATCH n-[r?:CIRCLE]->m " +
-				"WHERE r.name = \"" + circle + "\" " + 
-				"RETURN r;");
-		
-		List<Relationship> rels = new ArrayList<Relationship>();
-		
-		for (Iterator<Relationship> it = result.columnAs("r"); it.hasNext();) {
-			Relationship r = it.next();
-			if (r != null) rels.add(r);
+		return getCircleRelationships(from, circle);
+	}
+	
+	/**
+	 * @param from
+	 * @return the distinct names of the circles of {@code from}
+	 */
+	public List<String> getCircleNames(long from) {
+		Set<String> circles = new LinkedHashSet<String>();
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			Node node = query.getNode(from);
+			if (node != null) {
+				for (Relationship r : node.getRelationships(RelationshipTypes.CIRCLE.type(), Direction.OUTGOING)) {
+					Object name = r.getEndNode().getProperty(Neo4JInserter.IDENTIFIER, null);
+					if (name != null) circles.add(name.toString());
+				}
+			}
+			tx.success();
 		}
-		
-		return rels;
+		return new ArrayList<String>(circles);
 	}
 	
+	/**
+	 * @deprecated use {@code getCircleNames}, which doesn't go through Cypher
+	 */
+	@Deprecated
 	public List<String> cypherGetCircleNames(long from) {
-		Result result = query.cypherQuery(
-				"START n = node(" + from + ") " +
-				"MATCH n-[r:CIRCLE]->m " +
-				"RETURN DISTINCT m." + Neo4JInserter.IDENTIFIER + " as circles");
-		
-		List<String> circles = new ArrayList<String>();
-		
-		for (Iterator<String> it = result.columnAs("circles"); it.hasNext();) {
-			String c = it.next();
-			if (c != null) circles.add(c);
-		}
-		
-		return circles;
+		return getCircleNames(from);
 	}
 	
 	public void shutdown() {
@@ -20,7 +20,7 @@ public class QueryFeatures {
 	}
 	
 	public Map<String, Object> getFeatures(long ego) {
-		Node n = query.cypherGetNode(ego);
+		Node n = query.getNode(ego);
 		return getFeatures(n);
 	}
 	
@@ -44,7 +44,7 @@ public class QueryFeatures {
 		Query q = new Query("neo4j/facebook");
 		QueryFeatures qf = new QueryFeatures(q);
 		
-		System.out.println(Maps.toStringSorted(QueryFeatures.getFeatures(q.cypherGetNode(0l))));
+		System.out.println(Maps.toStringSorted(QueryFeatures.getFeatures(q.getNode(0l))));
 		q.shutdown();
 
 	}
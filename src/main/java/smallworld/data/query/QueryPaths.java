@@ -16,6 +16,8 @@ import org.neo4j.kernel.Traversal;
 
 import smallworld.data.RelationshipTypes;
 import smallworld.data.inserter.exp.Neo4JInserter;
+import com.google.common.collect.ImmutableMap;
+
 import edu.stanford.nlp.util.Maps;
 
 /**
@@ -38,11 +40,13 @@ public class QueryPaths {
 	
 	public List<List<Node>> getCypherAllShortestPathsDistinctNodes(long from, long to, String relationship, int length) {
 		Result result = query.cypherQuery( 
-        		"START n = node(" + from + "), m = node(" + to + ") " +  
+        		// types and lengths can't be parameters
+        		"START n = node({from}), m = node({to}) " +  
         		"MATCH p = allShortestPaths(n-[:" + relationship + "*.." + length + "]-m) " + 
         		//"RETURN n as from, p as `->`, m as to, length(p);");
 				"WITH DISTINCT nodes(p) as nodes " +
-        		"RETURN nodes;");
+        		"RETURN nodes;",
+        		ImmutableMap.<String, Object>of("from", from, "to", to));
 				// "foreach(x in nodes(p) : RETURN x);");
 		
 		List<List<Node>> paths = new ArrayList<List<Node>>();
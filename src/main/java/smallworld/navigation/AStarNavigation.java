@@ -0,0 +1,119 @@
+package smallworld.navigation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+
+import smallworld.Constants;
+import smallworld.navigation.evaluator.Evaluator;
+import smallworld.util.BoundedMinMaxHeap;
+import smallworld.util.LongObjectMap;
+import smallworld.util.LongSet;
+
+/**
+ * A* search for a shortest path.
+ *
+ * Paths are explored in the order of their length plus the estimated
+ * distance from their end node to the target, given by an
+ * {@code Evaluator}.  If the estimate never exceeds the true distance,
+ * e.g., the lower bound of {@code LandmarkEvaluator}, the path found is
+ * a shortest one, usually after exploring far fewer nodes than a
+ * breadth-first search.  A cost of {@code Integer.MAX_VALUE} means the
+ * target can't be reached, so the node is not explored at all.
+ *
+ * Among paths of the same estimate, longer paths are explored first.
+ *
+ * @see smallworld.navigation.evaluator.LandmarkEvaluator
+ * @see ShortestNavigation
+ * @author chang
+ *
+ */
+public class AStarNavigation extends AbstractNavigation {
+
+	private final PathExpander<?> expander;
+	private final Evaluator<Integer> heuristic;
+
+	public AStarNavigation(PathExpander<?> expander, Evaluator<Integer> heuristic) {
+		this.expander = expander;
+		this.heuristic = heuristic.copy();
+	}
+
+	public AStarNavigation(AStarNavigation another) {
+		this(another.expander, another.heuristic);
+	}
+
+	// order by length + estimate, then longer first
+	private static int priority(int length, int estimate) {
+		return (Math.min(length + estimate, Short.MAX_VALUE) << 16) - length;
+	}
+
+	public Path findSinglePath(Node source, Node sink) {
+
+		if (null == source || null == sink) return null;
+
+		lastMetadata = new Metadata();
+
+		LongSet explored = nodeSet(0);
+		// the shortest path found so far to each node
+		LongObjectMap<PathNode> best = nodeMap(0);
+		BoundedMinMaxHeap<PathNode> queue = new BoundedMinMaxHeap<PathNode>();
+
+		NavigationContext context = new NavigationContext(sink, lastMetadata.evaluatorCalls);
+		PathNode start = PathNode.start(source);
+		int estimate = heuristic.getCosts(Collections.singletonList(start), context)[0];
+		if (estimate == Integer.MAX_VALUE) return null;
+		queue.add(priority(0, estimate), start);
+		best.put(source.getId(), start);
+
+		List<PathNode> neighbors = new ArrayList<PathNode>();
+
+		while (!queue.isEmpty()) {
+			if (isOutOfBudget()) return null;
+			
+			PathNode currentPath = queue.poll();
+			Node lastNode = currentPath.endNode();
+
+			// a node is queued again when a shorter path is found; skip the longer ones
+			if (!explored.add(lastNode.getId())) continue;
+
+			lastMetadata.totalNodesExplored++;
+
+			if (lastNode.equals(sink)) {
+				lastMetadata.paths++;
+				return currentPath.toPath();
+			}
+
+			if (currentPath.length() >= Constants.LIMIT_OF_DEPTH) continue;
+
+			neighbors.clear();
+			for (Relationship rel : expandPath(expander, currentPath)) {
+				if (isOutOfBudget()) return null;
+				lastMetadata.rels++;
+				Node node = rel.getOtherNode(lastNode);
+				if (explored.contains(node.getId())) continue;
+
+				PathNode known = best.get(node.getId());
+				if (known != null && known.length() <= currentPath.length() + 1) continue;
+
+				PathNode path = currentPath.append(rel, node);
+				neighbors.add(path);
+				best.put(node.getId(), path);
+			}
+
+			int[] costs = heuristic.getCosts(neighbors, context);
+			for (int i = 0; i < costs.length; i++) {
+				if (costs[i] == Integer.MAX_VALUE) continue;
+				PathNode path = neighbors.get(i);
+				queue.add(priority(path.length(), costs[i]), path);
+			}
+		}
+
+		return null;
+	}
+
+}
@@ -2,16 +2,23 @@ package smallworld.navigation;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphalgo.impl.util.PathImpl;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
 import org.neo4j.graphdb.traversal.TraversalMetadata;
 
 import smallworld.navigation.feature.DistanceMeasure;
+import smallworld.util.LongObjectMap;
+import smallworld.util.LongSet;
 
 /**
  * 
@@ -39,6 +46,9 @@ public abstract class AbstractNavigation implements PathFinder<Path> {
 	protected int numberOfVisitedNodes = 0;
 	protected int numberOfVisitedNodesShorteningPaths = 0;
 	
+	// How much a pair may take; copied with the navigation
+	private NavigationBudget budget = NavigationBudget.UNLIMITED;
+	
 	public AbstractNavigation() {}
 	
 	@Deprecated
@@ -113,19 +123,78 @@ public abstract class AbstractNavigation implements PathFinder<Path> {
 		return numberOfVisitedNodesShorteningPaths;
 	}
 
+	public NavigationBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Limit the time, the nodes and the relationships of each pair.
+	 * 
+	 * @param budget
+	 */
+	public void setBudget(NavigationBudget budget) {
+		this.budget = budget;
+	}
+	
+	/**
+	 * Whether the current pair has run out of its budget.  Checked by 
+	 * the loops of the navigations each time they take a node; a 
+	 * navigation out of budget returns no path, and its metadata tells 
+	 * it timed out.
+	 * 
+	 * @return
+	 */
+	protected boolean isOutOfBudget() {
+		if (!lastMetadata.outOfBudget && budget.isExceeded(lastMetadata)) {
+			lastMetadata.outOfBudget = true;
+		}
+		return lastMetadata.outOfBudget;
+	}
+
 	/**
-	 * Duplicate a navigation.  Used for concurrency.
+	 * Gives up the pair if it is past its deadline, whatever the number
+	 * of checks since the clock was last read.
+	 * 
+	 * @return if the pair is out of its budget
+	 */
+	protected boolean isPastDeadline() {
+		if (!lastMetadata.outOfBudget && budget.isPastDeadline(lastMetadata)) {
+			lastMetadata.outOfBudget = true;
+		}
+		return lastMetadata.outOfBudget;
+	}
+	
+	/**
+	 * Duplicate a navigation, with its budget.  Used for concurrency.
 	 * 
 	 * @param nav
 	 * @return
 	 */
 	public static PathFinder<Path> copy(PathFinder<Path> nav) {
+		PathFinder<Path> copy = copyNavigation(nav);
+		if (copy != nav && copy instanceof AbstractNavigation) {
+			((AbstractNavigation) copy).budget = ((AbstractNavigation) nav).budget;
+		}
+		return copy;
+	}
+	
+	private static PathFinder<Path> copyNavigation(PathFinder<Path> nav) {
 		if (nav instanceof PrioritizedNavigation) {
 			return new PrioritizedNavigation((PrioritizedNavigation) nav);
+		} else if (nav instanceof AStarNavigation) {
+			return new AStarNavigation((AStarNavigation) nav);
+		} else if (nav instanceof BeamNavigation) {
+			return new BeamNavigation((BeamNavigation) nav);
+		} else if (nav instanceof BidirectionalNavigation) {
+			return new BidirectionalNavigation((BidirectionalNavigation) nav);
 		} else if (nav instanceof PrioritizedDFSNavigation) {
 			return new PrioritizedDFSNavigation((PrioritizedDFSNavigation) nav);
 		} else if (nav instanceof TrainingNavigation) {
 			return new TrainingNavigation((TrainingNavigation) nav);
+		} else if (nav instanceof ShortestNavigation) {
+			return new ShortestNavigation((ShortestNavigation) nav);
+		} else if (nav instanceof TraversalNavigation) {
+			return new TraversalNavigation((TraversalNavigation) nav);
 		/*
 		} else if (nav instanceof SARSANavigation) {
 			return new SARSANavigation((SARSANavigation) nav);
@@ -137,6 +206,119 @@ public abstract class AbstractNavigation implements PathFinder<Path> {
 		throw new IllegalArgumentException("no such subclass of AbstractNavigation");
 	}
 	
+	// Navigations copied by each thread, by the navigation they copy
+	private static final ThreadLocal<Map<PathFinder<Path>, PathFinder<Path>>> threadCopies = new ThreadLocal<Map<PathFinder<Path>, PathFinder<Path>>>() {
+		@Override
+		protected Map<PathFinder<Path>, PathFinder<Path>> initialValue() {
+			return new IdentityHashMap<PathFinder<Path>, PathFinder<Path>>();
+		}
+	};
+	
+	/**
+	 * Get the copy of a navigation owned by the current thread.
+	 * 
+	 * A thread copies a navigation, together with its evaluator, the 
+	 * first time it asks for it, and gets the same copy for all the pairs 
+	 * it navigates afterward.  A run thus copies a model, e.g., a Weka 
+	 * classifier, once per thread rather than once per pair.  The 
+	 * navigation given is only copied, never used to navigate.
+	 * 
+	 * @see copy
+	 * @param nav
+	 * @return
+	 */
+	public static PathFinder<Path> copyForCurrentThread(PathFinder<Path> nav) {
+		Map<PathFinder<Path>, PathFinder<Path>> copies = threadCopies.get();
+		PathFinder<Path> copy = copies.get(nav);
+		if (copy == null) {
+			copy = copy(nav);
+			copies.put(nav, copy);
+		} else if (copy instanceof AbstractNavigation) {
+			// counted per pair
+			((AbstractNavigation) copy).numberOfVisitedNodes = 0;
+			((AbstractNavigation) copy).numberOfVisitedNodesShorteningPaths = 0;
+		}
+		return copy;
+	}
+	
+	/**
+	 * Get the relationships to follow from the end node of a path.
+	 * 
+	 * The expander can be any {@code PathExpander}, e.g., one from 
+	 * {@code PathExpanders} that reads the Neo4J store, or a 
+	 * {@code SnapshotExpander} that reads an in-heap snapshot.
+	 * 
+	 * @param expander
+	 * @param path
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	protected static Iterable<Relationship> expandPath(PathExpander<?> expander, Path path) {
+		BranchState<Object> state = BranchState.NO_STATE;
+		return ((PathExpander<Object>) expander).expand(path, state);
+	}
+	
+	// Node sets reused by all the navigations running on a thread
+	private static final ThreadLocal<LongSet[]> nodeSets = new ThreadLocal<LongSet[]>() {
+		@Override
+		protected LongSet[] initialValue() {
+			return new LongSet[0];
+		}
+	};
+	
+	/**
+	 * Get an empty set of node ids owned by the current thread.
+	 * 
+	 * A navigation asks for its sets at the beginning of 
+	 * {@code findSinglePath}, using a different slot for each set it 
+	 * needs at the same time.  The set in a slot is cleared in constant 
+	 * time and handed out again by the next call, so no set is allocated 
+	 * per pair.
+	 * 
+	 * @param slot
+	 * @return
+	 */
+	protected static LongSet nodeSet(int slot) {
+		LongSet[] sets = nodeSets.get();
+		if (slot >= sets.length) {
+			sets = Arrays.copyOf(sets, slot + 1);
+			nodeSets.set(sets);
+		}
+		if (sets[slot] == null) sets[slot] = new LongSet();
+		sets[slot].clear();
+		return sets[slot];
+	}
+	
+	// Node maps reused by all the navigations running on a thread
+	private static final ThreadLocal<LongObjectMap<?>[]> nodeMaps = new ThreadLocal<LongObjectMap<?>[]>() {
+		@Override
+		protected LongObjectMap<?>[] initialValue() {
+			return new LongObjectMap<?>[0];
+		}
+	};
+	
+	/**
+	 * Get an empty map from node ids owned by the current thread.
+	 * 
+	 * Same as {@code nodeSet}, but for navigations that need to find 
+	 * something, e.g., a path, by node id.
+	 * 
+	 * @see nodeSet
+	 * @param slot
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	protected static <V> LongObjectMap<V> nodeMap(int slot) {
+		LongObjectMap<?>[] maps = nodeMaps.get();
+		if (slot >= maps.length) {
+			maps = Arrays.copyOf(maps, slot + 1);
+			nodeMaps.set(maps);
+		}
+		if (maps[slot] == null) maps[slot] = new LongObjectMap<Object>();
+		maps[slot].clear();
+		return (LongObjectMap<V>) maps[slot];
+	}
+	
 	protected Metadata lastMetadata;
 	
 	@Override
@@ -155,6 +337,12 @@ public abstract class AbstractNavigation implements PathFinder<Path> {
 		protected int paths;
 		//protected int correctedNodesExplored;
 		protected long totalNodesExplored;
+		// for the budget of the pair
+		protected final long startNanos = System.nanoTime();
+		protected int checks;
+		protected boolean outOfBudget;
+		// costs computed for the pair, by any thread; see NavigationContext
+		protected final LongAdder evaluatorCalls = new LongAdder();
 		
 		@Override
 		public int getNumberOfPathsReturned() {
@@ -175,6 +363,20 @@ public abstract class AbstractNavigation implements PathFinder<Path> {
 		public long getTotalNodesExplored() {
 			return totalNodesExplored;
 		}
+		
+		/**
+		 * @return whether the navigation gave up the pair for its budget
+		 */
+		public boolean isOutOfBudget() {
+			return outOfBudget;
+		}
+		
+		/**
+		 * @return the costs computed by a {@code CountingEvaluator} for the pair
+		 */
+		public long getNumberOfEvaluatorCalls() {
+			return evaluatorCalls.sum();
+		}
 	}
 
 }
@@ -0,0 +1,209 @@
+package smallworld.navigation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+import smallworld.Constants;
+import smallworld.navigation.evaluator.Evaluator;
+import smallworld.util.BoundedMinMaxHeap;
+import smallworld.util.LongSet;
+
+/**
+ * Beam search navigation.
+ *
+ * The navigation explores the graph one depth at a time, but keeps only
+ * the best {@code width} paths of each depth, ranked by the
+ * {@code Evaluator}.  Unlike {@code PrioritizedNavigation}, whose queue
+ * grows up to {@code Constants.PRORITY_QUEUE_MAX_SIZE}, the memory and
+ * the number of nodes explored per depth are bounded by the width, which
+ * defaults to {@code Constants.BEAM_WIDTH}.
+ *
+ * The candidates of a depth are scored in parallel on a shared
+ * {@code ForkJoinPool}.  Evaluators are not thread-safe, so each pool
+ * thread scores with its own copy of the evaluator, in its own
+ * transaction.  Small depths are scored by the calling thread.  Once
+ * the pair is past its deadline, the batches not yet scored are
+ * skipped and the pair is given up.
+ *
+ * @see PrioritizedNavigation
+ * @author chang
+ *
+ */
+public class BeamNavigation extends AbstractNavigation {
+
+	private static final Logger logger = Logger.getLogger(BeamNavigation.class.getName());
+
+	// The number of candidates scored by one task
+	private static final int BATCH_SIZE = 64;
+
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private final PathExpander<?> expander;
+	private final int width;
+	// Copies of the evaluator per thread, shared by all the copies of this navigation
+	private final ThreadLocal<Evaluator<Integer>> evaluators;
+
+	public BeamNavigation(PathExpander<?> expander, Evaluator<Integer> evaluator) {
+		this(expander, evaluator, Constants.BEAM_WIDTH);
+	}
+
+	public BeamNavigation(PathExpander<?> expander, Evaluator<Integer> evaluator, int width) {
+		if (width < 1) throw new IllegalArgumentException("beam width: " + width);
+
+		this.expander = expander;
+		this.width = width;
+
+		final Evaluator<Integer> prototype = evaluator.copy();
+		this.evaluators = new ThreadLocal<Evaluator<Integer>>() {
+			@Override
+			protected Evaluator<Integer> initialValue() {
+				synchronized (prototype) {
+					return prototype.copy();
+				}
+			}
+		};
+	}
+
+	public BeamNavigation(BeamNavigation another) {
+		this.expander = another.expander;
+		this.width = another.width;
+		this.evaluators = another.evaluators;
+	}
+
+	public Path findSinglePath(Node source, Node sink) {
+
+		lastMetadata = new Metadata();
+
+		if (source.equals(sink)) {
+			lastMetadata.totalNodesExplored++;
+			lastMetadata.paths++;
+			return PathNode.start(source).toPath();
+		}
+
+		GraphDatabaseService db = source.getGraphDatabase();
+		NavigationContext context = new NavigationContext(sink, lastMetadata.evaluatorCalls);
+		LongSet visitedNodes = nodeSet(0);
+
+		List<PathNode> beam = new ArrayList<PathNode>(1);
+		beam.add(PathNode.start(source));
+		visitedNodes.add(source.getId());
+
+		for (int depth = 0; !beam.isEmpty(); depth++) {
+			if (depth >= Constants.LIMIT_OF_DEPTH) {
+				logger.log(Level.FINE, source + " => " + sink + " length exceeds " + depth + "! Stop expanding.");
+				return null;
+			}
+
+			// the nodes of this depth, so each is a candidate once
+			LongSet candidateNodes = nodeSet(1);
+			List<PathNode> candidates = new ArrayList<PathNode>();
+
+			for (PathNode path : beam) {
+				if (isOutOfBudget()) return null;
+				
+				lastMetadata.totalNodesExplored++;
+
+				Node lastNode = path.endNode();
+				for (Relationship rel : expandPath(expander, path)) {
+					if (isOutOfBudget()) return null;
+					lastMetadata.rels++;
+					Node node = rel.getOtherNode(lastNode);
+
+					if (node.equals(sink)) {
+						lastMetadata.paths++;
+						return path.append(rel, node).toPath();
+					}
+
+					if (visitedNodes.contains(node.getId()) || !candidateNodes.add(node.getId())) continue;
+					candidates.add(path.append(rel, node));
+				}
+			}
+
+			int[] costs = score(db, candidates, context);
+			// batches are not scored past the deadline
+			if (isPastDeadline()) return null;
+
+			BoundedMinMaxHeap<PathNode> best = new BoundedMinMaxHeap<PathNode>(width);
+			for (int i = 0; i < costs.length; i++) {
+				best.add(costs[i], candidates.get(i));
+			}
+
+			beam = new ArrayList<PathNode>(best.size());
+			while (!best.isEmpty()) {
+				PathNode path = best.poll();
+				beam.add(path);
+				visitedNodes.add(path.endNode().getId());
+			}
+		}
+
+		return null;
+	}
+
+	private int[] score(GraphDatabaseService db, List<PathNode> candidates, NavigationContext context) {
+		int[] costs = new int[candidates.size()];
+		ScoringTask task = new ScoringTask(db, candidates, context, lastMetadata, costs, 0, costs.length);
+		if (costs.length <= BATCH_SIZE) {
+			// the calling thread is already in a transaction
+			task.score();
+		} else {
+			pool.invoke(task);
+		}
+		return costs;
+	}
+
+	private class ScoringTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final GraphDatabaseService db;
+		private final List<PathNode> candidates;
+		private final NavigationContext context;
+		private final Metadata metadata;
+		private final int[] costs;
+		private final int from;
+		private final int to;
+
+		ScoringTask(GraphDatabaseService db, List<PathNode> candidates, NavigationContext context, Metadata metadata, int[] costs, int from, int to) {
+			this.db = db;
+			this.candidates = candidates;
+			this.context = context;
+			this.metadata = metadata;
+			this.costs = costs;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= BATCH_SIZE) {
+				if (getBudget().isPastDeadline(metadata)) return;
+				try (Transaction tx = db.beginTx()) {
+					score();
+					tx.success();
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(
+						new ScoringTask(db, candidates, context, metadata, costs, from, middle),
+						new ScoringTask(db, candidates, context, metadata, costs, middle, to));
+			}
+		}
+
+		void score() {
+			int[] batch = evaluators.get().getCosts(candidates.subList(from, to), context);
+			System.arraycopy(batch, 0, costs, from, batch.length);
+		}
+	}
+
+}
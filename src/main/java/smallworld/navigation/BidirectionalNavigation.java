@@ -0,0 +1,172 @@
+package smallworld.navigation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+
+import smallworld.Constants;
+import smallworld.navigation.evaluator.Evaluator;
+import smallworld.util.BoundedMinMaxHeap;
+import smallworld.util.LongObjectMap;
+import smallworld.util.Utils;
+
+/**
+ * {@code PrioritizedNavigation} from both ends at once.
+ *
+ * A forward frontier starts from the source and a backward frontier
+ * starts from the sink, following the relationships of the reversed
+ * expander.  Each frontier keeps its own priority queue, scored by the
+ * {@code Evaluator} against the other endpoint, i.e., the forward
+ * frontier heads to the sink and the backward one heads to the source.
+ * The frontier with fewer queued paths explores next, so neither side
+ * gets stuck expanding a hub alone.
+ *
+ * The navigation stops as soon as a frontier reaches a node the other
+ * frontier has reached, and joins the two paths there.  Each side
+ * explores at most half of {@code Constants.LIMIT_OF_DEPTH}, so the
+ * joined path is not longer than that.
+ *
+ * @see PrioritizedNavigation
+ * @author chang
+ *
+ */
+public class BidirectionalNavigation extends AbstractNavigation {
+
+	private static final Logger logger = Logger.getLogger(BidirectionalNavigation.class.getName());
+
+	private final PathExpander<?> expander;
+	private final Evaluator<Integer> evaluator;
+
+	public BidirectionalNavigation(PathExpander<?> expander, Evaluator<Integer> evaluator) {
+		this.expander = expander;
+		this.evaluator = evaluator.copy();
+	}
+
+	public BidirectionalNavigation(BidirectionalNavigation another) {
+		this(another.expander, another.evaluator);
+	}
+
+	public Path findSinglePath(Node source, Node sink) {
+
+		lastMetadata = new Metadata();
+
+		if (source.equals(sink)) {
+			lastMetadata.totalNodesExplored++;
+			lastMetadata.paths++;
+			return PathNode.start(source).toPath();
+		}
+
+		Frontier forward = new Frontier(source, sink, expander, (Constants.LIMIT_OF_DEPTH + 1) / 2, true);
+		Frontier backward = new Frontier(sink, source, expander.reverse(), Constants.LIMIT_OF_DEPTH / 2, false);
+		forward.other = backward;
+		backward.other = forward;
+
+		while (!forward.queue.isEmpty() && !backward.queue.isEmpty()) {
+			if (isOutOfBudget()) return null;
+			
+			Frontier frontier = forward.queue.size() <= backward.queue.size() ? forward : backward;
+
+			lastMetadata.totalNodesExplored++;
+
+			PathNode[] meeting = frontier.expand();
+			if (meeting != null) {
+				lastMetadata.paths++;
+				return join(source, meeting[0], meeting[1]);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Join a path from the source and a path from the sink that end
+	 * at the same node.
+	 *
+	 * @param source
+	 * @param forward
+	 * @param backward
+	 * @return
+	 */
+	private static Path join(Node source, PathNode forward, PathNode backward) {
+		List<Relationship> rels = new ArrayList<Relationship>(forward.length() + backward.length());
+		for (Relationship rel : forward.relationships()) rels.add(rel);
+		for (Relationship rel : backward.reverseRelationships()) rels.add(rel);
+		return Utils.toPath(source, rels);
+	}
+
+	private class Frontier {
+		private final Node start;
+		private final NavigationContext context;
+		private final PathExpander<?> expander;
+		private final int limitOfDepth;
+		private final boolean forward;
+		// paths to all the nodes this frontier has queued, explored or not
+		private final LongObjectMap<PathNode> reached;
+		private final BoundedMinMaxHeap<PathNode> queue = new BoundedMinMaxHeap<PathNode>(Constants.PRORITY_QUEUE_MAX_SIZE);
+		private Frontier other;
+
+		Frontier(Node start, Node end, PathExpander<?> expander, int limitOfDepth, boolean forward) {
+			this.start = start;
+			this.context = new NavigationContext(end, lastMetadata.evaluatorCalls);
+			this.expander = expander;
+			this.limitOfDepth = limitOfDepth;
+			this.forward = forward;
+			this.reached = nodeMap(forward ? 0 : 1);
+
+			// the start is polled right away, so it needs no score
+			PathNode path = PathNode.start(start);
+			queue.add(0, path);
+			reached.put(start.getId(), path);
+		}
+
+		/**
+		 * Explore the best path in the queue.
+		 *
+		 * @return the path from the source and the path from the sink that meet, or null if they do not meet yet
+		 */
+		PathNode[] expand() {
+			PathNode currentPath = queue.poll();
+
+			if (currentPath.length() >= limitOfDepth) {
+				logger.log(Level.FINE, start + " => " + currentPath.endNode() + " => " + context.getTarget() + " length exceeds " + currentPath.length() + "! Stop expanding.");
+				return null;
+			}
+
+			List<PathNode> neighbors = new ArrayList<PathNode>();
+			
+			Node lastNode = currentPath.endNode();
+			for (Relationship rel : expandPath(expander, currentPath)) {
+				// given up by the loop of findSinglePath
+				if (isOutOfBudget()) return null;
+				lastMetadata.rels++;
+				Node node = rel.getOtherNode(lastNode);
+				if (reached.containsKey(node.getId())) continue;
+
+				PathNode path = currentPath.append(rel, node);
+
+				PathNode meeting = other.reached.get(node.getId());
+				if (meeting != null) {
+					return forward ? new PathNode[] { path, meeting } : new PathNode[] { meeting, path };
+				}
+
+				neighbors.add(path);
+				reached.put(node.getId(), path);
+			}
+
+			// score all the neighbors in one call
+			int[] costs = evaluator.getCosts(neighbors, context);
+			for (int i = 0; i < costs.length; i++) {
+				queue.add(costs[i], neighbors.get(i));
+			}
+
+			return null;
+		}
+	}
+
+}
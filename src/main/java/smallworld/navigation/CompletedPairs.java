@@ -0,0 +1,212 @@
+package smallworld.navigation;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The pairs of an experiment that are in its log, as a memory-mapped
+ * bitmap of serial numbers next to the log, with the totals of the
+ * logged pairs.
+ *
+ * The bitmap is updated after the log is flushed, and keeps the length
+ * the log had then.  A log of the same length is described by the
+ * bitmap, so resuming an experiment doesn't read the log; otherwise,
+ * e.g., when the log was written by an older version or the bitmap fell
+ * behind, the bitmap is rebuilt from the log.
+ *
+ * Only one thread may add pairs.
+ *
+ * @author chang
+ *
+ */
+public class CompletedPairs implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final String EXTENSION = ".done";
+	// changed with the layout, so older bitmaps are rebuilt
+	private static final int MAGIC = 0x50414953;
+
+	// magic, number of pairs, log length, completed, found, total path length, total nodes explored, timed out
+	private static final int MAGIC_OFFSET = 0;
+	private static final int NUMBER_OF_PAIRS_OFFSET = 4;
+	private static final int LOG_LENGTH_OFFSET = 8;
+	private static final int COMPLETED_OFFSET = 16;
+	private static final int FOUND_OFFSET = 24;
+	private static final int PATH_LENGTH_OFFSET = 32;
+	private static final int NODES_EXPLORED_OFFSET = 40;
+	private static final int TIMED_OUT_OFFSET = 48;
+	private static final int HEADER = 56;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final LongBuffer bits;
+	private final int numberOfPairs;
+
+	private long completed;
+	private long found;
+	private long totalPathLength;
+	private long totalNumberOfNodesExplored;
+	private long timedOut;
+
+	private CompletedPairs(File file, int numberOfPairs) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		this.numberOfPairs = numberOfPairs;
+		long size = HEADER + 8L * ((numberOfPairs + 63) / 64);
+		if (this.file.length() != size) this.file.setLength(size);
+		this.buffer = this.file.getChannel().map(MapMode.READ_WRITE, 0, size);
+		buffer.position(HEADER);
+		this.bits = buffer.slice().asLongBuffer();
+
+		this.completed = buffer.getLong(COMPLETED_OFFSET);
+		this.found = buffer.getLong(FOUND_OFFSET);
+		this.totalPathLength = buffer.getLong(PATH_LENGTH_OFFSET);
+		this.totalNumberOfNodesExplored = buffer.getLong(NODES_EXPLORED_OFFSET);
+		this.timedOut = buffer.getLong(TIMED_OUT_OFFSET);
+	}
+
+	private boolean isValid(long logLength) {
+		return buffer.getInt(MAGIC_OFFSET) == MAGIC
+				&& buffer.getInt(NUMBER_OF_PAIRS_OFFSET) == numberOfPairs
+				&& buffer.getLong(LOG_LENGTH_OFFSET) == logLength;
+	}
+
+	private void clear() {
+		for (int i = 0; i < bits.capacity(); i++) {
+			bits.put(i, 0L);
+		}
+		completed = found = totalPathLength = totalNumberOfNodesExplored = timedOut = 0;
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+		buffer.putInt(NUMBER_OF_PAIRS_OFFSET, numberOfPairs);
+	}
+
+	public static File fileOf(File log) {
+		return new File(log.getPath() + EXTENSION);
+	}
+
+	/**
+	 * Open the bitmap of a log, rebuilding it from the log if it doesn't
+	 * describe the log.
+	 *
+	 * @param log
+	 * @param format the format of the log
+	 * @param numberOfPairs
+	 * @return
+	 * @throws IOException
+	 */
+	public static CompletedPairs open(File log, ResultFormat format, int numberOfPairs) throws IOException {
+		CompletedPairs pairs = new CompletedPairs(fileOf(log), numberOfPairs);
+		long logLength = log.length();
+		if (pairs.isValid(logLength)) return pairs;
+
+		pairs.clear();
+		if (log.exists()) {
+			logger.info("Rebuilding completed pairs from " + log);
+			try (BufferedReader reader = new BufferedReader(new FileReader(log))) {
+				for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+					if (line.trim().length() > 0) pairs.add(format.parse(line));
+				}
+			}
+		}
+		pairs.commit(logLength);
+		return pairs;
+	}
+
+	/**
+	 * @param serialNumber from 1
+	 * @return whether the pair is logged
+	 */
+	public boolean contains(int serialNumber) {
+		int i = serialNumber - 1;
+		if (i < 0 || i >= numberOfPairs) return false;
+		return (bits.get(i >>> 6) & (1L << i)) != 0;
+	}
+
+	/**
+	 * Count a logged pair.  Not saved until {@code commit}.
+	 *
+	 * @param result
+	 */
+	public void add(NavigationResult result) {
+		int i = result.getSerialNumber() - 1;
+		if (i >= 0 && i < numberOfPairs) {
+			long word = bits.get(i >>> 6);
+			if ((word & (1L << i)) != 0) return;
+			bits.put(i >>> 6, word | (1L << i));
+		}
+
+		completed++;
+		if (result.isTimedOut()) {
+			timedOut++;
+		} else if (result.isPathFound()) {
+			found++;
+			totalPathLength += result.getPathLength();
+			totalNumberOfNodesExplored += result.getNumberOfNodesExplored();
+		}
+	}
+
+	/**
+	 * Save the totals with the length of the log they describe.
+	 *
+	 * @param logLength
+	 */
+	public void commit(long logLength) {
+		buffer.putLong(COMPLETED_OFFSET, completed);
+		buffer.putLong(FOUND_OFFSET, found);
+		buffer.putLong(PATH_LENGTH_OFFSET, totalPathLength);
+		buffer.putLong(NODES_EXPLORED_OFFSET, totalNumberOfNodesExplored);
+		buffer.putLong(TIMED_OUT_OFFSET, timedOut);
+		buffer.putLong(LOG_LENGTH_OFFSET, logLength);
+	}
+
+	public int getNumberOfPairs() {
+		return numberOfPairs;
+	}
+
+	/**
+	 * @return the number of pairs logged
+	 */
+	public long size() {
+		return completed;
+	}
+
+	public long getNumberOfPathsFound() {
+		return found;
+	}
+
+	public long getTotalPathLength() {
+		return totalPathLength;
+	}
+
+	public long getTotalNumberOfNodesExplored() {
+		return totalNumberOfNodesExplored;
+	}
+
+	/**
+	 * @return the number of pairs given up for the budget of the navigation
+	 */
+	public long getNumberOfPairsTimedOut() {
+		return timedOut;
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		file.close();
+	}
+
+	@Override
+	public String toString() {
+		return "CompletedPairs[" + completed + "/" + numberOfPairs + ", " + found + " found, " + timedOut + " timed out]";
+	}
+}
@@ -1,7 +1,5 @@
 package smallworld.navigation;
 
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -12,11 +10,19 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
 
 import smallworld.navigation.AbstractNavigation.Metadata;
 
 /**
  * A callable thread that search a path between a pair of nodes using a given navigation strategy.
+ * 
+ * The navigation is copied once per thread of the executor running the 
+ * callables, and the copy is reused for the next pairs of the thread.
+ * The nodes of the pair are looked up by the thread, when it is called,
+ * and the result is handed to a {@code ResultSink}.  The time taken,
+ * the relationships traversed and the costs computed by a
+ * {@code CountingEvaluator} for the pair are kept for the listeners.
  *  
  * @author chang
  *
@@ -28,17 +34,26 @@ public class ConcurrentNavigationThread implements Callable<Path> {
 	private final GraphDatabaseService graphDb;
 	private final int serialNumber;
 	private final PathFinder<Path> nav; 
-	private final Node source, sink;
-	private final FileWriter log;
+	private final long source, sink;
+	private final ResultSink results;
 	private Path path;
+	private long numberOfNodesExplored = 0;
+	private long numberOfRelationshipsTraversed = 0;
+	private long numberOfEvaluatorCalls = 0;
+	private long elapsedNanos = 0;
+	private boolean timedOut = false;
 	
-	public ConcurrentNavigationThread(GraphDatabaseService graphDb, int serial, PathFinder<Path> nav, Node source, Node sink, FileWriter log) {
+	public ConcurrentNavigationThread(GraphDatabaseService graphDb, int serial, PathFinder<Path> nav, Node source, Node sink, ResultSink results) {
+		this(graphDb, serial, nav, source.getId(), sink.getId(), results);
+	}
+	
+	public ConcurrentNavigationThread(GraphDatabaseService graphDb, int serial, PathFinder<Path> nav, long source, long sink, ResultSink results) {
 		this.graphDb = graphDb;
 		this.serialNumber = serial;
-		this.nav = AbstractNavigation.copy(nav);
+		this.nav = nav;
 		this.source = source;
 		this.sink = sink;
-		this.log = log;
+		this.results = results;
 	}
 	
 	public int getSerialNumber() {
@@ -47,19 +62,49 @@ public class ConcurrentNavigationThread implements Callable<Path> {
 
 	//@Deprecated
 	public long getNumberOfNodesExplored() {
-		if (nav instanceof AbstractNavigation) {
-			Metadata metadata = ((AbstractNavigation) nav).lastMetadata;
-			return metadata.getTotalNodesExplored();
-			//return ((AbstractNavigation) nav).numberOfVisitedNodes;
-		}
-		
-		return 0;
+		return numberOfNodesExplored;
+	}
+	
+	public long getNumberOfRelationshipsTraversed() {
+		return numberOfRelationshipsTraversed;
+	}
+	
+	public long getNumberOfEvaluatorCalls() {
+		return numberOfEvaluatorCalls;
+	}
+	
+	/**
+	 * @return whether the navigation gave up the pair for its budget
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+	
+	/**
+	 * @return the time taken to navigate the pair, including looking up its nodes
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
 	}
 	
 	@Override
 	public Path call() {
 		try (Transaction tx = graphDb.beginTx()) {
-			path = nav.findSinglePath(source, sink);
+			PathFinder<Path> nav = AbstractNavigation.copyForCurrentThread(this.nav);
+			long start = System.nanoTime();
+			path = nav.findSinglePath(graphDb.getNodeById(source), graphDb.getNodeById(sink));
+			elapsedNanos = System.nanoTime() - start;
+			if (nav instanceof AbstractNavigation) {
+				Metadata metadata = ((AbstractNavigation) nav).lastMetadata;
+				numberOfNodesExplored = metadata.getTotalNodesExplored();
+				numberOfRelationshipsTraversed = metadata.getNumberOfRelationshipsTraversed();
+				numberOfEvaluatorCalls = metadata.getNumberOfEvaluatorCalls();
+				timedOut = path == null && metadata.isOutOfBudget();
+			} else {
+				TraversalMetadata metadata = nav.metadata();
+				if (metadata != null) numberOfRelationshipsTraversed = metadata.getNumberOfRelationshipsTraversed();
+				if (nav instanceof TraversalNavigation) numberOfEvaluatorCalls = ((TraversalNavigation) nav).getNumberOfEvaluatorCalls();
+			}
 			
 			/*
 			if (this.updateBetweennessCentrality) {
@@ -68,37 +113,17 @@ public class ConcurrentNavigationThread implements Callable<Path> {
 			}
 			*/
 			
-			try {
-				if (path != null) {
-					//print.println(path.length() + ", " + this.getNumberOfNodesExplored() + ", " + path);
-					if (nav instanceof AbstractNavigation) {
-						AbstractNavigation abstractNav = (AbstractNavigation) nav;
-						log.write(new StringBuilder()
-								.append(serialNumber).append(",")
-								.append(source.getId()).append(",")
-								.append(sink.getId()).append(",")
-								.append(path.length()).append(",")
-								.append(this.getNumberOfNodesExplored()).append(",")
-								.append(abstractNav.getNumberOfVisitedNodesShorteningPaths()).append(",")
-								.append(abstractNav.getNumberOfVisitedNodes()).append(System.getProperty("line.separator")).toString());
-					} else {
-						log.write(new StringBuilder()
-						.append(serialNumber).append(",")
-						.append(source.getId()).append(",")
-						.append(sink.getId()).append(",")
-						.append(path.length()).append(",")
-						.append(this.getNumberOfNodesExplored()).append(System.getProperty("line.separator")).toString());
-					}
-				} else {
-					log.write(new StringBuilder()
-					.append(serialNumber).append(",")
-					.append(source.getId()).append(",")
-					.append(sink.getId()).append(System.getProperty("line.separator")).toString());
-				}
-				
-				log.flush();
-			} catch (IOException e) {
-				e.printStackTrace();
+			if (timedOut) {
+				results.write(NavigationResult.timedOut(serialNumber, source, sink, numberOfNodesExplored));
+			} else if (path == null) {
+				results.write(new NavigationResult(serialNumber, source, sink));
+			} else if (nav instanceof AbstractNavigation) {
+				AbstractNavigation abstractNav = (AbstractNavigation) nav;
+				results.write(new NavigationResult(serialNumber, source, sink, path.length(), numberOfNodesExplored,
+						abstractNav.getNumberOfVisitedNodesShorteningPaths(), abstractNav.getNumberOfVisitedNodes()));
+			} else {
+				results.write(new NavigationResult(serialNumber, source, sink, path.length(), numberOfNodesExplored,
+						NavigationResult.NONE, NavigationResult.NONE));
 			}
 			
 			return path;
@@ -0,0 +1,69 @@
+package smallworld.navigation;
+
+import java.util.concurrent.TimeUnit;
+
+import smallworld.navigation.AbstractNavigation.Metadata;
+
+/**
+ * How much a navigation may spend on a pair: the time since it started
+ * the pair, the nodes it explores and the relationships it traverses.
+ * A navigation that runs out of its budget gives up the pair, which is
+ * logged as timed out rather than as having no path.
+ *
+ * The limits are checked every time a navigation takes a node or
+ * traverses a relationship, so a hub does not overshoot the budget by
+ * its degree; the clock is read only once every {@code CLOCK_INTERVAL}
+ * checks, so a budget costs next to nothing.
+ *
+ * @see AbstractNavigation#isOutOfBudget()
+ * @author chang
+ *
+ */
+public class NavigationBudget {
+
+	public static final NavigationBudget UNLIMITED = new NavigationBudget(0, TimeUnit.MILLISECONDS, 0, 0);
+
+	private static final int CLOCK_INTERVAL = 16;
+
+	private final long timeoutNanos;
+	private final long maxNodes;
+	private final long maxRelationships;
+
+	/**
+	 * @param timeout of a pair, 0 for no limit
+	 * @param unit
+	 * @param maxNodes to explore, 0 for no limit
+	 * @param maxRelationships to traverse, 0 for no limit
+	 */
+	public NavigationBudget(long timeout, TimeUnit unit, long maxNodes, long maxRelationships) {
+		this.timeoutNanos = timeout > 0 ? unit.toNanos(timeout) : Long.MAX_VALUE;
+		this.maxNodes = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+		this.maxRelationships = maxRelationships > 0 ? maxRelationships : Long.MAX_VALUE;
+	}
+
+	boolean isExceeded(Metadata metadata) {
+		if (metadata.totalNodesExplored >= maxNodes || metadata.rels >= maxRelationships) return true;
+		if (timeoutNanos == Long.MAX_VALUE || ++metadata.checks % CLOCK_INTERVAL != 0) return false;
+		return System.nanoTime() - metadata.startNanos >= timeoutNanos;
+	}
+
+	/**
+	 * Reads the clock without counting a check, so that the threads
+	 * scoring for a navigation can call it.
+	 */
+	boolean isPastDeadline(Metadata metadata) {
+		return timeoutNanos != Long.MAX_VALUE && System.nanoTime() - metadata.startNanos >= timeoutNanos;
+	}
+
+	public boolean isUnlimited() {
+		return timeoutNanos == Long.MAX_VALUE && maxNodes == Long.MAX_VALUE && maxRelationships == Long.MAX_VALUE;
+	}
+
+	@Override
+	public String toString() {
+		return "NavigationBudget["
+				+ (timeoutNanos == Long.MAX_VALUE ? "no timeout" : TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms") + ", "
+				+ (maxNodes == Long.MAX_VALUE ? "any" : maxNodes) + " nodes, "
+				+ (maxRelationships == Long.MAX_VALUE ? "any" : maxRelationships) + " relationships]";
+	}
+}
@@ -0,0 +1,116 @@
+package smallworld.navigation;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.neo4j.graphdb.Node;
+
+import smallworld.data.inserter.exp.Interests;
+import smallworld.data.query.QueryCircles;
+import smallworld.data.query.QueryFeatures;
+
+/**
+ * What evaluators and features need to know about the target of one
+ * navigation, computed once per pair rather than once per candidate.
+ *
+ * A navigation creates a context in {@code findSinglePath} and hands it
+ * to {@code Evaluator.getCosts}; each candidate then does only its own
+ * half of the work, e.g., looks up its circles in the circle bitset of
+ * the target.  The target side is computed on first use, since most
+ * evaluators need only part of it.  A context may be shared by the
+ * threads scoring the candidates of the same navigation.
+ *
+ * The context also counts the costs computed for the pair, e.g., by a
+ * {@code CountingEvaluator}, whichever thread computes them.
+ *
+ * @author chang
+ *
+ */
+public class NavigationContext {
+
+	private final Node target;
+
+	private volatile BitSet circles = null;
+	private volatile Map<String, Object> properties = null;
+	private volatile Map<String, Double> interests = null;
+
+	private final LongAdder evaluatorCalls;
+
+	public NavigationContext(Node target) {
+		this(target, new LongAdder());
+	}
+
+	/**
+	 * @param target
+	 * @param evaluatorCalls the counter of the pair, e.g., shared by the contexts of both ends of a navigation
+	 */
+	public NavigationContext(Node target, LongAdder evaluatorCalls) {
+		this.target = target;
+		this.evaluatorCalls = evaluatorCalls;
+	}
+
+	public Node getTarget() {
+		return target;
+	}
+
+	/**
+	 * @see QueryCircles#getCircleIds(Node)
+	 * @return the circle ids of the target
+	 */
+	public BitSet getCircles() {
+		if (circles == null) {
+			synchronized (this) {
+				if (circles == null) circles = QueryCircles.getInstance().getCircleIds(target);
+			}
+		}
+		return circles;
+	}
+
+	/**
+	 * @see QueryFeatures#getFeatures(Node)
+	 * @return the properties of the target
+	 */
+	public Map<String, Object> getProperties() {
+		if (properties == null) {
+			synchronized (this) {
+				if (properties == null) properties = QueryFeatures.getFeatures(target);
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * @see Interests#getInterestVector(Node)
+	 * @return the interests of the target, weighted
+	 */
+	public Map<String, Double> getInterests() {
+		if (interests == null) {
+			synchronized (this) {
+				if (interests == null) interests = Interests.getInterestVector(target);
+			}
+		}
+		return interests;
+	}
+
+	/**
+	 * Count costs computed for the pair.
+	 *
+	 * @param calls
+	 */
+	public void countEvaluatorCalls(int calls) {
+		evaluatorCalls.add(calls);
+	}
+
+	/**
+	 * @return the costs computed for the pair so far
+	 */
+	public long getNumberOfEvaluatorCalls() {
+		return evaluatorCalls.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "NavigationContext[" + target + "]";
+	}
+}
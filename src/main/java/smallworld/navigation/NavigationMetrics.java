@@ -0,0 +1,307 @@
+package smallworld.navigation;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import smallworld.util.Histogram;
+
+/**
+ * Counters and histograms of the pairs navigated by a navigation with an
+ * evaluator: the time taken by each pair, the length of its path, the
+ * nodes it explored, the relationships it traversed and the costs it
+ * asked the evaluator for.  Pairs given up for the budget of the
+ * navigation are counted apart, and also in the histograms.
+ *
+ * There is one instance per navigation and evaluator, registered as a
+ * JMX bean named {@code smallworld:type=NavigationMetrics,navigator=...,evaluator=...}
+ * so a running experiment can be watched, e.g., with jconsole.
+ * {@code appendSnapshot} adds a line of the current metrics to a CSV
+ * file.  Recording takes no locks.
+ *
+ * @see Histogram
+ * @author chang
+ *
+ */
+public class NavigationMetrics implements NavigationMetricsMBean {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final ConcurrentMap<String, NavigationMetrics> INSTANCES = new ConcurrentHashMap<String, NavigationMetrics>();
+
+	private static final String CSV_HEADER = "time,navigator,evaluator,pairs,paths,timed_out,"
+			+ "time_us_p50,time_us_p99,time_us_max,"
+			+ "path_length_p50,path_length_p99,path_length_max,"
+			+ "nodes_explored_p50,nodes_explored_p99,nodes_explored_max,"
+			+ "relationships_traversed_p50,relationships_traversed_p99,relationships_traversed_max,"
+			+ "evaluator_calls_p50,evaluator_calls_p99,evaluator_calls_max";
+
+	private final String navigator;
+	private final String evaluator;
+
+	private final LongAdder pairs = new LongAdder();
+	private final LongAdder pathsFound = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+	private final LongAdder nodesExplored = new LongAdder();
+	private final LongAdder relationshipsTraversed = new LongAdder();
+	private final LongAdder evaluatorCalls = new LongAdder();
+
+	private final Histogram timeHistogram = new Histogram();
+	private final Histogram pathLengthHistogram = new Histogram();
+	private final Histogram nodesExploredHistogram = new Histogram();
+	private final Histogram relationshipsTraversedHistogram = new Histogram();
+	private final Histogram evaluatorCallsHistogram = new Histogram();
+
+	private NavigationMetrics(String navigator, String evaluator) {
+		this.navigator = navigator;
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Get the metrics of a navigation and an evaluator, registering them
+	 * with JMX the first time.
+	 *
+	 * @param navigator
+	 * @param evaluator
+	 * @return
+	 */
+	public static NavigationMetrics getInstance(String navigator, String evaluator) {
+		String key = navigator + "/" + evaluator;
+		NavigationMetrics metrics = INSTANCES.get(key);
+		if (metrics != null) return metrics;
+
+		metrics = new NavigationMetrics(navigator, evaluator);
+		NavigationMetrics existing = INSTANCES.putIfAbsent(key, metrics);
+		if (existing != null) return existing;
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(metrics, metrics.getObjectName());
+		} catch (JMException e) {
+			logger.warn("Error registering metrics of " + key, e);
+		}
+		return metrics;
+	}
+
+	public ObjectName getObjectName() throws JMException {
+		return new ObjectName("smallworld:type=NavigationMetrics,navigator=" + ObjectName.quote(navigator) + ",evaluator=" + ObjectName.quote(evaluator));
+	}
+
+	/**
+	 * Count a pair.
+	 *
+	 * @param nanos the time taken
+	 * @param pathLength or {@code NavigationResult.NONE} if no path is found
+	 * @param nodesExplored
+	 * @param relationshipsTraversed
+	 * @param evaluatorCalls
+	 * @param timedOut whether the pair was given up
+	 */
+	public void record(long nanos, int pathLength, long nodesExplored, long relationshipsTraversed, long evaluatorCalls, boolean timedOut) {
+		pairs.increment();
+		if (timedOut) this.timedOut.increment();
+		timeHistogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+		if (pathLength != NavigationResult.NONE) {
+			pathsFound.increment();
+			pathLengthHistogram.record(pathLength);
+		}
+		this.nodesExplored.add(nodesExplored);
+		nodesExploredHistogram.record(nodesExplored);
+		this.relationshipsTraversed.add(relationshipsTraversed);
+		relationshipsTraversedHistogram.record(relationshipsTraversed);
+		this.evaluatorCalls.add(evaluatorCalls);
+		evaluatorCallsHistogram.record(evaluatorCalls);
+	}
+
+	/**
+	 * Add a line of the current metrics to a CSV file, starting the file
+	 * with a header.
+	 *
+	 * @param csv
+	 * @throws IOException
+	 */
+	public void appendSnapshot(File csv) throws IOException {
+		boolean header = !csv.exists() || csv.length() == 0;
+		try (Writer writer = new FileWriter(csv, true)) {
+			if (header) writer.write(CSV_HEADER + "\n");
+			StringBuilder line = new StringBuilder()
+					.append(System.currentTimeMillis()).append(",")
+					.append(navigator).append(",")
+					.append(evaluator).append(",")
+					.append(pairs.sum()).append(",")
+					.append(pathsFound.sum()).append(",")
+					.append(timedOut.sum());
+			for (Histogram histogram : new Histogram[] { timeHistogram, pathLengthHistogram, nodesExploredHistogram, relationshipsTraversedHistogram, evaluatorCallsHistogram }) {
+				line.append(",").append(histogram.getPercentile(50))
+					.append(",").append(histogram.getPercentile(99))
+					.append(",").append(histogram.getMax());
+			}
+			writer.write(line.append("\n").toString());
+		}
+	}
+
+	/**
+	 * Print the percentiles of the pairs.
+	 */
+	public void print() {
+		System.out.println("[NavigationMetrics] " + navigator + "/" + evaluator + ": " + pairs.sum() + " pairs, " + pathsFound.sum() + " paths found, " + timedOut.sum() + " timed out");
+		System.out.println("[NavigationMetrics] TIME (us): " + timeHistogram);
+		System.out.println("[NavigationMetrics] PATH LENGTH: " + pathLengthHistogram);
+		System.out.println("[NavigationMetrics] NODES EXPLORED: " + nodesExploredHistogram);
+		System.out.println("[NavigationMetrics] RELATIONSHIPS TRAVERSED: " + relationshipsTraversedHistogram);
+		System.out.println("[NavigationMetrics] EVALUATOR CALLS: " + evaluatorCallsHistogram);
+	}
+
+	public Histogram getTimeHistogram() {
+		return timeHistogram;
+	}
+
+	public Histogram getPathLengthHistogram() {
+		return pathLengthHistogram;
+	}
+
+	public Histogram getNodesExploredHistogram() {
+		return nodesExploredHistogram;
+	}
+
+	public Histogram getRelationshipsTraversedHistogram() {
+		return relationshipsTraversedHistogram;
+	}
+
+	public Histogram getEvaluatorCallsHistogram() {
+		return evaluatorCallsHistogram;
+	}
+
+	@Override
+	public String getNavigator() {
+		return navigator;
+	}
+
+	@Override
+	public String getEvaluator() {
+		return evaluator;
+	}
+
+	@Override
+	public long getNumberOfPairs() {
+		return pairs.sum();
+	}
+
+	@Override
+	public long getNumberOfPathsFound() {
+		return pathsFound.sum();
+	}
+
+	@Override
+	public long getNumberOfPairsTimedOut() {
+		return timedOut.sum();
+	}
+
+	@Override
+	public long getNumberOfNodesExplored() {
+		return nodesExplored.sum();
+	}
+
+	@Override
+	public long getNumberOfRelationshipsTraversed() {
+		return relationshipsTraversed.sum();
+	}
+
+	@Override
+	public long getNumberOfEvaluatorCalls() {
+		return evaluatorCalls.sum();
+	}
+
+	@Override
+	public long getTimeMicrosP50() {
+		return timeHistogram.getPercentile(50);
+	}
+
+	@Override
+	public long getTimeMicrosP99() {
+		return timeHistogram.getPercentile(99);
+	}
+
+	@Override
+	public long getTimeMicrosMax() {
+		return timeHistogram.getMax();
+	}
+
+	@Override
+	public long getPathLengthP50() {
+		return pathLengthHistogram.getPercentile(50);
+	}
+
+	@Override
+	public long getPathLengthP99() {
+		return pathLengthHistogram.getPercentile(99);
+	}
+
+	@Override
+	public long getPathLengthMax() {
+		return pathLengthHistogram.getMax();
+	}
+
+	@Override
+	public long getNodesExploredP50() {
+		return nodesExploredHistogram.getPercentile(50);
+	}
+
+	@Override
+	public long getNodesExploredP99() {
+		return nodesExploredHistogram.getPercentile(99);
+	}
+
+	@Override
+	public long getNodesExploredMax() {
+		return nodesExploredHistogram.getMax();
+	}
+
+	@Override
+	public long getRelationshipsTraversedP50() {
+		return relationshipsTraversedHistogram.getPercentile(50);
+	}
+
+	@Override
+	public long getRelationshipsTraversedP99() {
+		return relationshipsTraversedHistogram.getPercentile(99);
+	}
+
+	@Override
+	public long getRelationshipsTraversedMax() {
+		return relationshipsTraversedHistogram.getMax();
+	}
+
+	@Override
+	public long getEvaluatorCallsP50() {
+		return evaluatorCallsHistogram.getPercentile(50);
+	}
+
+	@Override
+	public long getEvaluatorCallsP99() {
+		return evaluatorCallsHistogram.getPercentile(99);
+	}
+
+	@Override
+	public long getEvaluatorCallsMax() {
+		return evaluatorCallsHistogram.getMax();
+	}
+
+	@Override
+	public String toString() {
+		return "NavigationMetrics[" + navigator + "/" + evaluator + ", " + pairs.sum() + " pairs]";
+	}
+}
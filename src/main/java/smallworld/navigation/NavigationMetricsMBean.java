@@ -0,0 +1,57 @@
+package smallworld.navigation;
+
+/**
+ * The metrics of a navigation, as attributes of a JMX bean.
+ *
+ * @see NavigationMetrics
+ * @author chang
+ *
+ */
+public interface NavigationMetricsMBean {
+
+	String getNavigator();
+
+	String getEvaluator();
+
+	long getNumberOfPairs();
+
+	long getNumberOfPathsFound();
+
+	long getNumberOfPairsTimedOut();
+
+	long getNumberOfNodesExplored();
+
+	long getNumberOfRelationshipsTraversed();
+
+	long getNumberOfEvaluatorCalls();
+
+	long getTimeMicrosP50();
+
+	long getTimeMicrosP99();
+
+	long getTimeMicrosMax();
+
+	long getPathLengthP50();
+
+	long getPathLengthP99();
+
+	long getPathLengthMax();
+
+	long getNodesExploredP50();
+
+	long getNodesExploredP99();
+
+	long getNodesExploredMax();
+
+	long getRelationshipsTraversedP50();
+
+	long getRelationshipsTraversedP99();
+
+	long getRelationshipsTraversedMax();
+
+	long getEvaluatorCallsP50();
+
+	long getEvaluatorCallsP99();
+
+	long getEvaluatorCallsMax();
+}
@@ -0,0 +1,113 @@
+package smallworld.navigation;
+
+/**
+ * The outcome of navigating a pair, as written to the log of an experiment.
+ *
+ * @author chang
+ *
+ */
+public class NavigationResult {
+
+	// no path found, or not counted by the navigation
+	public static final int NONE = -1;
+
+	private final int serialNumber;
+	private final long source;
+	private final long sink;
+	private final int pathLength;
+	private final long numberOfNodesExplored;
+	private final int numberOfVisitedNodesShorteningPaths;
+	private final int numberOfVisitedNodes;
+	private final boolean timedOut;
+
+	/**
+	 * A pair with no path.
+	 */
+	public NavigationResult(int serialNumber, long source, long sink) {
+		this(serialNumber, source, sink, NONE, 0, NONE, NONE);
+	}
+
+	/**
+	 * A pair given up by a navigation out of its budget, so whether it
+	 * has a path is unknown.
+	 *
+	 * @param serialNumber
+	 * @param source
+	 * @param sink
+	 * @param numberOfNodesExplored before giving up
+	 * @return
+	 */
+	public static NavigationResult timedOut(int serialNumber, long source, long sink, long numberOfNodesExplored) {
+		return new NavigationResult(serialNumber, source, sink, NONE, numberOfNodesExplored, NONE, NONE, true);
+	}
+
+	/**
+	 * @param serialNumber
+	 * @param source
+	 * @param sink
+	 * @param pathLength {@code NONE} if no path is found
+	 * @param numberOfNodesExplored
+	 * @param numberOfVisitedNodesShorteningPaths {@code NONE} if not counted
+	 * @param numberOfVisitedNodes {@code NONE} if not counted
+	 */
+	public NavigationResult(int serialNumber, long source, long sink, int pathLength, long numberOfNodesExplored,
+			int numberOfVisitedNodesShorteningPaths, int numberOfVisitedNodes) {
+		this(serialNumber, source, sink, pathLength, numberOfNodesExplored, numberOfVisitedNodesShorteningPaths, numberOfVisitedNodes, false);
+	}
+
+	private NavigationResult(int serialNumber, long source, long sink, int pathLength, long numberOfNodesExplored,
+			int numberOfVisitedNodesShorteningPaths, int numberOfVisitedNodes, boolean timedOut) {
+		this.serialNumber = serialNumber;
+		this.source = source;
+		this.sink = sink;
+		this.pathLength = pathLength;
+		this.numberOfNodesExplored = numberOfNodesExplored;
+		this.numberOfVisitedNodesShorteningPaths = numberOfVisitedNodesShorteningPaths;
+		this.numberOfVisitedNodes = numberOfVisitedNodes;
+		this.timedOut = timedOut;
+	}
+
+	public int getSerialNumber() {
+		return serialNumber;
+	}
+
+	public long getSource() {
+		return source;
+	}
+
+	public long getSink() {
+		return sink;
+	}
+
+	public boolean isPathFound() {
+		return pathLength != NONE;
+	}
+
+	/**
+	 * @return whether the pair was given up, rather than having no path
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	public int getPathLength() {
+		return pathLength;
+	}
+
+	public long getNumberOfNodesExplored() {
+		return numberOfNodesExplored;
+	}
+
+	public int getNumberOfVisitedNodesShorteningPaths() {
+		return numberOfVisitedNodesShorteningPaths;
+	}
+
+	public int getNumberOfVisitedNodes() {
+		return numberOfVisitedNodes;
+	}
+
+	@Override
+	public String toString() {
+		return ResultFormat.CSV.format(this);
+	}
+}
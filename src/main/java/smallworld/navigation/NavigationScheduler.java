@@ -0,0 +1,146 @@
+package smallworld.navigation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Runs {@code ConcurrentNavigationThread}s on a fixed number of workers
+ * through a bounded queue.
+ *
+ * {@code submit} blocks while the queue is full, so pairs can be
+ * generated as fast as they are navigated without holding all of them
+ * in memory.  Each worker keeps one transaction open for its lifetime;
+ * the transaction of a navigation is nested in it, which is nearly free.
+ * Navigations are copied once per worker, see
+ * {@code AbstractNavigation.copyForCurrentThread}.
+ *
+ * {@code stop} discards the queued navigations and waits for the running
+ * ones, e.g., on interrupt, so the log ends with complete pairs and the
+ * experiment can be resumed.
+ *
+ * @author chang
+ *
+ */
+public class NavigationScheduler {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private final ThreadPoolExecutor executor;
+	// queued + running; acquired by submit, released when a navigation is done
+	private final Semaphore slots;
+	private volatile boolean stopped = false;
+
+	/**
+	 * @param graphDb
+	 * @param numberOfThreads
+	 * @param queueCapacity the number of navigations waiting for a worker
+	 */
+	public NavigationScheduler(final GraphDatabaseService graphDb, int numberOfThreads, int queueCapacity) {
+		this.slots = new Semaphore(numberOfThreads + queueCapacity);
+		this.executor = new ThreadPoolExecutor(
+				numberOfThreads, numberOfThreads,
+				0L, TimeUnit.MILLISECONDS,
+				// a worker may not be taking the next navigation yet when its slot is released,
+				// so the queue has room for all the slots and never rejects
+				new ArrayBlockingQueue<Runnable>(numberOfThreads + queueCapacity),
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(final Runnable worker) {
+						return new Thread(new Runnable() {
+							@Override
+							public void run() {
+								// read only, so it is rolled back rather than committed
+								try (Transaction tx = graphDb.beginTx()) {
+									worker.run();
+								}
+							}
+						}, "navigation-" + count.incrementAndGet());
+					}
+				});
+	}
+
+	/**
+	 * Queue a navigation, waiting for room in the queue.
+	 *
+	 * @param navigation
+	 * @return false if the scheduler is stopped and the navigation is not queued
+	 * @throws InterruptedException
+	 */
+	public boolean submit(final ConcurrentNavigationThread navigation) throws InterruptedException {
+		if (stopped) return false;
+		slots.acquire();
+		if (stopped) {
+			slots.release();
+			return false;
+		}
+
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						navigation.call();
+					} catch (RuntimeException e) {
+						logger.error("Error navigating pair " + navigation.getSerialNumber(), e);
+					} finally {
+						slots.release();
+					}
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			// stopped in the meantime
+			slots.release();
+			return false;
+		}
+	}
+
+	/**
+	 * Accept no more navigations and wait for the queued ones.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		executor.shutdown();
+		while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+			logger.debug(executor.getActiveCount() + " running, " + executor.getQueue().size() + " queued");
+		}
+	}
+
+	/**
+	 * Discard the queued navigations and wait for the running ones.
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return whether the running navigations are done within the timeout
+	 * @throws InterruptedException
+	 */
+	public boolean stop(long timeout, TimeUnit unit) throws InterruptedException {
+		stopped = true;
+		List<Runnable> discarded = new ArrayList<Runnable>();
+		executor.getQueue().drainTo(discarded);
+		slots.release(discarded.size());
+		executor.shutdown();
+
+		logger.info("Stopping navigations: " + discarded.size() + " discarded, " + executor.getActiveCount() + " running");
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	public boolean isStopped() {
+		return stopped;
+	}
+}
@@ -0,0 +1,172 @@
+package smallworld.navigation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.Paths;
+
+import smallworld.util.Utils;
+
+/**
+ * A path that shares its prefix with the path it extends.
+ *
+ * Each {@code PathNode} keeps a pointer to its parent and the last hop
+ * only, so extending a path by one relationship costs one object, no matter
+ * how long the path is.  {@code startNode}, {@code endNode},
+ * {@code lastRelationship} and {@code length} take constant time; iterating
+ * the relationships or nodes walks the parents.
+ *
+ * Navigations use it internally for the paths in their queues and stacks,
+ * and turn only the path they return into a {@code PathImpl} with
+ * {@code toPath}.
+ *
+ * @author chang
+ *
+ */
+public class PathNode implements Path {
+
+	private final PathNode parent;
+	private final Node start;
+	private final Node end;
+	private final Relationship last;
+	private final int length;
+
+	private PathNode(PathNode parent, Node start, Node end, Relationship last, int length) {
+		this.parent = parent;
+		this.start = start;
+		this.end = end;
+		this.last = last;
+		this.length = length;
+	}
+
+	/**
+	 * Create a path with a single node.
+	 *
+	 * @param start
+	 * @return
+	 */
+	public static PathNode start(Node start) {
+		return new PathNode(null, start, start, null, 0);
+	}
+
+	/**
+	 * Extend this path by one relationship.
+	 *
+	 * @param rel a relationship of the end node of this path
+	 * @param node the other node of the relationship
+	 * @return the extended path
+	 */
+	public PathNode append(Relationship rel, Node node) {
+		return new PathNode(this, start, node, rel, length + 1);
+	}
+
+	/**
+	 * Extend this path by one relationship.
+	 *
+	 * @param rel a relationship of the end node of this path
+	 * @return the extended path
+	 */
+	public PathNode append(Relationship rel) {
+		return append(rel, rel.getOtherNode(end));
+	}
+
+	/**
+	 * @return the path without its last relationship, or null if the path has a single node
+	 */
+	public PathNode parent() {
+		return parent;
+	}
+
+	/**
+	 * Build a standalone Neo4J path.
+	 *
+	 * @return
+	 */
+	public Path toPath() {
+		return Utils.toPath(start, relationships());
+	}
+
+	@Override
+	public Node startNode() {
+		return start;
+	}
+
+	@Override
+	public Node endNode() {
+		return end;
+	}
+
+	@Override
+	public Relationship lastRelationship() {
+		return last;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public Iterable<Relationship> relationships() {
+		List<Relationship> rels = Arrays.asList(reverseRelationshipArray());
+		Collections.reverse(rels);
+		return rels;
+	}
+
+	@Override
+	public Iterable<Relationship> reverseRelationships() {
+		return Arrays.asList(reverseRelationshipArray());
+	}
+
+	@Override
+	public Iterable<Node> nodes() {
+		List<Node> nodes = Arrays.asList(reverseNodeArray());
+		Collections.reverse(nodes);
+		return nodes;
+	}
+
+	@Override
+	public Iterable<Node> reverseNodes() {
+		return Arrays.asList(reverseNodeArray());
+	}
+
+	@Override
+	public Iterator<PropertyContainer> iterator() {
+		PropertyContainer[] entities = new PropertyContainer[length * 2 + 1];
+		int i = entities.length - 1;
+		for (PathNode p = this; p != null; p = p.parent) {
+			entities[i--] = p.end;
+			if (p.last != null) entities[i--] = p.last;
+		}
+		return Arrays.asList(entities).iterator();
+	}
+
+	private Relationship[] reverseRelationshipArray() {
+		Relationship[] rels = new Relationship[length];
+		int i = 0;
+		for (PathNode p = this; p.parent != null; p = p.parent) {
+			rels[i++] = p.last;
+		}
+		return rels;
+	}
+
+	private Node[] reverseNodeArray() {
+		Node[] nodes = new Node[length + 1];
+		int i = 0;
+		for (PathNode p = this; p != null; p = p.parent) {
+			nodes[i++] = p.end;
+		}
+		return nodes;
+	}
+
+	@Override
+	public String toString() {
+		return Paths.defaultPathToString(this);
+	}
+}
@@ -6,10 +6,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Deque;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphdb.Direction;
@@ -20,7 +18,6 @@ import org.neo4j.graphdb.PathExpanders;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
-import org.neo4j.graphdb.traversal.BranchState;
 import org.neo4j.helpers.collection.PrefetchingIterator;
 
 import smallworld.Constants;
@@ -29,9 +26,7 @@ import smallworld.data.query.Query;
 import smallworld.navigation.evaluator.DegreeEvaluator;
 import smallworld.navigation.evaluator.Evaluator;
 import smallworld.navigation.feature.DistanceMeasure;
-import smallworld.util.Utils;
-
-import com.google.common.collect.Lists;
+import smallworld.util.LongSet;
 
 /**
  * DFS Navigation but exploring neighbors of a node in a prioritized order.
@@ -54,11 +49,11 @@ import com.google.common.collect.Lists;
  *
  */
 @Deprecated
-public class PrioritizedDFSNavigation extends AbstractNavigation implements Comparator<Path> {
+public class PrioritizedDFSNavigation extends AbstractNavigation {
 
 	private final PathExpander<?> expander;
 	private final Evaluator<Integer> evaluator;
-	private Node currentSink = null;
+	private NavigationContext currentContext = null;
 
 	/**
 	 * Instantiate a navigation by specifying a {@code PathExpander} and a {@code Evaluator}.
@@ -80,43 +75,45 @@ public class PrioritizedDFSNavigation extends AbstractNavigation implements Comp
 		if (null == source || null == sink) return null;
 		
 		lastMetadata = new Metadata();
-		currentSink = sink;
+		currentContext = new NavigationContext(sink, lastMetadata.evaluatorCalls);
 		Doer doer = new Doer(source, sink);
 		while (doer.hasNext()) {
-			Path p = doer.next();
+			PathNode p = doer.next();
 			
 			lastMetadata.totalNodesExplored++;
 			
 			if (p.endNode().equals(sink)) {
 				lastMetadata.paths++;
-				return p;
+				return p.toPath();
 			}
 			
 		}
 		return null;
 	}
 
-	private class Doer extends PrefetchingIterator<Path> implements Path {
+	private class Doer extends PrefetchingIterator<PathNode> implements Path {
 		private final Node start;
 		private final Node end;
 		private Node lastNode;
 		private boolean expand;
-		private final Set<Long> visitedNodes = new HashSet<Long>();
-		private final Set<Long> stackNodes = new HashSet<Long>();
-		private Path currentPath = null;
+		private final LongSet visitedNodes = nodeSet(0);
+		private final LongSet stackNodes = nodeSet(1);
+		private PathNode currentPath = null;
 		//private final Stack<Path> stack = new Stack<Path>();
-		private final Deque<Path> stack = new ArrayDeque<Path>();
+		private final Deque<PathNode> stack = new ArrayDeque<PathNode>();
 		
 		Doer(Node start, Node end) {
 			this.start = start;
 			this.end = end;
 
-			stack.push(Utils.toPath(start, null));
+			stack.push(PathNode.start(start));
 			stackNodes.add(start.getId());
 		}
 
 		@Override
-		protected Path fetchNextOrNull() {
+		protected PathNode fetchNextOrNull() {
+			if (isOutOfBudget()) return null;
+			
 			// FIXME
 			if (!this.expand) {
 				this.expand = true;
@@ -124,7 +121,7 @@ public class PrioritizedDFSNavigation extends AbstractNavigation implements Comp
 				expand();
 			}
 
-			if (stack.isEmpty()) return null;
+			if (isOutOfBudget() || stack.isEmpty()) return null;
 			
 			currentPath = stack.pop();
 			
@@ -134,7 +131,6 @@ public class PrioritizedDFSNavigation extends AbstractNavigation implements Comp
 			return currentPath;
 		}
 
-		@SuppressWarnings("unchecked")
 		private void expand() {
 			if (currentPath.length() >= Constants.LIMIT_OF_DEPTH) {
 				// System.err.println(start + " => " + currentPath.endNode() + " => " + end + " length exceeds " + currentPath.length() + "! Stop expanding.");
@@ -143,14 +139,12 @@ public class PrioritizedDFSNavigation extends AbstractNavigation implements Comp
 			
 			visitedNodes.add(currentPath.endNode().getId());
 			
-			// Construct a list of relationships in the current path
-			List<Relationship> rels = Lists.newArrayList(currentPath.relationships());
-			
 			// cannot use TreeSet because Path is not a properly implemented object,
 			// so when distinct paths can be considered duplicate
-			List<Path> neighbors = new ArrayList<Path>();
+			List<PathNode> neighbors = new ArrayList<PathNode>();
 			
-			for (Relationship rel : expander.expand(this, BranchState.NO_STATE)) {
+			for (Relationship rel : expandPath(expander, this)) {
+				if (isOutOfBudget()) return;
 				lastMetadata.rels++;
 				Node node = rel.getOtherNode(currentPath.endNode());
 				if (visitedNodes.contains(node.getId())) {
@@ -158,8 +152,7 @@ public class PrioritizedDFSNavigation extends AbstractNavigation implements Comp
 				}
 
 				if (!stackNodes.contains(node.getId())) {
-					rels.add(rel);
-					Path path = Utils.toPath(start, rels);
+					PathNode path = currentPath.append(rel, node);
 					
 					if (!neighbors.add(path)) System.err.println("duplicate");
 					stackNodes.add(node.getId());
@@ -168,17 +161,24 @@ public class PrioritizedDFSNavigation extends AbstractNavigation implements Comp
 						stack.push(path);
 						return;
 					}
-					rels.remove(rels.size() - 1);
 				}
 				
 			}
 			
 			
-			Path[] paths = neighbors.toArray(new Path[0]);
-			Arrays.sort(paths, PrioritizedDFSNavigation.this);
+			// score all the neighbors in one call, then order them by cost
+			final int[] costs = evaluator.getCosts(neighbors, currentContext);
+			Integer[] order = new Integer[costs.length];
+			for (int i = 0; i < order.length; i++) order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer i1, Integer i2) {
+					return Integer.compare(costs[i1], costs[i2]);
+				}
+			});
 			
-			for (int i = paths.length - 1; i >= 0; i--) {
-				stack.push(paths[i]);
+			for (int i = order.length - 1; i >= 0; i--) {
+				stack.push(neighbors.get(order[i]));
 			}
 		}
 
@@ -229,11 +229,6 @@ public class PrioritizedDFSNavigation extends AbstractNavigation implements Comp
 
 	}
 
-	@Override
-	public int compare(Path p1, Path p2) {
-		return evaluator.getCost(p1, currentSink) - evaluator.getCost(p2, currentSink);
-	}
-
 	
 	public static void main(String[] args) throws IOException {
 		
@@ -250,7 +245,7 @@ public class PrioritizedDFSNavigation extends AbstractNavigation implements Comp
 		PathFinder<Path> nav = new PrioritizedDFSNavigation(PathExpanders.forTypeAndDirection(type, direction), new DegreeEvaluator(type, direction));
 		
 		Query q = new Query("neo4j/" + dataset);
-		nav.findSinglePath(q.cypherGetNode(373654), q.cypherGetNode(1557));
+		nav.findSinglePath(q.getNode(373654), q.getNode(1557));
 		
 	}
 }
@@ -1,10 +1,8 @@
 package smallworld.navigation;
 
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,15 +11,12 @@ import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.PathExpander;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
-import org.neo4j.graphdb.traversal.BranchState;
 import org.neo4j.helpers.collection.PrefetchingIterator;
 
 import smallworld.Constants;
 import smallworld.navigation.evaluator.Evaluator;
-import smallworld.util.Utils;
-
-import com.google.common.collect.Lists;
-import com.google.common.collect.MinMaxPriorityQueue;
+import smallworld.util.BoundedMinMaxHeap;
+import smallworld.util.LongSet;
 
 /**
  * DFS Navigation but exploring nodes in a prioritized order.
@@ -34,18 +29,23 @@ import com.google.common.collect.MinMaxPriorityQueue;
  * only the neighbors of a particular nodes.  Once these neighbors are 
  * pushed into the stack, the order of them remain unchanged.  
  * 
+ * Each path is scored once, when it is put into the priority queue,
+ * together with the other neighbors of the same node.
+ * The queue keeps at most {@code Constants.PRORITY_QUEUE_MAX_SIZE} paths
+ * and drops the lowest value ones beyond that.
+ * 
  * @see AbstractNavigation
  * @see PrioritizedDFSNavigation
  * @author chang
  *
  */
-public class PrioritizedNavigation extends AbstractNavigation implements Comparator<Path> {
+public class PrioritizedNavigation extends AbstractNavigation {
 	
 	private static final Logger logger = Logger.getLogger(PrioritizedNavigation.class.getName());
 
 	private final PathExpander<?> expander;
 	private final Evaluator<Integer> evaluator;
-	private Node currentSink = null;
+	private NavigationContext currentContext = null;
 
 	public PrioritizedNavigation(PathExpander<?> expander, Evaluator<Integer> evaluator) {
 		this.expander = expander;
@@ -59,45 +59,46 @@ public class PrioritizedNavigation extends AbstractNavigation implements Compara
 	public Path findSinglePath(Node source, Node sink) {
 
 		lastMetadata = new Metadata();
-		currentSink = sink;
+		currentContext = new NavigationContext(sink, lastMetadata.evaluatorCalls);
 		Doer doer = new Doer(source, sink);
 		while (doer.hasNext()) {
-			Path p = doer.next();
+			PathNode p = doer.next();
 			
 			//numberOfVisitedNodes++;
 			lastMetadata.totalNodesExplored++;
 			
 			if (p.endNode().equals(sink)) {
 				lastMetadata.paths++;
-				return p;
+				return p.toPath();
 			}
 		}
 		return null;
 	}
 
-	private class Doer extends PrefetchingIterator<Path> implements Path {
+	private class Doer extends PrefetchingIterator<PathNode> implements Path {
 		private final Node start;
 		private final Node end;
 		private Node lastNode;
 		private boolean expand;
-		private final Set<Long> visitedNodes = new HashSet<Long>();
-		private final Set<Long> queueNodes = new HashSet<Long>();
-		private Path currentPath = null;
+		private final LongSet visitedNodes = nodeSet(0);
+		private final LongSet queueNodes = nodeSet(1);
+		private PathNode currentPath = null;
 		//private final PriorityQueue<Path> queue = new PriorityQueue<Path>(10, PrioritizedNavigation.this);
-		private final MinMaxPriorityQueue<Path> queue = (Constants.PRORITY_QUEUE_MAX_SIZE == -1 ? 
-				MinMaxPriorityQueue.orderedBy(PrioritizedNavigation.this).create() :
-				MinMaxPriorityQueue.orderedBy(PrioritizedNavigation.this).maximumSize(Constants.PRORITY_QUEUE_MAX_SIZE).create());
+		private final BoundedMinMaxHeap<PathNode> queue = new BoundedMinMaxHeap<PathNode>(Constants.PRORITY_QUEUE_MAX_SIZE);
 		
 		Doer(Node start, Node end) {
 			this.start = start;
 			this.end = end;
 
-			queue.add(Utils.toPath(start, null));
+			// the start is polled right away, so it needs no score
+			queue.add(0, PathNode.start(start));
 			queueNodes.add(start.getId());
 		}
 
 		@Override
-		protected Path fetchNextOrNull() {
+		protected PathNode fetchNextOrNull() {
+			if (isOutOfBudget()) return null;
+			
 			if (!this.expand) {
 				this.expand = true;
 			} else {
@@ -114,7 +115,6 @@ public class PrioritizedNavigation extends AbstractNavigation implements Compara
 			return currentPath;
 		}
 
-		@SuppressWarnings("unchecked")
 		private boolean expand() {
 			if (currentPath.length() >= Constants.LIMIT_OF_DEPTH) {
 				logger.log(Level.FINE, start + " => " + currentPath.endNode() + " => " + end + " length exceeds " + currentPath.length() + "! Stop expanding.");
@@ -123,10 +123,10 @@ public class PrioritizedNavigation extends AbstractNavigation implements Compara
 			
 			visitedNodes.add(currentPath.endNode().getId());
 			
-			// Construct a list of relationships in the current path
-			List<Relationship> rels = Lists.newArrayList(currentPath.relationships());
+			List<PathNode> neighbors = new ArrayList<PathNode>();
 			
-			for (Relationship rel : expander.expand(this, BranchState.NO_STATE)) {
+			for (Relationship rel : expandPath(expander, this)) {
+				if (isOutOfBudget()) return false;
 				lastMetadata.rels++;
 				Node node = rel.getOtherNode(this.lastNode);
 				if (visitedNodes.contains(node.getId())) {
@@ -134,18 +134,22 @@ public class PrioritizedNavigation extends AbstractNavigation implements Compara
 				}
 
 				if (!queueNodes.contains(node.getId())) {
-					rels.add(rel);
-					Path path = Utils.toPath(start, rels);
+					PathNode path = currentPath.append(rel, node);
 					
-					queue.add(path);
+					neighbors.add(path);
 					queueNodes.add(path.endNode().getId());
-					rels.remove(rels.size() - 1);
-					if (path.endNode().equals(end)) return true;
+					if (path.endNode().equals(end)) break;
 				}
 				
 				
 			}
 			
+			// score all the neighbors in one call
+			int[] costs = evaluator.getCosts(neighbors, currentContext);
+			for (int i = 0; i < costs.length; i++) {
+				queue.add(costs[i], neighbors.get(i));
+			}
+			
 			return true;
 		}
 
@@ -196,9 +200,4 @@ public class PrioritizedNavigation extends AbstractNavigation implements Compara
 
 	}
 
-	@Override
-	public int compare(Path p1, Path p2) {
-		return evaluator.getCost(p1, currentSink) - evaluator.getCost(p2, currentSink);
-	}
-
 }
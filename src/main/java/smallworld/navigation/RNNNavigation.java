@@ -5,10 +5,8 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.logging.log4j.LogManager;
@@ -21,7 +19,6 @@ import org.neo4j.graphdb.PathExpander;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
-import org.neo4j.graphdb.traversal.BranchState;
 import org.neo4j.helpers.collection.PrefetchingIterator;
 import org.neo4j.kernel.Traversal;
 
@@ -29,9 +26,7 @@ import smallworld.ConcurrentMain;
 import smallworld.Constants;
 import smallworld.data.RelationshipTypes;
 import smallworld.navigation.feature.DistanceMeasure;
-import smallworld.util.Utils;
-
-import com.google.common.collect.Lists;
+import smallworld.util.LongSet;
 
 /**
  * Use ONLY for generating training samples for binary classification.
@@ -68,13 +63,13 @@ public class RNNNavigation extends AbstractNavigation {
 		lastMetadata = new Metadata();
 		Doer doer = new Doer(source, sink);
 		while (doer.hasNext()) {
-			Path p = doer.next();
+			PathNode p = doer.next();
 			
 			lastMetadata.totalNodesExplored++;
 			
 			if (p.endNode().equals(sink)) {
 				lastMetadata.paths++;
-				return p;
+				return p.toPath();
 			}
 			
 			if (lastMetadata.totalNodesExplored > Constants.LIMIT_OF_NODES_EXPLORED) break;
@@ -82,26 +77,28 @@ public class RNNNavigation extends AbstractNavigation {
 		return null;
 	}
 
-	private class Doer extends PrefetchingIterator<Path> implements Path {
+	private class Doer extends PrefetchingIterator<PathNode> implements Path {
 		private final Node start;
 		private final Node end;
 		private Node lastNode;
 		private boolean expand;
-		private final Set<Long> visitedNodes = new HashSet<Long>();
-		private final Set<Long> queueNodes = new HashSet<Long>();
-		private Path currentPath = null;
-		private final Deque<Path> queue = new ArrayDeque<Path>();
+		private final LongSet visitedNodes = nodeSet(0);
+		private final LongSet queueNodes = nodeSet(1);
+		private PathNode currentPath = null;
+		private final Deque<PathNode> queue = new ArrayDeque<PathNode>();
 		
 		Doer(Node start, Node end) {
 			this.start = start;
 			this.end = end;
 
-			queue.push(Utils.toPath(start, null)); // stack
+			queue.push(PathNode.start(start)); // stack
 			queueNodes.add(start.getId());
 		}
 
 		@Override
-		protected Path fetchNextOrNull() {
+		protected PathNode fetchNextOrNull() {
+			if (isOutOfBudget()) return null;
+			
 			// FIXME
 			if (!this.expand) {
 				this.expand = true;
@@ -109,7 +106,7 @@ public class RNNNavigation extends AbstractNavigation {
 				expand();
 			}
 
-			if (queue.isEmpty()) return null;
+			if (isOutOfBudget() || queue.isEmpty()) return null;
 			
 			currentPath = queue.pop(); // stack
 			
@@ -120,7 +117,6 @@ public class RNNNavigation extends AbstractNavigation {
 			return currentPath;
 		}
 		
-		@SuppressWarnings("unchecked")
 		private void expand() {
 		
 			if (currentPath.length() >= Constants.LIMIT_OF_DEPTH) {
@@ -130,14 +126,12 @@ public class RNNNavigation extends AbstractNavigation {
 			
 			visitedNodes.add(currentPath.endNode().getId());
 			
-			// Construct a list of relationships in the current path
-			List<Relationship> rels = Lists.newArrayList(currentPath.relationships());
-						
-			List<Path> pathsToAdd = new ArrayList<Path>();
-			List<Path> negativePaths = new ArrayList<Path>();
+			List<PathNode> pathsToAdd = new ArrayList<PathNode>();
+			List<PathNode> negativePaths = new ArrayList<PathNode>();
 			int instanceToAdd = 0;
 			
-			for (Relationship rel : expander.expand(this, BranchState.NO_STATE)) {
+			for (Relationship rel : expandPath(expander, this)) {
+				if (isOutOfBudget()) return;
 				lastMetadata.rels++;
 				Node node = rel.getOtherNode(this.lastNode);
 				if (visitedNodes.contains(node.getId())) {
@@ -145,8 +139,7 @@ public class RNNNavigation extends AbstractNavigation {
 				}
 
 				if (!queueNodes.contains(node.getId())) {
-					rels.add(rel);
-					Path path = Utils.toPath(start, rels);
+					PathNode path = currentPath.append(rel, node);
 					
 					queueNodes.add(node.getId());
 					pathsToAdd.add(path);
@@ -161,8 +154,6 @@ public class RNNNavigation extends AbstractNavigation {
 					// negative instances will be added when there is positive ones found
 					double label = measure.getFeature(path, end);
 					logger.info(node + ":" + label + " ");
-					
-					rels.remove(rels.size() - 1);
 				}
 				
 			}
@@ -170,7 +161,7 @@ public class RNNNavigation extends AbstractNavigation {
 		
 			// randomly choose a neighbor
 			Collections.shuffle(pathsToAdd, ThreadLocalRandom.current());
-			for (Path p : pathsToAdd) {
+			for (PathNode p : pathsToAdd) {
 				queue.push(p);
 			}
 		}
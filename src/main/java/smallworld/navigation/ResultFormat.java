@@ -0,0 +1,71 @@
+package smallworld.navigation;
+
+/**
+ * The layout of a line of the log of an experiment.
+ *
+ * @author chang
+ *
+ */
+public enum ResultFormat {
+
+	/**
+	 * serial,source,sink for pairs with no path;
+	 * serial,source,sink,timeout,explored for pairs given up for the
+	 * budget of the navigation;
+	 * serial,source,sink,length,explored for paths;
+	 * serial,source,sink,length,explored,shortening,visited for paths of
+	 * an {@code AbstractNavigation}.
+	 */
+	CSV {
+		@Override
+		public String format(NavigationResult result) {
+			StringBuilder line = new StringBuilder()
+					.append(result.getSerialNumber()).append(",")
+					.append(result.getSource()).append(",")
+					.append(result.getSink());
+			if (result.isTimedOut()) {
+				line.append(",").append(TIMED_OUT)
+					.append(",").append(result.getNumberOfNodesExplored());
+			} else if (result.isPathFound()) {
+				line.append(",").append(result.getPathLength())
+					.append(",").append(result.getNumberOfNodesExplored());
+				if (result.getNumberOfVisitedNodes() != NavigationResult.NONE) {
+					line.append(",").append(result.getNumberOfVisitedNodesShorteningPaths())
+						.append(",").append(result.getNumberOfVisitedNodes());
+				}
+			}
+			return line.append(LINE_SEPARATOR).toString();
+		}
+
+		@Override
+		public NavigationResult parse(String line) {
+			String[] tokens = line.trim().split(",");
+			int serialNumber = Integer.parseInt(tokens[0]);
+			long source = Long.parseLong(tokens[1]);
+			long sink = Long.parseLong(tokens[2]);
+			if (tokens.length < 4) return new NavigationResult(serialNumber, source, sink);
+			if (tokens[3].equals(TIMED_OUT)) return NavigationResult.timedOut(serialNumber, source, sink, Long.parseLong(tokens[4]));
+
+			return new NavigationResult(serialNumber, source, sink,
+					Integer.parseInt(tokens[3]),
+					Long.parseLong(tokens[4]),
+					tokens.length >= 7 ? Integer.parseInt(tokens[5]) : NavigationResult.NONE,
+					tokens.length >= 7 ? Integer.parseInt(tokens[6]) : NavigationResult.NONE);
+		}
+	};
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	private static final String TIMED_OUT = "timeout";
+
+	/**
+	 * @param result
+	 * @return a line, ending with a line separator
+	 */
+	public abstract String format(NavigationResult result);
+
+	/**
+	 * @param line a line without its separator
+	 * @return
+	 */
+	public abstract NavigationResult parse(String line);
+}
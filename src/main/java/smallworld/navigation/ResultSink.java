@@ -0,0 +1,138 @@
+package smallworld.navigation;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import smallworld.util.MpscRingBuffer;
+
+/**
+ * Writes the results of navigations to the log of an experiment.
+ *
+ * Navigating threads hand their results to a ring buffer and go on; a
+ * single writer thread takes whatever is in the buffer, appends it to
+ * the log, flushes once for the whole batch and then marks the pairs as
+ * completed.  A full buffer makes navigating threads wait for the
+ * writer.
+ *
+ * @see CompletedPairs
+ * @author chang
+ *
+ */
+public class ResultSink implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final int BUFFER_SIZE = 1 << 14;
+	private static final int BATCH_SIZE = 1024;
+	// how long the writer waits for results before checking if it is closed
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final ResultFormat format;
+	private final CompletedPairs completed;
+	private final MpscRingBuffer<NavigationResult> buffer = new MpscRingBuffer<NavigationResult>(BUFFER_SIZE);
+	private final FileChannel channel;
+	private final Writer writer;
+	private final Thread thread;
+	private volatile boolean closed = false;
+	private volatile IOException error;
+
+	/**
+	 * Append to a log, resuming the completed pairs of the log.
+	 *
+	 * @param log
+	 * @param format
+	 * @param numberOfPairs
+	 * @throws IOException
+	 */
+	public ResultSink(File log, ResultFormat format, int numberOfPairs) throws IOException {
+		this.format = format;
+		this.completed = CompletedPairs.open(log, format, numberOfPairs);
+		FileOutputStream out = new FileOutputStream(log, true);
+		this.channel = out.getChannel();
+		this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "result-sink");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return the pairs in the log; changed by the writer until the sink is closed
+	 */
+	public CompletedPairs getCompletedPairs() {
+		return completed;
+	}
+
+	/**
+	 * Queue a result to be logged, waiting if the writer is behind.
+	 *
+	 * @param result
+	 */
+	public void write(NavigationResult result) {
+		if (closed) throw new IllegalStateException("closed");
+		buffer.put(result);
+	}
+
+	private void write() {
+		NavigationResult[] batch = new NavigationResult[BATCH_SIZE];
+		for (;;) {
+			if (!buffer.await(IDLE_NANOS)) {
+				if (closed && buffer.isEmpty()) return;
+				continue;
+			}
+
+			int n = buffer.drainTo(batch);
+			try {
+				for (int i = 0; i < n; i++) {
+					writer.write(format.format(batch[i]));
+				}
+				writer.flush();
+				for (int i = 0; i < n; i++) {
+					completed.add(batch[i]);
+					batch[i] = null;
+				}
+				completed.commit(channel.size());
+			} catch (IOException e) {
+				// keep draining so navigating threads never block on a dead writer
+				if (error == null) logger.error("Error writing results", e);
+				error = e;
+			}
+		}
+	}
+
+	/**
+	 * Write what is queued and close the log.  Results written after or
+	 * while closing may be lost.
+	 *
+	 * @throws IOException if any result couldn't be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		writer.close();
+		completed.close();
+		if (error != null) throw error;
+	}
+}
@@ -0,0 +1,247 @@
+package smallworld.navigation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * One of the parts of an experiment that run in separate processes.
+ *
+ * Shard {@code i} of {@code N} navigates the {@code i}-th of {@code N}
+ * consecutive ranges of serial numbers, writing its own log; serial
+ * numbers are the same as those of the whole experiment, so the logs
+ * of the shards together are the log of the experiment.
+ *
+ * Neo4J locks a store for a single process, even a read-only one, so
+ * each shard opens its own copy of the store.  A copy is reused by later
+ * runs of the shard as long as the files of the store are as they were
+ * when copied, i.e., their sizes and modification times; Neo4J writes
+ * to a store whenever it opens it, so a store opened since is copied
+ * again.  Shards of an experiment
+ * starting together should prepare, i.e., copy the store and build the
+ * indexes they share, one at a time while holding {@code lockStore}.
+ *
+ * @author chang
+ *
+ */
+public class Shard {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	/**
+	 * The whole experiment in one process
+	 */
+	public static final Shard ALL = new Shard(1, 1);
+
+	private static final String LOCK_EXTENSION = ".lock";
+	// the files of the store when it was copied, kept in the copy
+	private static final String STAMP = "shard.stamp";
+
+	private final int index;
+	private final int count;
+
+	/**
+	 * @param index from 1 to count
+	 * @param count
+	 */
+	public Shard(int index, int count) {
+		if (count < 1 || index < 1 || index > count) throw new IllegalArgumentException("No such shard: " + index + "/" + count);
+		this.index = index;
+		this.count = count;
+	}
+
+	/**
+	 * @param shard i/N, e.g., 1/4
+	 * @return
+	 */
+	public static Shard parse(String shard) {
+		int slash = shard.indexOf('/');
+		if (slash < 0) throw new IllegalArgumentException("Shard should be i/N: " + shard);
+		return new Shard(Integer.parseInt(shard.substring(0, slash).trim()), Integer.parseInt(shard.substring(slash + 1).trim()));
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public boolean isAll() {
+		return count == 1;
+	}
+
+	/**
+	 * @param numberOfPairs of the experiment
+	 * @return the first position of the shard, from 0
+	 */
+	public int getFirst(int numberOfPairs) {
+		return (int) ((long) (index - 1) * numberOfPairs / count);
+	}
+
+	/**
+	 * @param numberOfPairs of the experiment
+	 * @return the position after the last of the shard
+	 */
+	public int getLast(int numberOfPairs) {
+		return (int) ((long) index * numberOfPairs / count);
+	}
+
+	/**
+	 * @param log of the experiment, e.g., facebook.Global.Feature.1000.10000.log
+	 * @return the log of the shard, e.g., facebook.Global.Feature.1000.10000.shard-1-of-4.log
+	 */
+	public String getLog(String log) {
+		if (isAll()) return log;
+		String suffix = ".shard-" + index + "-of-" + count;
+		return log.endsWith(".log") ? log.substring(0, log.length() - 4) + suffix + ".log" : log + suffix;
+	}
+
+	/**
+	 * Wait until no other process prepares a shard of the store.
+	 *
+	 * @param neo4jPath
+	 * @return the lock, to be closed when the shard is prepared
+	 * @throws IOException
+	 */
+	public Closeable lockStore(String neo4jPath) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(neo4jPath + LOCK_EXTENSION, "rw");
+		final FileLock lock;
+		try {
+			lock = file.getChannel().lock();
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+		return new Closeable() {
+			@Override
+			public void close() throws IOException {
+				try {
+					lock.release();
+				} finally {
+					file.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Copy a store for the shard, unless a previous run of the shard did
+	 * and the store has not changed since.
+	 *
+	 * @param neo4jPath
+	 * @return the path to the copy
+	 * @throws IOException
+	 */
+	public String copyStore(String neo4jPath) throws IOException {
+		final Path source = new File(neo4jPath).toPath();
+		if (!Files.isDirectory(source)) throw new IOException("No store: " + neo4jPath);
+
+		Path copy = new File(neo4jPath + ".shard-" + index).toPath();
+		// taken before copying, so a store changing while being copied is copied again next time
+		String stamp = stamp(source);
+		if (Files.isDirectory(copy)) {
+			Path copied = copy.resolve(STAMP);
+			if (Files.exists(copied) && stamp.equals(new String(Files.readAllBytes(copied), StandardCharsets.UTF_8))) {
+				return copy.toString();
+			}
+			logger.info(source + " has changed since it was copied to " + copy + ", copying again");
+			deleteRecursively(copy);
+		}
+
+		// an interrupted copy is never taken for a copy
+		final Path temp = new File(neo4jPath + ".shard-" + index + ".tmp").toPath();
+		deleteRecursively(temp);
+
+		logger.info("Copying " + source + " to " + copy);
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(temp.resolve(source.relativize(dir)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (isOfStore(file)) {
+					Files.copy(file, temp.resolve(source.relativize(file)), StandardCopyOption.COPY_ATTRIBUTES);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Files.write(temp.resolve(STAMP), stamp.getBytes(StandardCharsets.UTF_8));
+		Files.move(temp, copy, StandardCopyOption.ATOMIC_MOVE);
+
+		return copy.toString();
+	}
+
+	// the lock is of the store, and the messages are of the processes using it
+	private static boolean isOfStore(Path file) {
+		String name = file.getFileName().toString();
+		return !name.equals("store_lock") && !name.equals("messages.log");
+	}
+
+	/**
+	 * @param store
+	 * @return the name, size and modification time of every file of a store
+	 * @throws IOException
+	 */
+	private static String stamp(final Path store) throws IOException {
+		final List<String> files = new ArrayList<String>();
+		Files.walkFileTree(store, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (isOfStore(file)) {
+					files.add(store.relativize(file) + "\t" + attrs.size() + "\t" + attrs.lastModifiedTime().toMillis());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(files);
+
+		StringBuilder stamp = new StringBuilder();
+		for (String file : files) {
+			stamp.append(file).append("\n");
+		}
+		return stamp.toString();
+	}
+
+	private static void deleteRecursively(Path path) throws IOException {
+		if (!Files.exists(path)) return;
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if (e != null) throw e;
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Override
+	public String toString() {
+		return index + "/" + count;
+	}
+}
@@ -3,10 +3,7 @@ package smallworld.navigation;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Set;
 
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphdb.Direction;
@@ -17,16 +14,13 @@ import org.neo4j.graphdb.PathExpanders;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
-import org.neo4j.graphdb.traversal.BranchState;
 import org.neo4j.helpers.collection.PrefetchingIterator;
 
 import smallworld.Constants;
 import smallworld.data.RelationshipTypes;
 import smallworld.data.query.Query;
 import smallworld.navigation.feature.DistanceMeasure;
-import smallworld.util.Utils;
-
-import com.google.common.collect.Lists;
+import smallworld.util.LongSet;
 
 public class ShortestNavigation extends AbstractNavigation {
 
@@ -59,45 +53,47 @@ public class ShortestNavigation extends AbstractNavigation {
 		currentSink = sink;
 		Doer doer = new Doer(source, sink);
 		while (doer.hasNext()) {
-			Path p = doer.next();
+			PathNode p = doer.next();
 			
 			lastMetadata.totalNodesExplored++;
 			
 			if (p.endNode().equals(sink)) {
 				lastMetadata.paths++;
-				return p;
+				return p.toPath();
 			}
 			
 		}
 		return null;
 	}
 
-	private class Doer extends PrefetchingIterator<Path> implements Path {
+	private class Doer extends PrefetchingIterator<PathNode> implements Path {
 		private final Node start;
 		private final Node end;
 		private Node lastNode;
 		
 		// nodes that are already expanded
-		private final Set<Long> expandedNodes = new HashSet<Long>();
+		private final LongSet expandedNodes = nodeSet(0);
 		
 		// nodes that are already visited
-		private final Set<Long> visitedNodes = new HashSet<Long>();
-		private Path currentPath = null;
-		private final Deque<Path> queue = new ArrayDeque<Path>();
+		private final LongSet visitedNodes = nodeSet(1);
+		private PathNode currentPath = null;
+		private final Deque<PathNode> queue = new ArrayDeque<PathNode>();
 		
 		Doer(Node start, Node end) {
 			this.start = start;
 			this.end = end;
 
-			queue.addLast(Utils.toPath(start, null));
+			queue.addLast(PathNode.start(start));
 			visitedNodes.add(start.getId());
 		}
 
 		@Override
-		protected Path fetchNextOrNull() {
+		protected PathNode fetchNextOrNull() {
+			if (isOutOfBudget()) return null;
+			
 			expand();
 			
-			if (queue.isEmpty()) return null;
+			if (isOutOfBudget() || queue.isEmpty()) return null;
 			
 			currentPath = queue.pollFirst();
 			
@@ -119,7 +115,6 @@ public class ShortestNavigation extends AbstractNavigation {
 			return currentPath;
 		}
 
-		@SuppressWarnings("unchecked")
 		private void expand() {
 			if (currentPath == null) return;
 			
@@ -135,11 +130,9 @@ public class ShortestNavigation extends AbstractNavigation {
 			
 			expandedNodes.add(currentPath.endNode().getId());
 			
-			// Construct a list of relationships in the current path
-			List<Relationship> rels = Lists.newArrayList(currentPath.relationships());
-			
 			//for (Relationship rel : currentPath.endNode().getRelationships()) {
-			for (Relationship rel : expander.expand(currentPath, BranchState.NO_STATE)) {
+			for (Relationship rel : expandPath(expander, currentPath)) {
+				if (isOutOfBudget()) return;
 				lastMetadata.rels++;
 				
 				// DEBUG
@@ -156,10 +149,8 @@ public class ShortestNavigation extends AbstractNavigation {
 				if (!visitedNodes.contains(node.getId())) {
 					visitedNodes.add(node.getId());
 					
-					rels.add(rel);
-					Path path = Utils.toPath(start, rels);
+					PathNode path = currentPath.append(rel, node);
 					queue.addLast(path);
-					rels.remove(rels.size() - 1);
 					//System.err.println("adding path: " + path);
 					if (path.endNode().equals(end)) return;
 				}
@@ -229,7 +220,7 @@ public class ShortestNavigation extends AbstractNavigation {
 		//new ConcurrentMain(nav, "neo4j/" + dataset, 1, 1, "temp.shortest.log");
 		
 		Query q = new Query("neo4j/" + dataset);
-		nav.findSinglePath(q.cypherGetNode(373654), q.cypherGetNode(1557));
+		nav.findSinglePath(q.getNode(373654), q.getNode(1557));
 		
 	}
 
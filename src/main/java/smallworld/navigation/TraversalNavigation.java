@@ -34,15 +34,22 @@ public class TraversalNavigation implements PathFinder<Path> {
 
 	private final TraversalDescription traversalDescription;
 	private Traverser lastTraverser;
+	private NavigationContext lastContext;
+	private final PathExpander<?> expander;
 	private final Evaluator<Integer> evaluator;
 	
 	public TraversalNavigation(PathExpander<?> expander,
 			Evaluator<Integer> evaluator) {
 		//this.costEvaluator = costEvaluator;
 		//this.estimateEvaluator = estimateEvaluator;
+		this.expander = expander;
 		this.evaluator = evaluator;
 		this.traversalDescription = traversal().uniqueness(Uniqueness.NONE).expand(expander);
 	}
+	
+	public TraversalNavigation(TraversalNavigation another) {
+		this(another.expander, another.evaluator.copy());
+	}
 
 	@Override
 	public Iterable<Path> findAllPaths(Node source, Node sink) {
@@ -56,8 +63,9 @@ public class TraversalNavigation implements PathFinder<Path> {
 	}
 
 	private Iterable<Path> findPaths(Node start, Node end) {
+		lastContext = new NavigationContext(end);
 		lastTraverser = traversalDescription
-				.order(new SelectorFactory(end))
+				.order(new SelectorFactory(lastContext))
 				.evaluator(includeWhereEndNodeIs(end)).traverse(start);
 		return Lists.newArrayList(lastTraverser.iterator());
 	}
@@ -66,6 +74,13 @@ public class TraversalNavigation implements PathFinder<Path> {
 	public TraversalMetadata metadata() {
 		return lastTraverser.metadata();
 	}
+	
+	/**
+	 * @return the costs computed by a {@code CountingEvaluator} for the last pair
+	 */
+	public long getNumberOfEvaluatorCalls() {
+		return lastContext == null ? 0 : lastContext.getNumberOfEvaluatorCalls();
+	}
 
 	private static class PositionData implements Comparable<PositionData> {
 		private final double cost;
@@ -87,23 +102,23 @@ public class TraversalNavigation implements PathFinder<Path> {
 
 	private class SelectorFactory extends
 			BestFirstSelectorFactory<PositionData, Double> {
-		private final Node end;
+		private final NavigationContext context;
 
-		SelectorFactory(Node end) {
+		SelectorFactory(NavigationContext context) {
 			super(BestFirstSelectorFactory.pathInterest(true, true));
-			this.end = end;
+			this.context = context;
 		}
 
 		@Override
 		protected PositionData addPriority(TraversalBranch source,
 				PositionData currentAggregatedValue, Double value) {
 			// not using current aggregated value
-			return new PositionData(evaluator.getCost(source.endNode(), end));
+			return new PositionData(evaluator.getCost(source.endNode(), context));
 		}
 
 		@Override
 		protected Double calculateValue(TraversalBranch next) {
-			return next.length() == 0 ? 0d : evaluator.getCost(next.endNode(), end);
+			return next.length() == 0 ? 0d : evaluator.getCost(next.endNode(), context);
 		}
 
 		@Override
@@ -125,7 +140,7 @@ public class TraversalNavigation implements PathFinder<Path> {
 		//new ConcurrentMain(nav, "neo4j/" + dataset, 1, 1, "temp.shortest.log");
 		
 		Query q = new Query("neo4j/" + dataset);
-		System.err.println(nav.findSinglePath(q.cypherGetNode(373654), q.cypherGetNode(1557)));
+		System.err.println(nav.findSinglePath(q.getNode(373654), q.getNode(1557)));
 		//System.err.println(nav.findSinglePath(q.getNode(1), q.getNode(7)));
 		
 	}
@@ -0,0 +1,154 @@
+package smallworld.navigation.evaluator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+
+import smallworld.navigation.NavigationContext;
+import smallworld.util.LongPairIntCache;
+
+/**
+ * Remembers the costs of another evaluator by end node and target, so
+ * pairs sharing a target, or paths going through the same hubs, don't
+ * compute the same cost again.
+ *
+ * Only evaluators whose cost depends on nothing but the end node of a
+ * path and the target can be cached, i.e., those that are
+ * {@code isPathIndependent}; evaluators using features of the path, e.g.,
+ * the parent or the length, are rejected.  All the copies of a
+ * {@code CachedEvaluator} share the same cache, while each wraps its own
+ * copy of the evaluator.
+ *
+ * @see LongPairIntCache
+ * @author chang
+ *
+ */
+public class CachedEvaluator implements Evaluator<Integer> {
+
+	// costs are ints; this one is only used to tell a miss
+	private static final int MISSING = Integer.MIN_VALUE;
+
+	private final Evaluator<Integer> evaluator;
+	private final LongPairIntCache cache;
+
+	/**
+	 * @param evaluator
+	 * @param maximumSize the number of costs to keep
+	 */
+	public CachedEvaluator(Evaluator<Integer> evaluator, int maximumSize) {
+		this(evaluator, new LongPairIntCache(maximumSize));
+	}
+
+	public CachedEvaluator(Evaluator<Integer> evaluator, LongPairIntCache cache) {
+		if (!evaluator.isPathIndependent()) {
+			throw new IllegalArgumentException(evaluator.getClass().getSimpleName() + " depends on more than the end node");
+		}
+		this.evaluator = evaluator;
+		this.cache = cache;
+	}
+
+	public CachedEvaluator(CachedEvaluator another) {
+		this(another.evaluator.copy(), another.cache);
+	}
+
+	@Override
+	public Evaluator<Integer> copy() {
+		return new CachedEvaluator(this);
+	}
+
+	public LongPairIntCache getCache() {
+		return cache;
+	}
+
+	@Override
+	public boolean isPathIndependent() {
+		return true;
+	}
+
+	private void put(Node end, Node target, int cost) {
+		if (cost != MISSING) cache.put(end.getId(), target.getId(), cost);
+	}
+
+	@Override
+	public Integer getCost(Path path, Node target) {
+		int cost = cache.get(path.endNode().getId(), target.getId(), MISSING);
+		if (cost == MISSING) {
+			cost = evaluator.getCost(path, target);
+			put(path.endNode(), target, cost);
+		}
+		return cost;
+	}
+
+	@Override
+	public Integer getCost(Node end, Node target) {
+		int cost = cache.get(end.getId(), target.getId(), MISSING);
+		if (cost == MISSING) {
+			cost = evaluator.getCost(end, target);
+			put(end, target, cost);
+		}
+		return cost;
+	}
+
+	@Override
+	public Integer getCost(Node end, NavigationContext context) {
+		Node target = context.getTarget();
+		int cost = cache.get(end.getId(), target.getId(), MISSING);
+		if (cost == MISSING) {
+			cost = evaluator.getCost(end, context);
+			put(end, target, cost);
+		}
+		return cost;
+	}
+
+	@Override
+	public Integer getCost(Path path, NavigationContext context) {
+		Node target = context.getTarget();
+		int cost = cache.get(path.endNode().getId(), target.getId(), MISSING);
+		if (cost == MISSING) {
+			cost = evaluator.getCost(path, context);
+			put(path.endNode(), target, cost);
+		}
+		return cost;
+	}
+
+	/**
+	 * The candidates that are not cached are scored together, by
+	 * {@code getCosts} of the evaluator.
+	 */
+	@Override
+	public int[] getCosts(List<? extends Path> candidates, NavigationContext context) {
+		long target = context.getTarget().getId();
+		int[] costs = new int[candidates.size()];
+		List<Path> misses = null;
+		int[] missed = null;
+		int numberOfMisses = 0;
+
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = cache.get(candidates.get(i).endNode().getId(), target, MISSING);
+			if (costs[i] == MISSING) {
+				if (misses == null) {
+					misses = new ArrayList<Path>();
+					missed = new int[costs.length];
+				}
+				misses.add(candidates.get(i));
+				missed[numberOfMisses++] = i;
+			}
+		}
+
+		if (misses != null) {
+			int[] computed = evaluator.getCosts(misses, context);
+			for (int j = 0; j < numberOfMisses; j++) {
+				costs[missed[j]] = computed[j];
+				put(misses.get(j).endNode(), context.getTarget(), computed[j]);
+			}
+		}
+		return costs;
+	}
+
+	@Override
+	public String toString() {
+		return "CachedEvaluator[" + evaluator.getClass().getSimpleName() + ", " + cache + "]";
+	}
+}
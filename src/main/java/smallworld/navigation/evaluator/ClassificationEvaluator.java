@@ -2,6 +2,7 @@ package smallworld.navigation.evaluator;
 
 import java.io.PrintStream;
 import java.util.Arrays;
+import java.util.List;
 
 import libsvm.svm;
 
@@ -13,6 +14,7 @@ import org.neo4j.graphdb.RelationshipType;
 import smallworld.ConcurrentMain;
 import smallworld.data.RelationshipTypes;
 import smallworld.navigation.AbstractNavigation;
+import smallworld.navigation.NavigationContext;
 import smallworld.navigation.feature.DistanceMeasure;
 import smallworld.navigation.feature.FeatureBuilder;
 import weka.classifiers.Classifier;
@@ -33,6 +35,12 @@ public class ClassificationEvaluator implements Evaluator<Integer> {
 	private final Instances data;
 	private final Classifier classifier;
 	private final FeatureBuilder builder;
+	// the trained classifier, compiled, or null to classify with Weka
+	private final ModelCompiler.Scorer scorer;
+	
+	// the features of the path being classified, reused for every path
+	private final double[] values;
+	private final Instance instance;
 	
 	public ClassificationEvaluator(Classifier classifier, FeatureBuilder builder, Instances data) throws Exception {
 		//this.builder = new FeatureBuilder(builder);
@@ -42,6 +50,10 @@ public class ClassificationEvaluator implements Evaluator<Integer> {
 		
 		this.classifier = classifier;
 		this.classifier.buildClassifier(this.data);
+		this.scorer = ModelCompiler.compile(this.classifier, this.data);
+		
+		this.values = builder.newFeatureVector();
+		this.instance = builder.wrap(values);
 	}
 	
 	public void printParameters() {
@@ -61,7 +73,12 @@ public class ClassificationEvaluator implements Evaluator<Integer> {
 		this.data = another.data;
 		this.data.setClassIndex(data.numAttributes() - 1);
 		
-		this.classifier = Classifier.makeCopy(another.classifier);
+		// a compiled classifier can be shared
+		this.scorer = another.scorer;
+		this.classifier = scorer == null ? Classifier.makeCopy(another.classifier) : another.classifier;
+		
+		this.values = builder.newFeatureVector();
+		this.instance = builder.wrap(values);
 	}
 	
 	public ClassificationEvaluator(Classifier classifier, FeatureBuilder builder, String arff) throws Exception {
@@ -91,12 +108,12 @@ public class ClassificationEvaluator implements Evaluator<Integer> {
 		return classifier.distributionForInstance(instance)[1];
 	}
 
-	@Override
-	public Integer getCost(Path path, Node target) {
-		Instance instance = null;
+	// the features are written into the reused instance
+	private int score(Path path, NavigationContext context) {
 		try {
-			instance = builder.getTestingInstance(path, target);
-			return 0 - (int) Math.round(classify(instance) * 1000d);
+			builder.getFeatureVector(path, context, values);
+			double p = scorer == null ? classify(instance) : scorer.probability(values, 1);
+			return 0 - (int) Math.round(p * 1000d);
 		} catch (Exception e) {
 			System.out.println(instance);
 			e.printStackTrace();
@@ -105,6 +122,25 @@ public class ClassificationEvaluator implements Evaluator<Integer> {
 		throw new AssertionError("Something wrong with the classifier: " + classifier);
 	}
 
+	@Override
+	public Integer getCost(Path path, Node target) {
+		return score(path, new NavigationContext(target));
+	}
+
+	@Override
+	public Integer getCost(Path path, NavigationContext context) {
+		return score(path, context);
+	}
+
+	@Override
+	public int[] getCosts(List<? extends Path> candidates, NavigationContext context) {
+		int[] costs = new int[candidates.size()];
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = score(candidates.get(i), context);
+		}
+		return costs;
+	}
+
 	@Override
 	public Integer getCost(Node end, Node target) {
 		throw new UnsupportedOperationException();
@@ -0,0 +1,75 @@
+package smallworld.navigation.evaluator;
+
+import java.util.List;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+
+import smallworld.navigation.NavigationContext;
+
+/**
+ * Counts the costs computed by another evaluator for each pair, in the
+ * {@code NavigationContext} of the pair, so the costs are counted
+ * whichever thread computes them, e.g., the pool threads of
+ * {@code BeamNavigation}.  A batch of candidates scored by
+ * {@code getCosts} counts as one cost per candidate.  Costs asked
+ * without a context belong to no pair and are not counted; the
+ * navigations always pass their context.
+ *
+ * Wrapped by a {@code CachedEvaluator}, it counts only the costs that
+ * are not cached.
+ *
+ * @author chang
+ *
+ */
+public class CountingEvaluator<T> implements Evaluator<T> {
+
+	private final Evaluator<T> evaluator;
+
+	public CountingEvaluator(Evaluator<T> evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	@Override
+	public Evaluator<T> copy() {
+		return new CountingEvaluator<T>(evaluator.copy());
+	}
+
+	@Override
+	public T getCost(Path path, Node target) {
+		return evaluator.getCost(path, target);
+	}
+
+	@Override
+	public T getCost(Node end, Node target) {
+		return evaluator.getCost(end, target);
+	}
+
+	@Override
+	public T getCost(Node end, NavigationContext context) {
+		context.countEvaluatorCalls(1);
+		return evaluator.getCost(end, context);
+	}
+
+	@Override
+	public T getCost(Path path, NavigationContext context) {
+		context.countEvaluatorCalls(1);
+		return evaluator.getCost(path, context);
+	}
+
+	@Override
+	public int[] getCosts(List<? extends Path> candidates, NavigationContext context) {
+		context.countEvaluatorCalls(candidates.size());
+		return evaluator.getCosts(candidates, context);
+	}
+
+	@Override
+	public boolean isPathIndependent() {
+		return evaluator.isPathIndependent();
+	}
+
+	@Override
+	public String toString() {
+		return "CountingEvaluator[" + evaluator + "]";
+	}
+}
@@ -4,6 +4,7 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 
 import smallworld.data.inserter.exp.Interests;
+import smallworld.navigation.NavigationContext;
 
 public class DBLPInterestEvaluator implements Evaluator<Integer> {
 	
@@ -18,6 +19,11 @@ public class DBLPInterestEvaluator implements Evaluator<Integer> {
 		return new DBLPInterestEvaluator(this);
 	}
 
+	@Override
+	public boolean isPathIndependent() {
+		return true;
+	}
+
 	@Override
 	public Integer getCost(Path path, Node target) {
 		return getCost(path.endNode(), target);
@@ -28,4 +34,9 @@ public class DBLPInterestEvaluator implements Evaluator<Integer> {
 		return (int) Math.round(100 * Interests.proximity(end, target));
 	}
 
+	@Override
+	public Integer getCost(Path path, NavigationContext context) {
+		return (int) Math.round(100 * Interests.proximity(path.endNode(), context.getInterests()));
+	}
+
 }
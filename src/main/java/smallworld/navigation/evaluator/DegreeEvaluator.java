@@ -8,19 +8,29 @@ import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 
+import smallworld.data.graph.NodeColumns;
+
 public class DegreeEvaluator implements Evaluator<Integer> {
 	
 	private final RelationshipType type;
 	private final Direction direction;
+	// degrees read from the columns instead of the relationships, if not null
+	private final NodeColumns columns;
 	
 	public DegreeEvaluator(RelationshipType type, Direction direction) {
+		this(type, direction, null);
+	}
+
+	public DegreeEvaluator(RelationshipType type, Direction direction, NodeColumns columns) {
 		this.type = type;
 		this.direction = direction;
+		this.columns = columns != null && columns.hasDegree(type) ? columns : null;
 	}
 
 	public DegreeEvaluator(DegreeEvaluator another) {
 		this.type = another.type;
 		this.direction = another.direction;
+		this.columns = another.columns;
 	}
 	
 	@Override
@@ -28,6 +38,11 @@ public class DegreeEvaluator implements Evaluator<Integer> {
 		return new DegreeEvaluator(this);
 	}
 
+	@Override
+	public boolean isPathIndependent() {
+		return true;
+	}
+
 	@Override
 	public Integer getCost(Path path, Node target) {
 		return getCost(path.endNode(), target);
@@ -35,6 +50,8 @@ public class DegreeEvaluator implements Evaluator<Integer> {
 
 	@Override
 	public Integer getCost(Node end, Node target) {
+		if (columns != null) return 0 - columns.getDegree(end.getId(), type, direction);
+		
 		Iterator<Relationship> it = end.getRelationships(
 				direction,
 				type).iterator();
@@ -1,10 +1,71 @@
 package smallworld.navigation.evaluator;
 
+import java.util.List;
+
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 
+import smallworld.navigation.NavigationContext;
+
 public interface Evaluator<T> {
 	Evaluator<T> copy();
 	T getCost(Path path, Node target);
 	T getCost(Node end, Node target);
+
+	/**
+	 * Score a candidate path, given what is known about the target of the
+	 * navigation.  By default only the target is used.  Evaluators that
+	 * compare every candidate with the same target side, e.g., the circles
+	 * of the target, override it.
+	 *
+	 * @param path
+	 * @param context
+	 * @return
+	 */
+	default T getCost(Path path, NavigationContext context) {
+		return getCost(path, context.getTarget());
+	}
+
+	/**
+	 * Same as {@code getCost(end, target)}, for the target of a
+	 * navigation.
+	 *
+	 * @param end
+	 * @param context
+	 * @return
+	 */
+	default T getCost(Node end, NavigationContext context) {
+		return getCost(end, context.getTarget());
+	}
+
+	/**
+	 * Score the candidate paths of one expansion, e.g., all the neighbors
+	 * of a node, towards the same target.
+	 *
+	 * By default the candidates are scored one by one.  Evaluators that
+	 * can share work among the candidates override it.  Costs must be
+	 * numbers.
+	 *
+	 * @param candidates
+	 * @param context
+	 * @return the cost of each candidate, in the same order
+	 */
+	default int[] getCosts(List<? extends Path> candidates, NavigationContext context) {
+		int[] costs = new int[candidates.size()];
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = ((Number) getCost(candidates.get(i), context)).intValue();
+		}
+		return costs;
+	}
+
+	/**
+	 * Whether the cost of a path depends only on its end node and the
+	 * target, so it can be remembered by the pair of them, e.g., by
+	 * {@code CachedEvaluator}.  False by default.
+	 *
+	 * @return
+	 */
+	default boolean isPathIndependent() {
+		return false;
+	}
 }
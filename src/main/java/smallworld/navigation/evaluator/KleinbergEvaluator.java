@@ -8,23 +8,31 @@ import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 
+import smallworld.data.graph.NodeColumns;
 import smallworld.data.query.QueryCircles;
-
-import com.google.common.collect.ImmutableSet;
+import smallworld.navigation.NavigationContext;
 
 public class KleinbergEvaluator implements Evaluator<Integer> {
 	
 	private final RelationshipType type;
 	private final Direction direction;
+	// degrees read from the columns instead of the relationships, if not null
+	private final NodeColumns columns;
 
 	public KleinbergEvaluator(RelationshipType type, Direction direction) {
+		this(type, direction, null);
+	}
+	
+	public KleinbergEvaluator(RelationshipType type, Direction direction, NodeColumns columns) {
 		this.type = type;
 		this.direction = direction;
+		this.columns = columns != null && columns.hasDegree(type) ? columns : null;
 	}
 	
 	public KleinbergEvaluator(KleinbergEvaluator another) {
 		this.type = another.type;
 		this.direction = another.direction;
+		this.columns = another.columns;
 	}
 	
 	@Override
@@ -32,6 +40,11 @@ public class KleinbergEvaluator implements Evaluator<Integer> {
 		return new KleinbergEvaluator((KleinbergEvaluator) this);
 	}
 
+	@Override
+	public boolean isPathIndependent() {
+		return true;
+	}
+
 	@Override
 	public Integer getCost(Path path, Node target) {
 		return getCost(path.endNode(), target);
@@ -43,7 +56,7 @@ public class KleinbergEvaluator implements Evaluator<Integer> {
 		// Node previous = path.lastRelationship().getOtherNode(current);
 		
 		//Set<String> previousCommonCircles = QueryCircles.getCommonCircles(previous, target);
-		ImmutableSet<Node> currentCommonCircles = QueryCircles.getInstance().getCommonCircles(end, target);
+		int currentCommonCircles = QueryCircles.getInstance().getCommonCircleCount(end, target);
 		//Set<Label> currentCommonCircles = QueryCircles.getInstance().getCommonCircleLabels(end, target);
 		
 		/*
@@ -54,8 +67,20 @@ public class KleinbergEvaluator implements Evaluator<Integer> {
 			
 		} 
 		*/
-		if (currentCommonCircles.size() > 0) { // current is in target's circles
-			return 0-currentCommonCircles.size();
+		return getCost(end, currentCommonCircles);
+	}
+
+	@Override
+	public Integer getCost(Path path, NavigationContext context) {
+		Node end = path.endNode();
+		return getCost(end, QueryCircles.getInstance().getCommonCircleCount(context.getCircles(), end));
+	}
+	
+	private int getCost(Node end, int numberOfCommonCircles) {
+		if (numberOfCommonCircles > 0) { // current is in target's circles
+			return 0-numberOfCommonCircles;
+		} else if (columns != null) {
+			return Integer.MAX_VALUE - columns.getDegree(end.getId(), type, direction);
 		} else {
 			int degree = Integer.MAX_VALUE;
 			for (Iterator<Relationship> it = 
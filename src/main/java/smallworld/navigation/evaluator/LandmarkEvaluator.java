@@ -0,0 +1,83 @@
+package smallworld.navigation.evaluator;
+
+import java.util.List;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+
+import smallworld.data.graph.GraphSnapshot;
+import smallworld.data.graph.LandmarkIndex;
+import smallworld.navigation.NavigationContext;
+
+/**
+ * Estimate the distance to the target by the landmark lower bound.
+ *
+ * The cost of a node is a lower bound on its distance to the target, so
+ * it never overestimates and {@code AStarNavigation} can use it as its
+ * heuristic.  The cost is {@code Integer.MAX_VALUE} if the target can't
+ * be reached from the node.
+ *
+ * The evaluator is read-only and shared by its copies.
+ *
+ * @see LandmarkIndex
+ * @author chang
+ *
+ */
+public class LandmarkEvaluator implements Evaluator<Integer> {
+
+	private final LandmarkIndex landmarks;
+	private final GraphSnapshot snapshot;
+
+	public LandmarkEvaluator(LandmarkIndex landmarks) {
+		this.landmarks = landmarks;
+		this.snapshot = landmarks.getSnapshot();
+	}
+
+	@Override
+	public Evaluator<Integer> copy() {
+		return this;
+	}
+
+	@Override
+	public boolean isPathIndependent() {
+		return true;
+	}
+
+	@Override
+	public Integer getCost(Path path, Node target) {
+		return getCost(path.endNode(), target);
+	}
+
+	@Override
+	public Integer getCost(Node end, Node target) {
+		return getLowerBound(end, target);
+	}
+
+	@Override
+	public int[] getCosts(List<? extends Path> candidates, NavigationContext context) {
+		int t = snapshot.indexOf(context.getTarget().getId());
+		int[] costs = new int[candidates.size()];
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = landmarks.lowerBound(snapshot.indexOf(candidates.get(i).endNode().getId()), t);
+		}
+		return costs;
+	}
+
+	/**
+	 * @param end
+	 * @param target
+	 * @return a lower bound on the distance, or {@code Integer.MAX_VALUE} if the target can't be reached
+	 */
+	public int getLowerBound(Node end, Node target) {
+		return landmarks.lowerBound(snapshot.indexOf(end.getId()), snapshot.indexOf(target.getId()));
+	}
+
+	/**
+	 * @param end
+	 * @param target
+	 * @return an upper bound on the distance, or {@code Integer.MAX_VALUE} if no landmark connects them
+	 */
+	public int getUpperBound(Node end, Node target) {
+		return landmarks.upperBound(snapshot.indexOf(end.getId()), snapshot.indexOf(target.getId()));
+	}
+}
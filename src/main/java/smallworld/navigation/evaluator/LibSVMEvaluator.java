@@ -3,11 +3,14 @@ package smallworld.navigation.evaluator;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Arrays;
+import java.util.List;
 
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 
+import smallworld.navigation.NavigationContext;
 import smallworld.navigation.feature.FeatureBuilder;
+import smallworld.util.DenseSVMModel;
 import smallworld.util.LibSVMUtils;
 import libsvm.svm;
 import libsvm.svm_model;
@@ -27,28 +30,40 @@ import weka.core.converters.ConverterUtils.DataSource;
 public class LibSVMEvaluator implements Evaluator<Integer> {
 	
 	private final svm_model model;
+	// the model for dense vectors, or null if it is not an RBF classifier
+	private final DenseSVMModel dense;
 	private final FeatureBuilder features;
 	
+	// the features of the path being classified, reused for every path
+	private final double[] values;
+	
 	public LibSVMEvaluator(svm_model model, FeatureBuilder features) {
 		this.features = features;
 		this.model = model;
+		this.dense = DenseSVMModel.isSupported(model) ? new DenseSVMModel(model, features.features().size()) : null;
+		this.values = features.newFeatureVector();
 	}
 	
 	public LibSVMEvaluator(LibSVMEvaluator another) {
 		this.features = another.features;
 		this.model = another.model;
+		this.dense = another.dense;
+		this.values = features.newFeatureVector();
 	}
 
 	/**
 	 * 
 	 * 
 	 * 
-	 * @param instance
+	 * @param path
+	 * @param context
 	 * @return
-	 * @throws Exception
 	 */
-	private Integer classify(Instance instance) throws Exception {
-		svm_node[] x = LibSVMUtils.toSVMNode(instance);
+	private int classify(Path path, NavigationContext context) {
+		features.getFeatureVector(path, context, values);
+		if (dense != null) return (int) dense.predict(values);
+		
+		svm_node[] x = LibSVMUtils.toSVMNode(values);
 		double label = LibSVMUtils.predict(model, x);
 		//LibSVMUtils.printSVMNode(x);
 		//System.out.println(label);
@@ -56,16 +71,31 @@ public class LibSVMEvaluator implements Evaluator<Integer> {
 	}
 
 	@Override
-	public synchronized Integer getCost(Path path, Node target) {
-		Instance instance = null;
-		try {
-			instance = features.getTestingInstance(path, target);
-			return classify(instance);
-		} catch (Exception e) {
-			e.printStackTrace();
+	public Integer getCost(Path path, Node target) {
+		return classify(path, new NavigationContext(target));
+	}
+
+	@Override
+	public Integer getCost(Path path, NavigationContext context) {
+		return classify(path, context);
+	}
+
+	@Override
+	public int[] getCosts(List<? extends Path> candidates, NavigationContext context) {
+		int[] costs = new int[candidates.size()];
+		if (dense != null) {
+			double[] labels = new double[costs.length];
+			dense.predict(features.getFeatureMatrix(candidates, context), labels);
+			for (int i = 0; i < costs.length; i++) {
+				costs[i] = (int) labels[i];
+			}
+			return costs;
 		}
 		
-		throw new AssertionError("Something wrong with the classifier: " + model);
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = classify(candidates.get(i), context);
+		}
+		return costs;
 	}
 
 	@Override
@@ -4,6 +4,7 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 
 import smallworld.data.query.QueryCircles;
+import smallworld.navigation.NavigationContext;
 
 public class MinCommonCircleEvaluator implements Evaluator<Integer> {
 	
@@ -16,6 +17,11 @@ public class MinCommonCircleEvaluator implements Evaluator<Integer> {
 		return new MinCommonCircleEvaluator((MinCommonCircleEvaluator) this);
 	}
 
+	@Override
+	public boolean isPathIndependent() {
+		return true;
+	}
+
 	@Override
 	public Integer getCost(Path path, Node target) {
 		return getCost(path.endNode(), target);
@@ -26,4 +32,9 @@ public class MinCommonCircleEvaluator implements Evaluator<Integer> {
 		return QueryCircles.getInstance().getMinCommonCircle(end, target);
 	}
 
+	@Override
+	public Integer getCost(Path path, NavigationContext context) {
+		return QueryCircles.getInstance().getMinCommonCircle(context.getCircles(), path.endNode());
+	}
+
 }
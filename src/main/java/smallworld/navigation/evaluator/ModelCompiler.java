@@ -0,0 +1,432 @@
+package smallworld.navigation.evaluator;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.IteratedSingleClassifierEnhancer;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.meta.Bagging;
+import weka.classifiers.trees.RandomForest;
+import weka.classifiers.trees.RandomTree;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.Statistics;
+import weka.core.Utils;
+import weka.estimators.Estimator;
+import weka.estimators.NormalEstimator;
+
+/**
+ * Turns a trained classifier into a {@code Scorer}, which classifies
+ * feature vectors straight from a {@code double[]} laid out like the
+ * training data, without building Weka instances or running filters.
+ *
+ * {@code Logistic} becomes an array of coefficients, {@code NaiveBayes}
+ * the means and standard deviations of its normal estimators, and
+ * {@code RandomForest} the nodes of all its trees flattened into
+ * parallel arrays.  A scorer gives the same distribution as
+ * {@code distributionForInstance}, doing the same arithmetic in the
+ * same order.  Scorers are immutable, so threads can share one.
+ *
+ * Weka keeps the trained models in fields that are not public, so they
+ * are read by reflection.  Other classifiers, and models that use what a
+ * scorer can't reproduce, e.g., nominal attributes or discretization,
+ * are not compiled.  Feature vectors must not have missing values,
+ * except the class.
+ *
+ * @author chang
+ *
+ */
+public class ModelCompiler {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	/**
+	 * A compiled classifier.
+	 */
+	public interface Scorer {
+
+		/**
+		 * @param values the features, laid out like the training data
+		 * @return the class distribution, as {@code Classifier.distributionForInstance}
+		 */
+		double[] distribution(double[] values);
+
+		/**
+		 * @param values the features, laid out like the training data
+		 * @param classValue
+		 * @return the probability of a class
+		 */
+		default double probability(double[] values, int classValue) {
+			return distribution(values)[classValue];
+		}
+	}
+
+	private ModelCompiler() {
+	}
+
+	/**
+	 * @param classifier a trained classifier
+	 * @param data the header of the training data, with the class index set
+	 * @return the scorer, or null if the classifier can't be compiled
+	 */
+	public static Scorer compile(Classifier classifier, Instances data) {
+		try {
+			Scorer scorer = null;
+			if (classifier instanceof Logistic) {
+				scorer = compile((Logistic) classifier, data);
+			} else if (classifier instanceof NaiveBayes) {
+				scorer = compile((NaiveBayes) classifier, data);
+			} else if (classifier instanceof RandomForest) {
+				scorer = compile((RandomForest) classifier, data);
+			}
+
+			if (scorer == null) {
+				logger.info("Cannot compile " + classifier.getClass().getSimpleName() + ", classifying with Weka");
+			}
+			return scorer;
+		} catch (ReflectiveOperationException e) {
+			logger.warn("Cannot read the model of " + classifier.getClass().getSimpleName() + ", classifying with Weka", e);
+			return null;
+		}
+	}
+
+	private static Object get(Object object, Class<?> type, String name) throws ReflectiveOperationException {
+		Field field = type.getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(object);
+	}
+
+	private static boolean hasNominalAttributes(Instances data) {
+		for (int i = 0; i < data.numAttributes(); i++) {
+			if (i != data.classIndex() && !data.attribute(i).isNumeric()) return true;
+		}
+		return false;
+	}
+
+	/*
+	 * Logistic
+	 */
+
+	private static Scorer compile(Logistic logistic, Instances data) throws ReflectiveOperationException {
+		if (hasNominalAttributes(data)) return null;
+
+		double[][] par = (double[][]) get(logistic, Logistic.class, "m_Par");
+		int numClasses = (Integer) get(logistic, Logistic.class, "m_NumClasses");
+		int classIndex = (Integer) get(logistic, Logistic.class, "m_ClassIndex");
+		// the training data after the attributes without variance are removed
+		Instances structure = (Instances) get(logistic, Logistic.class, "m_structure");
+
+		int[] predictors = new int[par.length - 1];
+		for (int k = 0, p = 0; k < structure.numAttributes(); k++) {
+			if (k == classIndex) continue;
+			Attribute attribute = data.attribute(structure.attribute(k).name());
+			if (attribute == null) return null;
+			predictors[p++] = attribute.index();
+		}
+
+		// one row of intercept and coefficients per class but the last
+		int width = par.length;
+		double[] coefficients = new double[(numClasses - 1) * width];
+		for (int j = 0; j < numClasses - 1; j++) {
+			for (int k = 0; k < width; k++) {
+				coefficients[j * width + k] = par[k][j];
+			}
+		}
+
+		return new LogisticScorer(numClasses, predictors, coefficients);
+	}
+
+	private static final class LogisticScorer implements Scorer {
+
+		private final int numClasses;
+		private final int[] predictors;
+		private final double[] coefficients;
+
+		LogisticScorer(int numClasses, int[] predictors, double[] coefficients) {
+			this.numClasses = numClasses;
+			this.predictors = predictors;
+			this.coefficients = coefficients;
+		}
+
+		// the log-posterior of a class, before normalizing
+		private double linear(double[] values, int j) {
+			int offset = j * (predictors.length + 1);
+			double v = coefficients[offset];
+			for (int k = 0; k < predictors.length; k++) {
+				v += coefficients[offset + k + 1] * values[predictors[k]];
+			}
+			return v;
+		}
+
+		@Override
+		public double[] distribution(double[] values) {
+			double[] v = new double[numClasses];
+			for (int j = 0; j < numClasses - 1; j++) {
+				v[j] = linear(values, j);
+			}
+
+			double[] prob = new double[numClasses];
+			for (int m = 0; m < numClasses; m++) {
+				double sum = 0;
+				for (int n = 0; n < numClasses - 1; n++) {
+					sum += Math.exp(v[n] - v[m]);
+				}
+				prob[m] = 1 / (sum + Math.exp(-v[m]));
+			}
+			return prob;
+		}
+
+		@Override
+		public double probability(double[] values, int classValue) {
+			if (numClasses != 2) return distribution(values)[classValue];
+
+			// a single dot product for two classes
+			double v = linear(values, 0);
+			return classValue == 0 ? 1 / (1 + Math.exp(-v)) : 1 / (Math.exp(v) + 1);
+		}
+	}
+
+	/*
+	 * Naive Bayes
+	 */
+
+	private static Scorer compile(NaiveBayes bayes, Instances data) throws ReflectiveOperationException {
+		if (bayes.getUseKernelEstimator() || bayes.getUseSupervisedDiscretization()) return null;
+		if (hasNominalAttributes(data)) return null;
+
+		Estimator[][] distributions = (Estimator[][]) get(bayes, NaiveBayes.class, "m_Distributions");
+		Estimator classDistribution = (Estimator) get(bayes, NaiveBayes.class, "m_ClassDistribution");
+		Instances header = (Instances) get(bayes, NaiveBayes.class, "m_Instances");
+		int numClasses = data.numClasses();
+
+		double[] priors = new double[numClasses];
+		for (int j = 0; j < numClasses; j++) {
+			priors[j] = classDistribution.getProbability(j);
+		}
+
+		int numAttributes = data.numAttributes() - 1;
+		int[] attributes = new int[numAttributes];
+		double[] weights = new double[numAttributes];
+		double[] means = new double[numAttributes * numClasses];
+		double[] deviations = new double[numAttributes * numClasses];
+		double[] precisions = new double[numAttributes * numClasses];
+
+		for (int i = 0, a = 0; i < data.numAttributes(); i++) {
+			if (i == data.classIndex()) continue;
+			attributes[a] = i;
+			// as NaiveBayes does, weighted by the attribute at the same position
+			weights[a] = header.attribute(a).weight();
+			for (int j = 0; j < numClasses; j++) {
+				if (!(distributions[a][j] instanceof NormalEstimator)) return null;
+				NormalEstimator estimator = (NormalEstimator) distributions[a][j];
+				means[a * numClasses + j] = (Double) get(estimator, NormalEstimator.class, "m_Mean");
+				deviations[a * numClasses + j] = (Double) get(estimator, NormalEstimator.class, "m_StandardDev");
+				precisions[a * numClasses + j] = (Double) get(estimator, NormalEstimator.class, "m_Precision");
+			}
+			a++;
+		}
+
+		return new NaiveBayesScorer(priors, attributes, weights, means, deviations, precisions);
+	}
+
+	private static final class NaiveBayesScorer implements Scorer {
+
+		private final double[] priors;
+		private final int[] attributes;
+		private final double[] weights;
+		// indexed by attribute * numClasses + class
+		private final double[] means;
+		private final double[] deviations;
+		private final double[] precisions;
+
+		NaiveBayesScorer(double[] priors, int[] attributes, double[] weights,
+				double[] means, double[] deviations, double[] precisions) {
+			this.priors = priors;
+			this.attributes = attributes;
+			this.weights = weights;
+			this.means = means;
+			this.deviations = deviations;
+			this.precisions = precisions;
+		}
+
+		// NormalEstimator.getProbability
+		private double probability(int i, double value) {
+			double precision = precisions[i];
+			value = Math.rint(value / precision) * precision;
+			double zLower = (value - means[i] - (precision / 2)) / deviations[i];
+			double zUpper = (value - means[i] + (precision / 2)) / deviations[i];
+			return Statistics.normalProbability(zUpper) - Statistics.normalProbability(zLower);
+		}
+
+		@Override
+		public double[] distribution(double[] values) {
+			int numClasses = priors.length;
+			double[] probs = Arrays.copyOf(priors, numClasses);
+
+			for (int a = 0; a < attributes.length; a++) {
+				double value = values[attributes[a]];
+				if (Double.isNaN(value)) continue;
+
+				double max = 0;
+				for (int j = 0; j < numClasses; j++) {
+					probs[j] *= Math.max(1e-75, Math.pow(probability(a * numClasses + j, value), weights[a]));
+					if (probs[j] > max) max = probs[j];
+				}
+				// danger of probability underflow
+				if (max > 0 && max < 1e-75) {
+					for (int j = 0; j < numClasses; j++) {
+						probs[j] *= 1e75;
+					}
+				}
+			}
+
+			Utils.normalize(probs);
+			return probs;
+		}
+	}
+
+	/*
+	 * Random forest
+	 */
+
+	private static Scorer compile(RandomForest forest, Instances data) throws ReflectiveOperationException {
+		Bagging bagger = (Bagging) get(forest, RandomForest.class, "m_bagger");
+		Classifier[] classifiers = (Classifier[]) get(bagger, IteratedSingleClassifierEnhancer.class, "m_Classifiers");
+		int numTrees = Math.min(bagger.getNumIterations(), classifiers.length);
+
+		ForestBuilder builder = new ForestBuilder(data.numClasses());
+		int[] roots = new int[numTrees];
+		for (int t = 0; t < numTrees; t++) {
+			if (!(classifiers[t] instanceof RandomTree)) return null;
+			RandomTree tree = (RandomTree) classifiers[t];
+			if (get(tree, RandomTree.class, "m_zeroR") != null) return null;
+
+			roots[t] = builder.add(get(tree, RandomTree.class, "m_Tree"), tree.getAllowUnclassifiedInstances(), data, null);
+			if (roots[t] < 0) return null;
+		}
+
+		return builder.build(roots);
+	}
+
+	/**
+	 * Flattens {@code RandomTree.Tree}s, numbering the nodes in preorder.
+	 */
+	private static final class ForestBuilder {
+
+		private final int numClasses;
+		private int size = 0;
+		private int[] attribute = new int[1024];
+		private double[] split = new double[1024];
+		private int[] left = new int[1024];
+		private int[] right = new int[1024];
+		private double[] distribution;
+
+		ForestBuilder(int numClasses) {
+			this.numClasses = numClasses;
+			this.distribution = new double[attribute.length * numClasses];
+		}
+
+		private int newNode() {
+			if (size == attribute.length) {
+				int capacity = size * 2;
+				attribute = Arrays.copyOf(attribute, capacity);
+				split = Arrays.copyOf(split, capacity);
+				left = Arrays.copyOf(left, capacity);
+				right = Arrays.copyOf(right, capacity);
+				distribution = Arrays.copyOf(distribution, capacity * numClasses);
+			}
+			return size++;
+		}
+
+		/**
+		 * @param tree a {@code RandomTree.Tree}
+		 * @param allowUnclassified
+		 * @param data
+		 * @param inherited the distribution of the parent, used if the node has none
+		 * @return the index of the node, or -1 if the tree can't be compiled
+		 */
+		int add(Object tree, boolean allowUnclassified, Instances data, double[] inherited) throws ReflectiveOperationException {
+			Class<?> type = tree.getClass();
+			int att = (Integer) get(tree, type, "m_Attribute");
+			double[] own = (double[]) get(tree, type, "m_ClassDistribution");
+
+			// the distribution a path ending at this node gets, normalized
+			double[] dist;
+			if (own != null) {
+				dist = own.clone();
+				Utils.normalize(dist);
+			} else if (allowUnclassified && att == -1) {
+				dist = new double[numClasses];
+			} else {
+				dist = inherited;
+			}
+
+			int node = newNode();
+			attribute[node] = att;
+			if (dist != null) System.arraycopy(dist, 0, distribution, node * numClasses, numClasses);
+			if (att == -1) return node;
+
+			if (!data.attribute(att).isNumeric()) return -1;
+			Object[] successors = (Object[]) get(tree, type, "m_Successors");
+			split[node] = (Double) get(tree, type, "m_SplitPoint");
+			int l = add(successors[0], allowUnclassified, data, dist);
+			int r = add(successors[1], allowUnclassified, data, dist);
+			if (l < 0 || r < 0) return -1;
+			left[node] = l;
+			right[node] = r;
+			return node;
+		}
+
+		Scorer build(int[] roots) {
+			return new ForestScorer(numClasses, roots,
+					Arrays.copyOf(attribute, size), Arrays.copyOf(split, size),
+					Arrays.copyOf(left, size), Arrays.copyOf(right, size),
+					Arrays.copyOf(distribution, size * numClasses));
+		}
+	}
+
+	private static final class ForestScorer implements Scorer {
+
+		private final int numClasses;
+		private final int[] roots;
+		// -1 for leaves
+		private final int[] attribute;
+		private final double[] split;
+		private final int[] left;
+		private final int[] right;
+		// indexed by node * numClasses + class
+		private final double[] distribution;
+
+		ForestScorer(int numClasses, int[] roots, int[] attribute, double[] split, int[] left, int[] right, double[] distribution) {
+			this.numClasses = numClasses;
+			this.roots = roots;
+			this.attribute = attribute;
+			this.split = split;
+			this.left = left;
+			this.right = right;
+			this.distribution = distribution;
+		}
+
+		@Override
+		public double[] distribution(double[] values) {
+			double[] sums = new double[numClasses];
+			for (int root : roots) {
+				int node = root;
+				while (attribute[node] != -1) {
+					node = values[attribute[node]] < split[node] ? left[node] : right[node];
+				}
+				for (int j = 0, offset = node * numClasses; j < numClasses; j++) {
+					sums[j] += distribution[offset + j];
+				}
+			}
+
+			if (!Utils.eq(Utils.sum(sums), 0)) Utils.normalize(sums);
+			return sums;
+		}
+	}
+}
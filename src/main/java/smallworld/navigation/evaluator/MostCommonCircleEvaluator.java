@@ -4,6 +4,7 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 
 import smallworld.data.query.QueryCircles;
+import smallworld.navigation.NavigationContext;
 
 public class MostCommonCircleEvaluator implements Evaluator<Integer> {
 
@@ -12,6 +13,11 @@ public class MostCommonCircleEvaluator implements Evaluator<Integer> {
 		return new MostCommonCircleEvaluator();
 	}
 
+	@Override
+	public boolean isPathIndependent() {
+		return true;
+	}
+
 	@Override
 	public Integer getCost(Path path, Node target) {
 		return getCost(path.endNode(), target);
@@ -20,8 +26,13 @@ public class MostCommonCircleEvaluator implements Evaluator<Integer> {
 	@Override
 	public Integer getCost(Node end, Node target) {
 		int count = 0;
-		count = QueryCircles.getInstance().getCommonCircles(target, end).size();
+		count = QueryCircles.getInstance().getCommonCircleCount(target, end);
 		return 0-count;
 	}
 
+	@Override
+	public Integer getCost(Path path, NavigationContext context) {
+		return 0 - QueryCircles.getInstance().getCommonCircleCount(context.getCircles(), path.endNode());
+	}
+
 }
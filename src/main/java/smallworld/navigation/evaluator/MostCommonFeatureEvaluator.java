@@ -7,6 +7,7 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 
 import smallworld.data.query.QueryFeatures;
+import smallworld.navigation.NavigationContext;
 
 public class MostCommonFeatureEvaluator implements Evaluator<Integer> {
 
@@ -15,6 +16,11 @@ public class MostCommonFeatureEvaluator implements Evaluator<Integer> {
 		return new MostCommonFeatureEvaluator();
 	}
 
+	@Override
+	public boolean isPathIndependent() {
+		return true;
+	}
+
 	@Override
 	public Integer getCost(Path path, Node target) {
 		return getCost(path.endNode(), target);
@@ -34,4 +40,18 @@ public class MostCommonFeatureEvaluator implements Evaluator<Integer> {
 		return 0-count;
 	}
 
+	@Override
+	public Integer getCost(Path path, NavigationContext context) {
+		int count = 0;
+		Node end = path.endNode();
+		Map<String, Object> properties = context.getProperties();
+		for (String key : end.getPropertyKeys()) {
+			Object value = properties.get(key);
+			if (value != null && value.equals(end.getProperty(key)))
+				count++;
+		}
+		
+		return 0-count;
+	}
+
 }
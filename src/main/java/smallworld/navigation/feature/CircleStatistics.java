@@ -0,0 +1,125 @@
+package smallworld.navigation.feature;
+
+import org.neo4j.graphdb.Path;
+
+import smallworld.data.graph.CircleIndex;
+import smallworld.data.query.QueryCircles;
+import smallworld.navigation.NavigationContext;
+
+/**
+ * The common circles among the end node of a path, the node before it
+ * (the parent) and the target, shared by all the circle features of a
+ * {@code FeatureBuilder}.
+ *
+ * Each pair of nodes is compared at most once per path, on first use,
+ * and the comparison gives the number, the smallest size and the largest
+ * size of their common circles at once, using the circle index of
+ * {@code QueryCircles}.  The target side comes from the
+ * {@code NavigationContext}.  A {@code CircleStatistics} is reset for
+ * every path, so a thread can reuse one for all the paths it scores.
+ *
+ * @see FeatureBuilder.CircleFeature
+ * @author chang
+ *
+ */
+public class CircleStatistics {
+
+	private CircleIndex index;
+	private Path path;
+	private NavigationContext context;
+
+	private final int[] endTarget = new int[3];
+	private final int[] parentTarget = new int[3];
+	private final int[] endParent = new int[3];
+	private boolean hasEndTarget;
+	private boolean hasParentTarget;
+	private boolean hasEndParent;
+
+	/**
+	 * Forget the previous path.
+	 *
+	 * @param path
+	 * @param context
+	 * @return this
+	 */
+	public CircleStatistics reset(Path path, NavigationContext context) {
+		this.index = QueryCircles.getInstance().getCircleIndex();
+		this.path = path;
+		this.context = context;
+		hasEndTarget = false;
+		hasParentTarget = false;
+		hasEndParent = false;
+		return this;
+	}
+
+	private int end() {
+		return index.indexOf(path.endNode().getId());
+	}
+
+	private int parent() {
+		return index.indexOf(path.lastRelationship().getOtherNode(path.endNode()).getId());
+	}
+
+	private static void none(int[] statistics) {
+		statistics[CircleIndex.COUNT] = 0;
+		statistics[CircleIndex.MIN] = Integer.MAX_VALUE;
+		statistics[CircleIndex.MAX] = 0;
+	}
+
+	private int[] endTarget() {
+		if (!hasEndTarget) {
+			int end = end();
+			if (end < 0) none(endTarget);
+			else index.getCommonCircles(end, context.getCircles(), endTarget);
+			hasEndTarget = true;
+		}
+		return endTarget;
+	}
+
+	private int[] parentTarget() {
+		if (!hasParentTarget) {
+			int parent = parent();
+			if (parent < 0) none(parentTarget);
+			else index.getCommonCircles(parent, context.getCircles(), parentTarget);
+			hasParentTarget = true;
+		}
+		return parentTarget;
+	}
+
+	private int[] endParent() {
+		if (!hasEndParent) {
+			int end = end();
+			int parent = parent();
+			if (end < 0 || parent < 0) none(endParent);
+			else index.getCommonCircles(end, parent, endParent);
+			hasEndParent = true;
+		}
+		return endParent;
+	}
+
+	public int getEndTargetCount() {
+		return endTarget()[CircleIndex.COUNT];
+	}
+
+	public int getParentTargetCount() {
+		return parentTarget()[CircleIndex.COUNT];
+	}
+
+	/**
+	 * @return the size of the smallest common circle of the parent and the target, or {@code Integer.MAX_VALUE} if none
+	 */
+	public int getParentTargetMin() {
+		return parentTarget()[CircleIndex.MIN];
+	}
+
+	/**
+	 * @return the size of the largest common circle of the parent and the target, or 0 if none
+	 */
+	public int getParentTargetMax() {
+		return parentTarget()[CircleIndex.MAX];
+	}
+
+	public int getEndParentCount() {
+		return endParent()[CircleIndex.COUNT];
+	}
+}
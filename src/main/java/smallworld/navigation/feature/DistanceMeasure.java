@@ -1,89 +1,150 @@
 package smallworld.navigation.feature;
 
-import java.util.concurrent.ExecutionException;
-
-import org.neo4j.graphalgo.GraphAlgoFactory;
-import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
-import org.neo4j.graphdb.PathExpanders;
 import org.neo4j.graphdb.RelationshipType;
 
 import smallworld.Constants;
-import smallworld.util.Pair;
+import smallworld.data.graph.DistanceMatrix;
+import smallworld.data.graph.GraphSnapshot;
+import smallworld.data.query.Query;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 
+/**
+ * The class label of a training instance: whether the last step of a
+ * path gets closer to the target.
+ *
+ * Distances are answered by target.  The first query for a target runs
+ * one breadth-first search backward from it, i.e., over incoming
+ * relationships for directed graphs, which gives the distance of every
+ * node to the target.  Later queries for the same target are array
+ * lookups.  The distance arrays are cached per target, up to a number
+ * of bytes, evicting the least recently used targets.
+ *
+ * For small graphs, distances can also be read from a precomputed
+ * {@code DistanceMatrix} instead, without any search.
+ *
+ * Distances longer than {@code Constants.LIMIT_OF_DEPTH} count as
+ * unreachable.
+ *
+ * @author chang
+ *
+ */
 public class DistanceMeasure implements Feature<Double> {
 
-	private final PathFinder<Path> finder;
-	//private final FeatureCache cache;
-	LoadingCache<Pair<Node, Node>, Integer> cache;
 	private static final String NAME = "DistanceLabel";
-	
-	public DistanceMeasure(String dataset, RelationshipType type, Direction direction) {
-		finder = GraphAlgoFactory.shortestPath(PathExpanders.forTypeAndDirection(type, direction), Constants.LIMIT_OF_DEPTH);
-		
-		//cache = FeatureCache.getInstance(dataset);
-		cache = CacheBuilder.newBuilder()
-				.maximumSize(200000)
+
+	private final Supplier<GraphSnapshot> snapshot;
+	private final LoadingCache<Long, byte[]> cache;
+	private final DistanceMatrix matrix;
+
+	/**
+	 * Measure distances on the graph opened by {@code Query.getInstance()}.
+	 * The graph snapshot is read on the first query.
+	 *
+	 * @param dataset
+	 * @param type
+	 * @param direction
+	 */
+	public DistanceMeasure(String dataset, final RelationshipType type, final Direction direction) {
+		this(Suppliers.memoize(new Supplier<GraphSnapshot>() {
+			@Override
+			public GraphSnapshot get() {
+				return GraphSnapshot.build(Query.getInstance().getGraphDatabaseService(), type, direction);
+			}
+		}), defaultMaximumBytes(), null);
+	}
+
+	public DistanceMeasure(GraphSnapshot snapshot) {
+		this(snapshot, defaultMaximumBytes());
+	}
+
+	/**
+	 * @param snapshot
+	 * @param maximumBytes the memory for caching distance arrays
+	 */
+	public DistanceMeasure(GraphSnapshot snapshot, long maximumBytes) {
+		this(Suppliers.ofInstance(snapshot), maximumBytes, null);
+	}
+
+	/**
+	 * Read all the distances from a matrix.
+	 *
+	 * @param matrix
+	 */
+	public DistanceMeasure(DistanceMatrix matrix) {
+		this(Suppliers.ofInstance(matrix.getSnapshot()), 0, matrix);
+	}
+
+	private DistanceMeasure(final Supplier<GraphSnapshot> snapshot, long maximumBytes, DistanceMatrix matrix) {
+		this.snapshot = snapshot;
+		this.matrix = matrix;
+		this.cache = CacheBuilder.newBuilder()
+				.maximumWeight(maximumBytes)
+				.weigher(new Weigher<Long, byte[]>() {
+					@Override
+					public int weigh(Long target, byte[] distances) {
+						return distances.length;
+					}
+				})
 				.build(
-						new CacheLoader<Pair<Node, Node>, Integer>() {
-							public Integer load(Pair<Node, Node> key) {
-								Path p = finder.findSinglePath(key.getFirst(), key.getSecond());
-								return p == null ? Integer.MAX_VALUE : p.length();
+						new CacheLoader<Long, byte[]>() {
+							public byte[] load(Long target) {
+								GraphSnapshot graph = snapshot.get();
+								byte[] distances = new byte[graph.size()];
+								graph.reverse().distancesFrom(graph.indexOf(target), distances);
+								return distances;
 							}
 						});
 	}
-	
+
+	// an eighth of the heap
+	private static long defaultMaximumBytes() {
+		return Runtime.getRuntime().maxMemory() / 8;
+	}
+
 	@Override
 	public String getName() {
 		return NAME;
 	}
 
 	public void saveCache() {
-		/*
-		if (cache != null) {
-			cache.save();
-		}
-		*/
 	}
-	
+
+	/**
+	 * Get the length of a shortest path from a node to a target.
+	 *
+	 * @param from
+	 * @param target
+	 * @return the distance, or {@code Integer.MAX_VALUE} if the target can't be reached within {@code Constants.LIMIT_OF_DEPTH}
+	 */
+	public int getDistance(Node from, Node target) {
+		GraphSnapshot graph = snapshot.get();
+		int index = graph.indexOf(from.getId());
+		int targetIndex = graph.indexOf(target.getId());
+		if (index < 0 || targetIndex < 0) return Integer.MAX_VALUE;
+
+		int distance = matrix != null ?
+				matrix.distance(index, targetIndex) :
+				GraphSnapshot.toDistance(cache.getUnchecked(target.getId())[index]);
+		return distance > Constants.LIMIT_OF_DEPTH ? Integer.MAX_VALUE : distance;
+	}
+
 	@Override
 	public Double getFeature(Path path, Node target) {
 		Node current = path.endNode();
 		Node previous = path.lastRelationship().getOtherNode(current);
-		
-		//Integer l1 = cache.getFeature(current.getId(), target.getId());
-		//Integer l2 = cache.getFeature(previous.getId(), target.getId());
-		Integer l1 = Integer.MAX_VALUE;
-		Integer l2 = Integer.MAX_VALUE;
-		try {
-			l1 = cache.get(new Pair<Node, Node>(current, target));
-			l2 = cache.get(new Pair<Node, Node>(previous, target));
-		} catch (ExecutionException e) {
-			e.printStackTrace();
-		}
-		
-		/*
-		if (l1 == null) {
-			Path p = finder.findSinglePath(current, target);
-			l1 = p == null ? Integer.MAX_VALUE : p.length();
-			cache.setFeature(current.getId(), target.getId(), l1);
-		}
-		*/
-		
-		/*
-		if (l2 == null) {
-			Path p = finder.findSinglePath(previous, target);
-			l2 = p == null ? Integer.MAX_VALUE : p.length();
-			cache.setFeature(previous.getId(), target.getId(), l2);
-		}
-		*/
-		
+
+		int l1 = getDistance(current, target);
+		int l2 = getDistance(previous, target);
+
 		return l1 < l2 ? 1d : 0d;
 	}
 
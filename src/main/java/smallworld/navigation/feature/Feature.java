@@ -3,6 +3,8 @@ package smallworld.navigation.feature;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 
+import smallworld.navigation.NavigationContext;
+
 /**
  * This class defines a feature used for a machine learning approach.
  * 
@@ -33,4 +35,18 @@ public interface Feature<T> {
 	 * @return
 	 */
 	public T getFeature(Path path, Node target);
+	
+	/**
+	 * Same as {@code getFeature(path, target)}, given what is known about
+	 * the target of the navigation.  Features comparing a path with the
+	 * target, e.g., common circles, override it to use the target side
+	 * computed once for the whole navigation.
+	 * 
+	 * @param path the path of the current navigation
+	 * @param context
+	 * @return
+	 */
+	public default T getFeature(Path path, NavigationContext context) {
+		return getFeature(path, context.getTarget());
+	}
 }
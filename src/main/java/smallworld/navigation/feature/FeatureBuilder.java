@@ -8,7 +8,8 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.RelationshipType;
 
-import smallworld.data.query.QueryCircles;
+import smallworld.data.graph.NodeColumns;
+import smallworld.navigation.NavigationContext;
 import weka.core.Attribute;
 import weka.core.FastVector;
 import weka.core.Instance;
@@ -30,6 +31,11 @@ import weka.core.Instances;
  * This class also provides static methods to create commonly
  * used features.
  * 
+ * Testing a path computes all its features in one pass into a
+ * {@code double[]}, see {@code getFeatureVector}; the circle features
+ * share the comparisons of circles through a {@code CircleStatistics}.
+ * Weka instances are only created for the training data.
+ * 
  * @author chang
  *
  */
@@ -45,6 +51,14 @@ public class FeatureBuilder {
 	private FastVector attributes;
 	private Instances data = null;
 	
+	// reused by each thread for all the paths it tests
+	private static final ThreadLocal<CircleStatistics> circleStatistics = new ThreadLocal<CircleStatistics>() {
+		@Override
+		protected CircleStatistics initialValue() {
+			return new CircleStatistics();
+		}
+	};
+	
 	public FeatureBuilder() {
 		features = new ArrayList<Feature<Double>>();
 		attributes = new FastVector();
@@ -97,14 +111,48 @@ public class FeatureBuilder {
 	}
 	
 	public Instance getTestingInstance(Path path, Node target) {
-		
-		Instance instance = new Instance(features.size());
+		double[] values = newFeatureVector();
+		getFeatureVector(path, new NavigationContext(target), values);
+		return wrap(values);
+	}
+	
+	/**
+	 * @return an array for {@code getFeatureVector}, with the class value missing
+	 */
+	public double[] newFeatureVector() {
+		double[] values = new double[features.size()];
+		values[features.size() - 1] = Instance.missingValue();
+		return values;
+	}
+	
+	/**
+	 * Create an instance backed by an array of values, so writing the
+	 * array, e.g., by {@code getFeatureVector}, changes the instance.
+	 * 
+	 * @param values
+	 * @return
+	 */
+	public Instance wrap(double[] values) {
+		Instance instance = new Instance(1, values);
 		instance.setDataset(getInstances());
-		
-		for (int i = 0; i < features.size() - 1; i++) {
-			Feature<Double> feature = features.get(i);
-			double value = feature.getFeature(path, target);
-			instance.setValue((Attribute)attributes.elementAt(i), value);
+		return instance;
+	}
+	
+	/**
+	 * Get the features, but the class feature, of a path in one pass.
+	 * Nothing is allocated for the values, and the circle features
+	 * share the common circles of the path.
+	 * 
+	 * @param path
+	 * @param context the context of the navigation
+	 * @param values written from 0 to the number of features - 2
+	 */
+	public void getFeatureVector(Path path, NavigationContext context, double[] values) {
+		CircleStatistics circles = circleStatistics.get().reset(path, context);
+		for (int j = 0; j < features.size() - 1; j++) {
+			Feature<Double> feature = features.get(j);
+			values[j] = feature instanceof CircleFeature ?
+					((CircleFeature) feature).getValue(circles) : feature.getFeature(path, context);
 			
 			/*
 			// set weight
@@ -113,8 +161,25 @@ public class FeatureBuilder {
 			}
 			*/
 		}
+	}
+	
+	/**
+	 * Get the features, but the class feature, of many paths to the
+	 * same target, e.g., all the neighbors of a node.
+	 * 
+	 * @see getFeatureVector
+	 * @param paths
+	 * @param context the context of the navigation, shared by the paths
+	 * @return a row per path and a column per attribute; the class values are missing
+	 */
+	public double[][] getFeatureMatrix(List<? extends Path> paths, NavigationContext context) {
+		double[][] matrix = new double[paths.size()][];
+		for (int i = 0; i < matrix.length; i++) {
+			matrix[i] = newFeatureVector();
+			getFeatureVector(paths.get(i), context, matrix[i]);
+		}
 		
-		return instance;
+		return matrix;
 	}
 	
 	public synchronized void addTrainingInstance(Instance i) {
@@ -132,6 +197,28 @@ public class FeatureBuilder {
 		return instance;
 	}
 	
+	/**
+	 * A feature computed from the common circles of a path, which the
+	 * circle features of a builder share instead of each comparing the
+	 * circles again.
+	 * 
+	 * @see CircleStatistics
+	 */
+	public static abstract class CircleFeature implements Feature<Double> {
+		
+		public abstract double getValue(CircleStatistics circles);
+		
+		@Override
+		public Double getFeature(Path path, Node target) {
+			return getFeature(path, new NavigationContext(target));
+		}
+		
+		@Override
+		public Double getFeature(Path path, NavigationContext context) {
+			return getValue(new CircleStatistics().reset(path, context));
+		}
+	}
+	
 	public static Feature<Double> getPathLengthFeature(String dataset) {
 		
 		final double max;
@@ -158,7 +245,19 @@ public class FeatureBuilder {
 	}
 	
 	public static Feature<Double> getEndNodeDegreeFeature(String dataset, final RelationshipType type, final Direction direction) {
+		return getEndNodeDegreeFeature(dataset, type, direction, null);
+	}
+	
+	/**
+	 * @param dataset
+	 * @param type
+	 * @param direction
+	 * @param nodeColumns the degrees are read from, if not null
+	 * @return
+	 */
+	public static Feature<Double> getEndNodeDegreeFeature(String dataset, final RelationshipType type, final Direction direction, NodeColumns nodeColumns) {
 		
+		final NodeColumns columns = nodeColumns != null && nodeColumns.hasDegree(type) ? nodeColumns : null;
 		final double max;
 		if (dataset.equals("facebook")) max = 1100d;
 		else max = 5000d;
@@ -166,7 +265,9 @@ public class FeatureBuilder {
 		return new Feature<Double>() {
 			@Override
 			public Double getFeature(Path path, Node target) {
-				int count = path.endNode().getDegree(type, direction);
+				int count = columns != null ? 
+						columns.getDegree(path.endNode().getId(), type, direction) :
+						path.endNode().getDegree(type, direction);
 				if (scaling) {
 					if (count > max) System.err.println("EndNodeDegree feature " + count + " exceed max: " + max);
 					return ((double)count) / max;
@@ -183,6 +284,18 @@ public class FeatureBuilder {
 	}
 	
 	public static Feature<Double> getParentNodeDegreeFeature(String dataset, final RelationshipType type, final Direction direction) {
+		return getParentNodeDegreeFeature(dataset, type, direction, null);
+	}
+	
+	/**
+	 * @param dataset
+	 * @param type
+	 * @param direction
+	 * @param nodeColumns the degrees are read from, if not null
+	 * @return
+	 */
+	public static Feature<Double> getParentNodeDegreeFeature(String dataset, final RelationshipType type, final Direction direction, NodeColumns nodeColumns) {
+		final NodeColumns columns = nodeColumns != null && nodeColumns.hasDegree(type) ? nodeColumns : null;
 		final double max;
 		if (dataset.equals("facebook")) max = 1100d;
 		else max = 5000d;
@@ -190,7 +303,10 @@ public class FeatureBuilder {
 		return new Feature<Double>() {
 			@Override
 			public Double getFeature(Path path, Node target) {
-				int count = path.lastRelationship().getOtherNode(path.endNode()).getDegree(type, direction);
+				Node parent = path.lastRelationship().getOtherNode(path.endNode());
+				int count = columns != null ? 
+						columns.getDegree(parent.getId(), type, direction) :
+						parent.getDegree(type, direction);
 				if (scaling) {
 					if (count > max) System.err.println("ParentNodeDegree feature " + count + " exceed max: " + max);
 					return ((double)count) / max;
@@ -207,11 +323,10 @@ public class FeatureBuilder {
 	}
 	
 	public static Feature<Double> hasCommonCirclesWithTarget(String dataset) {
-		return new Feature<Double>() {
+		return new CircleFeature() {
 			@Override
-			public Double getFeature(Path path, Node target) {
-				//int count = QueryCircles.getInstance().getCommonCircleLabels(path.endNode(), target).size();
-				int count = QueryCircles.getInstance().getCommonCircles(path.endNode(), target).size();
+			public double getValue(CircleStatistics circles) {
+				int count = circles.getEndTargetCount();
 				return count > 0 ? ONE : ZERO; 
 			}
 			
@@ -227,11 +342,10 @@ public class FeatureBuilder {
 		if (dataset.equals("facebook")) max = 20d;
 		else max = 100d;
 		
-		return new Feature<Double>() {
+		return new CircleFeature() {
 			@Override
-			public Double getFeature(Path path, Node target) {
-				//int count = QueryCircles.getInstance().getCommonCircleLabels(path.endNode(), target).size();
-				int count = QueryCircles.getInstance().getCommonCircles(path.endNode(), target).size();
+			public double getValue(CircleStatistics circles) {
+				int count = circles.getEndTargetCount();
 				if (scaling) {
 					if (count > max) System.err.println("CommonCirclesWithTarget feature " + count + " exceed max: " + max);
 					return ((double)count) / max;
@@ -248,11 +362,10 @@ public class FeatureBuilder {
 	}
 
 	public static Feature<Double> hasCommonCirclesWithParent(String dataset) {
-		return new Feature<Double>() {
+		return new CircleFeature() {
 			@Override
-			public Double getFeature(Path path, Node target) {
-				int count = QueryCircles.getInstance().getCommonCircles(
-						path.lastRelationship().getOtherNode(path.endNode()), path.endNode()).size();
+			public double getValue(CircleStatistics circles) {
+				int count = circles.getEndParentCount();
 				return count > 0 ? ONE : ZERO; 
 			}
 			
@@ -268,11 +381,10 @@ public class FeatureBuilder {
 		if (dataset.equals("facebook")) max = 20d;
 		else max = 100d;
 		
-		return new Feature<Double>() {
+		return new CircleFeature() {
 			@Override
-			public Double getFeature(Path path, Node target) {
-				int count = QueryCircles.getInstance().getCommonCircles(
-						path.lastRelationship().getOtherNode(path.endNode()), path.endNode()).size();
+			public double getValue(CircleStatistics circles) {
+				int count = circles.getEndParentCount();
 				//int count = QueryCircles.getCommonCircles(path.lastRelationship().getOtherNode(path.endNode()), path.endNode()).size();
 				if (scaling) {
 					if (count > max) System.err.println("CommonCirclesWithParent feature " + count + " exceed max: " + max);
@@ -290,11 +402,10 @@ public class FeatureBuilder {
 	}
 	
 	public static Feature<Double> hasCommonCirclesBetweenParentTarget(String dataset) {
-		return new Feature<Double>() {
+		return new CircleFeature() {
 			@Override
-			public Double getFeature(Path path, Node target) {
-				int count = QueryCircles.getInstance().getCommonCircles(
-						path.lastRelationship().getOtherNode(path.endNode()), target).size();
+			public double getValue(CircleStatistics circles) {
+				int count = circles.getParentTargetCount();
 				return count > 0 ? ONE : ZERO; 
 			}
 			
@@ -312,11 +423,10 @@ public class FeatureBuilder {
 			max = 100d;
 		}
 		
-		return new Feature<Double>() {
+		return new CircleFeature() {
 			@Override
-			public Double getFeature(Path path, Node target) {
-				int count = QueryCircles.getInstance().getCommonCircles(
-						path.lastRelationship().getOtherNode(path.endNode()), target).size();
+			public double getValue(CircleStatistics circles) {
+				int count = circles.getParentTargetCount();
 				//int count = QueryCircles.getCommonCircles(path.lastRelationship().getOtherNode(path.endNode()), target).size();
 				if (scaling) {
 					if (count > max) System.err.println("CommonCirclesBetweenParentTarget feature " + count + " exceed max: " + max);
@@ -340,11 +450,10 @@ public class FeatureBuilder {
 			max = 1000d;
 		}
 		
-		return new Feature<Double>() {
+		return new CircleFeature() {
 			@Override
-			public Double getFeature(Path path, Node target) {
-				double size = QueryCircles.getInstance().getMinCommonCircle(
-						path.lastRelationship().getOtherNode(path.endNode()), target);
+			public double getValue(CircleStatistics circles) {
+				double size = circles.getParentTargetMin();
 				//double size = QueryCircles.getMinCommonCircle(path.lastRelationship().getOtherNode(path.endNode()), target);
 				if (size == Integer.MAX_VALUE) size = max;
 				if (scaling) {
@@ -369,11 +478,10 @@ public class FeatureBuilder {
 			max = 1000d;
 		}
 		
-		return new Feature<Double>() {
+		return new CircleFeature() {
 			@Override
-			public Double getFeature(Path path, Node target) {
-				int size = QueryCircles.getInstance().getMaxCommonCircle(
-						path.lastRelationship().getOtherNode(path.endNode()), target);
+			public double getValue(CircleStatistics circles) {
+				int size = circles.getParentTargetMax();
 				if (scaling) {
 					if (size > max) System.err.println("MaxCommonCircleWithTarget feature " + size + " exceed max: " + max);
 					return ((double)size) / max;
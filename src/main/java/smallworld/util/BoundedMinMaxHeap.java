@@ -0,0 +1,228 @@
+package smallworld.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A double-ended priority queue of elements with primitive {@code int}
+ * costs, implemented as a min-max heap.
+ *
+ * The cost of an element is given once, when it is added, and kept next
+ * to it; ordering never calls back into the caller.  The cheapest element
+ * is polled first.  If the heap has a maximum size, adding to a full heap
+ * evicts the most expensive element, which may be the one just added,
+ * like a {@code MinMaxPriorityQueue} built with {@code maximumSize}.
+ *
+ * Not thread-safe.
+ *
+ * @author chang
+ *
+ * @param <T> the type of elements
+ */
+public class BoundedMinMaxHeap<T> {
+
+	private final int maximumSize;
+	private int[] costs;
+	private Object[] elements;
+	private int size = 0;
+
+	/**
+	 * Create an unbounded heap.
+	 */
+	public BoundedMinMaxHeap() {
+		this(-1);
+	}
+
+	/**
+	 * @param maximumSize the maximum number of elements, or -1 for no limit
+	 */
+	public BoundedMinMaxHeap(int maximumSize) {
+		if (maximumSize == 0 || maximumSize < -1) throw new IllegalArgumentException("maximum size: " + maximumSize);
+		this.maximumSize = maximumSize;
+		int capacity = maximumSize == -1 ? 16 : Math.min(maximumSize, 16);
+		costs = new int[capacity];
+		elements = new Object[capacity];
+	}
+
+	/**
+	 * Add an element.
+	 *
+	 * @param cost
+	 * @param element
+	 * @return false if the heap is full and the element is the most expensive, so it is not kept
+	 */
+	public boolean add(int cost, T element) {
+		if (size == maximumSize) {
+			int max = maxIndex();
+			if (cost >= costs[max]) return false;
+			removeAt(max);
+		}
+
+		if (size == costs.length) {
+			int capacity = costs.length * 2;
+			if (maximumSize != -1) capacity = Math.min(capacity, maximumSize);
+			costs = Arrays.copyOf(costs, capacity);
+			elements = Arrays.copyOf(elements, capacity);
+		}
+
+		int i = size++;
+		costs[i] = cost;
+		elements[i] = element;
+		bubbleUp(i);
+		return true;
+	}
+
+	/**
+	 * Remove the cheapest element.
+	 *
+	 * @return the cheapest element, or null if the heap is empty
+	 */
+	public T poll() {
+		if (size == 0) return null;
+		T element = elementAt(0);
+		removeAt(0);
+		return element;
+	}
+
+	/**
+	 * Remove the most expensive element.
+	 *
+	 * @return the most expensive element, or null if the heap is empty
+	 */
+	public T pollLast() {
+		if (size == 0) return null;
+		int max = maxIndex();
+		T element = elementAt(max);
+		removeAt(max);
+		return element;
+	}
+
+	/**
+	 * @return the cheapest element, or null if the heap is empty
+	 */
+	public T peek() {
+		return size == 0 ? null : elementAt(0);
+	}
+
+	/**
+	 * @return the cost of the cheapest element
+	 */
+	public int peekCost() {
+		if (size == 0) throw new NoSuchElementException();
+		return costs[0];
+	}
+
+	/**
+	 * @return the cost of the most expensive element
+	 */
+	public int peekLastCost() {
+		if (size == 0) throw new NoSuchElementException();
+		return costs[maxIndex()];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(elements, 0, size, null);
+		size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T elementAt(int i) {
+		return (T) elements[i];
+	}
+
+	private int maxIndex() {
+		if (size <= 2) return size - 1;
+		return costs[1] >= costs[2] ? 1 : 2;
+	}
+
+	// Levels alternate between min levels (even depth) and max levels (odd depth)
+	private static boolean isMinLevel(int i) {
+		return (31 - Integer.numberOfLeadingZeros(i + 1)) % 2 == 0;
+	}
+
+	private void removeAt(int i) {
+		int last = --size;
+		if (i != last) {
+			costs[i] = costs[last];
+			elements[i] = elements[last];
+			elements[last] = null;
+			trickleDown(i);
+		} else {
+			elements[last] = null;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int cost = costs[i];
+		costs[i] = costs[j];
+		costs[j] = cost;
+		Object element = elements[i];
+		elements[i] = elements[j];
+		elements[j] = element;
+	}
+
+	private void bubbleUp(int i) {
+		if (i == 0) return;
+		int parent = (i - 1) / 2;
+		if (isMinLevel(i)) {
+			if (costs[i] > costs[parent]) {
+				swap(i, parent);
+				bubbleUp(parent, false);
+			} else {
+				bubbleUp(i, true);
+			}
+		} else {
+			if (costs[i] < costs[parent]) {
+				swap(i, parent);
+				bubbleUp(parent, true);
+			} else {
+				bubbleUp(i, false);
+			}
+		}
+	}
+
+	// Move an element up through the grandparents on its own kind of levels
+	private void bubbleUp(int i, boolean min) {
+		while (i >= 3) {
+			int grandparent = ((i - 1) / 2 - 1) / 2;
+			if (min ? costs[i] < costs[grandparent] : costs[i] > costs[grandparent]) {
+				swap(i, grandparent);
+				i = grandparent;
+			} else {
+				break;
+			}
+		}
+	}
+
+	private void trickleDown(int i) {
+		boolean min = isMinLevel(i);
+		while (2 * i + 1 < size) {
+			// the extreme one among children and grandchildren
+			int m = 2 * i + 1;
+			for (int c = 2 * i + 1; c <= 2 * i + 2 && c < size; c++) {
+				if (min ? costs[c] < costs[m] : costs[c] > costs[m]) m = c;
+				for (int g = 2 * c + 1; g <= 2 * c + 2 && g < size; g++) {
+					if (min ? costs[g] < costs[m] : costs[g] > costs[m]) m = g;
+				}
+			}
+
+			if (!(min ? costs[m] < costs[i] : costs[m] > costs[i])) break;
+			swap(i, m);
+
+			// a child is on the opposite kind of level and has no children to check
+			if (m <= 2 * i + 2) break;
+
+			int parent = (m - 1) / 2;
+			if (min ? costs[m] > costs[parent] : costs[m] < costs[parent]) swap(m, parent);
+			i = m;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package smallworld.util;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+/**
+ * An RBF-kernel {@code svm_model} of LibSVM for classification, with its
+ * support vectors in a dense matrix, to predict dense feature vectors.
+ *
+ * The support vectors are laid out row by row in a single array, and
+ * the squared norm of each is computed once, so a kernel value is
+ * {@code exp(-gamma * (|x|^2 + |sv|^2 - 2 x.sv))}, i.e., one dot product
+ * over the features without merging sparse indexes.  Vectors use the
+ * layout of {@code FeatureBuilder}; feature {@code i} is LibSVM index
+ * {@code i + 1}, and missing values, e.g., the class, count as 0, as in
+ * {@code LibSVMUtils.toSVMNode}.
+ *
+ * The label is the one {@code LibSVMUtils.predict} gives, i.e., voted
+ * one-against-one by the decision values, or, for a model with
+ * probability estimates, the more probable of two classes.  A model is
+ * immutable, so threads can share one without locking.
+ *
+ * @see LibSVMUtils
+ * @author chang
+ *
+ */
+public class DenseSVMModel {
+
+	private final int numClasses;
+	private final int numVectors;
+	private final int dimension;
+	private final double gamma;
+	private final int[] labels;
+	// the first support vector of each class
+	private final int[] start;
+	private final int[] count;
+	// numVectors x dimension
+	private final double[] vectors;
+	private final double[] norms;
+	// (numClasses - 1) x numVectors, as svm_model.sv_coef
+	private final double[] coefficients;
+	private final double[] rho;
+	// the sigmoid of the decision value, for models of two classes with probability estimates
+	private final double probA;
+	private final double probB;
+	private final boolean probability;
+
+	/**
+	 * @param model
+	 * @param dimension the number of features, including the class
+	 */
+	public DenseSVMModel(svm_model model, int dimension) {
+		if (!isSupported(model)) throw new IllegalArgumentException("Not an RBF classification model");
+
+		this.numClasses = model.nr_class;
+		this.numVectors = model.l;
+		this.gamma = model.param.gamma;
+		this.labels = model.label.clone();
+
+		int maxIndex = dimension;
+		for (svm_node[] sv : model.SV) {
+			for (svm_node node : sv) maxIndex = Math.max(maxIndex, node.index);
+		}
+		this.dimension = maxIndex;
+
+		this.start = new int[numClasses];
+		this.count = model.nSV.clone();
+		for (int i = 1; i < numClasses; i++) {
+			start[i] = start[i - 1] + count[i - 1];
+		}
+
+		this.vectors = new double[numVectors * this.dimension];
+		this.norms = new double[numVectors];
+		for (int k = 0; k < numVectors; k++) {
+			double norm = 0;
+			for (svm_node node : model.SV[k]) {
+				vectors[k * this.dimension + node.index - 1] = node.value;
+				norm += node.value * node.value;
+			}
+			norms[k] = norm;
+		}
+
+		this.coefficients = new double[(numClasses - 1) * numVectors];
+		for (int j = 0; j < numClasses - 1; j++) {
+			System.arraycopy(model.sv_coef[j], 0, coefficients, j * numVectors, numVectors);
+		}
+		this.rho = model.rho.clone();
+
+		this.probability = svm.svm_check_probability_model(model) == 1;
+		this.probA = probability ? model.probA[0] : 0;
+		this.probB = probability ? model.probB[0] : 0;
+	}
+
+	/**
+	 * @param model
+	 * @return whether a model is an RBF classifier, of two classes if it has probability estimates
+	 */
+	public static boolean isSupported(svm_model model) {
+		svm_parameter param = model.param;
+		if (param.kernel_type != svm_parameter.RBF) return false;
+		if (param.svm_type != svm_parameter.C_SVC && param.svm_type != svm_parameter.NU_SVC) return false;
+		return svm.svm_check_probability_model(model) == 0 || model.nr_class == 2;
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	// the feature i of a vector, missing values and features beyond the vector as 0
+	private static double value(double[] x, int i) {
+		if (i >= x.length) return 0;
+		double value = x[i];
+		return Double.isNaN(value) ? 0 : value;
+	}
+
+	private double norm(double[] x) {
+		double norm = 0;
+		for (int i = 0; i < dimension; i++) {
+			double value = value(x, i);
+			norm += value * value;
+		}
+		return norm;
+	}
+
+	private double kernel(double[] x, double xNorm, int k) {
+		double dot = 0;
+		int offset = k * dimension;
+		int length = Math.min(x.length, dimension);
+		for (int i = 0; i < length; i++) {
+			double value = x[i];
+			if (!Double.isNaN(value)) dot += value * vectors[offset + i];
+		}
+		// rounding may make the squared distance of close vectors negative
+		double distance = Math.max(0, xNorm + norms[k] - 2 * dot);
+		return Math.exp(-gamma * distance);
+	}
+
+	// the label of two classes, given the decision value
+	private double label(double decision) {
+		if (probability) {
+			double[] estimates = new double[2];
+			probabilities(decision, estimates);
+			return estimates[1] > estimates[0] ? labels[1] : labels[0];
+		}
+		return decision > 0 ? labels[0] : labels[1];
+	}
+
+	// svm.svm_predict_probability for two classes
+	private void probabilities(double decision, double[] estimates) {
+		double minProbability = 1e-7;
+		double fApB = decision * probA + probB;
+		double sigmoid = fApB >= 0 ? Math.exp(-fApB) / (1.0 + Math.exp(-fApB)) : 1.0 / (1 + Math.exp(fApB));
+		double[][] pairwise = new double[2][2];
+		pairwise[0][1] = Math.min(Math.max(sigmoid, minProbability), 1 - minProbability);
+		pairwise[1][0] = 1 - pairwise[0][1];
+		multiclassProbability(2, pairwise, estimates);
+	}
+
+	// the coupling of pairwise probabilities of svm.multiclass_probability
+	private static void multiclassProbability(int k, double[][] r, double[] p) {
+		int maxIterations = Math.max(100, k);
+		double[][] Q = new double[k][k];
+		double[] Qp = new double[k];
+		double eps = 0.005 / k;
+
+		for (int t = 0; t < k; t++) {
+			p[t] = 1.0 / k;
+			Q[t][t] = 0;
+			for (int j = 0; j < t; j++) {
+				Q[t][t] += r[j][t] * r[j][t];
+				Q[t][j] = Q[j][t];
+			}
+			for (int j = t + 1; j < k; j++) {
+				Q[t][t] += r[j][t] * r[j][t];
+				Q[t][j] = -r[j][t] * r[t][j];
+			}
+		}
+
+		for (int iteration = 0; iteration < maxIterations; iteration++) {
+			double pQp = 0;
+			for (int t = 0; t < k; t++) {
+				Qp[t] = 0;
+				for (int j = 0; j < k; j++) {
+					Qp[t] += Q[t][j] * p[j];
+				}
+				pQp += p[t] * Qp[t];
+			}
+
+			double maxError = 0;
+			for (int t = 0; t < k; t++) {
+				double error = Math.abs(Qp[t] - pQp);
+				if (error > maxError) maxError = error;
+			}
+			if (maxError < eps) break;
+
+			for (int t = 0; t < k; t++) {
+				double diff = (-Qp[t] + pQp) / Q[t][t];
+				p[t] += diff;
+				pQp = (pQp + diff * (diff * Q[t][t] + 2 * Qp[t])) / (1 + diff) / (1 + diff);
+				for (int j = 0; j < k; j++) {
+					Qp[j] = (Qp[j] + diff * Q[t][j]) / (1 + diff);
+					p[j] /= (1 + diff);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param x the features
+	 * @param estimates the probability of each class, as {@code svm.svm_predict_probability}
+	 * @return the predicted label
+	 */
+	public double predictProbability(double[] x, double[] estimates) {
+		if (!probability) throw new IllegalStateException("No probability estimates in " + this);
+		probabilities(decisionValue(x), estimates);
+		return estimates[1] > estimates[0] ? labels[1] : labels[0];
+	}
+
+	/**
+	 * @param x the features
+	 * @return the decision value of the first two classes
+	 */
+	public double decisionValue(double[] x) {
+		double xNorm = norm(x);
+		double sum = 0;
+		int end = start[1] + count[1];
+		for (int k = start[0]; k < end; k++) {
+			// with two classes, all the support vectors have their coefficients in the first row
+			sum += coefficients[k] * kernel(x, xNorm, k);
+		}
+		return sum - rho[0];
+	}
+
+	/**
+	 * @param x the features
+	 * @return the predicted label
+	 */
+	public double predict(double[] x) {
+		if (numClasses == 2) return label(decisionValue(x));
+
+		double xNorm = norm(x);
+		double[] kvalue = new double[numVectors];
+		for (int k = 0; k < numVectors; k++) {
+			kvalue[k] = kernel(x, xNorm, k);
+		}
+
+		// one against one
+		int[] vote = new int[numClasses];
+		int p = 0;
+		for (int i = 0; i < numClasses; i++) {
+			for (int j = i + 1; j < numClasses; j++) {
+				double sum = 0;
+				int coef1 = (j - 1) * numVectors;
+				int coef2 = i * numVectors;
+				for (int k = start[i]; k < start[i] + count[i]; k++) {
+					sum += coefficients[coef1 + k] * kvalue[k];
+				}
+				for (int k = start[j]; k < start[j] + count[j]; k++) {
+					sum += coefficients[coef2 + k] * kvalue[k];
+				}
+				sum -= rho[p++];
+				if (sum > 0) ++vote[i];
+				else ++vote[j];
+			}
+		}
+
+		int max = 0;
+		for (int i = 1; i < numClasses; i++) {
+			if (vote[i] > vote[max]) max = i;
+		}
+		return labels[max];
+	}
+
+	/**
+	 * Predict the rows of a matrix, e.g., {@code FeatureBuilder.getFeatureMatrix}.
+	 *
+	 * For two classes, each support vector is compared with all the rows
+	 * before the next one, so it is read from memory once per batch.
+	 *
+	 * @param rows the features
+	 * @param predictions the predicted label of each row
+	 */
+	public void predict(double[][] rows, double[] predictions) {
+		if (numClasses != 2) {
+			for (int r = 0; r < rows.length; r++) {
+				predictions[r] = predict(rows[r]);
+			}
+			return;
+		}
+
+		double[] rowNorms = new double[rows.length];
+		double[] sums = new double[rows.length];
+		for (int r = 0; r < rows.length; r++) {
+			rowNorms[r] = norm(rows[r]);
+		}
+
+		int end = start[1] + count[1];
+		for (int k = start[0]; k < end; k++) {
+			double coefficient = coefficients[k];
+			for (int r = 0; r < rows.length; r++) {
+				sums[r] += coefficient * kernel(rows[r], rowNorms[r], k);
+			}
+		}
+
+		for (int r = 0; r < rows.length; r++) {
+			predictions[r] = label(sums[r] - rho[0]);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "DenseSVMModel[" + numClasses + " classes, " + numVectors + " vectors, " + dimension + " features]";
+	}
+}
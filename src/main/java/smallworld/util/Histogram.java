@@ -0,0 +1,96 @@
+package smallworld.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative longs, e.g., times or numbers of nodes,
+ * that many threads record to without locking.
+ *
+ * Values are counted in buckets whose width grows with the value, as in
+ * an HDR histogram: values below 128 have a bucket each, and larger
+ * values share a bucket with others within 1/64 of them.  So the
+ * histogram takes the same 30 KB whatever the values, and percentiles
+ * are within 1.6% of the values recorded.  The maximum is exact.
+ *
+ * @author chang
+ *
+ */
+public class Histogram {
+
+	// values below 2^SUB_BUCKET_BITS are exact
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int HALF = 1 << (SUB_BUCKET_BITS - 1);
+	private static final int NUMBER_OF_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * HALF + HALF;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	private static int indexOf(long value) {
+		if (value < 2 * HALF) return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		return shift * HALF + (int) (value >>> shift);
+	}
+
+	// the largest value counted in a bucket
+	private static long highestOf(int index) {
+		if (index < 2 * HALF) return index;
+		int shift = index / HALF - 1;
+		long sub = index - shift * HALF;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * @param value negative values are counted as 0
+	 */
+	public void record(long value) {
+		if (value < 0) value = 0;
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * @param percentile from 0 to 100
+	 * @return the value that percentile of the values are at or below,
+	 *         or 0 if nothing is recorded
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.sum();
+		if (n == 0) return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) return Math.min(highestOf(i), getMax());
+		}
+		return getMax();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("p50=%d p99=%d max=%d", getPercentile(50), getPercentile(99), getMax());
+	}
+}
@@ -25,9 +25,21 @@ import weka.core.converters.LibSVMSaver;
 public class LibSVMUtils {
 	
 	public static svm_node[] toSVMNode(Instance instance) {
-		List<svm_node> nodes = new ArrayList<>(instance.numAttributes());
-		for (int i = 0; i < instance.numAttributes(); i++) {
-			double value = instance.value(i);
+		return toSVMNode(instance.toDoubleArray());
+	}
+	
+	/**
+	 * Convert the values of an instance, e.g., a row of 
+	 * {@code FeatureBuilder.getFeatureMatrix}, skipping zeros and
+	 * missing values.
+	 * 
+	 * @param values
+	 * @return
+	 */
+	public static svm_node[] toSVMNode(double[] values) {
+		List<svm_node> nodes = new ArrayList<>(values.length);
+		for (int i = 0; i < values.length; i++) {
+			double value = values[i];
 			if (!Double.isNaN(value) && value != 0d) {
 				svm_node node = new svm_node();
 				node.index = i + 1;
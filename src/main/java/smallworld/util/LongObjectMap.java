@@ -0,0 +1,136 @@
+package smallworld.util;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive longs, e.g., node ids, to objects, using open
+ * addressing.
+ *
+ * Like {@code LongSet}, slots are stamped with an epoch, so {@code clear}
+ * takes constant time and the map is cheap to reuse.  Values of cleared
+ * slots stay referenced until they are overwritten.
+ *
+ * Not thread-safe.
+ *
+ * @see LongSet
+ * @author chang
+ *
+ * @param <V> the type of values
+ */
+public class LongObjectMap<V> {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private long[] keys;
+	private Object[] values;
+	private int[] stamps;
+	private int mask;
+	private int epoch = 1;
+	private int size = 0;
+
+	public LongObjectMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expected the expected number of entries
+	 */
+	public LongObjectMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		stamps = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return the previous value of the key, or null if there was none
+	 */
+	public V put(long key, V value) {
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+			if (stamps[i] != epoch) {
+				keys[i] = key;
+				values[i] = value;
+				stamps[i] = epoch;
+				if (++size * 2 > keys.length) grow();
+				return null;
+			}
+			if (keys[i] == key) {
+				@SuppressWarnings("unchecked")
+				V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return the value of the key, or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+			if (stamps[i] != epoch) return null;
+			if (keys[i] == key) return (V) values[i];
+		}
+	}
+
+	public boolean containsKey(long key) {
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+			if (stamps[i] != epoch) return false;
+			if (keys[i] == key) return true;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all the entries in constant time.
+	 */
+	public void clear() {
+		size = 0;
+		if (++epoch == Integer.MAX_VALUE) {
+			Arrays.fill(stamps, 0);
+			Arrays.fill(values, null);
+			epoch = 1;
+		}
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		int[] oldStamps = stamps;
+		int oldEpoch = epoch;
+
+		keys = new long[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		stamps = new int[oldKeys.length * 2];
+		mask = keys.length - 1;
+		epoch = 1;
+
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldStamps[j] != oldEpoch) continue;
+			int i = hash(oldKeys[j]) & mask;
+			while (stamps[i] == epoch) i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+			stamps[i] = epoch;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package smallworld.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache from pairs of primitive longs, e.g., node ids, to ints,
+ * shared by many threads.
+ *
+ * The cache is split into stripes, chosen by the hash of a pair, and each
+ * stripe is a set-associative table: a pair can only be in one bucket of
+ * {@code WAYS} slots.  Putting a pair into a full bucket evicts one of its
+ * entries, in turn, so the cache never holds more than its capacity.
+ * Entries are immutable and published through atomic arrays, so neither
+ * reads nor writes take locks; a write may race with another and lose,
+ * which only costs a miss later.
+ *
+ * The hits and the misses of {@code get} are counted.
+ *
+ * @author chang
+ *
+ */
+public class LongPairIntCache {
+
+	private static final int WAYS = 4;
+	private static final int MAXIMUM_STRIPES = 64;
+
+	private static final class Entry {
+		final long first;
+		final long second;
+		final int value;
+
+		Entry(long first, long second, int value) {
+			this.first = first;
+			this.second = second;
+			this.value = value;
+		}
+	}
+
+	private static final class Stripe {
+		final AtomicReferenceArray<Entry> slots;
+		// the next slot of a full bucket to evict
+		final AtomicInteger clock = new AtomicInteger();
+
+		Stripe(int size) {
+			slots = new AtomicReferenceArray<Entry>(size);
+		}
+	}
+
+	private final Stripe[] stripes;
+	private final int stripeMask;
+	private final int bucketMask;
+	private final int capacity;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param maximumSize the number of entries, rounded up to a power of two
+	 */
+	public LongPairIntCache(int maximumSize) {
+		int capacity = Integer.highestOneBit(Math.max(maximumSize, WAYS) * 2 - 1);
+		int numberOfStripes = Math.min(MAXIMUM_STRIPES, capacity / WAYS);
+		int bucketsPerStripe = capacity / WAYS / numberOfStripes;
+
+		this.capacity = capacity;
+		this.stripes = new Stripe[numberOfStripes];
+		for (int s = 0; s < numberOfStripes; s++) {
+			stripes[s] = new Stripe(bucketsPerStripe * WAYS);
+		}
+		this.stripeMask = numberOfStripes - 1;
+		this.bucketMask = bucketsPerStripe - 1;
+	}
+
+	private static long hash(long first, long second) {
+		long key = first * 0x9e3779b97f4a7c15L + second;
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	private Stripe stripe(long hash) {
+		return stripes[(int) (hash >>> 32) & stripeMask];
+	}
+
+	private int bucket(long hash) {
+		return ((int) hash & bucketMask) * WAYS;
+	}
+
+	/**
+	 * @param first
+	 * @param second
+	 * @param missing returned if the pair is not cached
+	 * @return the value of the pair, or {@code missing}
+	 */
+	public int get(long first, long second, int missing) {
+		long hash = hash(first, second);
+		AtomicReferenceArray<Entry> slots = stripe(hash).slots;
+		int bucket = bucket(hash);
+		for (int i = bucket; i < bucket + WAYS; i++) {
+			Entry entry = slots.get(i);
+			if (entry != null && entry.first == first && entry.second == second) {
+				hits.increment();
+				return entry.value;
+			}
+		}
+		misses.increment();
+		return missing;
+	}
+
+	/**
+	 * Cache the value of a pair, replacing its previous value or, if the
+	 * bucket of the pair is full, another entry.
+	 *
+	 * @param first
+	 * @param second
+	 * @param value
+	 */
+	public void put(long first, long second, int value) {
+		long hash = hash(first, second);
+		Stripe stripe = stripe(hash);
+		AtomicReferenceArray<Entry> slots = stripe.slots;
+		int bucket = bucket(hash);
+
+		int victim = -1;
+		for (int i = bucket; i < bucket + WAYS; i++) {
+			Entry entry = slots.get(i);
+			if (entry == null || (entry.first == first && entry.second == second)) {
+				victim = i;
+				break;
+			}
+		}
+		if (victim < 0) victim = bucket + (stripe.clock.getAndIncrement() & (WAYS - 1));
+
+		slots.set(victim, new Entry(first, second, value));
+	}
+
+	/**
+	 * @return the maximum number of entries
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of entries, counted by scanning the cache
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			for (int i = 0; i < stripe.slots.length(); i++) {
+				if (stripe.slots.get(i) != null) size++;
+			}
+		}
+		return size;
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the ratio of hits to lookups, or 0 if none
+	 */
+	public double hitRate() {
+		long hits = hits();
+		long lookups = hits + misses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LongPairIntCache[capacity=%d, hits=%d, misses=%d, hit rate=%.4f]",
+				capacity, hits(), misses(), hitRate());
+	}
+}
@@ -0,0 +1,115 @@
+package smallworld.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue that many threads put into and a single thread takes
+ * from, without locks.
+ *
+ * Producers claim a sequence number with a CAS on the tail and then
+ * publish their element into the slot of that number; the consumer
+ * takes elements in order, stopping at a slot that is claimed but not
+ * published yet.  A full buffer makes {@code put} spin, yielding, until
+ * the consumer frees a slot.
+ *
+ * @author chang
+ *
+ */
+public class MpscRingBuffer<E> {
+
+	private final AtomicReferenceArray<E> slots;
+	private final int mask;
+	// the next sequence to claim
+	private final AtomicLong tail = new AtomicLong();
+	// the next sequence to take; written by the consumer only
+	private volatile long head = 0;
+
+	/**
+	 * @param capacity rounded up to a power of two
+	 */
+	public MpscRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+		this.slots = new AtomicReferenceArray<E>(size);
+		this.mask = size - 1;
+	}
+
+	public int capacity() {
+		return slots.length();
+	}
+
+	/**
+	 * @param e not null
+	 * @return false if the buffer is full
+	 */
+	public boolean offer(E e) {
+		if (e == null) throw new NullPointerException();
+		for (;;) {
+			long t = tail.get();
+			if (t - head >= slots.length()) return false;
+			if (tail.compareAndSet(t, t + 1)) {
+				slots.lazySet((int) t & mask, e);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Add an element, waiting for room if the buffer is full.
+	 *
+	 * @param e not null
+	 */
+	public void put(E e) {
+		while (!offer(e)) {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Take the published elements, in order.  Only one thread may call it.
+	 *
+	 * @param batch filled from index 0
+	 * @return the number of elements taken
+	 */
+	public int drainTo(E[] batch) {
+		long h = head;
+		int n = 0;
+		while (n < batch.length) {
+			int index = (int) (h + n) & mask;
+			E e = slots.get(index);
+			if (e == null) break;
+			slots.lazySet(index, null);
+			batch[n++] = e;
+		}
+		head = h + n;
+		return n;
+	}
+
+	/**
+	 * Wait until an element is published, parking briefly in between.
+	 * Only the consumer may call it.
+	 *
+	 * @param nanos the longest wait
+	 * @return whether an element is there to take
+	 */
+	public boolean await(long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		while (slots.get((int) head & mask) == null) {
+			if (System.nanoTime() >= deadline) return false;
+			LockSupport.parkNanos(100000);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of claimed slots, some of which may not be published yet
+	 */
+	public int size() {
+		return (int) (tail.get() - head);
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+}
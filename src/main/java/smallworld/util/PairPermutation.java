@@ -0,0 +1,109 @@
+package smallworld.util;
+
+/**
+ * A random order of all the ordered pairs of distinct nodes, without
+ * storing any of them.
+ *
+ * The pairs of {@code n} nodes are numbered from 0 to {@code n * (n - 1)}:
+ * pair {@code p} goes from node {@code p / (n - 1)} to the
+ * {@code p % (n - 1)}-th of the other nodes.  Their order is a keyed
+ * pseudo-random permutation of the numbers, a Feistel network over the
+ * smallest even number of bits that holds them, walking the cycle until
+ * a number in range comes out.  Any position of the order is computed
+ * in constant time and memory, so the same seed gives the same pair for
+ * the same position, and a range of positions can be enumerated without
+ * the positions before it.
+ *
+ * @author chang
+ *
+ */
+public class PairPermutation {
+
+	private static final int ROUNDS = 4;
+
+	private final int numberOfNodes;
+	private final long size;
+	private final int halfBits;
+	private final long halfMask;
+	private final long[] keys = new long[ROUNDS];
+
+	/**
+	 * @param numberOfNodes
+	 * @param seed
+	 */
+	public PairPermutation(int numberOfNodes, long seed) {
+		if (numberOfNodes < 2) throw new IllegalArgumentException("Not enough nodes for a pair: " + numberOfNodes);
+		this.numberOfNodes = numberOfNodes;
+		this.size = (long) numberOfNodes * (numberOfNodes - 1);
+
+		int bits = 64 - Long.numberOfLeadingZeros(size - 1);
+		this.halfBits = Math.max(1, (bits + 1) / 2);
+		this.halfMask = (1L << halfBits) - 1;
+
+		long state = seed;
+		for (int r = 0; r < ROUNDS; r++) {
+			state += 0x9e3779b97f4a7c15L;
+			keys[r] = mix(state);
+		}
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private long feistel(long x) {
+		long left = x >>> halfBits;
+		long right = x & halfMask;
+		for (int r = 0; r < ROUNDS; r++) {
+			long next = left ^ (mix(right ^ keys[r]) & halfMask);
+			left = right;
+			right = next;
+		}
+		return (left << halfBits) | right;
+	}
+
+	/**
+	 * @return the number of pairs
+	 */
+	public long size() {
+		return size;
+	}
+
+	public int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	/**
+	 * @param position from 0 to {@code size()}
+	 * @return the pair at the position
+	 */
+	public long get(long position) {
+		if (position < 0 || position >= size) throw new IndexOutOfBoundsException(position + " of " + size);
+		long pair = feistel(position);
+		// the permutation is of a larger range; walk its cycle back into the pairs
+		while (pair >= size) {
+			pair = feistel(pair);
+		}
+		return pair;
+	}
+
+	/**
+	 * @param pair
+	 * @return the index of the source node of a pair
+	 */
+	public int getSource(long pair) {
+		return (int) (pair / (numberOfNodes - 1));
+	}
+
+	/**
+	 * @param pair
+	 * @return the index of the sink node of a pair, never the source
+	 */
+	public int getSink(long pair) {
+		int source = getSource(pair);
+		int other = (int) (pair % (numberOfNodes - 1));
+		return other < source ? other : other + 1;
+	}
+}
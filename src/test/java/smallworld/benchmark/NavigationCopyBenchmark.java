@@ -0,0 +1,131 @@
+package smallworld.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpanders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.navigation.AbstractNavigation;
+import smallworld.navigation.PrioritizedNavigation;
+import smallworld.navigation.evaluator.ClassificationEvaluator;
+import smallworld.navigation.feature.Feature;
+import smallworld.navigation.feature.FeatureBuilder;
+import weka.classifiers.Classifier;
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Compare what {@code ConcurrentNavigationThread} pays to get a
+ * navigation for a pair: a new copy of the navigation, as it did for
+ * every pair, or the copy owned by the thread.
+ *
+ * The navigation is a {@code PrioritizedNavigation} with a
+ * {@code ClassificationEvaluator}, trained on random features.  A
+ * compiled classifier, e.g., {@code Logistic}, is shared by the copies,
+ * while the others, e.g., {@code J48}, are serialized by every copy.
+ * The GC profiler reports the bytes allocated per pair.
+ *
+ * Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=smallworld.benchmark.NavigationCopyBenchmark}
+ *
+ * @author chang
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavigationCopyBenchmark {
+
+	private static final int NUM_FEATURES = 8;
+	private static final int NUM_INSTANCES = 2000;
+
+	@Param({"Logistic", "RandomForest", "J48"})
+	public String classifier;
+
+	private PathFinder<Path> prototype;
+
+	private static Feature<Double> feature(final String name) {
+		return new Feature<Double>() {
+			@Override
+			public String getName() {
+				return name;
+			}
+
+			@Override
+			public Double getFeature(Path path, Node target) {
+				return (double) path.length();
+			}
+		};
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		FeatureBuilder builder = new FeatureBuilder();
+		for (int i = 0; i < NUM_FEATURES; i++) {
+			builder.addFeature(feature("feature" + i));
+		}
+		builder.addClassFeature(feature("class"));
+
+		Random rand = new Random(0);
+		Instances data = new Instances(builder.getInstances(), NUM_INSTANCES);
+		for (int i = 0; i < NUM_INSTANCES; i++) {
+			double[] values = new double[NUM_FEATURES + 1];
+			for (int j = 0; j < NUM_FEATURES; j++) {
+				values[j] = rand.nextInt(50);
+			}
+			values[NUM_FEATURES] = values[0] + rand.nextInt(50) > 50 ? 1 : 0;
+			data.add(new Instance(1, values));
+		}
+
+		Classifier model = classifier.equals("Logistic") ? new Logistic()
+				: classifier.equals("RandomForest") ? new RandomForest() : new J48();
+		prototype = new PrioritizedNavigation(
+				PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH),
+				new ClassificationEvaluator(model, builder, data));
+	}
+
+	@Benchmark
+	public PathFinder<Path> copyPerPair() {
+		return AbstractNavigation.copy(prototype);
+	}
+
+	@Benchmark
+	public PathFinder<Path> copyPerThread() {
+		return AbstractNavigation.copyForCurrentThread(prototype);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(NavigationCopyBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,121 @@
+package smallworld.benchmark;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import smallworld.util.BoundedMinMaxHeap;
+
+import com.google.common.collect.MinMaxPriorityQueue;
+
+/**
+ * Compare the priority queue of {@code PrioritizedNavigation} before and
+ * after scoring paths once.
+ *
+ * Both queues replay the same navigation: poll the best path, then add
+ * its neighbors.  The evaluator is simulated by burning {@code costTokens}
+ * of CPU per call, e.g., a few hundred for a Weka inference.
+ *
+ * Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=smallworld.benchmark.PriorityQueueBenchmark}
+ *
+ * @author chang
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityQueueBenchmark {
+
+	private static final int EXPANSIONS = 2000;
+	private static final int DEGREE = 20;
+
+	@Param({"-1", "10000"})
+	public int maximumSize;
+
+	@Param({"0", "200"})
+	public int costTokens;
+
+	// a path is represented by the id of its end node
+	private int[] ids;
+
+	@Setup
+	public void setUp() {
+		Random rand = new Random(0);
+		ids = new int[EXPANSIONS * DEGREE];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = rand.nextInt(Integer.MAX_VALUE);
+		}
+	}
+
+	private int cost(Integer id) {
+		Blackhole.consumeCPU(costTokens);
+		return id % 100000;
+	}
+
+	@Benchmark
+	public int minMaxPriorityQueue() {
+		Comparator<Integer> comparator = new Comparator<Integer>() {
+			@Override
+			public int compare(Integer p1, Integer p2) {
+				return cost(p1) - cost(p2);
+			}
+		};
+		MinMaxPriorityQueue<Integer> queue = maximumSize == -1 ?
+				MinMaxPriorityQueue.orderedBy(comparator).<Integer>create() :
+				MinMaxPriorityQueue.orderedBy(comparator).maximumSize(maximumSize).<Integer>create();
+
+		int sum = 0;
+		int next = 0;
+		for (int i = 0; i < EXPANSIONS; i++) {
+			for (int j = 0; j < DEGREE; j++) {
+				queue.add(ids[next++]);
+			}
+			sum += queue.poll();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int boundedMinMaxHeap() {
+		BoundedMinMaxHeap<Integer> queue = new BoundedMinMaxHeap<Integer>(maximumSize);
+
+		int sum = 0;
+		int next = 0;
+		for (int i = 0; i < EXPANSIONS; i++) {
+			for (int j = 0; j < DEGREE; j++) {
+				Integer id = ids[next++];
+				queue.add(cost(id), id);
+			}
+			sum += queue.poll();
+		}
+		return sum;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(PriorityQueueBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,111 @@
+package smallworld.data.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.data.inserter.exp.Neo4JInserter;
+import smallworld.data.inserter.exp.SimpleGraphInserter;
+import smallworld.data.query.Query;
+import smallworld.navigation.ShortestNavigation;
+
+public class GraphSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Query query;
+	private static GraphSnapshot both;
+	private static GraphSnapshot outgoing;
+
+	@Before
+	public void initialize() throws IOException {
+		if (query == null) {
+			Neo4JInserter inserter = new Neo4JInserter(folder.getRoot().getAbsolutePath());
+			new SimpleGraphInserter(inserter);
+			query = new Query(folder.getRoot().getAbsolutePath());
+			both = GraphSnapshot.build(query.getGraphDatabaseService(), RelationshipTypes.FRIEND.type(), Direction.BOTH);
+			outgoing = GraphSnapshot.build(query.getGraphDatabaseService(), RelationshipTypes.FRIEND.type(), Direction.OUTGOING);
+		}
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		if (null != query) query.shutdown();
+	}
+
+	// people and circles are nodes; people are identified by numbers in SimpleGraphInserter
+	private static Node person(int person) {
+		for (Node node : GlobalGraphOperations.at(query.getGraphDatabaseService()).getAllNodes()) {
+			if (Integer.valueOf(person).equals(node.getProperty(Neo4JInserter.IDENTIFIER, null))) return node;
+		}
+		return null;
+	}
+
+	@Test
+	public void testSize() {
+		assertEquals(10, both.size());
+		assertEquals(20, both.numberOfEdges());
+		assertEquals(10, outgoing.numberOfEdges());
+	}
+
+	@Test
+	public void testDegreesMatchStore() {
+		GraphDatabaseService db = query.getGraphDatabaseService();
+		try (Transaction tx = db.beginTx()) {
+			for (Node node : GlobalGraphOperations.at(db).getAllNodes()) {
+				int index = both.indexOf(node.getId());
+				assertEquals(node.getDegree(RelationshipTypes.FRIEND.type(), Direction.BOTH), both.degree(index));
+				assertEquals(node.getDegree(RelationshipTypes.FRIEND.type(), Direction.OUTGOING), outgoing.degree(index));
+				assertEquals(node.getDegree(RelationshipTypes.FRIEND.type(), Direction.INCOMING), outgoing.reverse().degree(index));
+			}
+		}
+	}
+
+	@Test
+	public void testRelationshipsMatchStore() {
+		GraphDatabaseService db = query.getGraphDatabaseService();
+		try (Transaction tx = db.beginTx()) {
+			Node node = person(4);
+			int index = both.indexOf(node.getId());
+			for (Relationship rel : both.relationships(index)) {
+				Relationship stored = db.getRelationshipById(rel.getId());
+				assertEquals(stored.getStartNode(), rel.getStartNode());
+				assertEquals(stored.getEndNode(), rel.getEndNode());
+				assertEquals(stored.getOtherNode(node), rel.getOtherNode(node));
+			}
+		}
+	}
+
+	@Test
+	public void testNavigation() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			ShortestNavigation nav = new ShortestNavigation(new SnapshotExpander(both));
+			Path path = nav.findSinglePath(person(1), person(7));
+			assertNotNull(path);
+			assertEquals(3, path.length());
+			assertEquals(person(7), path.endNode());
+
+			// 5 => 7 follows a relationship against its direction
+			nav = new ShortestNavigation(new SnapshotExpander(outgoing));
+			assertEquals(null, nav.findSinglePath(person(7), person(1)));
+			nav = new ShortestNavigation(new SnapshotExpander(outgoing.reverse()));
+			assertEquals(3, nav.findSinglePath(person(7), person(1)).length());
+		}
+	}
+}
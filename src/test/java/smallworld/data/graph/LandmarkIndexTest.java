@@ -0,0 +1,117 @@
+package smallworld.data.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Transaction;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.data.graph.LandmarkIndex.Selection;
+import smallworld.data.inserter.exp.Neo4JInserter;
+import smallworld.data.inserter.exp.SimpleGraphInserter;
+import smallworld.data.query.Query;
+import smallworld.navigation.AStarNavigation;
+import smallworld.navigation.evaluator.LandmarkEvaluator;
+
+public class LandmarkIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Query query;
+	private static GraphSnapshot both;
+	private static GraphSnapshot outgoing;
+
+	@Before
+	public void initialize() throws IOException {
+		if (query == null) {
+			Neo4JInserter inserter = new Neo4JInserter(folder.getRoot().getAbsolutePath());
+			new SimpleGraphInserter(inserter);
+			query = new Query(folder.getRoot().getAbsolutePath());
+			both = GraphSnapshot.build(query.getGraphDatabaseService(), RelationshipTypes.FRIEND.type(), Direction.BOTH);
+			outgoing = GraphSnapshot.build(query.getGraphDatabaseService(), RelationshipTypes.FRIEND.type(), Direction.OUTGOING);
+		}
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		if (null != query) query.shutdown();
+	}
+
+	private static void assertBounds(GraphSnapshot snapshot, LandmarkIndex index) {
+		byte[] distances = new byte[snapshot.size()];
+		for (int v = 0; v < snapshot.size(); v++) {
+			snapshot.distancesFrom(v, distances);
+			for (int t = 0; t < snapshot.size(); t++) {
+				int distance = GraphSnapshot.toDistance(distances[t]);
+				assertTrue(v + " => " + t, index.lowerBound(v, t) <= distance);
+				assertTrue(v + " => " + t, index.upperBound(v, t) >= distance);
+				if (distance == Integer.MAX_VALUE) assertEquals(Integer.MAX_VALUE, index.upperBound(v, t));
+			}
+		}
+	}
+
+	@Test
+	public void testBounds() {
+		for (int k = 1; k <= 4; k++) {
+			for (Selection selection : Selection.values()) {
+				assertBounds(both, LandmarkIndex.build(both, k, selection));
+				assertBounds(outgoing, LandmarkIndex.build(outgoing, k, selection));
+			}
+		}
+	}
+
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		File file = folder.newFile();
+		LandmarkIndex index = LandmarkIndex.build(outgoing, 3, Selection.FARTHEST);
+		index.save(file);
+
+		LandmarkIndex loaded = LandmarkIndex.load(outgoing, file);
+		assertEquals(index.numberOfLandmarks(), loaded.numberOfLandmarks());
+		for (int v = 0; v < outgoing.size(); v++) {
+			for (int t = 0; t < outgoing.size(); t++) {
+				assertEquals(index.lowerBound(v, t), loaded.lowerBound(v, t));
+				assertEquals(index.upperBound(v, t), loaded.upperBound(v, t));
+			}
+		}
+
+		// saved for a different graph
+		assertNull(LandmarkIndex.load(both, file));
+	}
+
+	@Test
+	public void testAStarFindsShortestPaths() {
+		for (GraphSnapshot snapshot : new GraphSnapshot[] { both, outgoing }) {
+			AStarNavigation nav = new AStarNavigation(new SnapshotExpander(snapshot),
+					new LandmarkEvaluator(LandmarkIndex.build(snapshot, 2, Selection.DEGREE)));
+			byte[] distances = new byte[snapshot.size()];
+
+			try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+				for (int v = 0; v < snapshot.size(); v++) {
+					snapshot.distancesFrom(v, distances);
+					for (int t = 0; t < snapshot.size(); t++) {
+						Path path = nav.findSinglePath(snapshot.node(v), snapshot.node(t));
+						if (distances[t] == GraphSnapshot.UNREACHABLE) {
+							assertNull(path);
+						} else {
+							assertEquals(GraphSnapshot.toDistance(distances[t]), path.length());
+							assertEquals(snapshot.node(t), path.endNode());
+						}
+					}
+				}
+			}
+		}
+	}
+}
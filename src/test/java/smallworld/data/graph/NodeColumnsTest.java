@@ -0,0 +1,134 @@
+package smallworld.data.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.data.inserter.exp.Neo4JInserter;
+import smallworld.data.inserter.exp.SimpleGraphInserter;
+import smallworld.data.query.Query;
+
+public class NodeColumnsTest {
+
+	// the store is written to, so it must outlive the tests until it is shut down
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	private static Query query;
+
+	@Before
+	public void initialize() throws IOException {
+		if (query == null) {
+			Neo4JInserter inserter = new Neo4JInserter(folder.getRoot().getAbsolutePath());
+			new SimpleGraphInserter(inserter);
+			query = new Query(folder.getRoot().getAbsolutePath());
+
+			GraphDatabaseService db = query.getGraphDatabaseService();
+			try (Transaction tx = db.beginTx()) {
+				for (Node node : GlobalGraphOperations.at(db).getAllNodes()) {
+					node.setProperty(NodeColumns.BETWEENNESS_CENTRALITY, (int) node.getId() * 2);
+					node.setProperty(NodeColumns.CLUSTERING_COEFFICIENT, node.getId() / 10d);
+				}
+				tx.success();
+			}
+		}
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		if (null != query) query.shutdown();
+	}
+
+	private static void assertColumns(NodeColumns columns) {
+		GraphDatabaseService db = query.getGraphDatabaseService();
+		RelationshipType friend = RelationshipTypes.FRIEND.type();
+
+		try (Transaction tx = db.beginTx()) {
+			for (Node node : GlobalGraphOperations.at(db).getAllNodes()) {
+				long id = node.getId();
+				for (Direction direction : Direction.values()) {
+					assertEquals(node.getDegree(friend, direction), columns.getDegree(id, friend, direction));
+				}
+				assertEquals(node.getDegree(), columns.getDegree(id));
+
+				Set<Long> circles = new HashSet<Long>();
+				for (Relationship rel : node.getRelationships(RelationshipTypes.CIRCLE.type(), Direction.OUTGOING)) {
+					circles.add(rel.getEndNode().getId());
+				}
+				assertEquals(circles.size(), columns.getNumberOfCircles(id));
+
+				assertEquals(id * 2, columns.getBetweennessCentrality(id), 0);
+				assertEquals(id / 10d, columns.getClusteringCoefficient(id), 0);
+			}
+		}
+		assertEquals(0, columns.getDegree(columns.capacity() + 1, friend, Direction.BOTH));
+	}
+
+	@Test
+	public void testBuildAndLoad() throws IOException {
+		GraphDatabaseService db = query.getGraphDatabaseService();
+		File file = folder.newFile("graph.columns");
+
+		NodeColumns columns = NodeColumns.build(db, file, 3, RelationshipTypes.FRIEND.type());
+		assertTrue(columns.hasDegree(RelationshipTypes.FRIEND.type()));
+		assertFalse(columns.hasDegree(RelationshipTypes.CIRCLE.type()));
+		assertColumns(columns);
+
+		NodeColumns loaded = NodeColumns.load(db, file);
+		assertNotNull(loaded);
+		assertColumns(loaded);
+	}
+
+	private static void setBetweennessCentrality(GraphDatabaseService db, int factor) {
+		try (Transaction tx = db.beginTx()) {
+			for (Node node : GlobalGraphOperations.at(db).getAllNodes()) {
+				node.setProperty(NodeColumns.BETWEENNESS_CENTRALITY, (int) node.getId() * factor);
+			}
+			tx.success();
+		}
+	}
+
+	@Test
+	public void testRebuildWhenPropertiesChange() throws IOException {
+		GraphDatabaseService db = query.getGraphDatabaseService();
+		String path = new File(folder.getRoot(), "recomputed").getAbsolutePath();
+
+		NodeColumns columns = NodeColumns.getInstance(path, db, RelationshipTypes.FRIEND.type());
+		assertColumns(columns);
+		assertNotNull(NodeColumns.load(db, new File(path + ".columns")));
+
+		// recomputed centralities leave the counts of the graph as they are
+		setBetweennessCentrality(db, 3);
+		try {
+			assertNull(NodeColumns.load(db, new File(path + ".columns")));
+			NodeColumns rebuilt = NodeColumns.getInstance(path, db, RelationshipTypes.FRIEND.type());
+			for (long id = 0; id < rebuilt.capacity(); id++) {
+				assertEquals(id * 3, rebuilt.getBetweennessCentrality(id), 0);
+			}
+			assertNotNull(NodeColumns.load(db, new File(path + ".columns")));
+		} finally {
+			setBetweennessCentrality(db, 2);
+		}
+	}
+}
@@ -1,13 +1,23 @@
 package smallworld.data.query;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
+import java.util.Set;
 
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
 
+import smallworld.data.graph.CircleIndex;
 import smallworld.data.inserter.exp.Neo4JInserter;
 import smallworld.data.inserter.exp.SimpleGraphInserter;
 
@@ -51,6 +61,48 @@ public class QueryCirclesTest {
 		System.out.println(queryCircles.getCircles(query.cypherGetNode(6)));
 	}
 	
+	private static void assertCommonCircles(QueryCircles circles) {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			for (Node a : GlobalGraphOperations.at(query.getGraphDatabaseService()).getAllNodes()) {
+				for (Node b : GlobalGraphOperations.at(query.getGraphDatabaseService()).getAllNodes()) {
+					Set<Node> common = circles.getCommonCircles(a, b);
+					int min = Integer.MAX_VALUE;
+					int max = 0;
+					for (Node circle : common) {
+						min = Math.min(min, circles.getCircleSize(circle));
+						max = Math.max(max, circles.getCircleSize(circle));
+					}
+					assertEquals(a + " " + b, common.size(), circles.getCommonCircleCount(a, b));
+					assertEquals(a + " " + b, min, circles.getMinCommonCircle(a, b));
+					assertEquals(a + " " + b, max, circles.getMaxCommonCircle(a, b));
+					
+					BitSet circlesOfB = circles.getCircleIds(b);
+					assertEquals(a + " " + b, common.size(), circles.getCommonCircleCount(circlesOfB, a));
+					assertEquals(a + " " + b, min, circles.getMinCommonCircle(circlesOfB, a));
+					assertEquals(a + " " + b, max, circles.getMaxCommonCircle(circlesOfB, a));
+					
+					CircleIndex index = circles.getCircleIndex();
+					int[] statistics = new int[3];
+					index.getCommonCircles(index.indexOf(a.getId()), index.indexOf(b.getId()), statistics);
+					assertArrayEquals(a + " " + b, new int[] { common.size(), min, max }, statistics);
+					index.getCommonCircles(index.indexOf(a.getId()), circlesOfB, statistics);
+					assertArrayEquals(a + " " + b, new int[] { common.size(), min, max }, statistics);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testCircleIndex() throws IOException {
+		assertCommonCircles(queryCircles);
+		
+		File file = folder.newFile();
+		queryCircles.getCircleIndex().save(file);
+		QueryCircles loaded = new QueryCircles(query);
+		loaded.setCircleIndex(CircleIndex.load(query.getGraphDatabaseService(), file));
+		assertCommonCircles(loaded);
+	}
+	
 	@Test
 	public void testGetCircleName() {
 		System.out.println(queryCircles.cypherGetCircleNames(5));
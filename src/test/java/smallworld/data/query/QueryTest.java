@@ -1,16 +1,28 @@
 package smallworld.data.query;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
 
+import smallworld.data.RelationshipTypes;
+import smallworld.data.inserter.exp.GraphInserter;
 import smallworld.data.inserter.exp.Neo4JInserter;
 import smallworld.data.inserter.exp.SimpleGraphInserter;
 
@@ -55,6 +67,48 @@ public class QueryTest {
 		System.out.println(query.cypherGetPerson(3));
 	}
 	
+	@Test
+	public void testLookups() {
+		long[] ids = query.getAllNodeIds();
+		Node[] nodes = query.getNodes(ids);
+		assertEquals(ids.length, nodes.length);
+		assertNull(query.getNode(ids[ids.length - 1] + 100));
+		QueryCircles circles = new QueryCircles(query);
+		assertNull(circles.getCircle("no such circle"));
+		
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			for (int i = 0; i < ids.length; i++) {
+				assertEquals(ids[i], nodes[i].getId());
+				assertEquals(nodes[i], query.getNode(ids[i]));
+				
+				Object identifier = nodes[i].getProperty(Neo4JInserter.IDENTIFIER);
+				if (nodes[i].hasLabel(GraphInserter.PERSON_LABEL)) {
+					assertEquals(nodes[i], query.getPerson(identifier));
+				}
+				if (nodes[i].hasLabel(GraphInserter.CIRCLE_LABEL)) {
+					assertEquals(nodes[i], circles.getCircle(identifier.toString()));
+				}
+				
+				Set<String> names = new HashSet<String>();
+				for (Relationship rel : nodes[i].getRelationships(RelationshipTypes.CIRCLE.type(), Direction.OUTGOING)) {
+					names.add(rel.getEndNode().getProperty(Neo4JInserter.IDENTIFIER).toString());
+				}
+				assertEquals(names, new HashSet<String>(circles.getCircleNames(ids[i])));
+				
+				for (Direction dir : Direction.values()) {
+					assertEquals(nodes[i].getDegree(RelationshipTypes.FRIEND.type(), dir), 
+							query.getRelationshipsFrom(ids[i], "FRIEND", dir).size());
+					assertEquals(nodes[i].getDegree(RelationshipTypes.FRIEND.type(), dir.reverse()), 
+							query.getRelationshipsTo(ids[i], "FRIEND", dir).size());
+				}
+			}
+		}
+		
+		// parameters
+		Result result = query.cypherQuery("START n = node({id}) RETURN ID(n) AS id", Collections.<String, Object>singletonMap("id", ids[0]));
+		assertEquals(ids[0], result.columnAs("id").next());
+	}
+	
 	
 	
 	//System.out.println(query.cypherShortestPathLength(1, 7, "FRIEND", Direction.BOTH, 15));
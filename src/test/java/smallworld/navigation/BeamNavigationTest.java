@@ -0,0 +1,130 @@
+package smallworld.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Transaction;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.data.query.Query;
+import smallworld.navigation.evaluator.CountingEvaluator;
+import smallworld.navigation.evaluator.DegreeEvaluator;
+import smallworld.navigation.evaluator.Evaluator;
+
+public class BeamNavigationTest {
+
+	private static final int NEIGHBORS = 300;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Query query;
+	private Node hub;
+	private Node sink;
+
+	/*
+	 * A hub with many neighbors, more than scored by one task.  Only the
+	 * last neighbor, which has the highest degree, knows the sink.
+	 */
+	@Before
+	public void initialize() throws IOException {
+		query = new Query(folder.getRoot().getAbsolutePath());
+		GraphDatabaseService db = query.getGraphDatabaseService();
+		try (Transaction tx = db.beginTx()) {
+			hub = db.createNode();
+			sink = db.createNode();
+			Node neighbor = null;
+			for (int i = 0; i < NEIGHBORS; i++) {
+				neighbor = db.createNode();
+				hub.createRelationshipTo(neighbor, RelationshipTypes.FRIEND.type());
+			}
+			neighbor.createRelationshipTo(sink, RelationshipTypes.FRIEND.type());
+			tx.success();
+		}
+	}
+
+	@After
+	public void cleanup() {
+		query.shutdown();
+	}
+
+	private BeamNavigation navigation(int width) {
+		return new BeamNavigation(
+				PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH),
+				new DegreeEvaluator(RelationshipTypes.FRIEND.type(), Direction.BOTH),
+				width);
+	}
+
+	@Test
+	public void testKeepsBestCandidates() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			Path path = navigation(1).findSinglePath(hub, sink);
+			assertNotNull(path);
+			assertEquals(2, path.length());
+			assertEquals(sink, path.endNode());
+		}
+	}
+
+	@Test
+	public void testCountsCostsScoredByThePool() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			BeamNavigation nav = new BeamNavigation(
+					PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH),
+					new CountingEvaluator<Integer>(new DegreeEvaluator(RelationshipTypes.FRIEND.type(), Direction.BOTH)),
+					1);
+			assertNotNull(nav.findSinglePath(hub, sink));
+			// the neighbors of the hub, in batches on the pool; the sink is reached unscored
+			assertEquals(NEIGHBORS, ((AbstractNavigation.Metadata) nav.metadata()).getNumberOfEvaluatorCalls());
+
+			// counted per pair
+			assertNotNull(nav.findSinglePath(hub, sink));
+			assertEquals(NEIGHBORS, ((AbstractNavigation.Metadata) nav.metadata()).getNumberOfEvaluatorCalls());
+		}
+	}
+
+	@Test
+	public void testPrunedPathsAreNotExplored() {
+		// prefer low degree neighbors, so the one that knows the sink is pruned
+		final DegreeEvaluator degree = new DegreeEvaluator(RelationshipTypes.FRIEND.type(), Direction.BOTH);
+		Evaluator<Integer> evaluator = new Evaluator<Integer>() {
+			@Override
+			public Evaluator<Integer> copy() {
+				return this;
+			}
+
+			@Override
+			public Integer getCost(Path path, Node target) {
+				return getCost(path.endNode(), target);
+			}
+
+			@Override
+			public Integer getCost(Node end, Node target) {
+				return -degree.getCost(end, target);
+			}
+		};
+
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			BeamNavigation nav = new BeamNavigation(
+					PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH),
+					evaluator,
+					1);
+			assertNull(nav.findSinglePath(hub, sink));
+			assertEquals(2, ((AbstractNavigation.Metadata) nav.metadata()).getTotalNodesExplored());
+
+			assertNotNull(navigation(NEIGHBORS).findSinglePath(hub, sink));
+		}
+	}
+}
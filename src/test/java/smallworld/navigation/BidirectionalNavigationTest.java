@@ -0,0 +1,168 @@
+package smallworld.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.data.inserter.exp.Neo4JInserter;
+import smallworld.data.inserter.exp.SimpleGraphInserter;
+import smallworld.data.query.Query;
+import smallworld.navigation.evaluator.DegreeEvaluator;
+
+public class BidirectionalNavigationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Query query;
+
+	@Before
+	public void initialize() throws IOException {
+		if (query == null) {
+			Neo4JInserter inserter = new Neo4JInserter(folder.getRoot().getAbsolutePath());
+			new SimpleGraphInserter(inserter);
+			query = new Query(folder.getRoot().getAbsolutePath());
+		}
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		if (null != query) query.shutdown();
+	}
+
+	private static List<Node> people() {
+		List<Node> people = new ArrayList<Node>();
+		for (Node node : GlobalGraphOperations.at(query.getGraphDatabaseService()).getAllNodes()) {
+			if (node.hasProperty(Neo4JInserter.IDENTIFIER) && node.hasRelationship(RelationshipTypes.FRIEND.type())) people.add(node);
+		}
+		return people;
+	}
+
+	private static void assertConnected(Path path, Node source, Node sink) {
+		assertEquals(source, path.startNode());
+		assertEquals(sink, path.endNode());
+		Node node = source;
+		for (Relationship rel : path.relationships()) {
+			node = rel.getOtherNode(node);
+		}
+		assertEquals(sink, node);
+	}
+
+	@Test
+	public void testFindsPathsBetweenAllPairs() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			BidirectionalNavigation nav = new BidirectionalNavigation(
+					PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH),
+					new DegreeEvaluator(RelationshipTypes.FRIEND.type(), Direction.BOTH));
+			ShortestNavigation shortest = new ShortestNavigation(
+					PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH));
+
+			List<Node> people = people();
+			for (Node source : people) {
+				for (Node sink : people) {
+					Path path = nav.findSinglePath(source, sink);
+					assertNotNull(source + " => " + sink, path);
+					assertConnected(path, source, sink);
+					assertTrue(path.length() >= shortest.findSinglePath(source, sink).length());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGivesUpOverBudget() throws IOException {
+		BidirectionalNavigation nav = new BidirectionalNavigation(
+				PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH),
+				new DegreeEvaluator(RelationshipTypes.FRIEND.type(), Direction.BOTH));
+		nav.setBudget(new NavigationBudget(0, TimeUnit.MILLISECONDS, 1, 0));
+
+		// every pair through the threads of an experiment, into its log
+		File log = folder.newFile("pairs.log");
+		int serial = 0;
+		int timedOut = 0;
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			List<Node> people = people();
+			try (ResultSink results = new ResultSink(log, ResultFormat.CSV, people.size() * people.size())) {
+				for (Node source : people) {
+					for (Node sink : people) {
+						if (source.equals(sink)) continue;
+						ConcurrentNavigationThread thread = new ConcurrentNavigationThread(
+								query.getGraphDatabaseService(), ++serial, nav, source, sink, results);
+						Path path = thread.call();
+						if (thread.isTimedOut()) {
+							assertNull(path);
+							timedOut++;
+						} else {
+							assertNotNull(source + " => " + sink, path);
+						}
+					}
+				}
+			}
+		}
+		assertTrue(timedOut > 0);
+
+		int logged = 0;
+		for (String line : Files.readAllLines(log.toPath(), StandardCharsets.UTF_8)) {
+			if (!line.contains(",timeout,")) continue;
+			assertTrue(line, ResultFormat.CSV.parse(line).isTimedOut());
+			logged++;
+		}
+		assertEquals(timedOut, logged);
+
+		// a copy keeps the budget
+		assertEquals(nav.getBudget(), ((AbstractNavigation) AbstractNavigation.copy(nav)).getBudget());
+	}
+
+	@Test
+	public void testFollowsDirection() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			BidirectionalNavigation nav = new BidirectionalNavigation(
+					PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.OUTGOING),
+					new DegreeEvaluator(RelationshipTypes.FRIEND.type(), Direction.OUTGOING));
+			ShortestNavigation shortest = new ShortestNavigation(
+					PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.OUTGOING));
+
+			List<Node> people = people();
+			for (Node source : people) {
+				for (Node sink : people) {
+					Path expected = shortest.findSinglePath(source, sink);
+					Path path = nav.findSinglePath(source, sink);
+					if (expected == null) {
+						assertNull(path);
+					} else {
+						assertNotNull(source + " => " + sink, path);
+						Node node = source;
+						for (Relationship rel : path.relationships()) {
+							assertEquals(path.toString(), node, rel.getStartNode());
+							node = rel.getEndNode();
+						}
+						assertEquals(sink, node);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package smallworld.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.BranchState;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.data.query.Query;
+import smallworld.navigation.evaluator.CountingEvaluator;
+import smallworld.navigation.evaluator.DegreeEvaluator;
+import smallworld.navigation.evaluator.Evaluator;
+
+public class NavigationBudgetTest {
+
+	// more batches than the pool of BeamNavigation starts at once
+	private static final int NEIGHBORS = Math.max(2000, 256 * Runtime.getRuntime().availableProcessors());
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Query query;
+	private Node hub;
+	private Node sink;
+
+	/*
+	 * A hub with many neighbors.  Only the last neighbor knows the sink,
+	 * so every navigation expands the whole hub.
+	 */
+	@Before
+	public void initialize() throws IOException {
+		query = new Query(folder.getRoot().getAbsolutePath());
+		GraphDatabaseService db = query.getGraphDatabaseService();
+		try (Transaction tx = db.beginTx()) {
+			hub = db.createNode();
+			sink = db.createNode();
+			Node neighbor = null;
+			for (int i = 0; i < NEIGHBORS; i++) {
+				neighbor = db.createNode();
+				hub.createRelationshipTo(neighbor, RelationshipTypes.FRIEND.type());
+			}
+			neighbor.createRelationshipTo(sink, RelationshipTypes.FRIEND.type());
+			tx.success();
+		}
+	}
+
+	@After
+	public void cleanup() {
+		query.shutdown();
+	}
+
+	private static PathExpander<?> expander() {
+		return PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH);
+	}
+
+	private static void sleep() {
+		try {
+			Thread.sleep(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Takes a millisecond for each relationship.
+	 */
+	private static class SlowExpander implements PathExpander<Object> {
+		@SuppressWarnings("unchecked")
+		private final PathExpander<Object> expander = (PathExpander<Object>) expander();
+
+		@Override
+		public Iterable<Relationship> expand(Path path, BranchState<Object> state) {
+			final Iterable<Relationship> relationships = expander.expand(path, state);
+			return new Iterable<Relationship>() {
+				@Override
+				public Iterator<Relationship> iterator() {
+					final Iterator<Relationship> it = relationships.iterator();
+					return new Iterator<Relationship>() {
+						@Override
+						public boolean hasNext() {
+							return it.hasNext();
+						}
+
+						@Override
+						public Relationship next() {
+							sleep();
+							return it.next();
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+			};
+		}
+
+		@Override
+		public PathExpander<Object> reverse() {
+			return this;
+		}
+	}
+
+	/**
+	 * Takes a millisecond for each cost.
+	 */
+	private static class SlowEvaluator implements Evaluator<Integer> {
+		@Override
+		public Evaluator<Integer> copy() {
+			return new SlowEvaluator();
+		}
+
+		@Override
+		public Integer getCost(Path path, Node target) {
+			return getCost(path.endNode(), target);
+		}
+
+		@Override
+		public Integer getCost(Node end, Node target) {
+			sleep();
+			return 0;
+		}
+	}
+
+	private static List<AbstractNavigation> navigations() {
+		Evaluator<Integer> zero = new Evaluator<Integer>() {
+			@Override
+			public Evaluator<Integer> copy() {
+				return this;
+			}
+
+			@Override
+			public Integer getCost(Path path, Node target) {
+				return 0;
+			}
+
+			@Override
+			public Integer getCost(Node end, Node target) {
+				return 0;
+			}
+		};
+		DegreeEvaluator degree = new DegreeEvaluator(RelationshipTypes.FRIEND.type(), Direction.BOTH);
+		return Arrays.<AbstractNavigation>asList(
+				new ShortestNavigation(expander()),
+				new AStarNavigation(expander(), zero),
+				new PrioritizedNavigation(expander(), degree),
+				new PrioritizedDFSNavigation(expander(), degree),
+				new BeamNavigation(expander(), degree, 1));
+	}
+
+	@Test
+	public void testUnlimited() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			for (AbstractNavigation nav : navigations()) {
+				Path path = nav.findSinglePath(hub, sink);
+				assertNotNull(nav.toString(), path);
+				assertEquals(2, path.length());
+			}
+		}
+	}
+
+	@Test
+	public void testGivesUpWithinHub() {
+		final int maxRelationships = 10;
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			for (AbstractNavigation nav : navigations()) {
+				nav.setBudget(new NavigationBudget(0, TimeUnit.MILLISECONDS, 0, maxRelationships));
+				assertNull(nav.toString(), nav.findSinglePath(hub, sink));
+				assertTrue(nav.toString(), nav.lastMetadata.isOutOfBudget());
+				assertTrue(nav.toString(), nav.lastMetadata.getNumberOfRelationshipsTraversed() <= maxRelationships);
+			}
+		}
+	}
+
+	@Test
+	public void testDeadline() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			ShortestNavigation nav = new ShortestNavigation(new SlowExpander());
+			nav.setBudget(new NavigationBudget(1, TimeUnit.MILLISECONDS, 0, 0));
+			assertNull(nav.findSinglePath(hub, sink));
+			assertTrue(nav.lastMetadata.isOutOfBudget());
+			// given up within the hub, not after it
+			assertTrue(nav.lastMetadata.getNumberOfRelationshipsTraversed() < NEIGHBORS / 10);
+		}
+	}
+
+	@Test
+	public void testDeadlineSkipsBeamBatches() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			BeamNavigation nav = new BeamNavigation(expander(), new CountingEvaluator<Integer>(new SlowEvaluator()), 1);
+			nav.setBudget(new NavigationBudget(1, TimeUnit.MILLISECONDS, 0, 0));
+			assertNull(nav.findSinglePath(hub, sink));
+			assertTrue(nav.lastMetadata.isOutOfBudget());
+			// the batches started before the deadline, not the whole hub
+			assertTrue(nav.lastMetadata.getNumberOfEvaluatorCalls() <= NEIGHBORS / 2);
+		}
+	}
+}
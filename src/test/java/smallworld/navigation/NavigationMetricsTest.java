@@ -0,0 +1,69 @@
+package smallworld.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NavigationMetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecord() throws Exception {
+		NavigationMetrics metrics = NavigationMetrics.getInstance("Test", "Record");
+		assertSame(metrics, NavigationMetrics.getInstance("Test", "Record"));
+
+		for (int i = 1; i <= 100; i++) {
+			metrics.record(TimeUnit.MICROSECONDS.toNanos(i), i % 2 == 0 ? i : NavigationResult.NONE, i, 2 * i, 3 * i, i % 10 == 1);
+		}
+		assertEquals(100, metrics.getNumberOfPairs());
+		assertEquals(50, metrics.getNumberOfPathsFound());
+		assertEquals(10, metrics.getNumberOfPairsTimedOut());
+		assertEquals(5050, metrics.getNumberOfNodesExplored());
+		assertEquals(2 * 5050, metrics.getNumberOfRelationshipsTraversed());
+		assertEquals(3 * 5050, metrics.getNumberOfEvaluatorCalls());
+		assertEquals(50, metrics.getTimeMicrosP50());
+		assertEquals(100, metrics.getTimeMicrosMax());
+		assertEquals(100, metrics.getPathLengthMax());
+		assertEquals(100, metrics.getNodesExploredMax());
+
+		// the same attributes over JMX
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		assertEquals(100L, server.getAttribute(metrics.getObjectName(), "NumberOfPairs"));
+		assertEquals(100L, server.getAttribute(metrics.getObjectName(), "TimeMicrosMax"));
+		assertEquals("Record", server.getAttribute(metrics.getObjectName(), "Evaluator"));
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		NavigationMetrics metrics = NavigationMetrics.getInstance("Test", "Snapshot");
+		File csv = new File(folder.getRoot(), "metrics.csv");
+
+		metrics.appendSnapshot(csv);
+		metrics.record(1000, 3, 10, 20, 30, false);
+		metrics.appendSnapshot(csv);
+
+		List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+		assertEquals(3, lines.size());
+		String[] header = lines.get(0).split(",");
+		String[] last = lines.get(2).split(",");
+		assertEquals(header.length, last.length);
+		assertTrue(lines.get(1).contains(",Test,Snapshot,0,0,0,"));
+		assertEquals("1", last[3]);
+		assertEquals("3", last[11]);
+	}
+}
@@ -0,0 +1,128 @@
+package smallworld.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.data.inserter.exp.Neo4JInserter;
+import smallworld.data.inserter.exp.SimpleGraphInserter;
+import smallworld.data.query.Query;
+import smallworld.navigation.ConcurrentNavigationThread.NavigationCompleteListener;
+
+public class NavigationSchedulerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Query query;
+
+	@Before
+	public void initialize() throws IOException {
+		if (query == null) {
+			Neo4JInserter inserter = new Neo4JInserter(folder.getRoot().getAbsolutePath());
+			new SimpleGraphInserter(inserter);
+			query = new Query(folder.getRoot().getAbsolutePath());
+		}
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		if (null != query) query.shutdown();
+	}
+
+	private static List<Long> people() {
+		List<Long> people = new ArrayList<Long>();
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			for (Node node : GlobalGraphOperations.at(query.getGraphDatabaseService()).getAllNodes()) {
+				if (node.hasRelationship(RelationshipTypes.FRIEND.type())) people.add(node.getId());
+			}
+		}
+		return people;
+	}
+
+	private static ShortestNavigation navigation() {
+		return new ShortestNavigation(PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH));
+	}
+
+	@Test
+	public void testAllPairs() throws Exception {
+		List<Long> people = people();
+		final Map<Integer, Integer> lengths = new ConcurrentHashMap<Integer, Integer>();
+		NavigationCompleteListener listener = new NavigationCompleteListener() {
+			@Override
+			public void notifyOfThreadComplete(ConcurrentNavigationThread thread) {
+				Path path = thread.getPath();
+				lengths.put(thread.getSerialNumber(), path == null ? -1 : path.length());
+			}
+		};
+
+		// a queue much shorter than the pairs
+		NavigationScheduler scheduler = new NavigationScheduler(query.getGraphDatabaseService(), 2, 1);
+		ShortestNavigation nav = navigation();
+		int numberOfPairs = people.size() * (people.size() - 1);
+		File log = new File(folder.getRoot(), "pairs.log");
+		int serial = 0;
+		try (ResultSink results = new ResultSink(log, ResultFormat.CSV, numberOfPairs)) {
+			for (long source : people) {
+				for (long sink : people) {
+					if (source == sink) continue;
+					ConcurrentNavigationThread worker = new ConcurrentNavigationThread(query.getGraphDatabaseService(), ++serial, nav, source, sink, results);
+					worker.addListener(listener);
+					assertTrue(scheduler.submit(worker));
+				}
+			}
+			scheduler.awaitCompletion();
+		}
+		assertEquals(numberOfPairs, lengths.size());
+
+		// all logged
+		try (CompletedPairs completed = CompletedPairs.open(log, ResultFormat.CSV, numberOfPairs)) {
+			assertEquals(numberOfPairs, completed.size());
+		}
+
+		// same as navigating one pair after another
+		serial = 0;
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			for (long source : people) {
+				for (long sink : people) {
+					if (source == sink) continue;
+					Path path = nav.findSinglePath(query.getGraphDatabaseService().getNodeById(source), query.getGraphDatabaseService().getNodeById(sink));
+					assertEquals((int) (path == null ? -1 : path.length()), (int) lengths.get(++serial));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testStop() throws Exception {
+		NavigationScheduler scheduler = new NavigationScheduler(query.getGraphDatabaseService(), 1, 1);
+		assertTrue(scheduler.stop(1, TimeUnit.SECONDS));
+		assertTrue(scheduler.isStopped());
+
+		List<Long> people = people();
+		try (ResultSink results = new ResultSink(new File(folder.getRoot(), "stopped.log"), ResultFormat.CSV, 1)) {
+			assertFalse(scheduler.submit(new ConcurrentNavigationThread(query.getGraphDatabaseService(), 1, navigation(), people.get(0), people.get(1), results)));
+		}
+	}
+}
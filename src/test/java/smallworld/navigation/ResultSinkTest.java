@@ -0,0 +1,124 @@
+package smallworld.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResultSinkTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static NavigationResult result(int serial) {
+		// every seventh pair is given up, every third pair has no path
+		if (serial % 7 == 0) return NavigationResult.timedOut(serial, serial, serial + 1, serial * 10);
+		if (serial % 3 == 0) return new NavigationResult(serial, serial, serial + 1);
+		return new NavigationResult(serial, serial, serial + 1, serial % 5 + 1, serial * 10, 1, 2);
+	}
+
+	@Test
+	public void testFormat() {
+		for (int serial = 1; serial < 10; serial++) {
+			String line = ResultFormat.CSV.format(result(serial));
+			assertEquals(line, ResultFormat.CSV.format(ResultFormat.CSV.parse(line)));
+		}
+		NavigationResult timedOut = ResultFormat.CSV.parse(ResultFormat.CSV.format(result(7)));
+		assertTrue(timedOut.isTimedOut());
+		assertFalse(timedOut.isPathFound());
+		assertEquals(70, timedOut.getNumberOfNodesExplored());
+		// the layout of paths found by navigations other than AbstractNavigation
+		assertEquals("1,2,3,4,5", ResultFormat.CSV.format(ResultFormat.CSV.parse("1,2,3,4,5")).trim());
+	}
+
+	@Test
+	public void testWriteAndResume() throws Exception {
+		final int numberOfPairs = 1000;
+		File log = folder.newFile("pairs.log");
+
+		// many threads writing the odd pairs
+		try (final ResultSink results = new ResultSink(log, ResultFormat.CSV, numberOfPairs)) {
+			final Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				final int offset = t;
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						for (int serial = 1 + offset * 2; serial <= numberOfPairs; serial += threads.length * 2) {
+							results.write(result(serial));
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+
+		List<String> lines = Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+		assertEquals(numberOfPairs / 2, lines.size());
+		Set<Integer> serials = new HashSet<Integer>();
+		for (String line : lines) {
+			serials.add(ResultFormat.CSV.parse(line).getSerialNumber());
+		}
+		assertEquals(numberOfPairs / 2, serials.size());
+
+		// resumed from the bitmap
+		long found = 0, timedOut = 0, length = 0, nodes = 0;
+		try (CompletedPairs completed = CompletedPairs.open(log, ResultFormat.CSV, numberOfPairs)) {
+			for (int serial = 1; serial <= numberOfPairs; serial++) {
+				assertEquals(serial % 2 == 1, completed.contains(serial));
+				NavigationResult result = result(serial);
+				if (serial % 2 == 1 && result.isTimedOut()) timedOut++;
+				if (serial % 2 == 1 && result.isPathFound()) {
+					found++;
+					length += result.getPathLength();
+					nodes += result.getNumberOfNodesExplored();
+				}
+			}
+			assertEquals(numberOfPairs / 2, completed.size());
+			assertEquals(found, completed.getNumberOfPathsFound());
+			assertEquals(timedOut, completed.getNumberOfPairsTimedOut());
+			assertEquals(length, completed.getTotalPathLength());
+			assertEquals(nodes, completed.getTotalNumberOfNodesExplored());
+		}
+
+		// the bitmap is rebuilt once the log changes behind its back
+		try (FileWriter writer = new FileWriter(log, true)) {
+			writer.write(ResultFormat.CSV.format(result(2)));
+		}
+		try (CompletedPairs completed = CompletedPairs.open(log, ResultFormat.CSV, numberOfPairs)) {
+			assertTrue(completed.contains(2));
+			assertFalse(completed.contains(4));
+			assertEquals(numberOfPairs / 2 + 1, completed.size());
+		}
+	}
+
+	@Test
+	public void testRebuildFromOldLog() throws IOException {
+		File log = folder.newFile("old.log");
+		try (FileWriter writer = new FileWriter(log)) {
+			writer.write("1,10,11,3,40,1,2\n2,10,12\n\n3,11,12,2,7\n");
+		}
+		try (CompletedPairs completed = CompletedPairs.open(log, ResultFormat.CSV, 10)) {
+			assertEquals(3, completed.size());
+			assertEquals(2, completed.getNumberOfPathsFound());
+			assertEquals(5, completed.getTotalPathLength());
+			assertEquals(47, completed.getTotalNumberOfNodesExplored());
+			assertFalse(completed.contains(4));
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package smallworld.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.PathExpanders;
+
+import smallworld.ConcurrentMain;
+import smallworld.Constants;
+import smallworld.MergeLogs;
+import smallworld.data.RelationshipTypes;
+import smallworld.data.inserter.exp.Neo4JInserter;
+import smallworld.data.inserter.exp.SimpleGraphInserter;
+
+public class ShardTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final int NUMBER_OF_SHARDS = 3;
+
+	@Test
+	public void testRanges() {
+		for (int numberOfPairs : new int[] { 0, 1, 2, 10, 1000 }) {
+			int next = 0;
+			for (int i = 1; i <= NUMBER_OF_SHARDS; i++) {
+				Shard shard = Shard.parse(i + "/" + NUMBER_OF_SHARDS);
+				assertEquals(next, shard.getFirst(numberOfPairs));
+				next = shard.getLast(numberOfPairs);
+			}
+			assertEquals(numberOfPairs, next);
+		}
+
+		assertEquals("a.log", Shard.ALL.getLog("a.log"));
+		assertEquals("a.shard-2-of-3.log", new Shard(2, 3).getLog("a.log"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoSuchShard() {
+		Shard.parse("4/3");
+	}
+
+	@Test
+	public void testCopyStore() throws Exception {
+		File store = folder.newFolder("store");
+		File neostore = new File(store, "neostore");
+		Files.write(neostore.toPath(), "1".getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(store, "store_lock").toPath(), new byte[0]);
+		Shard shard = new Shard(2, 3);
+
+		File copy = new File(shard.copyStore(store.getAbsolutePath()));
+		assertEquals(store.getAbsolutePath() + ".shard-2", copy.getAbsolutePath());
+		assertTrue(new File(copy, "neostore").exists());
+		assertFalse(new File(copy, "store_lock").exists());
+
+		// reused while the store is unchanged, even if opened and written to
+		File written = new File(copy, "neostore.transaction.db.0");
+		Files.write(written.toPath(), "opened".getBytes(StandardCharsets.UTF_8));
+		assertEquals(copy.getAbsolutePath(), shard.copyStore(store.getAbsolutePath()));
+		assertTrue(written.exists());
+
+		// copied again once the store is rebuilt
+		Files.write(neostore.toPath(), "2".getBytes(StandardCharsets.UTF_8));
+		assertTrue(neostore.setLastModified(neostore.lastModified() + 2000));
+		assertEquals(copy.getAbsolutePath(), shard.copyStore(store.getAbsolutePath()));
+		assertFalse(written.exists());
+		assertEquals("2", new String(Files.readAllBytes(new File(copy, "neostore").toPath()), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Run a shard of an experiment of all the pairs of a store
+	 *
+	 * @param args store, log, shard
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Shard shard = Shard.parse(args[2]);
+		Closeable preparing = shard.lockStore(args[0]);
+		Constants.NEO4J_PATH = shard.copyStore(args[0]);
+		Constants.NEO4J_READ_ONLY = true;
+		preparing.close();
+
+		new ConcurrentMain(navigation(), Constants.NEO4J_PATH, -1, 0, args[1], shard, NavigationMetrics.getInstance("Shortest", "None"));
+		System.exit(0);
+	}
+
+	private static ShortestNavigation navigation() {
+		return new ShortestNavigation(PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH));
+	}
+
+	@Test
+	public void testShardsInProcesses() throws Exception {
+		String store = new File(folder.getRoot(), "simple").getAbsolutePath();
+		new SimpleGraphInserter(new Neo4JInserter(store));
+
+		// the whole experiment in this process
+		File log = new File(folder.getRoot(), "simple.log");
+		new ConcurrentMain(navigation(), store, -1, 0, log.getPath());
+		MergeLogs expected = new MergeLogs();
+		expected.add(log, ResultFormat.CSV);
+
+		// the shards in their own processes, on the same store
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<Process> processes = new ArrayList<Process>();
+		List<File> logs = new ArrayList<File>();
+		for (int i = 1; i <= NUMBER_OF_SHARDS; i++) {
+			Shard shard = new Shard(i, NUMBER_OF_SHARDS);
+			File shardLog = new File(shard.getLog(log.getPath()));
+			logs.add(shardLog);
+			processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ShardTest.class.getName(), store, shardLog.getPath(), shard.toString())
+					.redirectErrorStream(true)
+					.redirectOutput(new File(folder.getRoot(), "shard-" + i + ".out"))
+					.start());
+		}
+		for (Process process : processes) {
+			assertTrue(process.waitFor(2, TimeUnit.MINUTES));
+			assertEquals(0, process.exitValue());
+		}
+
+		MergeLogs merged = new MergeLogs();
+		for (File shardLog : logs) {
+			merged.add(shardLog, ResultFormat.CSV);
+		}
+		assertEquals(expected.getNumberOfPairs(), merged.getNumberOfPairs());
+		assertEquals(0, merged.getNumberOfMissingPairs());
+		assertEquals(0, merged.getNumberOfDuplicates());
+		assertEquals(expected.getNumberOfPathsFound(), merged.getNumberOfPathsFound());
+		assertEquals(expected.getTotalPathLength(), merged.getTotalPathLength());
+		assertEquals(expected.getTotalNumberOfNodesExplored(), merged.getTotalNumberOfNodesExplored());
+	}
+}
@@ -0,0 +1,178 @@
+package smallworld.navigation.evaluator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.data.inserter.exp.Neo4JInserter;
+import smallworld.data.inserter.exp.SimpleGraphInserter;
+import smallworld.data.query.Query;
+import smallworld.navigation.NavigationContext;
+import smallworld.navigation.ShortestNavigation;
+
+public class CachedEvaluatorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Query query;
+
+	@Before
+	public void initialize() throws IOException {
+		if (query == null) {
+			Neo4JInserter inserter = new Neo4JInserter(folder.getRoot().getAbsolutePath());
+			new SimpleGraphInserter(inserter);
+			query = new Query(folder.getRoot().getAbsolutePath());
+		}
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		if (null != query) query.shutdown();
+	}
+
+	/**
+	 * Costs the id of the end node, and remembers what it is asked for.
+	 */
+	private static class RecordingEvaluator implements Evaluator<Integer> {
+		final boolean pathIndependent;
+		int calls = 0;
+		final List<List<Long>> batches = new ArrayList<List<Long>>();
+
+		RecordingEvaluator(boolean pathIndependent) {
+			this.pathIndependent = pathIndependent;
+		}
+
+		@Override
+		public Evaluator<Integer> copy() {
+			return this;
+		}
+
+		@Override
+		public Integer getCost(Path path, Node target) {
+			return getCost(path.endNode(), target);
+		}
+
+		@Override
+		public Integer getCost(Node end, Node target) {
+			calls++;
+			return cost(end);
+		}
+
+		@Override
+		public int[] getCosts(List<? extends Path> candidates, NavigationContext context) {
+			List<Long> batch = new ArrayList<Long>();
+			int[] costs = new int[candidates.size()];
+			for (int i = 0; i < costs.length; i++) {
+				batch.add(candidates.get(i).endNode().getId());
+				costs[i] = cost(candidates.get(i).endNode());
+			}
+			batches.add(batch);
+			return costs;
+		}
+
+		@Override
+		public boolean isPathIndependent() {
+			return pathIndependent;
+		}
+
+		static int cost(Node end) {
+			return (int) end.getId() * 10 + 1;
+		}
+	}
+
+	// a path to every node of the graph from the first person
+	private static List<Path> paths() {
+		ShortestNavigation shortest = new ShortestNavigation(
+				PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH));
+		List<Node> people = new ArrayList<Node>();
+		for (Node node : GlobalGraphOperations.at(query.getGraphDatabaseService()).getAllNodes()) {
+			if (node.hasRelationship(RelationshipTypes.FRIEND.type())) people.add(node);
+		}
+		List<Path> paths = new ArrayList<Path>();
+		for (Node sink : people) {
+			paths.add(shortest.findSinglePath(people.get(0), sink));
+		}
+		return paths;
+	}
+
+	@Test
+	public void testHit() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			RecordingEvaluator evaluator = new RecordingEvaluator(true);
+			CachedEvaluator cached = new CachedEvaluator(evaluator, 100);
+			List<Path> paths = paths();
+			Node target = paths.get(paths.size() - 1).endNode();
+
+			for (Path path : paths) {
+				assertEquals(RecordingEvaluator.cost(path.endNode()), (int) cached.getCost(path, target));
+			}
+			assertEquals(paths.size(), evaluator.calls);
+
+			// hits, by path, by node, by context and from a copy sharing the cache
+			Evaluator<Integer> copy = cached.copy();
+			for (Path path : paths) {
+				assertEquals(RecordingEvaluator.cost(path.endNode()), (int) cached.getCost(path, target));
+				assertEquals(RecordingEvaluator.cost(path.endNode()), (int) cached.getCost(path.endNode(), target));
+				assertEquals(RecordingEvaluator.cost(path.endNode()), (int) cached.getCost(path, new NavigationContext(target)));
+				assertEquals(RecordingEvaluator.cost(path.endNode()), (int) copy.getCost(path, target));
+			}
+			assertEquals(paths.size(), evaluator.calls);
+
+			// another target is another cost
+			cached.getCost(paths.get(0), paths.get(0).endNode());
+			assertEquals(paths.size() + 1, evaluator.calls);
+		}
+	}
+
+	@Test
+	public void testBatchesMisses() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			RecordingEvaluator evaluator = new RecordingEvaluator(true);
+			CachedEvaluator cached = new CachedEvaluator(evaluator, 100);
+			List<Path> paths = paths();
+			assertTrue(paths.size() > 2);
+			Node target = paths.get(paths.size() - 1).endNode();
+			NavigationContext context = new NavigationContext(target);
+
+			// every other path is cached
+			List<Long> misses = new ArrayList<Long>();
+			int[] expected = new int[paths.size()];
+			for (int i = 0; i < paths.size(); i++) {
+				if (i % 2 == 0) cached.getCost(paths.get(i), target);
+				else misses.add(paths.get(i).endNode().getId());
+				expected[i] = RecordingEvaluator.cost(paths.get(i).endNode());
+			}
+
+			assertArrayEquals(expected, cached.getCosts(paths, context));
+			assertEquals(1, evaluator.batches.size());
+			assertEquals(misses, evaluator.batches.get(0));
+
+			// all cached now
+			assertArrayEquals(expected, cached.getCosts(paths, context));
+			assertEquals(1, evaluator.batches.size());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsPathDependent() {
+		new CachedEvaluator(new RecordingEvaluator(false), 100);
+	}
+}
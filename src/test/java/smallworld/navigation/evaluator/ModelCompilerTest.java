@@ -0,0 +1,96 @@
+package smallworld.navigation.evaluator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class ModelCompilerTest {
+
+	private static final int NUM_FEATURES = 5;
+
+	// numeric features like the ones of FeatureBuilder, one of them constant
+	private static Instances data(int size, long seed) {
+		FastVector attributes = new FastVector();
+		for (int i = 0; i < NUM_FEATURES; i++) {
+			attributes.addElement(new Attribute("feature" + i));
+		}
+		FastVector classes = new FastVector();
+		classes.addElement("0");
+		classes.addElement("1");
+		attributes.addElement(new Attribute("class", classes));
+
+		Instances data = new Instances("data", attributes, size);
+		data.setClassIndex(NUM_FEATURES);
+
+		Random random = new Random(seed);
+		for (int i = 0; i < size; i++) {
+			double[] values = new double[NUM_FEATURES + 1];
+			values[0] = random.nextInt(20);
+			values[1] = random.nextInt(5);
+			values[2] = random.nextDouble() * 100;
+			values[3] = 7;
+			values[4] = random.nextGaussian();
+			double z = 0.3 * values[0] - 1.2 * values[1] + 0.02 * values[2] + values[4] - 1;
+			values[NUM_FEATURES] = random.nextDouble() < 1 / (1 + Math.exp(-z)) ? 1 : 0;
+			data.add(new Instance(1, values));
+		}
+		return data;
+	}
+
+	private static void assertCompiled(Classifier classifier) throws Exception {
+		Instances data = data(500, 1);
+		classifier.buildClassifier(data);
+		ModelCompiler.Scorer scorer = ModelCompiler.compile(classifier, data);
+		assertNotNull(scorer);
+
+		Instances test = data(200, 2);
+		for (int i = 0; i < test.numInstances(); i++) {
+			Instance instance = test.instance(i);
+			double[] values = instance.toDoubleArray();
+			values[NUM_FEATURES] = Instance.missingValue();
+
+			double[] expected = classifier.distributionForInstance(instance);
+			assertArrayEquals(expected, scorer.distribution(values), 1e-12);
+			assertEquals(expected[1], scorer.probability(values, 1), 1e-12);
+			assertEquals(expected[0], scorer.probability(values, 0), 1e-12);
+		}
+	}
+
+	@Test
+	public void testLogistic() throws Exception {
+		assertCompiled(new Logistic());
+	}
+
+	@Test
+	public void testNaiveBayes() throws Exception {
+		assertCompiled(new NaiveBayes());
+	}
+
+	@Test
+	public void testRandomForest() throws Exception {
+		assertCompiled(new RandomForest());
+	}
+
+	@Test
+	public void testUnsupported() throws Exception {
+		Instances data = data(100, 1);
+		Classifier classifier = new J48();
+		classifier.buildClassifier(data);
+		assertNull(ModelCompiler.compile(classifier, data));
+	}
+}
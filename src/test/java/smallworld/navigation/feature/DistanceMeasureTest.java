@@ -0,0 +1,98 @@
+package smallworld.navigation.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import smallworld.data.RelationshipTypes;
+import smallworld.data.graph.DistanceMatrix;
+import smallworld.data.graph.GraphSnapshot;
+import smallworld.data.inserter.exp.Neo4JInserter;
+import smallworld.data.inserter.exp.SimpleGraphInserter;
+import smallworld.data.query.Query;
+import smallworld.navigation.ShortestNavigation;
+
+public class DistanceMeasureTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Query query;
+
+	@Before
+	public void initialize() throws IOException {
+		if (query == null) {
+			Neo4JInserter inserter = new Neo4JInserter(folder.getRoot().getAbsolutePath());
+			new SimpleGraphInserter(inserter);
+			query = new Query(folder.getRoot().getAbsolutePath());
+		}
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		if (null != query) query.shutdown();
+	}
+
+	private static GraphSnapshot snapshot(Direction direction) {
+		return GraphSnapshot.build(query.getGraphDatabaseService(), RelationshipTypes.FRIEND.type(), direction);
+	}
+
+	private static void assertDistances(Direction direction, long maximumBytes) {
+		assertDistances(direction, new DistanceMeasure(snapshot(direction), maximumBytes));
+	}
+
+	private static void assertDistances(Direction direction, DistanceMeasure measure) {
+		ShortestNavigation nav = new ShortestNavigation(PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), direction));
+
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			for (Node target : GlobalGraphOperations.at(query.getGraphDatabaseService()).getAllNodes()) {
+				for (Node from : GlobalGraphOperations.at(query.getGraphDatabaseService()).getAllNodes()) {
+					Path path = nav.findSinglePath(from, target);
+					assertEquals(from + " => " + target + " " + direction,
+							path == null ? Integer.MAX_VALUE : path.length(), measure.getDistance(from, target));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDistances() {
+		assertDistances(Direction.BOTH, 1 << 20);
+		assertDistances(Direction.OUTGOING, 1 << 20);
+	}
+
+	@Test
+	public void testDistancesWhenEvicted() {
+		// room for a single target
+		assertDistances(Direction.OUTGOING, 10);
+	}
+
+	@Test
+	public void testDistanceMatrix() throws IOException {
+		for (Direction direction : new Direction[] { Direction.BOTH, Direction.OUTGOING }) {
+			File file = folder.newFile();
+			DistanceMatrix matrix = DistanceMatrix.build(snapshot(direction), file, 2);
+			assertDistances(direction, new DistanceMeasure(matrix));
+			assertDistances(direction, new DistanceMeasure(DistanceMatrix.load(snapshot(direction), file)));
+		}
+
+		// built for a different graph
+		File file = folder.newFile();
+		DistanceMatrix.build(snapshot(Direction.OUTGOING), file, 1);
+		assertNull(DistanceMatrix.load(snapshot(Direction.BOTH), file));
+	}
+}
@@ -0,0 +1,114 @@
+package smallworld.navigation.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import smallworld.Constants;
+import smallworld.data.RelationshipTypes;
+import smallworld.data.inserter.exp.Neo4JInserter;
+import smallworld.data.inserter.exp.SimpleGraphInserter;
+import smallworld.data.query.Query;
+import smallworld.navigation.NavigationContext;
+import smallworld.navigation.ShortestNavigation;
+
+public class FeatureBuilderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Query query;
+
+	@Before
+	public void initialize() throws IOException {
+		if (query == null) {
+			Neo4JInserter inserter = new Neo4JInserter(folder.getRoot().getAbsolutePath());
+			new SimpleGraphInserter(inserter);
+			// the circle features read circles through QueryCircles.getInstance()
+			Constants.NEO4J_PATH = folder.getRoot().getAbsolutePath();
+			query = Query.getInstance();
+		}
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		if (null != query) query.shutdown();
+	}
+
+	private static FeatureBuilder builder() {
+		String dataset = "facebook";
+		return new FeatureBuilder()
+				.addFeature(FeatureBuilder.getPathLengthFeature(dataset))
+				.addFeature(FeatureBuilder.getEndNodeDegreeFeature(dataset, RelationshipTypes.FRIEND.type(), Direction.BOTH))
+				.addFeature(FeatureBuilder.getParentNodeDegreeFeature(dataset, RelationshipTypes.FRIEND.type(), Direction.BOTH))
+				.addFeature(FeatureBuilder.hasCommonCirclesWithTarget(dataset))
+				.addFeature(FeatureBuilder.getCommonCirclesWithTarget(dataset))
+				.addFeature(FeatureBuilder.hasCommonCirclesWithParent(dataset))
+				.addFeature(FeatureBuilder.getCommonCirclesWithParent(dataset))
+				.addFeature(FeatureBuilder.hasCommonCirclesBetweenParentTarget(dataset))
+				.addFeature(FeatureBuilder.getCommonCirclesBetweenParentTarget(dataset))
+				.addFeature(FeatureBuilder.getMinCommonCircleWithTarget(dataset))
+				.addFeature(FeatureBuilder.getMaxCommonCircleWithTarget(dataset))
+				.addClassFeature(FeatureBuilder.getPathLengthFeature(dataset));
+	}
+
+	private static void assertFeatureVectors(FeatureBuilder builder) {
+		ShortestNavigation shortest = new ShortestNavigation(
+				PathExpanders.forTypeAndDirection(RelationshipTypes.FRIEND.type(), Direction.BOTH));
+		List<Node> people = new ArrayList<Node>();
+		for (Node node : GlobalGraphOperations.at(query.getGraphDatabaseService()).getAllNodes()) {
+			if (node.hasRelationship(RelationshipTypes.FRIEND.type())) people.add(node);
+		}
+
+		// one array for all the paths, as the evaluators do
+		double[] values = builder.newFeatureVector();
+		List<Feature<Double>> features = builder.features();
+		int paths = 0;
+		for (Node source : people) {
+			for (Node sink : people) {
+				if (source.equals(sink)) continue;
+				Path path = shortest.findSinglePath(source, sink);
+				NavigationContext context = new NavigationContext(sink);
+				builder.getFeatureVector(path, context, values);
+				for (int j = 0; j < features.size() - 1; j++) {
+					assertEquals(features.get(j).getName() + " of " + path, features.get(j).getFeature(path, sink), values[j], 0);
+				}
+				paths++;
+			}
+		}
+		assertTrue(paths > 0);
+	}
+
+	@Test
+	public void testFeatureVector() {
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			assertFeatureVectors(builder());
+		}
+	}
+
+	@Test
+	public void testScaledFeatureVector() {
+		boolean scaling = FeatureBuilder.isScaling();
+		FeatureBuilder.setScaling(true);
+		try (Transaction tx = query.getGraphDatabaseService().beginTx()) {
+			assertFeatureVectors(builder());
+		} finally {
+			FeatureBuilder.setScaling(scaling);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package smallworld.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.MinMaxPriorityQueue;
+
+public class BoundedMinMaxHeapTest {
+
+	@Test
+	public void testPollInOrder() {
+		BoundedMinMaxHeap<Integer> heap = new BoundedMinMaxHeap<Integer>();
+		Random rand = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			int cost = rand.nextInt(100);
+			heap.add(cost, cost);
+		}
+
+		int last = Integer.MIN_VALUE;
+		while (!heap.isEmpty()) {
+			int cost = heap.peekCost();
+			assertEquals(cost, heap.poll().intValue());
+			assertTrue(last <= cost);
+			last = cost;
+		}
+		assertNull(heap.poll());
+	}
+
+	@Test
+	public void testEvictMostExpensiveWhenFull() {
+		BoundedMinMaxHeap<Integer> heap = new BoundedMinMaxHeap<Integer>(3);
+		heap.add(5, 5);
+		heap.add(1, 1);
+		heap.add(3, 3);
+		assertFalse(heap.add(9, 9));
+		assertEquals(3, heap.size());
+		assertEquals(5, heap.peekLastCost());
+
+		assertTrue(heap.add(2, 2));
+		assertEquals(3, heap.size());
+		assertEquals(3, heap.peekLastCost());
+		assertEquals(1, heap.poll().intValue());
+		assertEquals(2, heap.poll().intValue());
+		assertEquals(3, heap.poll().intValue());
+	}
+
+	@Test
+	public void testMatchesMinMaxPriorityQueue() {
+		final int capacity = 50;
+		BoundedMinMaxHeap<Integer> heap = new BoundedMinMaxHeap<Integer>(capacity);
+		MinMaxPriorityQueue<Integer> queue = MinMaxPriorityQueue.maximumSize(capacity).create();
+		Random rand = new Random(1);
+
+		for (int i = 0; i < 100000; i++) {
+			int op = rand.nextInt(4);
+			if (op < 2) {
+				int cost = rand.nextInt(1000);
+				heap.add(cost, cost);
+				queue.add(cost);
+			} else if (op == 2) {
+				assertEquals(queue.pollFirst(), heap.poll());
+			} else {
+				assertEquals(queue.pollLast(), heap.pollLast());
+			}
+			assertEquals(queue.size(), heap.size());
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package smallworld.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_parameter;
+import libsvm.svm_print_interface;
+import libsvm.svm_problem;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DenseSVMModelTest {
+
+	// features and a missing class, like FeatureBuilder.newFeatureVector
+	private static final int DIMENSION = 6;
+
+	@BeforeClass
+	public static void quiet() {
+		svm.svm_set_print_string_function(new svm_print_interface() {
+			@Override
+			public void print(String s) {
+			}
+		});
+	}
+
+	private static double[][] vectors(int size, Random rand) {
+		double[][] vectors = new double[size][DIMENSION];
+		for (double[] values : vectors) {
+			for (int i = 0; i < DIMENSION - 1; i++) {
+				// some zeros, which are left out of sparse vectors
+				values[i] = rand.nextInt(4) == 0 ? 0 : rand.nextInt(10) + rand.nextDouble();
+			}
+			values[DIMENSION - 1] = Double.NaN;
+		}
+		return vectors;
+	}
+
+	private static svm_model train(int numClasses, boolean probability) {
+		Random rand = new Random(numClasses);
+		svm_problem problem = new svm_problem();
+		problem.l = 300;
+		double[][] x = vectors(problem.l, rand);
+		problem.x = new libsvm.svm_node[problem.l][];
+		problem.y = new double[problem.l];
+		for (int i = 0; i < problem.l; i++) {
+			problem.x[i] = LibSVMUtils.toSVMNode(x[i]);
+			problem.y[i] = ((int) (x[i][0] + x[i][1] + rand.nextInt(3))) % numClasses;
+		}
+
+		svm_parameter param = new svm_parameter();
+		param.svm_type = svm_parameter.C_SVC;
+		param.kernel_type = svm_parameter.RBF;
+		param.gamma = 0.2;
+		param.cache_size = 10;
+		param.C = 1;
+		param.eps = 1e-3;
+		param.shrinking = 1;
+		param.probability = probability ? 1 : 0;
+		param.weight_label = new int[0];
+		param.weight = new double[0];
+		return svm.svm_train(problem, param);
+	}
+
+	private static void assertPredictions(svm_model model) {
+		DenseSVMModel dense = new DenseSVMModel(model, DIMENSION);
+		double[][] test = vectors(200, new Random(42));
+
+		double[] batch = new double[test.length];
+		dense.predict(test, batch);
+
+		for (int i = 0; i < test.length; i++) {
+			double expected = LibSVMUtils.predict(model, LibSVMUtils.toSVMNode(test[i]));
+			assertEquals(expected, dense.predict(test[i]), 0);
+			assertEquals(expected, batch[i], 0);
+
+			if (model.nr_class == 2) {
+				double[] decisionValues = new double[1];
+				svm.svm_predict_values(model, LibSVMUtils.toSVMNode(test[i]), decisionValues);
+				assertEquals(decisionValues[0], dense.decisionValue(test[i]), 1e-9);
+			}
+
+			if (svm.svm_check_probability_model(model) == 1) {
+				double[] expectedEstimates = LibSVMUtils.predictProbabilities(model, LibSVMUtils.toSVMNode(test[i]));
+				double[] estimates = new double[2];
+				assertEquals(expected, dense.predictProbability(test[i], estimates), 0);
+				assertArrayEquals(expectedEstimates, estimates, 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testTwoClasses() {
+		assertPredictions(train(2, false));
+	}
+
+	@Test
+	public void testProbability() {
+		assertPredictions(train(2, true));
+	}
+
+	@Test
+	public void testThreeClasses() {
+		assertPredictions(train(3, false));
+	}
+}
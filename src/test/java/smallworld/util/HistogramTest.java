@@ -0,0 +1,78 @@
+package smallworld.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void testSmallValuesAreExact() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(50, histogram.getPercentile(50));
+		assertEquals(99, histogram.getPercentile(99));
+		assertEquals(100, histogram.getPercentile(100));
+		assertEquals(100, histogram.getMax());
+		assertEquals(50.5, histogram.getMean(), 1e-9);
+	}
+
+	@Test
+	public void testPercentiles() {
+		Histogram histogram = new Histogram();
+		Random rand = new Random(0);
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++) {
+			// long tailed, as times are
+			values[i] = (long) Math.exp(rand.nextDouble() * 25);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		for (double p : new double[] { 1, 10, 50, 90, 99, 99.9 }) {
+			long exact = values[(int) Math.ceil(p / 100 * values.length) - 1];
+			long estimate = histogram.getPercentile(p);
+			assertTrue(p + ": " + estimate + " vs " + exact, estimate >= exact);
+			assertTrue(p + ": " + estimate + " vs " + exact, estimate <= exact + exact / 64);
+		}
+		assertEquals(values[values.length - 1], histogram.getMax());
+		assertEquals(histogram.getMax(), histogram.getPercentile(100));
+	}
+
+	@Test
+	public void testEmpty() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getMean(), 0);
+	}
+
+	@Test
+	public void testConcurrentRecords() throws InterruptedException {
+		final Histogram histogram = new Histogram();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						histogram.record(i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(40000, histogram.getCount());
+		assertEquals(9999, histogram.getMax());
+	}
+}
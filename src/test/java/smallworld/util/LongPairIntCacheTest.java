@@ -0,0 +1,81 @@
+package smallworld.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class LongPairIntCacheTest {
+
+	@Test
+	public void testGetPut() {
+		LongPairIntCache cache = new LongPairIntCache(1000);
+		assertEquals(1024, cache.capacity());
+
+		assertEquals(-1, cache.get(1, 2, -1));
+		cache.put(1, 2, 3);
+		cache.put(2, 1, 4);
+		assertEquals(3, cache.get(1, 2, -1));
+		assertEquals(4, cache.get(2, 1, -1));
+
+		// replaced, not added
+		cache.put(1, 2, 5);
+		assertEquals(5, cache.get(1, 2, -1));
+		assertEquals(2, cache.size());
+
+		assertEquals(3, cache.hits());
+		assertEquals(1, cache.misses());
+	}
+
+	@Test
+	public void testBounded() {
+		LongPairIntCache cache = new LongPairIntCache(64);
+		for (long i = 0; i < 10000; i++) {
+			cache.put(i, i * 7, (int) i);
+		}
+		assertTrue(cache.size() <= cache.capacity());
+
+		// what is left is right
+		for (long i = 0; i < 10000; i++) {
+			int value = cache.get(i, i * 7, -1);
+			assertTrue(value == -1 || value == i);
+		}
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		final LongPairIntCache cache = new LongPairIntCache(1 << 12);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < 4; t++) {
+			futures.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					int wrong = 0;
+					for (int i = 0; i < 100000; i++) {
+						long end = i % 5000;
+						long target = i % 7;
+						int value = cache.get(end, target, -1);
+						if (value == -1) cache.put(end, target, (int) (end * 10 + target));
+						else if (value != end * 10 + target) wrong++;
+					}
+					return wrong;
+				}
+			}));
+		}
+		for (Future<Integer> future : futures) {
+			assertEquals(0, (int) future.get());
+		}
+		executor.shutdown();
+
+		assertEquals(400000, cache.hits() + cache.misses());
+		assertTrue(cache.hits() > 0);
+	}
+}
@@ -0,0 +1,57 @@
+package smallworld.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LongSetTest {
+
+	@Test
+	public void testAddAndContains() {
+		LongSet set = new LongSet(4);
+		assertTrue(set.add(1));
+		assertFalse(set.add(1));
+		assertTrue(set.add(-1));
+		assertTrue(set.add(Long.MAX_VALUE));
+		assertTrue(set.contains(1));
+		assertTrue(set.contains(-1));
+		assertTrue(set.contains(Long.MAX_VALUE));
+		assertFalse(set.contains(0));
+		assertEquals(3, set.size());
+	}
+
+	@Test
+	public void testMatchesHashSetWhileGrowing() {
+		LongSet set = new LongSet(4);
+		Set<Long> expected = new HashSet<Long>();
+		Random rand = new Random(0);
+		for (int i = 0; i < 100000; i++) {
+			long key = rand.nextInt(50000);
+			assertEquals(expected.add(key), set.add(key));
+		}
+		assertEquals(expected.size(), set.size());
+		for (long key = 0; key < 50000; key++) {
+			assertEquals(expected.contains(key), set.contains(key));
+		}
+	}
+
+	@Test
+	public void testClear() {
+		LongSet set = new LongSet();
+		for (int round = 0; round < 3; round++) {
+			for (long key = 0; key < 5000; key++) {
+				assertTrue(set.add(key * 7));
+			}
+			assertEquals(5000, set.size());
+			set.clear();
+			assertTrue(set.isEmpty());
+			assertFalse(set.contains(7));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package smallworld.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PairPermutationTest {
+
+	@Test
+	public void testAllPairs() {
+		for (int n = 2; n <= 40; n++) {
+			PairPermutation pairs = new PairPermutation(n, n);
+			assertEquals((long) n * (n - 1), pairs.size());
+
+			Set<Long> seen = new HashSet<Long>();
+			for (long i = 0; i < pairs.size(); i++) {
+				long pair = pairs.get(i);
+				assertTrue(seen.add(pair));
+				int source = pairs.getSource(pair);
+				int sink = pairs.getSink(pair);
+				assertTrue(source >= 0 && source < n);
+				assertTrue(sink >= 0 && sink < n);
+				assertTrue(source != sink);
+			}
+			assertEquals(pairs.size(), seen.size());
+		}
+	}
+
+	@Test
+	public void testSeed() {
+		PairPermutation pairs = new PairPermutation(1000, 0);
+		PairPermutation same = new PairPermutation(1000, 0);
+		PairPermutation other = new PairPermutation(1000, 1);
+
+		boolean differs = false;
+		for (long i = 0; i < 100; i++) {
+			assertEquals(pairs.get(i), same.get(i));
+			differs |= pairs.get(i) != other.get(i);
+		}
+		assertTrue(differs);
+	}
+
+	@Test
+	public void testLargeGraph() {
+		// more pairs than an int can count
+		PairPermutation pairs = new PairPermutation(5000000, 0);
+		assertEquals(5000000L * 4999999L, pairs.size());
+
+		Set<Long> seen = new HashSet<Long>();
+		for (long i = pairs.size() - 1000; i < pairs.size(); i++) {
+			long pair = pairs.get(i);
+			assertTrue(pair >= 0 && pair < pairs.size());
+			assertTrue(seen.add(pair));
+			assertNotEquals(pairs.getSource(pair), pairs.getSink(pair));
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfRange() {
+		new PairPermutation(10, 0).get(90);
+	}
+}